@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+/**
+ * Generates the synthetic input used by the benchmarks so that they don't
+ * depend on test resources or a running system.
+ */
+public final class BenchmarkData {
+    public static final String RECORDS_NAMESPACE = "records:2";
+
+    public static final String CSV_HEADING = "Time,Action,User,File\n";
+
+    public static final String CSV_DATA_SPLITTER = "<?xml version=\"1.1\" encoding=\"UTF-8\"?>\n"
+            + "<dataSplitter xmlns=\"data-splitter:3\" version=\"3.0\">\n"
+            + "  <split delimiter=\"\\n\" maxMatch=\"1\">\n"
+            + "    <group>\n"
+            + "      <split delimiter=\",\" containerStart=\"&#34;\" containerEnd=\"&#34;\">\n"
+            + "        <var id=\"heading\" />\n"
+            + "      </split>\n"
+            + "    </group>\n"
+            + "  </split>\n"
+            + "  <split delimiter=\"\\n\">\n"
+            + "    <group>\n"
+            + "      <split delimiter=\",\" containerStart=\"&#34;\" containerEnd=\"&#34;\">\n"
+            + "        <data name=\"$heading$1\" value=\"$1\" />\n"
+            + "      </split>\n"
+            + "    </group>\n"
+            + "  </split>\n"
+            + "</dataSplitter>\n";
+
+    public static final String RECORDS_TO_EVENTS_XSLT = "<xsl:stylesheet"
+            + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" xmlns:r=\"records:2\""
+            + " xmlns=\"event-logging:3\" exclude-result-prefixes=\"r\" version=\"2.0\">\n"
+            + "  <xsl:template match=\"r:records\">\n"
+            + "    <Events>\n"
+            + "      <xsl:apply-templates select=\"r:record\"/>\n"
+            + "    </Events>\n"
+            + "  </xsl:template>\n"
+            + "  <xsl:template match=\"r:record\">\n"
+            + "    <Event>\n"
+            + "      <EventTime><xsl:value-of select=\"r:data[@name='Time']/@value\"/></EventTime>\n"
+            + "      <User><xsl:value-of select=\"r:data[@name='User']/@value\"/></User>\n"
+            + "      <Action><xsl:value-of select=\"upper-case(r:data[@name='Action']/@value)\"/></Action>\n"
+            + "      <File><xsl:value-of select=\"r:data[@name='File']/@value\"/></File>\n"
+            + "    </Event>\n"
+            + "  </xsl:template>\n"
+            + "</xsl:stylesheet>\n";
+
+    private BenchmarkData() {
+        // Utility class.
+    }
+
+    public static String createCsv(final int lines) {
+        final StringBuilder sb = new StringBuilder(lines * 100);
+        sb.append(CSV_HEADING);
+        for (int i = 1; i <= lines; i++) {
+            sb.append("01/01/2009:00:00:");
+            sb.append(i % 60);
+            sb.append(",OPEN");
+            sb.append(i);
+            sb.append(",user");
+            sb.append(i % 100);
+            sb.append(",D:\\TranslationKit\\example\\VerySimple\\OpenFileEvents");
+            sb.append(i);
+            sb.append(".txt\n");
+        }
+        return sb.toString();
+    }
+
+    public static String createRecordsXml(final int records) {
+        final StringBuilder sb = new StringBuilder(records * 250);
+        sb.append("<?xml version=\"1.1\" encoding=\"UTF-8\"?>\n");
+        sb.append("<records xmlns=\"");
+        sb.append(RECORDS_NAMESPACE);
+        sb.append("\" version=\"2.0\">\n");
+        for (int i = 1; i <= records; i++) {
+            sb.append("<record>");
+            appendData(sb, "Time", "01/01/2009:00:00:" + (i % 60));
+            appendData(sb, "Action", "open" + i);
+            appendData(sb, "User", "user" + (i % 100));
+            appendData(sb, "File", "D:\\TranslationKit\\example\\VerySimple\\OpenFileEvents" + i + ".txt");
+            sb.append("</record>\n");
+        }
+        sb.append("</records>\n");
+        return sb.toString();
+    }
+
+    private static void appendData(final StringBuilder sb, final String name, final String value) {
+        sb.append("<data name=\"");
+        sb.append(name);
+        sb.append("\" value=\"");
+        sb.append(value);
+        sb.append("\"/>");
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stroom.streamstore.server.fs.BlockGZIPInputFile;
+import stroom.streamstore.server.fs.BlockGZIPInputStream;
+import stroom.streamstore.server.fs.BlockGZIPOutputFile;
+import stroom.util.io.FileUtil;
+import stroom.util.io.StreamUtil;
+
+/**
+ * Measures compressing and decompressing stream data in the block GZIP format
+ * and seeking within it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BlockGZIPBenchmark {
+    @Param({ "100000" })
+    private int lines;
+
+    private File dir;
+    private File inputFile;
+    private File outputFile;
+    private byte[] data;
+    private byte[] compressed;
+    private final byte[] buffer = new byte[StreamUtil.BUFFER_SIZE];
+    private final Random random = new Random(0);
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("BlockGZIPBenchmark").toFile();
+        inputFile = new File(dir, "read.bgz");
+        outputFile = new File(dir, "write.bgz");
+
+        data = BenchmarkData.createCsv(lines).getBytes(StreamUtil.DEFAULT_CHARSET);
+        writeTo(inputFile);
+        compressed = Files.readAllBytes(inputFile.toPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.forceDelete(dir);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        writeTo(outputFile);
+        return outputFile.length();
+    }
+
+    @Benchmark
+    public long readFile() throws IOException {
+        try (final InputStream inputStream = new BlockGZIPInputFile(inputFile)) {
+            return drain(inputStream);
+        }
+    }
+
+    @Benchmark
+    public long readStream() throws IOException {
+        try (final InputStream inputStream = new BlockGZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return drain(inputStream);
+        }
+    }
+
+    @Benchmark
+    public int seek() throws IOException {
+        try (final BlockGZIPInputFile seekable = new BlockGZIPInputFile(inputFile)) {
+            seekable.seek(random.nextInt(data.length));
+            return seekable.read();
+        }
+    }
+
+    private void writeTo(final File file) throws IOException {
+        try (final BlockGZIPOutputFile outputStream = new BlockGZIPOutputFile(file)) {
+            outputStream.write(data);
+        }
+    }
+
+    private long drain(final InputStream inputStream) throws IOException {
+        long total = 0;
+        int len;
+        while ((len = inputStream.read(buffer)) != -1) {
+            total += len;
+        }
+        return total;
+    }
+}
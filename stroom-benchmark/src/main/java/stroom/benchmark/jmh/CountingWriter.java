@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.io.Writer;
+
+/**
+ * Writer that discards output but counts it so that the JIT can't optimise
+ * away the work done to produce it.
+ */
+public class CountingWriter extends Writer {
+    private long count;
+
+    @Override
+    public void write(final int c) {
+        count++;
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+        count += len;
+    }
+
+    @Override
+    public void write(final String str, final int off, final int len) {
+        count += len;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
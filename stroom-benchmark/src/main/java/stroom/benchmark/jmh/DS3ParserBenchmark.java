@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import stroom.entity.server.util.XMLUtil;
+import stroom.pipeline.server.DefaultLocationFactory;
+import stroom.pipeline.server.errorhandler.ErrorHandlerAdaptor;
+import stroom.pipeline.server.errorhandler.LoggingErrorReceiver;
+import stroom.util.xml.SAXParserFactoryFactory;
+import stroom.xml.converter.ds3.ConfigFilter;
+import stroom.xml.converter.ds3.DS3Parser;
+import stroom.xml.converter.ds3.RootFactory;
+import stroom.xml.converter.ds3.ref.VarMap;
+
+/**
+ * Measures the data splitter turning CSV into records XML. The configuration is
+ * compiled without schema validation as that is only a one off cost per
+ * pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DS3ParserBenchmark {
+    @Param({ "10000" })
+    private int lines;
+
+    private String csv;
+    private XMLReader parser;
+    private CountingWriter writer;
+
+    @Setup
+    public void setup() throws Exception {
+        csv = BenchmarkData.createCsv(lines);
+
+        final RootFactory factory = new RootFactory();
+        final SAXParserFactory parserFactory = SAXParserFactoryFactory.newInstance();
+        parserFactory.setNamespaceAware(true);
+        final XMLReader configReader = parserFactory.newSAXParser().getXMLReader();
+        configReader.setContentHandler(new ConfigFilter(factory));
+        configReader.parse(new InputSource(new StringReader(BenchmarkData.CSV_DATA_SPLITTER)));
+        factory.compile();
+
+        parser = new DS3Parser(factory.newInstance(new VarMap()), RootFactory.MIN_BUFFER_SIZE,
+                factory.getBufferSize());
+        parser.setErrorHandler(
+                new ErrorHandlerAdaptor("DS3Parser", new DefaultLocationFactory(), new LoggingErrorReceiver()));
+
+        writer = new CountingWriter();
+    }
+
+    @Benchmark
+    public long parse() throws Exception {
+        // Transformer handlers can't be reused between documents.
+        final TransformerHandler handler = XMLUtil.createTransformerHandler(false);
+        handler.setResult(new StreamResult(writer));
+        parser.setContentHandler(handler);
+
+        writer.reset();
+        parser.parse(new InputSource(new StringReader(csv)));
+        return writer.getCount();
+    }
+}
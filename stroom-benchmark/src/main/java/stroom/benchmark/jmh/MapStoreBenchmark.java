@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+import stroom.entity.shared.Range;
+import stroom.pipeline.server.errorhandler.StoredErrorReceiver;
+import stroom.refdata.MapStore;
+import stroom.refdata.MapStoreBuilder;
+import stroom.refdata.MapStoreBuilderImpl;
+import stroom.xml.event.EventList;
+import stroom.xml.event.np.NPEventListBuilder;
+
+/**
+ * Measures reference data lookups by key and by range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MapStoreBenchmark {
+    private static final String KEY_MAP = "USER_TO_LOCATION";
+    private static final String RANGE_MAP = "IP_TO_LOCATION";
+    private static final long RANGE_SIZE = 256;
+
+    @Param({ "100000" })
+    private int entries;
+
+    private MapStore mapStore;
+    private String[] keys;
+    private String[] rangeKeys;
+    private int pos;
+
+    @Setup
+    public void setup() throws SAXException {
+        final MapStoreBuilder builder = new MapStoreBuilderImpl(new StoredErrorReceiver());
+        final NPEventListBuilder eventListBuilder = new NPEventListBuilder();
+
+        keys = new String[entries];
+        rangeKeys = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            final EventList eventList = createEventList(eventListBuilder, "Location " + i);
+
+            keys[i] = "user" + i;
+            builder.setEvents(KEY_MAP, keys[i], eventList, false);
+
+            final long from = i * RANGE_SIZE;
+            builder.setEvents(RANGE_MAP, new Range<>(from, from + RANGE_SIZE - 1), eventList, false);
+            rangeKeys[i] = String.valueOf(from + (i % RANGE_SIZE));
+        }
+
+        mapStore = builder.getMapStore();
+    }
+
+    private EventList createEventList(final NPEventListBuilder builder, final String value) throws SAXException {
+        final char[] chars = value.toCharArray();
+        builder.reset();
+        builder.startElement("", "location", "location", null);
+        builder.characters(chars, 0, chars.length);
+        builder.endElement("", "location", "location");
+        return builder.getEventList();
+    }
+
+    @Benchmark
+    public EventList keyLookup() {
+        pos = (pos + 7919) % entries;
+        return mapStore.getEvents(KEY_MAP, keys[pos]);
+    }
+
+    @Benchmark
+    public EventList rangeLookup() {
+        pos = (pos + 7919) % entries;
+        return mapStore.getEvents(RANGE_MAP, rangeKeys[pos]);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import stroom.xml.event.EventList;
+import stroom.xml.event.np.NPEventListBuilder;
+
+/**
+ * Measures building the event lists that hold reference data values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NPEventListBuilderBenchmark {
+    private static final String URI = "reference-data:2";
+    private static final String EMPTY = "";
+
+    private final AttributesImpl atts = new AttributesImpl();
+    private final char[] value = "192.168.1.1 host.example.com".toCharArray();
+
+    private NPEventListBuilder builder;
+
+    @Setup
+    public void setup() {
+        builder = new NPEventListBuilder();
+        atts.addAttribute(EMPTY, "type", "type", "string", "IPV4");
+    }
+
+    @Benchmark
+    public EventList build() throws SAXException {
+        builder.reset();
+        builder.startElement(URI, "host", "host", atts);
+        builder.startElement(URI, "address", "address", null);
+        builder.characters(value, 0, 11);
+        builder.endElement(URI, "address", "address");
+        builder.startElement(URI, "name", "name", null);
+        builder.characters(value, 12, value.length - 12);
+        builder.endElement(URI, "name", "name");
+        builder.endElement(URI, "host", "host");
+        return builder.getEventList();
+    }
+}
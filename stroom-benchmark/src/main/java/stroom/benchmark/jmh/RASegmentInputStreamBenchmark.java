@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stroom.streamstore.server.fs.BlockGZIPInputFile;
+import stroom.streamstore.server.fs.BlockGZIPOutputFile;
+import stroom.streamstore.server.fs.LockingFileOutputStream;
+import stroom.streamstore.server.fs.UncompressedInputStream;
+import stroom.streamstore.server.fs.serializable.RASegmentInputStream;
+import stroom.streamstore.server.fs.serializable.RASegmentOutputStream;
+import stroom.util.io.FileUtil;
+import stroom.util.io.StreamUtil;
+
+/**
+ * Measures reading selected segments from a segmented stream as happens when
+ * paging through cooked data or reprocessing individual records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RASegmentInputStreamBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({ "100000" })
+    private int segments;
+
+    private File dir;
+    private File dataFile;
+    private File indexFile;
+    private final byte[] buffer = new byte[StreamUtil.BUFFER_SIZE];
+    private final Random random = new Random(0);
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("RASegmentInputStreamBenchmark").toFile();
+        dataFile = new File(dir, "data.bgz");
+        indexFile = new File(dir, "data.seg.dat");
+
+        try (final RASegmentOutputStream outputStream = new RASegmentOutputStream(
+                new BlockGZIPOutputFile(dataFile), new LockingFileOutputStream(indexFile, true))) {
+            for (int i = 0; i < segments; i++) {
+                outputStream.write(("<record><data name=\"Segment\" value=\"" + i + "\"/></record>\n")
+                        .getBytes(StreamUtil.DEFAULT_CHARSET));
+                outputStream.addSegment();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.forceDelete(dir);
+    }
+
+    @Benchmark
+    public long readPage() throws IOException {
+        try (final RASegmentInputStream inputStream = open()) {
+            final long start = random.nextInt(segments - PAGE_SIZE);
+            for (long i = start; i < start + PAGE_SIZE; i++) {
+                inputStream.include(i);
+            }
+            return drain(inputStream);
+        }
+    }
+
+    @Benchmark
+    public long readSparse() throws IOException {
+        try (final RASegmentInputStream inputStream = open()) {
+            for (long i = random.nextInt(segments / PAGE_SIZE); i < segments; i += segments / PAGE_SIZE) {
+                inputStream.include(i);
+            }
+            return drain(inputStream);
+        }
+    }
+
+    @Benchmark
+    public long skipAll() throws IOException {
+        try (final RASegmentInputStream inputStream = open()) {
+            inputStream.includeAll();
+            return inputStream.skip(random.nextInt((int) inputStream.size()));
+        }
+    }
+
+    private RASegmentInputStream open() throws IOException {
+        return new RASegmentInputStream(new BlockGZIPInputFile(dataFile), new UncompressedInputStream(indexFile, true));
+    }
+
+    private long drain(final RASegmentInputStream inputStream) throws IOException {
+        long total = 0;
+        int len;
+        while ((len = inputStream.read(buffer)) != -1) {
+            total += len;
+        }
+        return total;
+    }
+}
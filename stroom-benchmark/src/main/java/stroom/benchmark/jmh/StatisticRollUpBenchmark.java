@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stroom.statistics.common.StatisticEvent;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.common.exception.StatisticsEventValidationException;
+import stroom.statistics.server.common.AbstractStatistics;
+import stroom.statistics.shared.StatisticField;
+import stroom.statistics.shared.StatisticRollUpType;
+import stroom.statistics.shared.StatisticStoreEntity;
+import stroom.statistics.shared.StatisticsDataSourceData;
+import stroom.statistics.sql.SQLStatisticAggregateMap;
+
+/**
+ * Measures expanding statistic events into their roll up permutations and
+ * aggregating them by SQL statistic key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StatisticRollUpBenchmark {
+    private static final long PRECISION_MS = 60_000L;
+
+    @Param({ "1", "3", "5" })
+    private int tags;
+
+    @Param({ "1000" })
+    private int events;
+
+    private StatisticStoreEntity statisticStoreEntity;
+    private List<StatisticEvent> statisticEvents;
+
+    @Setup
+    public void setup() {
+        final List<StatisticField> fields = new ArrayList<>();
+        for (int i = 0; i < tags; i++) {
+            fields.add(new StatisticField("Tag" + i));
+        }
+
+        final StatisticsDataSourceData statisticsDataSourceData = new StatisticsDataSourceData();
+        statisticsDataSourceData.setStatisticFields(fields);
+
+        statisticStoreEntity = new StatisticStoreEntity();
+        statisticStoreEntity.setName("MyStat");
+        statisticStoreEntity.setRollUpType(StatisticRollUpType.ALL);
+        statisticStoreEntity.setStatisticDataSourceDataObject(statisticsDataSourceData);
+
+        statisticEvents = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            final List<StatisticTag> tagList = new ArrayList<>(tags);
+            for (int j = 0; j < tags; j++) {
+                tagList.add(new StatisticTag("Tag" + j, "value" + ((i + j) % 20)));
+            }
+            statisticEvents.add(new StatisticEvent(i * 1000L, "MyStat", tagList, 1L));
+        }
+    }
+
+    @Benchmark
+    public SQLStatisticAggregateMap aggregate() throws StatisticsEventValidationException {
+        final SQLStatisticAggregateMap aggregateMap = new SQLStatisticAggregateMap();
+        for (final StatisticEvent statisticEvent : statisticEvents) {
+            aggregateMap.addRolledUpEvent(AbstractStatistics.generateTagRollUps(statisticEvent, statisticStoreEntity),
+                    PRECISION_MS);
+        }
+        return aggregateMap;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.mapreduce.UnsafePairQueue;
+import stroom.query.CompiledDepths;
+import stroom.query.CompiledFields;
+import stroom.query.Item;
+import stroom.query.ItemMapper;
+import stroom.query.ResultStore;
+import stroom.query.TablePayloadHandler;
+import stroom.query.shared.Field;
+import stroom.query.shared.IndexFieldsMap;
+import stroom.util.task.MonitorImpl;
+
+/**
+ * Measures merging the grouped table payloads that come back from each node
+ * during a search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TablePayloadHandlerBenchmark {
+    @Param({ "10" })
+    private int payloads;
+
+    @Param({ "10000" })
+    private int itemsPerPayload;
+
+    @Param({ "1000" })
+    private int groups;
+
+    private List<Field> fields;
+    private List<UnsafePairQueue<String, Item>> queues;
+
+    @Setup
+    public void setup() {
+        final Field user = new Field("User");
+        user.setExpression("${User}");
+        user.setGroup(0);
+
+        final Field count = new Field("Count");
+        count.setExpression("count()");
+
+        fields = new ArrayList<>();
+        fields.add(user);
+        fields.add(count);
+    }
+
+    /**
+     * Merging consumes the queues so new ones are needed for each invocation.
+     */
+    @Setup(Level.Invocation)
+    public void createPayloads() {
+        final CompiledDepths compiledDepths = new CompiledDepths(fields, false);
+        final CompiledFields compiledFields = new CompiledFields(new IndexFieldsMap(), fields,
+                new FieldIndexMap(true));
+
+        queues = new ArrayList<>(payloads);
+        for (int i = 0; i < payloads; i++) {
+            final UnsafePairQueue<String, Item> queue = new UnsafePairQueue<>();
+            final ItemMapper itemMapper = new ItemMapper(queue, compiledFields, compiledDepths.getMaxDepth(),
+                    compiledDepths.getMaxGroupDepth());
+            for (int j = 0; j < itemsPerPayload; j++) {
+                itemMapper.collect(null, new String[] { "user" + ((i * itemsPerPayload + j) % groups) });
+            }
+            queues.add(queue);
+        }
+    }
+
+    @Benchmark
+    public ResultStore merge() {
+        final TablePayloadHandler payloadHandler = new TablePayloadHandler(fields, false, new int[] { 1000000 });
+        final MonitorImpl monitor = new MonitorImpl();
+        for (final UnsafePairQueue<String, Item> queue : queues) {
+            payloadHandler.addQueue(queue, monitor);
+        }
+        return payloadHandler.getResultStore();
+    }
+}
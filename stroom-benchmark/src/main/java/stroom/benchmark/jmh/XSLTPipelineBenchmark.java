@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.benchmark.jmh;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import net.sf.saxon.jaxp.TemplatesImpl;
+import net.sf.saxon.jaxp.TransformerImpl;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.XsltExecutable;
+import stroom.pipeline.server.errorhandler.ErrorReceiverProxy;
+import stroom.pipeline.server.errorhandler.FatalErrorReceiver;
+import stroom.pipeline.server.writer.OutputStreamAppender;
+import stroom.pipeline.server.writer.XMLWriter;
+import stroom.util.xml.SAXParserFactoryFactory;
+
+/**
+ * Measures the XML parser, XSLT filter and XML writer chain used by most
+ * translation pipelines. The parser and XSLT stages are set up the same way as
+ * the pipeline elements set themselves up but without the element framework
+ * around them. Output goes through the real {@link XMLWriter} element into an
+ * appender.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class XSLTPipelineBenchmark {
+    @Param({ "10000" })
+    private int records;
+
+    private String xml;
+    private XsltExecutable xsltExecutable;
+    private XMLReader xmlReader;
+    private CountingOutputStream outputStream;
+
+    @Setup
+    public void setup() throws Exception {
+        xml = BenchmarkData.createRecordsXml(records);
+
+        final Processor processor = new Processor(false);
+        xsltExecutable = processor.newXsltCompiler()
+                .compile(new StreamSource(new StringReader(BenchmarkData.RECORDS_TO_EVENTS_XSLT)));
+
+        final SAXParserFactory parserFactory = SAXParserFactoryFactory.newInstance();
+        parserFactory.setNamespaceAware(true);
+        xmlReader = parserFactory.newSAXParser().getXMLReader();
+
+        outputStream = new CountingOutputStream();
+    }
+
+    @Benchmark
+    public long transform() throws Exception {
+        // XML writer.
+        final XMLWriter output = new XMLWriter(new ErrorReceiverProxy(new FatalErrorReceiver()), null);
+        output.setTarget(new OutputStreamAppender(outputStream));
+
+        // XSLT filter.
+        final TemplatesImpl templates = new TemplatesImpl(xsltExecutable);
+        final TransformerImpl transformer = (TransformerImpl) templates.newTransformer();
+        final TransformerHandler xslt = transformer.newTransformerHandler();
+        xslt.setResult(new SAXResult(output));
+
+        // XML parser.
+        xmlReader.setContentHandler(xslt);
+
+        outputStream.reset();
+        output.startProcessing();
+        output.startStream();
+        xmlReader.parse(new InputSource(new StringReader(xml)));
+        output.endStream();
+        output.endProcessing();
+        return outputStream.getCount();
+    }
+}
@@ -160,6 +160,38 @@ public class CacheNodeListPresenter extends MyPresenterWidget<DataGridView<Cache
             }
         }, "Eviction Count", MEDIUM_COL);
 
+        // Load Count.
+        getView().addResizableColumn(new Column<CacheNodeRow, String>(new TextCell()) {
+            @Override
+            public String getValue(final CacheNodeRow row) {
+                return Long.toString(row.getCacheInfo().getLoadCount());
+            }
+        }, "Loads", SMALL_COL);
+
+        // Load Failure Count.
+        getView().addResizableColumn(new Column<CacheNodeRow, String>(new TextCell()) {
+            @Override
+            public String getValue(final CacheNodeRow row) {
+                return Long.toString(row.getCacheInfo().getLoadFailureCount());
+            }
+        }, "Load Failures", MEDIUM_COL);
+
+        // Average Load Time.
+        getView().addResizableColumn(new Column<CacheNodeRow, String>(new TextCell()) {
+            @Override
+            public String getValue(final CacheNodeRow row) {
+                return Float.toString(row.getCacheInfo().getAverageLoadTime());
+            }
+        }, "Average Load Time", MEDIUM_COL);
+
+        // Refresh Count.
+        getView().addResizableColumn(new Column<CacheNodeRow, String>(new TextCell()) {
+            @Override
+            public String getValue(final CacheNodeRow row) {
+                return Long.toString(row.getCacheInfo().getRefreshCount());
+            }
+        }, "Refreshes", SMALL_COL);
+
         // Searches Per Second.
         getView().addResizableColumn(new Column<CacheNodeRow, String>(new TextCell()) {
             @Override
@@ -50,6 +50,7 @@ import stroom.streamstore.server.StreamSource;
 import stroom.streamstore.server.StreamStore;
 import stroom.streamstore.server.fs.FileSystemUtil;
 import stroom.streamstore.server.fs.serializable.CompoundInputStream;
+import stroom.streamstore.server.fs.serializable.LineIndex;
 import stroom.streamstore.server.fs.serializable.RASegmentInputStream;
 import stroom.streamstore.shared.Stream;
 import stroom.streamstore.shared.StreamType;
@@ -178,7 +179,8 @@ public abstract class AbstractFetchDataHandler<A extends FetchDataAction>
             if (segmentInputStream.count() > 1) {
                 rawData = getSegmentedData(feed, streamType, pageRange, segmentInputStream);
             } else {
-                rawData = getNonSegmentedData(feed, streamType, pageRange, segmentInputStream);
+                rawData = getNonSegmentedData(feed, streamType, pageRange, streamSource, streamsOffset,
+                        segmentInputStream);
             }
 
             writeEventLog(streamSource.getStream(), feed, streamType, null);
@@ -311,7 +313,8 @@ public abstract class AbstractFetchDataHandler<A extends FetchDataAction>
     }
 
     private String getNonSegmentedData(final Feed feed, final StreamType streamType, final OffsetRange<Long> pageRange,
-            final RASegmentInputStream segmentInputStream) throws IOException {
+            final StreamSource streamSource, final long entryNo, final RASegmentInputStream segmentInputStream)
+            throws IOException {
         // Get the appropriate encoding for the stream type.
         final String encoding = EncodingSelection.select(feed, streamType);
 
@@ -322,7 +325,22 @@ public abstract class AbstractFetchDataHandler<A extends FetchDataAction>
         long lineNo = 0;
         int len = 0;
 
-        try (BOMRemovalInputStream bomRemovalIS = new BOMRemovalInputStream(segmentInputStream, encoding);
+        // If we are not looking at the first page then use the line index to
+        // jump straight to the nearest line before the requested page.
+        if (minLineNo >= LineIndex.DEFAULT_INTERVAL && LineIndex.isSupported(Charset.forName(encoding))) {
+            try (final LineIndex lineIndex = LineIndex.open(streamSource)) {
+                if (lineIndex != null) {
+                    final LineIndex.Checkpoint checkpoint = lineIndex.getCheckpoint(entryNo, minLineNo);
+                    final long entryStart = lineIndex.getCheckpoint(entryNo, 0).getByteOffset();
+                    segmentInputStream.skip(checkpoint.getByteOffset() - entryStart);
+                    lineNo = checkpoint.getLineNo();
+                }
+            }
+        }
+
+        // Only look for a BOM if we are reading from the start of the data.
+        final String bomEncoding = lineNo == 0 ? encoding : null;
+        try (BOMRemovalInputStream bomRemovalIS = new BOMRemovalInputStream(segmentInputStream, bomEncoding);
                 final Reader reader = new InputStreamReader(bomRemovalIS, encoding)) {
             final char[] buffer = new char[FileSystemUtil.STREAM_BUFFER_SIZE];
             int lineLength = 0;
@@ -28,7 +28,6 @@ import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.Statistics;
 import net.sf.ehcache.config.CacheConfiguration;
-import net.sf.ehcache.constructs.blocking.SelfPopulatingCache;
 import net.sf.ehcache.event.CacheEventListenerAdapter;
 
 public abstract class AbstractCacheBean<K, V> implements CacheBean<K, V> {
@@ -89,13 +88,12 @@ public abstract class AbstractCacheBean<K, V> implements CacheBean<K, V> {
 
     private static final StroomLogger LOGGER = StroomLogger.getLogger(AbstractCacheBean.class);
 
-    private final Ehcache cache;
+    private final LoadingCache cache;
 
     public AbstractCacheBean(final CacheManager cacheManager, final String name, final int maxCacheEntries) {
         final CacheConfiguration cacheConfiguration = new CacheConfiguration(name, maxCacheEntries);
 
-        Ehcache cache = new Cache(cacheConfiguration);
-        cache = new SelfPopulatingCache(cache, key -> create((K) key));
+        final LoadingCache cache = new LoadingCache(new Cache(cacheConfiguration), key -> create((K) key));
         cache.getCacheEventNotificationService().registerListener(new CacheListener(this));
 
         this.cache = cache;
@@ -153,6 +151,16 @@ public abstract class AbstractCacheBean<K, V> implements CacheBean<K, V> {
         cache.getCacheConfiguration().setTimeToLiveSeconds(maxLiveTime);
     }
 
+    /**
+     * Sets the age after which values are reloaded in the background while the
+     * current value continues to be returned. This should be less than the
+     * max live time so that frequently used values never expire and is not
+     * suitable for values that need to be destroyed.
+     */
+    public void setRefreshAfter(final long refreshAfter, final TimeUnit unit) {
+        cache.setRefreshAfterMs(TimeUnit.MILLISECONDS.convert(refreshAfter, unit));
+    }
+
     public void evictExpiredElements() {
         cache.evictExpiredElements();
     }
@@ -171,6 +179,8 @@ public abstract class AbstractCacheBean<K, V> implements CacheBean<K, V> {
                 stats.getAverageGetTime(), stats.getEvictionCount(), stats.getMemoryStoreObjectCount(),
                 stats.getOffHeapStoreObjectCount(), stats.getDiskStoreObjectCount(), stats.getSearchesPerSecond(),
                 stats.getAverageSearchTime(), stats.getWriterQueueSize());
+        info.setLoadStatistics(cache.getLoadCount(), cache.getLoadFailureCount(), cache.getAverageLoadTime(),
+                cache.getRefreshCount());
         return info;
     }
 
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import stroom.task.server.StroomThreadGroup;
+import stroom.util.logging.StroomLogger;
+import stroom.util.thread.CustomThreadFactory;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.constructs.EhcacheDecoratorAdapter;
+
+/**
+ * A cache decorator that creates missing values on first use.
+ *
+ * Unlike a {@link net.sf.ehcache.constructs.blocking.SelfPopulatingCache}
+ * only callers that want the key being created wait for it. Concurrent
+ * requests for the same key share a single load and callers of other keys are
+ * never blocked. If a refresh time is set then a value that is older than the
+ * refresh time is still returned but is also reloaded in the background so
+ * that hot entries are replaced before they expire.
+ *
+ * Load counts, failures, refreshes and load times are recorded so they can be
+ * shown alongside the Ehcache statistics.
+ */
+public class LoadingCache extends EhcacheDecoratorAdapter {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(LoadingCache.class);
+
+    private static final int MAX_REFRESH_THREADS = 4;
+    private static final ThreadPoolExecutor REFRESH_EXECUTOR;
+
+    static {
+        final CustomThreadFactory threadFactory = new CustomThreadFactory("Stroom Cache Refresh #",
+                StroomThreadGroup.instance(), Thread.MIN_PRIORITY + 1);
+        threadFactory.setDaemon(true);
+
+        // Refreshes are skipped rather than queued when all refresh threads
+        // are busy as the current value can continue to be used.
+        REFRESH_EXECUTOR = new ThreadPoolExecutor(0, MAX_REFRESH_THREADS, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory);
+    }
+
+    private final Function<Object, Object> loader;
+    private final ConcurrentHashMap<Object, FutureTask<Element>> loads = new ConcurrentHashMap<>();
+
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong totalLoadTimeNs = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    private volatile long refreshAfterMs;
+
+    public LoadingCache(final Ehcache cache, final Function<Object, Object> loader) {
+        super(cache);
+        this.loader = loader;
+    }
+
+    @Override
+    public Element get(final Object key) throws IllegalStateException, CacheException {
+        final Element element = underlyingCache.get(key);
+        if (element == null) {
+            return loadElement(key);
+        }
+
+        final long refreshAfterMs = this.refreshAfterMs;
+        if (refreshAfterMs > 0
+                && System.currentTimeMillis() - element.getLatestOfCreationAndUpdateTime() > refreshAfterMs) {
+            refreshElement(key);
+        }
+
+        return element;
+    }
+
+    @Override
+    public Element get(final Serializable key) throws IllegalStateException, CacheException {
+        return get((Object) key);
+    }
+
+    private Element loadElement(final Object key) {
+        FutureTask<Element> load = new FutureTask<>(() -> {
+            // Another thread may have finished loading this key since we
+            // looked.
+            final Element element = underlyingCache.getQuiet(key);
+            if (element != null) {
+                return element;
+            }
+            return createElement(key);
+        });
+
+        final FutureTask<Element> existing = loads.putIfAbsent(key, load);
+        if (existing != null) {
+            // Wait for the load that is already in progress.
+            load = existing;
+        } else {
+            try {
+                load.run();
+            } finally {
+                loads.remove(key, load);
+            }
+        }
+
+        try {
+            return load.get();
+        } catch (final ExecutionException e) {
+            throw new CacheException("Could not fetch object for cache entry with key \"" + key + "\".",
+                    e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException(e);
+        }
+    }
+
+    private void refreshElement(final Object key) {
+        final FutureTask<Element> refresh = new FutureTask<>(() -> {
+            try {
+                return createElement(key);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to refresh cache entry with key \"" + key + "\" - " + e.getMessage(), e);
+                throw e;
+            }
+        });
+
+        if (loads.putIfAbsent(key, refresh) == null) {
+            try {
+                REFRESH_EXECUTOR.execute(() -> {
+                    try {
+                        refresh.run();
+                    } finally {
+                        loads.remove(key, refresh);
+                    }
+                });
+                refreshCount.incrementAndGet();
+            } catch (final RejectedExecutionException e) {
+                loads.remove(key, refresh);
+                LOGGER.debug("Skipped refresh of cache entry with key \"%s\" as all refresh threads are busy", key);
+            }
+        }
+    }
+
+    private Element createElement(final Object key) {
+        final long startTime = System.nanoTime();
+        try {
+            final Element element = new Element(key, loader.apply(key));
+            underlyingCache.put(element);
+            return element;
+        } catch (final RuntimeException e) {
+            loadFailureCount.incrementAndGet();
+            throw e;
+        } finally {
+            loadCount.incrementAndGet();
+            totalLoadTimeNs.addAndGet(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Values older than this are returned but also reloaded in the
+     * background. Values that need destroying when they are removed should not
+     * be refreshed as the replaced value is not destroyed.
+     *
+     * @param refreshAfterMs
+     *            The age in milliseconds after which a value is refreshed or 0
+     *            to never refresh values.
+     */
+    public void setRefreshAfterMs(final long refreshAfterMs) {
+        this.refreshAfterMs = refreshAfterMs;
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return The average time taken to create a value in milliseconds.
+     */
+    public float getAverageLoadTime() {
+        final long count = loadCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return (float) (totalLoadTimeNs.get() / (double) count / 1000000D);
+    }
+}
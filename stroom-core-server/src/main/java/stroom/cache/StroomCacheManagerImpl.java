@@ -29,7 +29,6 @@ import stroom.cache.shared.FindCacheInfoCriteria;
 import stroom.entity.shared.BaseResultList;
 import stroom.entity.shared.Clearable;
 import stroom.entity.shared.PageRequest;
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Statistics;
@@ -93,6 +92,14 @@ public class StroomCacheManagerImpl implements StroomCacheManager, Clearable {
                                 stats.getOffHeapStoreObjectCount(), stats.getDiskStoreObjectCount(),
                                 stats.getSearchesPerSecond(), stats.getAverageSearchTime(), stats.getWriterQueueSize());
 
+                        // Add load statistics for caches that create their
+                        // own values.
+                        if (cache instanceof LoadingCache) {
+                            final LoadingCache loadingCache = (LoadingCache) cache;
+                            info.setLoadStatistics(loadingCache.getLoadCount(), loadingCache.getLoadFailureCount(),
+                                    loadingCache.getAverageLoadTime(), loadingCache.getRefreshCount());
+                        }
+
                         list.add(info);
                     }
                 }
@@ -108,7 +115,7 @@ public class StroomCacheManagerImpl implements StroomCacheManager, Clearable {
     public void clear() {
         final String[] cacheNames = cacheManager.getCacheNames();
         for (final String cacheName : cacheNames) {
-            final Cache cache = cacheManager.getCache(cacheName);
+            final Ehcache cache = cacheManager.getEhcache(cacheName);
             if (cache != null) {
                 cache.removeAll();
             }
@@ -122,7 +129,10 @@ public class StroomCacheManagerImpl implements StroomCacheManager, Clearable {
     public Long findClear(final FindCacheInfoCriteria criteria) {
         final List<CacheInfo> caches = findCaches(criteria);
         for (final CacheInfo cache : caches) {
-            cacheManager.getCache(cache.getName()).removeAll();
+            final Ehcache ehcache = cacheManager.getEhcache(cache.getName());
+            if (ehcache != null) {
+                ehcache.removeAll();
+            }
         }
         return null;
     }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dictionary;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The parsed lines of a single version of a dictionary. Instances are shared
+ * between searches and pipelines via {@link DictionaryTermsCache} so that large
+ * dictionaries are only split, and compiled into whatever form a consumer needs,
+ * once per version.
+ */
+public class DictionaryTerms {
+    private final String uuid;
+    private final byte version;
+    private final String[] lines;
+    private final Set<String> lineSet;
+    private final Map<Object, Object> compiled = new ConcurrentHashMap<>();
+
+    public DictionaryTerms(final String uuid, final byte version, final String data) {
+        this.uuid = uuid;
+        this.version = version;
+
+        final Set<String> set = new HashSet<>();
+        if (data != null) {
+            for (final String line : data.split("\n")) {
+                final String trimmed = line.trim();
+                if (trimmed.length() > 0) {
+                    set.add(trimmed);
+                }
+            }
+        }
+        this.lineSet = Collections.unmodifiableSet(set);
+        this.lines = set.toArray(new String[set.size()]);
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public byte getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The distinct, trimmed and non empty lines of the dictionary.
+     */
+    public String[] getLines() {
+        return lines;
+    }
+
+    public boolean contains(final String line) {
+        return line != null && lineSet.contains(line.trim());
+    }
+
+    /**
+     * Gets a compiled form of these terms, creating it with the supplied
+     * compiler the first time it is asked for. The compiled form is discarded
+     * along with these terms when the dictionary changes.
+     *
+     * @param key
+     *            Identifies the compiled form, e.g. a field and the way it is
+     *            analysed.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getCompiled(final Object key, final Function<DictionaryTerms, T> compiler) {
+        return (T) compiled.computeIfAbsent(key, k -> compiler.apply(this));
+    }
+}
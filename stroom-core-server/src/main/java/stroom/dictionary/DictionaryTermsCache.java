@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dictionary;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import stroom.dictionary.shared.Dictionary;
+import stroom.entity.server.event.EntityEvent;
+import stroom.entity.server.event.EntityEventHandler;
+import stroom.entity.shared.Clearable;
+
+/**
+ * Caches the parsed terms of dictionaries by UUID. Callers still load the
+ * dictionary entity themselves so that permissions are checked as normal; the
+ * entity version is then used to decide if the cached terms can be reused.
+ * Entries are dropped as soon as a dictionary is changed or deleted anywhere in
+ * the cluster.
+ */
+@Component
+@EntityEventHandler(type = Dictionary.ENTITY_TYPE)
+public class DictionaryTermsCache implements Clearable, EntityEvent.Handler {
+    private final Map<String, DictionaryTerms> cache = new ConcurrentHashMap<>();
+
+    public DictionaryTerms get(final Dictionary dictionary) {
+        final String uuid = dictionary.getUuid();
+        DictionaryTerms terms = cache.get(uuid);
+        if (terms == null || terms.getVersion() != dictionary.getVersion()) {
+            terms = new DictionaryTerms(uuid, dictionary.getVersion(), dictionary.getData());
+            cache.put(uuid, terms);
+        }
+        return terms;
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public void onChange(final EntityEvent event) {
+        if (event.getDocRef() != null && event.getDocRef().getUuid() != null) {
+            cache.remove(event.getDocRef().getUuid());
+        } else {
+            clear();
+        }
+    }
+}
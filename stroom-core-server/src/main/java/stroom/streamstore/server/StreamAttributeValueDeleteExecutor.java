@@ -31,6 +31,7 @@ import stroom.jobsystem.server.JobTrackedSchedule;
 import stroom.streamstore.shared.StreamAttributeValue;
 import stroom.streamtask.server.AbstractBatchDeleteExecutor;
 import stroom.streamtask.server.BatchIdTransactionHelper;
+import stroom.streamtask.server.PartitionTransactionHelper;
 import stroom.util.spring.StroomFrequencySchedule;
 import stroom.util.task.TaskMonitor;
 
@@ -46,9 +47,9 @@ public class StreamAttributeValueDeleteExecutor extends AbstractBatchDeleteExecu
 
     @Inject
     public StreamAttributeValueDeleteExecutor(final BatchIdTransactionHelper batchIdTransactionHelper,
-            final ClusterLockService clusterLockService, final StroomPropertyService propertyService,
-            final TaskMonitor taskMonitor) {
-        super(batchIdTransactionHelper, clusterLockService, propertyService, taskMonitor, TASK_NAME, LOCK_NAME,
+            final PartitionTransactionHelper partitionTransactionHelper, final ClusterLockService clusterLockService,
+            final StroomPropertyService propertyService, final TaskMonitor taskMonitor) {
+        super(batchIdTransactionHelper, partitionTransactionHelper, clusterLockService, propertyService, taskMonitor, TASK_NAME, LOCK_NAME,
                 STREAM_ATTRIBUTE_DELETE_AGE_PROPERTY, STREAM_ATTRIBUTE_DELETE_BATCH_SIZE_PROPERTY,
                 DEFAULT_STREAM_ATTRIBUTE_DELETE_BATCH_SIZE, TEMP_STRM_ATTRIBUTE_ID_TABLE);
     }
@@ -67,6 +68,16 @@ public class StreamAttributeValueDeleteExecutor extends AbstractBatchDeleteExecu
         deleteWithJoin(StreamAttributeValue.TABLE_NAME, StreamAttributeValue.ID, "stream attributes", total);
     }
 
+    @Override
+    protected String getPartitionedTableName() {
+        return StreamAttributeValue.TABLE_NAME;
+    }
+
+    @Override
+    protected String getPartitionColumn() {
+        return StreamAttributeValue.CREATE_MS;
+    }
+
     @Override
     protected String getTempIdSelectSql(final long age, final int batchSize) {
         final SQLBuilder sql = new SQLBuilder();
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.streamstore.server.fs.serializable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+
+import stroom.io.SeekableInputStream;
+import stroom.streamstore.server.StreamSource;
+import stroom.streamstore.server.fs.FileSystemStreamSource;
+import stroom.streamstore.server.fs.FileSystemStreamTypeUtil;
+import stroom.streamstore.server.fs.UncompressedInputStream;
+import stroom.streamstore.shared.StreamStatus;
+import stroom.streamstore.shared.StreamType;
+import stroom.util.io.StreamUtil;
+import stroom.util.logging.StroomLogger;
+
+/**
+ * Random access reader for a line index. A line index is a lazily created
+ * child stream (see {@link StreamType#LINE_INDEX}) that records the byte
+ * offset of every n'th line start within each nested entry of a stream so that
+ * a reader can seek straight to a line rather than reading through all of the
+ * data before it.
+ *
+ * The index is made up of longs in the following layout:
+ *
+ * <pre>
+ * [interval][entry count][entry 0 block start]...[entry n block start][end of last block]
+ * [entry 0 line 0 offset][entry 0 line interval offset][entry 0 line 2 * interval offset]...
+ * [entry 1 line 0 offset]...
+ * </pre>
+ *
+ * Block starts are positions in the list of offsets and all offsets are
+ * absolute byte positions in the data stream.
+ */
+public class LineIndex implements Closeable {
+    public static class Checkpoint {
+        private final long lineNo;
+        private final long byteOffset;
+
+        public Checkpoint(final long lineNo, final long byteOffset) {
+            this.lineNo = lineNo;
+            this.byteOffset = byteOffset;
+        }
+
+        /**
+         * @return the line number within the entry that this checkpoint marks
+         *         the start of.
+         */
+        public long getLineNo() {
+            return lineNo;
+        }
+
+        /**
+         * @return the absolute byte offset in the data of the start of the
+         *         line.
+         */
+        public long getByteOffset() {
+            return byteOffset;
+        }
+
+        @Override
+        public String toString() {
+            return lineNo + ":" + byteOffset;
+        }
+    }
+
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(LineIndex.class);
+
+    public static final int DEFAULT_INTERVAL = 100;
+
+    private static final int INT8 = 8;
+    private static final int HEADER_LONGS = 2;
+
+    private final InputStream index;
+    private final long interval;
+    private final long entryCount;
+
+    private final byte[] eightBytes = new byte[INT8];
+    private final LongBuffer longBuffer = ByteBuffer.wrap(eightBytes).asLongBuffer();
+
+    public LineIndex(final InputStream index) throws IOException {
+        this.index = index;
+        this.interval = readLong(0);
+        this.entryCount = readLong(1);
+    }
+
+    /**
+     * Opens the line index for a stream source, creating and storing it first
+     * if it does not exist yet.
+     *
+     * @return The line index or null if the stream is still being written or
+     *         the index cannot be stored alongside the stream.
+     */
+    public static LineIndex open(final StreamSource streamSource) throws IOException {
+        final StreamSource indexSource = streamSource.getChildStream(StreamType.LINE_INDEX);
+        if (indexSource == null) {
+            return null;
+        }
+
+        final InputStream existing = indexSource.getInputStream();
+        if (((SeekableInputStream) existing).getSize() > 0) {
+            return new LineIndex(existing);
+        }
+
+        // Don't index streams that may still be growing or that we can't
+        // store an index for.
+        if (StreamStatus.LOCKED.equals(streamSource.getStream().getStatus())
+                || !(streamSource instanceof FileSystemStreamSource)
+                || !(indexSource instanceof FileSystemStreamSource)) {
+            return null;
+        }
+
+        // Read through our own copies of the data and boundary index so that
+        // we don't move the position of streams the caller is using.
+        final File dataFile = ((FileSystemStreamSource) streamSource).getFile();
+        final File boundaryFile = FileSystemStreamTypeUtil.createChildStreamFile(dataFile,
+                StreamType.BOUNDARY_INDEX);
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (final InputStream data = FileSystemStreamTypeUtil.getInputStream(streamSource.getType(), dataFile);
+                final InputStream boundaryIndex = FileSystemStreamTypeUtil
+                        .getInputStream(StreamType.BOUNDARY_INDEX, boundaryFile)) {
+            final LineIndexBuilder builder = new LineIndexBuilder(DEFAULT_INTERVAL);
+            builder.build(data, boundaryIndex, byteArrayOutputStream);
+        }
+
+        // Store the index so it doesn't need to be built again. The output
+        // stream writes to a lock file and renames it on close so readers
+        // never see a partial index.
+        final File file = ((FileSystemStreamSource) indexSource).getFile();
+        try (final OutputStream outputStream = FileSystemStreamTypeUtil.getOutputStream(StreamType.LINE_INDEX,
+                Collections.singleton(file))) {
+            byteArrayOutputStream.writeTo(outputStream);
+        }
+        LOGGER.debug("open() - Created line index %s", file);
+
+        return new LineIndex(new UncompressedInputStream(file, false));
+    }
+
+    /**
+     * Line offsets can only be found by looking for new line bytes if the
+     * charset encodes a new line as a single byte.
+     */
+    public static boolean isSupported(final Charset charset) {
+        final byte[] bytes = "\n".getBytes(charset);
+        return bytes.length == 1 && bytes[0] == '\n';
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Gets the nearest indexed line start at or before the requested line
+     * within an entry.
+     *
+     * @param entryNo
+     *            The nested entry.
+     * @param lineNo
+     *            The line within the entry.
+     * @return The nearest checkpoint.
+     */
+    public Checkpoint getCheckpoint(final long entryNo, final long lineNo) throws IOException {
+        if (entryNo < 0 || entryNo >= entryCount) {
+            throw new IOException("Entry number " + entryNo + " is not within bounds [0-" + entryCount + "]");
+        }
+
+        final long blockStart = readLong(HEADER_LONGS + entryNo);
+        final long blockEnd = readLong(HEADER_LONGS + entryNo + 1);
+        final long pos = Math.min(lineNo / interval, blockEnd - blockStart - 1);
+        final long byteOffset = readLong(HEADER_LONGS + entryCount + 1 + blockStart + pos);
+        return new Checkpoint(pos * interval, byteOffset);
+    }
+
+    private long readLong(final long pos) throws IOException {
+        ((SeekableInputStream) index).seek(pos * INT8);
+        StreamUtil.eagerRead(index, eightBytes);
+        longBuffer.rewind();
+        return longBuffer.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+    }
+}
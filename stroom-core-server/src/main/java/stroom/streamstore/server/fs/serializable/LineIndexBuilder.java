@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.streamstore.server.fs.serializable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import stroom.streamstore.server.fs.FileSystemUtil;
+
+/**
+ * Builds a {@link LineIndex} by reading through every nested entry of a stream
+ * and recording the byte offset of every n'th line start.
+ */
+public class LineIndexBuilder {
+    private static final int INT8 = 8;
+
+    private final int interval;
+
+    private final byte[] eightBytes = new byte[INT8];
+    private final LongBuffer longBuffer = ByteBuffer.wrap(eightBytes).asLongBuffer();
+
+    private long[] offsets = new long[1024];
+    private int offsetCount;
+
+    public LineIndexBuilder(final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be greater than 0");
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * @param data
+     *            The data to index.
+     * @param boundaryIndex
+     *            The boundary index of the data.
+     * @param index
+     *            The stream to write the line index to.
+     */
+    public void build(final InputStream data, final InputStream boundaryIndex, final OutputStream index)
+            throws IOException {
+        offsetCount = 0;
+
+        final RANestedInputStream nestedInputStream = new RANestedInputStream(data, boundaryIndex);
+        final long entryCount = nestedInputStream.getEntryCount();
+        final long[] blockStarts = new long[(int) entryCount + 1];
+        final byte[] buffer = new byte[FileSystemUtil.STREAM_BUFFER_SIZE];
+
+        for (int entryNo = 0; entryNo < entryCount; entryNo++) {
+            nestedInputStream.getEntry(entryNo);
+            blockStarts[entryNo] = offsetCount;
+
+            long pos = nestedInputStream.entryByteOffsetStart();
+            long lineNo = 0;
+            addOffset(pos);
+
+            int len;
+            while ((len = nestedInputStream.read(buffer)) != -1) {
+                for (int i = 0; i < len; i++) {
+                    pos++;
+                    if (buffer[i] == '\n') {
+                        lineNo++;
+                        if (lineNo % interval == 0) {
+                            addOffset(pos);
+                        }
+                    }
+                }
+            }
+
+            nestedInputStream.closeEntry();
+        }
+        blockStarts[(int) entryCount] = offsetCount;
+
+        writeLong(index, interval);
+        writeLong(index, entryCount);
+        for (final long blockStart : blockStarts) {
+            writeLong(index, blockStart);
+        }
+        for (int i = 0; i < offsetCount; i++) {
+            writeLong(index, offsets[i]);
+        }
+        index.flush();
+    }
+
+    private void addOffset(final long offset) {
+        if (offsetCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[offsetCount++] = offset;
+    }
+
+    private void writeLong(final OutputStream outputStream, final long value) throws IOException {
+        longBuffer.rewind();
+        longBuffer.put(value);
+        outputStream.write(eightBytes);
+    }
+}
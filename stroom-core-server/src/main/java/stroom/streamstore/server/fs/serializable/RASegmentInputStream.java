@@ -536,6 +536,35 @@ public class RASegmentInputStream extends InputStream implements SegmentInputStr
         return singleByte[0];
     }
 
+    /**
+     * Skips over bytes by seeking the underlying data rather than reading
+     * through it. This is only possible when all segments are being read,
+     * otherwise the bytes are read and discarded.
+     *
+     * @param n
+     *            bytes to skip
+     * @return how many we skipped
+     */
+    @Override
+    public long skip(final long n) throws IOException {
+        if (data == null || index == null) {
+            throw new IOException("Stream closed");
+        }
+
+        if (includeAll && (excluded == null || excluded.size() == 0)) {
+            if (n <= 0) {
+                return 0;
+            }
+
+            final long skipped = Math.min(n, windowByteEnd - windowPos);
+            windowPos += skipped;
+            doSeek(windowPos);
+            return skipped;
+        }
+
+        return super.skip(n);
+    }
+
     /**
      * Gets the byte range for the next included segment.
      */
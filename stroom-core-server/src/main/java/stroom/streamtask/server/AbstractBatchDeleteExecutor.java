@@ -16,6 +16,8 @@
 
 package stroom.streamtask.server;
 
+import java.util.List;
+
 import stroom.node.server.StroomPropertyService;
 import stroom.util.logging.StroomLogger;
 import org.springframework.util.StringUtils;
@@ -30,6 +32,7 @@ public abstract class AbstractBatchDeleteExecutor {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(AbstractBatchDeleteExecutor.class);
 
     private final BatchIdTransactionHelper batchIdTransactionHelper;
+    private final PartitionTransactionHelper partitionTransactionHelper;
     private final ClusterLockService clusterLockService;
     private final StroomPropertyService propertyService;
     private final TaskMonitor taskMonitor;
@@ -46,7 +49,19 @@ public abstract class AbstractBatchDeleteExecutor {
             final TaskMonitor taskMonitor, final String taskName, final String clusterLockName,
             final String deleteAgePropertyName, final String deleteBatchSizePropertyName,
             final int deleteBatchSizeDefaultValue, final String tempIdTable) {
+        this(batchIdTransactionHelper, null, clusterLockService, propertyService, taskMonitor, taskName,
+                clusterLockName, deleteAgePropertyName, deleteBatchSizePropertyName, deleteBatchSizeDefaultValue,
+                tempIdTable);
+    }
+
+    public AbstractBatchDeleteExecutor(final BatchIdTransactionHelper batchIdTransactionHelper,
+            final PartitionTransactionHelper partitionTransactionHelper, final ClusterLockService clusterLockService,
+            final StroomPropertyService propertyService, final TaskMonitor taskMonitor, final String taskName,
+            final String clusterLockName, final String deleteAgePropertyName,
+            final String deleteBatchSizePropertyName, final int deleteBatchSizeDefaultValue,
+            final String tempIdTable) {
         this.batchIdTransactionHelper = batchIdTransactionHelper;
+        this.partitionTransactionHelper = partitionTransactionHelper;
         this.clusterLockService = clusterLockService;
         this.propertyService = propertyService;
         this.taskMonitor = taskMonitor;
@@ -90,6 +105,10 @@ public abstract class AbstractBatchDeleteExecutor {
 
             final int deleteBatchSize = getDeleteBatchSize(deleteBatchSizePropertyName, deleteBatchSizeDefaultValue);
 
+            // Drop any whole partitions that only hold rows older than the
+            // delete age before falling back to deleting rows in batches.
+            dropPartitions(age);
+
             // Ensure the temp id table exists.
             createTempIdTable();
 
@@ -127,6 +146,72 @@ public abstract class AbstractBatchDeleteExecutor {
 
     protected abstract void deleteCurrentBatch(final long total);
 
+    /**
+     * Override to name a table that may have been range partitioned on a time
+     * column so that old partitions can be dropped rather than deleted row by
+     * row.
+     *
+     * @return the name of the table or null if partitions are not dropped.
+     */
+    protected String getPartitionedTableName() {
+        return null;
+    }
+
+    /**
+     * @return the time column that the table must be partitioned on for
+     *         partitions to be dropped.
+     */
+    protected String getPartitionColumn() {
+        return null;
+    }
+
+    /**
+     * Override if some rows older than the delete age must not be deleted.
+     *
+     * @return a SQL condition matching rows that must be kept or null if all
+     *         rows older than the delete age can be deleted.
+     */
+    protected String getRetainedRowCondition() {
+        return null;
+    }
+
+    private void dropPartitions(final long age) {
+        final String tableName = getPartitionedTableName();
+        final String column = getPartitionColumn();
+        if (partitionTransactionHelper == null || tableName == null || column == null) {
+            return;
+        }
+
+        info("Finding partitions to drop");
+        final LogExecutionTime logExecutionTime = new LogExecutionTime();
+        final List<TablePartition> partitions = partitionTransactionHelper.getRangePartitions(tableName);
+        final String retainedRowCondition = getRetainedRowCondition();
+
+        int dropped = 0;
+        for (final TablePartition partition : partitions) {
+            if (taskMonitor.isTerminated()) {
+                break;
+            }
+
+            // Partitions are ordered so stop at the first one that may hold
+            // rows that are not old enough to delete.
+            if (!column.equalsIgnoreCase(partition.getColumn()) || partition.getUpperBound() == null
+                    || partition.getUpperBound() > age) {
+                break;
+            }
+
+            if (retainedRowCondition != null && partitionTransactionHelper.countRows(tableName,
+                    partition.getName(), retainedRowCondition) > 0) {
+                LOGGER.debug("Not dropping partition %s as it holds rows that must be kept", partition);
+            } else {
+                info("Dropping partition %s", partition.getName());
+                partitionTransactionHelper.dropPartition(tableName, partition.getName());
+                dropped++;
+            }
+        }
+        LOGGER.debug("Dropped %s partitions of %s in %s", dropped, tableName, logExecutionTime);
+    }
+
     private void createTempIdTable() {
         info("Creating temp id table");
         final LogExecutionTime logExecutionTime = new LogExecutionTime();
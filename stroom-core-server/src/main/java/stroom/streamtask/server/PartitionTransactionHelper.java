@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.streamtask.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import stroom.entity.server.util.SQLBuilder;
+import stroom.entity.server.util.StroomDatabaseInfo;
+import stroom.entity.server.util.StroomEntityManager;
+
+/**
+ * Provides access to the partitions of tables that have optionally been range
+ * partitioned on a time column so that retention can drop whole partitions
+ * rather than deleting rows in batches. Tables are not partitioned by default,
+ * to partition stream attribute values by month for example:
+ *
+ * <pre>
+ * ALTER TABLE STRM_ATR_VAL DROP PRIMARY KEY, ADD PRIMARY KEY (ID, CRT_MS);
+ * ALTER TABLE STRM_ATR_VAL PARTITION BY RANGE (CRT_MS) (
+ *   PARTITION P201610 VALUES LESS THAN (1477958400000),
+ *   PARTITION P201611 VALUES LESS THAN (1480550400000),
+ *   PARTITION PMAX VALUES LESS THAN MAXVALUE);
+ * </pre>
+ *
+ * MySQL does not allow partitioned tables to have foreign keys so these must
+ * be dropped from STRM_TASK before it can be partitioned.
+ */
+@Transactional(isolation = Isolation.READ_COMMITTED)
+@Component
+public class PartitionTransactionHelper {
+    private static final String MAX_VALUE = "MAXVALUE";
+
+    private final StroomDatabaseInfo stroomDatabaseInfo;
+    private final StroomEntityManager stroomEntityManager;
+
+    @Inject
+    public PartitionTransactionHelper(final StroomDatabaseInfo stroomDatabaseInfo,
+            final StroomEntityManager stroomEntityManager) {
+        this.stroomDatabaseInfo = stroomDatabaseInfo;
+        this.stroomEntityManager = stroomEntityManager;
+    }
+
+    /**
+     * @return the range partitions of a table in order or an empty list if the
+     *         table is not partitioned.
+     */
+    public List<TablePartition> getRangePartitions(final String table) {
+        // Only MySQL supports partitioning.
+        if (!stroomDatabaseInfo.isMysql()) {
+            return Collections.emptyList();
+        }
+
+        final SQLBuilder sql = new SQLBuilder();
+        sql.append("SELECT PARTITION_NAME, PARTITION_EXPRESSION, PARTITION_DESCRIPTION");
+        sql.append(" FROM INFORMATION_SCHEMA.PARTITIONS");
+        sql.append(" WHERE TABLE_SCHEMA = DATABASE()");
+        sql.append(" AND TABLE_NAME = ");
+        sql.arg(table);
+        sql.append(" AND PARTITION_METHOD = 'RANGE'");
+        sql.append(" ORDER BY PARTITION_ORDINAL_POSITION");
+
+        @SuppressWarnings("unchecked")
+        final List<Object[]> rows = stroomEntityManager.executeNativeQueryResultList(sql);
+        if (rows == null || rows.size() == 0) {
+            return Collections.emptyList();
+        }
+
+        final List<TablePartition> partitions = new ArrayList<>(rows.size());
+        for (final Object[] row : rows) {
+            final String name = (String) row[0];
+            final String column = ((String) row[1]).replace("`", "").trim();
+            final String description = ((String) row[2]).trim();
+
+            Long upperBound = null;
+            if (!MAX_VALUE.equalsIgnoreCase(description)) {
+                upperBound = Long.valueOf(description);
+            }
+
+            partitions.add(new TablePartition(name, column, upperBound));
+        }
+
+        return partitions;
+    }
+
+    public long countRows(final String table, final String partition, final String condition) {
+        final SQLBuilder sql = new SQLBuilder(false);
+        sql.append("SELECT COUNT(*) FROM ");
+        sql.append(table);
+        sql.append(" PARTITION (");
+        sql.append(partition);
+        sql.append(") WHERE ");
+        sql.append(condition);
+        return stroomEntityManager.executeNativeQueryLongResult(sql);
+    }
+
+    public long dropPartition(final String table, final String partition) {
+        final SQLBuilder sql = new SQLBuilder();
+        sql.append("ALTER TABLE ");
+        sql.append(table);
+        sql.append(" DROP PARTITION ");
+        sql.append(partition);
+        return stroomEntityManager.executeNativeUpdate(sql);
+    }
+}
@@ -60,10 +60,11 @@ public class StreamTaskDeleteExecutor extends AbstractBatchDeleteExecutor {
 
     @Inject
     public StreamTaskDeleteExecutor(final BatchIdTransactionHelper batchIdTransactionHelper,
-            final ClusterLockService clusterLockService, final StroomPropertyService propertyService,
-            final TaskMonitor taskMonitor, final StreamTaskCreatorImpl streamTaskCreator,
+            final PartitionTransactionHelper partitionTransactionHelper, final ClusterLockService clusterLockService,
+            final StroomPropertyService propertyService, final TaskMonitor taskMonitor,
+            final StreamTaskCreatorImpl streamTaskCreator,
             final StreamProcessorFilterService streamProcessorFilterService) {
-        super(batchIdTransactionHelper, clusterLockService, propertyService, taskMonitor, TASK_NAME, LOCK_NAME,
+        super(batchIdTransactionHelper, partitionTransactionHelper, clusterLockService, propertyService, taskMonitor, TASK_NAME, LOCK_NAME,
                 STREAM_TASKS_DELETE_AGE_PROPERTY, STREAM_TASKS_DELETE_BATCH_SIZE_PROPERTY,
                 DEFAULT_STREAM_TASK_DELETE_BATCH_SIZE, TEMP_STRM_TASK_ID_TABLE);
         this.streamTaskCreator = streamTaskCreator;
@@ -105,6 +106,30 @@ public class StreamTaskDeleteExecutor extends AbstractBatchDeleteExecutor {
         deleteWithJoin(StreamTask.TABLE_NAME, StreamTask.ID, "stream tasks", total);
     }
 
+    @Override
+    protected String getPartitionedTableName() {
+        return StreamTask.TABLE_NAME;
+    }
+
+    @Override
+    protected String getPartitionColumn() {
+        return StreamTask.CREATE_MS;
+    }
+
+    @Override
+    protected String getRetainedRowCondition() {
+        // Tasks that are still to be processed must be kept however old they
+        // are.
+        final SQLBuilder sql = new SQLBuilder(false);
+        sql.append(StreamTask.STATUS);
+        sql.append(" NOT IN (");
+        sql.append(TaskStatus.COMPLETE.getPrimitiveValue());
+        sql.append(", ");
+        sql.append(TaskStatus.FAILED.getPrimitiveValue());
+        sql.append(")");
+        return sql.toString();
+    }
+
     @Override
     protected String getTempIdSelectSql(final long age, final int batchSize) {
         final SQLBuilder sql = new SQLBuilder();
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.streamtask.server;
+
+/**
+ * A single partition of a table that is partitioned by range.
+ */
+public class TablePartition {
+    private final String name;
+    private final String column;
+    private final Long upperBound;
+
+    public TablePartition(final String name, final String column, final Long upperBound) {
+        this.name = name;
+        this.column = column;
+        this.upperBound = upperBound;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the column the table is partitioned on.
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the exclusive upper bound of values held in this partition or
+     *         null if the partition holds all values above the previous one.
+     */
+    public Long getUpperBound() {
+        return upperBound;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + column + " < " + upperBound + ")";
+    }
+}
@@ -72,6 +72,8 @@ CREATE TABLE IDX_SHRD (
   PART_TO_DT 		timestamp NULL DEFAULT NULL,
   FK_VOL_ID 		int(11) NOT NULL,
   IDX_VER			varchar(255) DEFAULT NULL,
+  MIN_EVT_MS 		bigint(20) DEFAULT NULL,
+  MAX_EVT_MS 		bigint(20) DEFAULT NULL,
   PRIMARY KEY       (ID),
   CONSTRAINT 		IDX_SHRD_FK_VOL_ID FOREIGN KEY (FK_VOL_ID) REFERENCES VOL (ID),
   CONSTRAINT 		IDX_SHRD_FK_IDX_ID FOREIGN KEY (FK_IDX_ID) REFERENCES IDX (ID),
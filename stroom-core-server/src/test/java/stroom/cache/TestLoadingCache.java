@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestLoadingCache extends StroomUnitTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private CacheManager cacheManager;
+    private LoadingCache cache;
+
+    @Before
+    public void setup() {
+        cacheManager = new CacheManager();
+        cache = new LoadingCache(new Cache(new CacheConfiguration("Test Loading Cache", 100)), key -> {
+            try {
+                if ("slow".equals(key)) {
+                    release.await();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return key + "-" + loads.incrementAndGet();
+        });
+        cacheManager.addCache(cache);
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testSingleLoadPerKey() throws Exception {
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final Thread thread = new Thread(() -> cache.get("slow"));
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Other keys should not wait for the slow key.
+        Assert.assertEquals("fast-1", cache.get("fast").getObjectValue());
+
+        release.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(2, cache.getLoadCount());
+        Assert.assertEquals("slow-2", cache.get("slow").getObjectValue());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        release.countDown();
+        Assert.assertEquals("test-1", cache.get("test").getObjectValue());
+
+        cache.setRefreshAfterMs(1);
+        Thread.sleep(10);
+
+        // The old value is returned while the refresh happens.
+        Assert.assertEquals("test-1", cache.get("test").getObjectValue());
+        for (int i = 0; i < 100 && !"test-2".equals(cache.getQuiet("test").getObjectValue()); i++) {
+            Thread.sleep(10);
+        }
+
+        cache.setRefreshAfterMs(0);
+        Assert.assertEquals("test-2", cache.get("test").getObjectValue());
+        Assert.assertEquals(1, cache.getRefreshCount());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dictionary;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.dictionary.shared.Dictionary;
+import stroom.entity.server.event.EntityEvent;
+import stroom.entity.shared.DocRef;
+import stroom.entity.shared.EntityAction;
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestDictionaryTermsCache extends StroomUnitTest {
+    @Test
+    public void testLines() {
+        final DictionaryTerms terms = new DictionaryTerms("uuid", (byte) 0, "one\n two \n\none\nthree four\n");
+
+        Assert.assertEquals(3, terms.getLines().length);
+        Assert.assertTrue(terms.contains("one"));
+        Assert.assertTrue(terms.contains("two"));
+        Assert.assertTrue(terms.contains("three four"));
+        Assert.assertFalse(terms.contains("three"));
+        Assert.assertFalse(terms.contains(""));
+        Assert.assertFalse(terms.contains(null));
+    }
+
+    @Test
+    public void testReuseByVersion() {
+        final DictionaryTermsCache cache = new DictionaryTermsCache();
+        final Dictionary dictionary = createDictionary("a\nb");
+
+        final DictionaryTerms terms = cache.get(dictionary);
+        final Object compiled = terms.getCompiled("key", dt -> new Object());
+        Assert.assertSame(terms, cache.get(dictionary));
+        Assert.assertSame(compiled, cache.get(dictionary).getCompiled("key", dt -> new Object()));
+
+        // A new version of the dictionary must not use the old terms.
+        dictionary.setData("a\nb\nc");
+        dictionary.setVersion((byte) 1);
+        final DictionaryTerms updated = cache.get(dictionary);
+        Assert.assertNotSame(terms, updated);
+        Assert.assertTrue(updated.contains("c"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        final DictionaryTermsCache cache = new DictionaryTermsCache();
+        final Dictionary dictionary = createDictionary("a\nb");
+
+        final DictionaryTerms terms = cache.get(dictionary);
+        cache.onChange(new EntityEvent(new DocRef(Dictionary.ENTITY_TYPE, "other"), EntityAction.UPDATE));
+        Assert.assertSame(terms, cache.get(dictionary));
+
+        cache.onChange(new EntityEvent(DocRef.create(dictionary), EntityAction.UPDATE));
+        Assert.assertNotSame(terms, cache.get(dictionary));
+    }
+
+    private Dictionary createDictionary(final String data) {
+        final Dictionary dictionary = new Dictionary();
+        dictionary.setUuid("test-uuid");
+        dictionary.setName("Test");
+        dictionary.setData(data);
+        return dictionary;
+    }
+}
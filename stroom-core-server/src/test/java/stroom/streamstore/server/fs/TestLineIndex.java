@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.streamstore.server.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.streamstore.server.fs.serializable.CompoundInputStream;
+import stroom.streamstore.server.fs.serializable.LineIndex;
+import stroom.streamstore.server.fs.serializable.LineIndexBuilder;
+import stroom.streamstore.server.fs.serializable.NestedOutputStream;
+import stroom.streamstore.server.fs.serializable.RANestedOutputStream;
+import stroom.streamstore.server.fs.serializable.RASegmentInputStream;
+import stroom.streamstore.server.fs.serializable.RASegmentOutputStream;
+import stroom.util.io.FileUtil;
+import stroom.util.io.StreamUtil;
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestLineIndex extends StroomUnitTest {
+    private static final int INTERVAL = 10;
+
+    private File datFile;
+    private File segFile;
+    private File bdyFile;
+    private File linFile;
+
+    @Before
+    public void setup() {
+        final File dir = getCurrentTestDir();
+        datFile = new File(dir, "test.bzg");
+        segFile = new File(dir, "test.seg.dat");
+        bdyFile = new File(dir, "test.bdy.dat");
+        linFile = new File(dir, "test.lin.dat");
+    }
+
+    @After
+    public void clean() {
+        FileUtil.deleteFile(datFile);
+        FileUtil.deleteFile(segFile);
+        FileUtil.deleteFile(bdyFile);
+        FileUtil.deleteFile(linFile);
+    }
+
+    private void setup(final int bdyCount, final int linesPerBdy) throws IOException {
+        final RASegmentOutputStream segmentStream = new RASegmentOutputStream(new BlockGZIPOutputFile(datFile),
+                new LockingFileOutputStream(segFile, true));
+
+        final NestedOutputStream boundaryStream = new RANestedOutputStream(segmentStream,
+                new LockingFileOutputStream(bdyFile, true));
+
+        for (int b = 1; b <= bdyCount; b++) {
+            boundaryStream.putNextEntry();
+            for (int l = 0; l < linesPerBdy; l++) {
+                boundaryStream.write(("B=" + b + ",L=" + l + "\n").getBytes(StreamUtil.DEFAULT_CHARSET));
+            }
+            boundaryStream.closeEntry();
+        }
+
+        boundaryStream.close();
+
+        try (final BlockGZIPInputFile data = new BlockGZIPInputFile(datFile);
+                final UncompressedInputStream boundaryIndex = new UncompressedInputStream(bdyFile, true);
+                final LockingFileOutputStream index = new LockingFileOutputStream(linFile, false)) {
+            new LineIndexBuilder(INTERVAL).build(data, boundaryIndex, index);
+        }
+        Assert.assertTrue(linFile.isFile());
+    }
+
+    private String readLine(final LineIndex lineIndex, final long entryNo, final long lineNo) throws IOException {
+        final CompoundInputStream compoundInputStream = new CompoundInputStream(new BlockGZIPInputFile(datFile),
+                new UncompressedInputStream(bdyFile, true), new UncompressedInputStream(segFile, true));
+        try {
+            final RASegmentInputStream seg = compoundInputStream.getNextInputStream(entryNo);
+            final LineIndex.Checkpoint checkpoint = lineIndex.getCheckpoint(entryNo, lineNo);
+            final long entryStart = lineIndex.getCheckpoint(entryNo, 0).getByteOffset();
+            seg.skip(checkpoint.getByteOffset() - entryStart);
+
+            final String[] lines = StreamUtil.streamToString(seg, false).split("\n");
+            return lines[(int) (lineNo - checkpoint.getLineNo())];
+        } finally {
+            compoundInputStream.close();
+        }
+    }
+
+    @Test
+    public void testSingleEntry() throws IOException {
+        setup(1, 95);
+
+        try (final LineIndex lineIndex = new LineIndex(new UncompressedInputStream(linFile, false))) {
+            Assert.assertEquals(INTERVAL, lineIndex.getInterval());
+            Assert.assertEquals(1, lineIndex.getEntryCount());
+
+            Assert.assertEquals(0, lineIndex.getCheckpoint(0, 9).getLineNo());
+            Assert.assertEquals(10, lineIndex.getCheckpoint(0, 10).getLineNo());
+            Assert.assertEquals(90, lineIndex.getCheckpoint(0, 94).getLineNo());
+            Assert.assertEquals(90, lineIndex.getCheckpoint(0, 1000).getLineNo());
+
+            Assert.assertEquals("B=1,L=0", readLine(lineIndex, 0, 0));
+            Assert.assertEquals("B=1,L=37", readLine(lineIndex, 0, 37));
+            Assert.assertEquals("B=1,L=94", readLine(lineIndex, 0, 94));
+        }
+    }
+
+    @Test
+    public void testMultipleEntries() throws IOException {
+        setup(3, 25);
+
+        try (final LineIndex lineIndex = new LineIndex(new UncompressedInputStream(linFile, false))) {
+            Assert.assertEquals(3, lineIndex.getEntryCount());
+
+            for (int b = 0; b < 3; b++) {
+                Assert.assertEquals(20, lineIndex.getCheckpoint(b, 24).getLineNo());
+                Assert.assertEquals("B=" + (b + 1) + ",L=0", readLine(lineIndex, b, 0));
+                Assert.assertEquals("B=" + (b + 1) + ",L=12", readLine(lineIndex, b, 12));
+                Assert.assertEquals("B=" + (b + 1) + ",L=24", readLine(lineIndex, b, 24));
+            }
+        }
+    }
+
+    @Test
+    public void testSupportedCharsets() {
+        Assert.assertTrue(LineIndex.isSupported(Charset.forName("UTF-8")));
+        Assert.assertTrue(LineIndex.isSupported(Charset.forName("ISO-8859-1")));
+        Assert.assertFalse(LineIndex.isSupported(Charset.forName("UTF-16LE")));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.streamtask.server;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import stroom.jobsystem.server.ClusterLockService;
+import stroom.node.server.MockStroomPropertyService;
+import stroom.util.task.TaskMonitor;
+import stroom.util.test.StroomUnitTest;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestAbstractBatchDeleteExecutor extends StroomUnitTest {
+    private static final String TABLE = "TEST";
+    private static final String TEMP_ID_TABLE = "TEMP_TEST_ID";
+    private static final String COLUMN = "CRT_MS";
+    private static final String RETAINED = "STAT = 1";
+
+    @Mock
+    private BatchIdTransactionHelper batchIdTransactionHelper;
+    @Mock
+    private PartitionTransactionHelper partitionTransactionHelper;
+    @Mock
+    private ClusterLockService clusterLockService;
+    @Mock
+    private TaskMonitor taskMonitor;
+
+    private int batchCount;
+
+    @Before
+    public void setup() {
+        batchCount = 0;
+        Mockito.when(partitionTransactionHelper.getRangePartitions(TABLE))
+                .thenReturn(Arrays.asList(new TablePartition("P1", COLUMN, 100L),
+                        new TablePartition("P2", COLUMN, 200L), new TablePartition("P3", COLUMN, 300L),
+                        new TablePartition("PMAX", COLUMN, null)));
+        Mockito.when(batchIdTransactionHelper.insertIntoTempIdTable(Mockito.eq(TEMP_ID_TABLE), Mockito.anyString()))
+                .thenReturn(10L, 3L);
+    }
+
+    @Test
+    public void testDropsOnlyOldPartitions() {
+        createExecutor(null).delete(250);
+
+        Mockito.verify(partitionTransactionHelper).dropPartition(TABLE, "P1");
+        Mockito.verify(partitionTransactionHelper).dropPartition(TABLE, "P2");
+        Mockito.verify(partitionTransactionHelper, Mockito.never()).dropPartition(TABLE, "P3");
+        Mockito.verify(partitionTransactionHelper, Mockito.never()).dropPartition(TABLE, "PMAX");
+
+        // Rows in newer partitions are still deleted in batches.
+        Assert.assertEquals(2, batchCount);
+    }
+
+    @Test
+    public void testKeepsPartitionsWithRetainedRows() {
+        Mockito.when(partitionTransactionHelper.countRows(TABLE, "P1", RETAINED)).thenReturn(1L);
+        Mockito.when(partitionTransactionHelper.countRows(TABLE, "P2", RETAINED)).thenReturn(0L);
+
+        createExecutor(RETAINED).delete(250);
+
+        Mockito.verify(partitionTransactionHelper, Mockito.never()).dropPartition(TABLE, "P1");
+        Mockito.verify(partitionTransactionHelper).dropPartition(TABLE, "P2");
+        Assert.assertEquals(2, batchCount);
+    }
+
+    @Test
+    public void testUnpartitionedTableUsesBatches() {
+        Mockito.when(partitionTransactionHelper.getRangePartitions(TABLE))
+                .thenReturn(Arrays.asList(new TablePartition("P1", "OTHER_MS", 100L)));
+
+        createExecutor(null).delete(250);
+
+        Mockito.verify(partitionTransactionHelper, Mockito.never()).dropPartition(Mockito.anyString(),
+                Mockito.anyString());
+        Assert.assertEquals(2, batchCount);
+    }
+
+    private AbstractBatchDeleteExecutor createExecutor(final String retainedRowCondition) {
+        return new AbstractBatchDeleteExecutor(batchIdTransactionHelper, partitionTransactionHelper,
+                clusterLockService, new MockStroomPropertyService(), taskMonitor, "Test Delete Executor",
+                "TestDeleteExecutor", "stroom.test.deleteAge", "stroom.test.deleteBatchSize", 10, TEMP_ID_TABLE) {
+            @Override
+            protected void deleteCurrentBatch(final long total) {
+                batchCount++;
+            }
+
+            @Override
+            protected String getTempIdSelectSql(final long age, final int batchSize) {
+                return "SELECT ID FROM " + TABLE + " WHERE " + COLUMN + " < " + age + " LIMIT " + batchSize;
+            }
+
+            @Override
+            protected String getPartitionedTableName() {
+                return TABLE;
+            }
+
+            @Override
+            protected String getPartitionColumn() {
+                return COLUMN;
+            }
+
+            @Override
+            protected String getRetainedRowCondition() {
+                return retainedRowCondition;
+            }
+        };
+    }
+}
@@ -43,6 +43,10 @@ public class CacheInfo implements SharedObject {
     private long searchesPerSecond;
     private long averageSearchTime;
     private long writerQueueLength;
+    private long loadCount;
+    private long loadFailureCount;
+    private float averageLoadTime;
+    private long refreshCount;
 
     public CacheInfo() {
         // Default constructor necessary for GWT serialisation.
@@ -231,6 +235,44 @@ public class CacheInfo implements SharedObject {
         }
     }
 
+    public void setLoadStatistics(final long loadCount, final long loadFailureCount, final float averageLoadTime,
+            final long refreshCount) {
+        this.loadCount = loadCount;
+        this.loadFailureCount = loadFailureCount;
+        this.averageLoadTime = averageLoadTime;
+        this.refreshCount = refreshCount;
+    }
+
+    /**
+     * @return the number of values that have been created for the cache,
+     *         including background refreshes
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return the number of times creating a value failed
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * @return the average time in milliseconds taken to create a value
+     */
+    public float getAverageLoadTime() {
+        return averageLoadTime;
+    }
+
+    /**
+     * @return the number of values that have been reloaded in the background
+     *         because they were getting old
+     */
+    public long getRefreshCount() {
+        return refreshCount;
+    }
+
     /**
      * @return the name of the Ehcache, or null if a reference is no longer held
      *         to the cache, as, it would be after deserialization.
@@ -253,6 +295,8 @@ public class CacheInfo implements SharedObject {
                 .append(" onDiskMisses = ").append(onDiskMisses).append(" offHeapMisses = ").append(offHeapMisses)
                 .append(" inMemoryMisses = ").append(inMemoryMisses).append(" size = ").append(size)
                 .append(" averageGetTime = ").append(averageGetTime).append(" evictionCount = ").append(evictionCount)
+                .append(" loadCount = ").append(loadCount).append(" loadFailureCount = ").append(loadFailureCount)
+                .append(" averageLoadTime = ").append(averageLoadTime).append(" refreshCount = ").append(refreshCount)
                 .append(" ]");
 
         return dump.toString();
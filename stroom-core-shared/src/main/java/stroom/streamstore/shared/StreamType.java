@@ -125,6 +125,13 @@ public class StreamType extends NamedEntity implements HasPrimitiveValue {
     public static final StreamType BOUNDARY_INDEX = new StreamType("BOUNDARY_INDEX", "bdy", "Boundary Index", 32,
             Purpose.INDEX);
 
+    /**
+     * Line Index File used to seek to a line in a stream without reading all
+     * the lines before it. Created lazily when a stream is first paged through.
+     */
+    public static final StreamType LINE_INDEX = new StreamType("LINE_INDEX", "lin", "Line Index", 36,
+            Purpose.INDEX);
+
     /**
      * Meta stream data
      */
@@ -141,7 +148,7 @@ public class StreamType extends NamedEntity implements HasPrimitiveValue {
     public static final StreamType CONTEXT = new StreamType("CONTEXT", "ctx", "Context", 34, Purpose.CONTEXT);
 
     private static final StreamType[] INITIAL_ALL_TYPES = new StreamType[] { MANIFEST, RAW_EVENTS, RAW_REFERENCE,
-            EVENTS, REFERENCE, TEST_EVENTS, TEST_REFERENCE, SEGMENT_INDEX, BOUNDARY_INDEX, META, ERROR, CONTEXT };
+            EVENTS, REFERENCE, TEST_EVENTS, TEST_REFERENCE, SEGMENT_INDEX, BOUNDARY_INDEX, LINE_INDEX, META, ERROR, CONTEXT };
 
     public static final StreamType[] initialValues() {
         return INITIAL_ALL_TYPES;
@@ -223,6 +230,9 @@ public class StreamType extends NamedEntity implements HasPrimitiveValue {
         if (getId() == SEGMENT_INDEX.getId()) {
             return true;
         }
+        if (getId() == LINE_INDEX.getId()) {
+            return true;
+        }
         return getId() == BOUNDARY_INDEX.getId();
 
     }
@@ -243,6 +253,9 @@ public class StreamType extends NamedEntity implements HasPrimitiveValue {
         if (getId() == BOUNDARY_INDEX.getId()) {
             return true;
         }
+        if (getId() == LINE_INDEX.getId()) {
+            return true;
+        }
         if (getId() == MANIFEST.getId()) {
             return true;
         }
@@ -275,6 +288,9 @@ public class StreamType extends NamedEntity implements HasPrimitiveValue {
         if (getId() == BOUNDARY_INDEX.getId()) {
             return FileStoreType.dat;
         }
+        if (getId() == LINE_INDEX.getId()) {
+            return FileStoreType.dat;
+        }
         if (getId() == MANIFEST.getId()) {
             return FileStoreType.dat;
         }
@@ -116,35 +116,37 @@ public class DownloadSearchResultsHandler extends AbstractTaskHandler<DownloadSe
                 throw new EntityServiceException("Search has not started yet");
             }
 
-            final OutputStream outputStream = new FileOutputStream(file);
-            SearchResultWriter.Target target = null;
-
-            // Write delimited file.
-            switch (fileType) {
-            case "CSV":
-                target = new DelimitedTarget(fieldFormatter, outputStream, ",");
-                break;
-            case "TSV":
-                target = new DelimitedTarget(fieldFormatter, outputStream, "\t");
-                break;
-            case "EXCEL":
-                target = new ExcelTarget(outputStream);
-                break;
+            // Rows are written from the result store that the search has
+            // already built in memory. Close the file even if writing fails.
+            try (final OutputStream outputStream = new FileOutputStream(file)) {
+                SearchResultWriter.Target target = null;
+
+                // Write delimited file.
+                switch (fileType) {
+                case "CSV":
+                    target = new DelimitedTarget(fieldFormatter, outputStream, ",");
+                    break;
+                case "TSV":
+                    target = new DelimitedTarget(fieldFormatter, outputStream, "\t");
+                    break;
+                case "EXCEL":
+                    target = new ExcelTarget(outputStream);
+                    break;
+                }
+
+                if (target == null) {
+                    throw new RuntimeException("No target created for file type: " + fileType);
+                }
+
+                final ComponentResultCreator componentResultCreator = activeQuery.getComponentResultCreatorMap()
+                        .get(componentId);
+                final TableComponentResultCreator tableComponentResultCreator = (TableComponentResultCreator) componentResultCreator;
+                final List<Field> fields = tableComponentResultCreator.getFields();
+
+                final SampleGenerator sampleGenerator = new SampleGenerator(sample, percent);
+                final SearchResultWriter searchResultWriter = new SearchResultWriter(resultStore, fields, sampleGenerator);
+                searchResultWriter.write(target);
             }
-
-            if (target == null) {
-                throw new RuntimeException("No target created for file type: " + fileType);
-            }
-
-            final ComponentResultCreator componentResultCreator = activeQuery.getComponentResultCreatorMap()
-                    .get(componentId);
-            final TableComponentResultCreator tableComponentResultCreator = (TableComponentResultCreator) componentResultCreator;
-            final List<Field> fields = tableComponentResultCreator.getFields();
-
-            final SampleGenerator sampleGenerator = new SampleGenerator(sample, percent);
-            final SearchResultWriter searchResultWriter = new SearchResultWriter(resultStore, fields, sampleGenerator);
-            searchResultWriter.write(target);
-
         } catch (final IOException e) {
             throw EntityServiceExceptionUtil.create(e);
         }
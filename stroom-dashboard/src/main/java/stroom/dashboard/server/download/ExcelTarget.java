@@ -19,6 +19,8 @@ package stroom.dashboard.server.download;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
@@ -39,6 +41,8 @@ public class ExcelTarget implements SearchResultWriter.Target {
     private static final int EXCEL_MAX_CELL_CHARACTERS = 32767;
     private static final int TRUNCATED_LENGTH = EXCEL_MAX_CELL_CHARACTERS - 3;
     private static final String TRUNCATION_MARKER = "...";
+    // The number of rows to keep in memory before they are flushed to disk.
+    private static final int ROW_WINDOW = 100;
 
     private final OutputStream outputStream;
 
@@ -46,6 +50,12 @@ public class ExcelTarget implements SearchResultWriter.Target {
     private Sheet sh;
     private Row row;
 
+    // Styles are held in memory for the whole workbook so share a single style
+    // per format rather than creating one for every cell.
+    private DataFormat dataFormat;
+    private CellStyle headingStyle;
+    private final Map<String, CellStyle> styles = new HashMap<>();
+
     private int colNum = 0;
     private int rowNum = 0;
 
@@ -55,10 +65,18 @@ public class ExcelTarget implements SearchResultWriter.Target {
 
     @Override
     public void start() throws IOException {
-        // Create a workbook with 100 rows in memory. Exceeding rows will be
-        // flushed to disk.
-        wb = new SXSSFWorkbook(100);
+        // Create a workbook with a fixed number of rows in memory. Exceeding
+        // rows will be flushed to compressed temporary files on disk.
+        wb = new SXSSFWorkbook(ROW_WINDOW);
+        wb.setCompressTempFiles(true);
         sh = wb.createSheet();
+        dataFormat = wb.createDataFormat();
+
+        // Create a style for headings.
+        final Font headingFont = wb.createFont();
+        headingFont.setBold(true);
+        headingStyle = wb.createCellStyle();
+        headingStyle.setFont(headingFont);
     }
 
     @Override
@@ -87,12 +105,6 @@ public class ExcelTarget implements SearchResultWriter.Target {
 
     @Override
     public void writeHeading(final Field field, final String heading) throws IOException {
-        // Create a style for headings.
-        final Font headingFont = wb.createFont();
-        headingFont.setBold(true);
-        final CellStyle headingStyle = wb.createCellStyle();
-        headingStyle.setFont(headingFont);
-
         final Cell cell = row.createCell(colNum++);
         cell.setCellType(Cell.CELL_TYPE_STRING);
         cell.setCellValue(heading);
@@ -170,10 +182,7 @@ public class ExcelTarget implements SearchResultWriter.Target {
                 }
             }
 
-            final DataFormat df = wb.createDataFormat();
-            final CellStyle cs = wb.createCellStyle();
-            cs.setDataFormat(df.getFormat(pattern));
-            cell.setCellStyle(cs);
+            cell.setCellStyle(getStyle(pattern));
 
         } else {
             cell.setCellValue(getText(value));
@@ -203,18 +212,23 @@ public class ExcelTarget implements SearchResultWriter.Target {
                     }
                 }
 
-                final String pattern = sb.toString();
-
-                final DataFormat df = wb.createDataFormat();
-                final CellStyle cs = wb.createCellStyle();
-                cs.setDataFormat(df.getFormat(pattern));
-                cell.setCellStyle(cs);
+                cell.setCellStyle(getStyle(sb.toString()));
             }
         } else {
             cell.setCellValue(getText(value));
         }
     }
 
+    private CellStyle getStyle(final String pattern) {
+        CellStyle style = styles.get(pattern);
+        if (style == null) {
+            style = wb.createCellStyle();
+            style.setDataFormat(dataFormat.getFormat(pattern));
+            styles.put(pattern, style);
+        }
+        return style;
+    }
+
     private String getText(final Object value) {
         String text = value.toString();
         if (text.length() > EXCEL_MAX_CELL_CHARACTERS) {
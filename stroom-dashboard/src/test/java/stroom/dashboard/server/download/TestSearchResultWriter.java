@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.dashboard.server.download;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.dashboard.server.SampleGenerator;
+import stroom.dashboard.server.format.FieldFormatter;
+import stroom.dashboard.server.format.FormatterFactory;
+import stroom.query.Item;
+import stroom.query.Items;
+import stroom.query.ItemsArrayList;
+import stroom.query.ResultStore;
+import stroom.query.shared.DateTimeFormatSettings;
+import stroom.query.shared.Field;
+import stroom.query.shared.Format;
+import stroom.query.shared.Format.Type;
+import stroom.query.shared.NumberFormatSettings;
+import stroom.util.test.StroomUnitTest;
+
+public class TestSearchResultWriter extends StroomUnitTest {
+    private static final int ROWS = 1000;
+
+    @Test
+    public void testDelimited() throws IOException {
+        final List<Field> fields = new ArrayList<>();
+        fields.add(createField("Name", new Format(Type.TEXT)));
+        final Field hidden = createField("Hidden", new Format(Type.TEXT));
+        hidden.setVisible(false);
+        fields.add(hidden);
+        fields.add(createField("Value", new Format(Type.TEXT)));
+
+        final Items<Item> items = new ItemsArrayList<>();
+        items.add(new Item(null, null, new Object[] { "a", "x", "1" }, 0));
+        items.add(new Item(null, null, new Object[] { "b\"c", "y", null }, 0));
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final FieldFormatter fieldFormatter = new FieldFormatter(new FormatterFactory(null));
+        write(fields, items, new DelimitedTarget(fieldFormatter, outputStream, ","));
+
+        Assert.assertEquals("\"Name\",\"Value\"\n\"a\",\"1\"\n\"b\"\"c\",\"\"",
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExcel() throws IOException {
+        final NumberFormatSettings numberFormatSettings = new NumberFormatSettings();
+        numberFormatSettings.setDecimalPlaces(2);
+        numberFormatSettings.setUseSeparator(true);
+        final DateTimeFormatSettings dateTimeFormatSettings = new DateTimeFormatSettings();
+        dateTimeFormatSettings.setPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+        final List<Field> fields = new ArrayList<>();
+        fields.add(createField("Name", new Format(Type.TEXT)));
+        fields.add(createField("Count", new Format(Type.NUMBER, numberFormatSettings)));
+        fields.add(createField("Time", new Format(Type.DATE_TIME, dateTimeFormatSettings)));
+
+        final Items<Item> items = new ItemsArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            items.add(new Item(null, null, new Object[] { "name" + i, (double) i, 1000D * i }, 0));
+        }
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        write(fields, items, new ExcelTarget(outputStream));
+
+        try (final XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            final Sheet sheet = wb.getSheetAt(0);
+            Assert.assertEquals(ROWS, sheet.getLastRowNum());
+            Assert.assertEquals("Count", sheet.getRow(0).getCell(1).getStringCellValue());
+
+            final Row last = sheet.getRow(ROWS);
+            Assert.assertEquals("name" + (ROWS - 1), last.getCell(0).getStringCellValue());
+            Assert.assertEquals(ROWS - 1, last.getCell(1).getNumericCellValue(), 0);
+            Assert.assertEquals("#,##0.00", last.getCell(1).getCellStyle().getDataFormatString());
+            Assert.assertEquals("yyyy-MM-ddTHH:mm:ss", last.getCell(2).getCellStyle().getDataFormatString());
+
+            // The default style, the heading style and one style for each
+            // format rather than one per cell.
+            Assert.assertEquals(4, wb.getNumCellStyles());
+        }
+    }
+
+    private void write(final List<Field> fields, final Items<Item> items, final SearchResultWriter.Target target)
+            throws IOException {
+        final Map<String, Items<Item>> childMap = new HashMap<>();
+        childMap.put(null, items);
+        final ResultStore resultStore = new ResultStore(childMap, items.size(), items.size());
+
+        new SearchResultWriter(resultStore, fields, new SampleGenerator(false, 100)).write(target);
+    }
+
+    private Field createField(final String name, final Format format) {
+        final Field field = new Field(name);
+        field.setFormat(format);
+        return field;
+    }
+}
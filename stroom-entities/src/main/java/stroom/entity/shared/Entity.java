@@ -39,6 +39,8 @@ public abstract class Entity implements HasType, SharedObject {
     public static final String SMALLINT_UNSIGNED = "SMALLINT";
     public static final String INT_UNSIGNED = "INT";
     public static final String BIGINT_UNSIGNED = "BIGINT";
+    // Signed types for values that can be negative.
+    public static final String BIGINT = "BIGINT";
 
     // Shame HSQLDB does not like keys smaller than int.
     public static final String NORMAL_KEY_DEF = INT_UNSIGNED;
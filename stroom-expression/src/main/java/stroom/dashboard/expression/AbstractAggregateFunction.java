@@ -16,13 +16,16 @@
 
 package stroom.dashboard.expression;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public abstract class AbstractAggregateFunction extends AbstractManyChildFunction implements AggregateFunction {
     private static class AggregateGen extends AbstractSingleChildGenerator {
         private static final long serialVersionUID = -5622353515345145314L;
 
         private final Calculator calculator;
 
-        private Double current;
+        private double current = Double.NaN;
 
         public AggregateGen(final Generator childGenerator, final Calculator calculator) {
             super(childGenerator);
@@ -32,11 +35,19 @@ public abstract class AbstractAggregateFunction extends AbstractManyChildFunctio
         @Override
         public void set(final String[] values) {
             childGenerator.set(values);
-            current = calculator.calc(current, childGenerator.eval());
+            current = calculator.calc(current, childGenerator.evalDouble());
         }
 
         @Override
         public Object eval() {
+            if (Double.isNaN(current)) {
+                return null;
+            }
+            return current;
+        }
+
+        @Override
+        public double evalDouble() {
             return current;
         }
 
@@ -46,6 +57,18 @@ public abstract class AbstractAggregateFunction extends AbstractManyChildFunctio
             current = calculator.calc(current, aggregateGen.current);
             super.merge(generator);
         }
+
+        @Override
+        public void writeState(final CompactDataOutput output) {
+            output.writeDouble(current);
+            super.writeState(output);
+        }
+
+        @Override
+        public void readState(final CompactDataInput input) {
+            current = input.readDouble();
+            super.readState(input);
+        }
     }
 
     private static class Gen extends AbstractManyChildGenerator {
@@ -67,11 +90,19 @@ public abstract class AbstractAggregateFunction extends AbstractManyChildFunctio
 
         @Override
         public Object eval() {
-            Double value = null;
-            for (final Generator gen : childGenerators) {
-                value = calculator.calc(value, gen.eval());
+            final double value = evalDouble();
+            if (Double.isNaN(value)) {
+                return null;
             }
+            return value;
+        }
 
+        @Override
+        public double evalDouble() {
+            double value = Double.NaN;
+            for (final Generator gen : childGenerators) {
+                value = calculator.calc(value, gen.evalDouble());
+            }
             return value;
         }
     }
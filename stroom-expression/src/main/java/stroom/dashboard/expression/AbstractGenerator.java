@@ -21,6 +21,15 @@ import java.io.Serializable;
 public abstract class AbstractGenerator implements Generator, Serializable, Comparable<Object> {
     private static final long serialVersionUID = 513621715143449935L;
 
+    @Override
+    public double evalDouble() {
+        final Double dbl = TypeConverter.getDouble(eval());
+        if (dbl == null) {
+            return Double.NaN;
+        }
+        return dbl;
+    }
+
     @Override
     public int compareTo(final Object o) {
         final Generator gen = (Generator) o;
@@ -16,6 +16,9 @@
 
 package stroom.dashboard.expression;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public abstract class AbstractManyChildGenerator extends AbstractGenerator {
     private static final long serialVersionUID = 513621715143449935L;
 
@@ -50,4 +53,22 @@ public abstract class AbstractManyChildGenerator extends AbstractGenerator {
             childGenerators[i].merge(generator.childGenerators[i]);
         }
     }
+
+    @Override
+    public void writeState(final CompactDataOutput output) {
+        if (childGenerators != null) {
+            for (final Generator gen : childGenerators) {
+                gen.writeState(output);
+            }
+        }
+    }
+
+    @Override
+    public void readState(final CompactDataInput input) {
+        if (childGenerators != null) {
+            for (final Generator gen : childGenerators) {
+                gen.readState(input);
+            }
+        }
+    }
 }
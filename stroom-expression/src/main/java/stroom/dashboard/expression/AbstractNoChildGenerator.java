@@ -16,6 +16,9 @@
 
 package stroom.dashboard.expression;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public abstract class AbstractNoChildGenerator extends AbstractGenerator {
     private static final long serialVersionUID = 513621715143449935L;
 
@@ -36,4 +39,12 @@ public abstract class AbstractNoChildGenerator extends AbstractGenerator {
     @Override
     public void merge(final Generator generator) {
     }
+
+    @Override
+    public void writeState(final CompactDataOutput output) {
+    }
+
+    @Override
+    public void readState(final CompactDataInput input) {
+    }
 }
@@ -16,6 +16,9 @@
 
 package stroom.dashboard.expression;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public abstract class AbstractSingleChildGenerator extends AbstractGenerator {
     private static final long serialVersionUID = 513621715143449935L;
 
@@ -44,4 +47,14 @@ public abstract class AbstractSingleChildGenerator extends AbstractGenerator {
     public void addChildren(final AbstractSingleChildGenerator generator) {
         childGenerator.merge(generator.childGenerator);
     }
+
+    @Override
+    public void writeState(final CompactDataOutput output) {
+        childGenerator.writeState(output);
+    }
+
+    @Override
+    public void readState(final CompactDataInput input) {
+        childGenerator.readState(input);
+    }
 }
@@ -16,13 +16,16 @@
 
 package stroom.dashboard.expression;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public class Average extends AbstractManyChildFunction implements AggregateFunction {
     private static class AggregateGen extends AbstractSingleChildGenerator {
         private static final long serialVersionUID = -6770724151493320673L;
 
         private final Calculator calculator;
 
-        private Double current;
+        private double current = Double.NaN;
         private int count;
 
         public AggregateGen(final Generator childGenerator, final Calculator calculator) {
@@ -33,15 +36,24 @@ public class Average extends AbstractManyChildFunction implements AggregateFunct
         @Override
         public void set(final String[] values) {
             childGenerator.set(values);
-            current = calculator.calc(current, childGenerator.eval());
+            current = calculator.calc(current, childGenerator.evalDouble());
             count++;
         }
 
         @Override
         public Object eval() {
-            if (current == null || count == 0) {
+            final double value = evalDouble();
+            if (Double.isNaN(value)) {
                 return null;
             }
+            return value;
+        }
+
+        @Override
+        public double evalDouble() {
+            if (count == 0) {
+                return Double.NaN;
+            }
             return current / count;
         }
 
@@ -53,6 +65,20 @@ public class Average extends AbstractManyChildFunction implements AggregateFunct
 
             super.merge(generator);
         }
+
+        @Override
+        public void writeState(final CompactDataOutput output) {
+            output.writeDouble(current);
+            output.writeVarInt(count);
+            super.writeState(output);
+        }
+
+        @Override
+        public void readState(final CompactDataInput input) {
+            current = input.readDouble();
+            count = input.readVarInt();
+            super.readState(input);
+        }
     }
 
     private static class Gen extends AbstractManyChildGenerator {
@@ -74,17 +100,20 @@ public class Average extends AbstractManyChildFunction implements AggregateFunct
 
         @Override
         public Object eval() {
-            Double value = null;
-            for (final Generator gen : childGenerators) {
-                value = calculator.calc(value, gen.eval());
-            }
-
-            final Double cur = TypeConverter.getDouble(value);
-            if (cur == null) {
+            final double value = evalDouble();
+            if (Double.isNaN(value)) {
                 return null;
             }
+            return value;
+        }
 
-            return cur / childGenerators.length;
+        @Override
+        public double evalDouble() {
+            double value = Double.NaN;
+            for (final Generator gen : childGenerators) {
+                value = calculator.calc(value, gen.evalDouble());
+            }
+            return value / childGenerators.length;
         }
     }
 
@@ -32,5 +32,19 @@ public abstract class Calculator implements Serializable {
         return op(current, val);
     }
 
+    /**
+     * Primitive version of {@link #calc(Double, Object)} where NaN is used
+     * for a missing value.
+     */
+    public double calc(final double current, final double value) {
+        if (Double.isNaN(value)) {
+            return current;
+        }
+        if (Double.isNaN(current)) {
+            return value;
+        }
+        return op(current, value);
+    }
+
     protected abstract double op(final double cur, final double val);
 }
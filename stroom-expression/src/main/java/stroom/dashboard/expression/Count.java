@@ -16,6 +16,9 @@
 
 package stroom.dashboard.expression;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public class Count extends AbstractFunction {
     private static class Gen extends AbstractNoChildGenerator {
         private static final long serialVersionUID = 9222017471352363944L;
@@ -38,6 +41,16 @@ public class Count extends AbstractFunction {
             count += countGen.count;
             super.merge(generator);
         }
+
+        @Override
+        public void writeState(final CompactDataOutput output) {
+            output.writeVarLong((long) count);
+        }
+
+        @Override
+        public void readState(final CompactDataInput input) {
+            count = input.readVarLong();
+        }
     }
 
     public static final String NAME = "count";
@@ -19,6 +19,9 @@ package stroom.dashboard.expression;
 import java.util.HashSet;
 import java.util.Set;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public class CountGroups extends AbstractFunction {
     private static class Gen extends AbstractNoChildGenerator {
         private static final long serialVersionUID = -9130548669643582369L;
@@ -52,6 +55,24 @@ public class CountGroups extends AbstractFunction {
             childGroups.addAll(countGen.childGroups);
             super.merge(generator);
         }
+
+        @Override
+        public void writeState(final CompactDataOutput output) {
+            output.writeVarLong(nonGroupedChildCount);
+            output.writeVarInt(childGroups.size());
+            for (final String group : childGroups) {
+                output.writeString(group);
+            }
+        }
+
+        @Override
+        public void readState(final CompactDataInput input) {
+            nonGroupedChildCount = input.readVarLong();
+            final int size = input.readVarInt();
+            for (int i = 0; i < size; i++) {
+                childGroups.add(input.readString());
+            }
+        }
     }
 
     public static final String NAME = "countGroups";
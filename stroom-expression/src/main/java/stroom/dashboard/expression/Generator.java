@@ -18,6 +18,9 @@ package stroom.dashboard.expression;
 
 import java.io.Serializable;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public interface Generator extends Serializable, Comparable<Object> {
     /**
      * For countGroups() we need to know what child keys are used.
@@ -44,6 +47,15 @@ public interface Generator extends Serializable, Comparable<Object> {
      */
     Object eval();
 
+    /**
+     * Evaluate this generator as a number. Generators that work with numbers
+     * override this to avoid boxing and converting values on every call.
+     *
+     * @return The numeric result of applying this function to the supplied
+     *         values or NaN if there is no numeric result.
+     */
+    double evalDouble();
+
     /**
      * Merge the values from another generator into this generator, e.g. for a
      * min generator take the min value from the supplied min generator and
@@ -53,4 +65,24 @@ public interface Generator extends Serializable, Comparable<Object> {
      *            The generator to merge with this one.
      */
     void merge(Generator generator);
+
+    /**
+     * Write the values accumulated by this generator and its children so that
+     * they can be sent to another node. Only state is written so the reader
+     * must create an equivalent generator from the same expression before
+     * calling readState().
+     *
+     * @param output
+     *            The output to write state to.
+     */
+    void writeState(CompactDataOutput output);
+
+    /**
+     * Restore the values accumulated by a generator created from the same
+     * expression as written by writeState().
+     *
+     * @param input
+     *            The input to read state from.
+     */
+    void readState(CompactDataInput input);
 }
@@ -36,11 +36,19 @@ public abstract class NumericFunction extends AbstractManyChildFunction {
 
         @Override
         public Object eval() {
-            Double value = null;
-            for (final Generator gen : childGenerators) {
-                value = calculator.calc(value, gen.eval());
+            final double value = evalDouble();
+            if (Double.isNaN(value)) {
+                return null;
             }
+            return value;
+        }
 
+        @Override
+        public double evalDouble() {
+            double value = Double.NaN;
+            for (final Generator gen : childGenerators) {
+                value = calculator.calc(value, gen.evalDouble());
+            }
             return value;
         }
     }
@@ -18,6 +18,9 @@ package stroom.dashboard.expression;
 
 import java.text.ParseException;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public class Random extends AbstractFunction {
     private static class Gen extends AbstractNoChildGenerator {
         private static final long serialVersionUID = -7551073465232523106L;
@@ -33,6 +36,21 @@ public class Random extends AbstractFunction {
         public Object eval() {
             return value;
         }
+
+        @Override
+        public void writeState(final CompactDataOutput output) {
+            output.writeBoolean(value != null);
+            if (value != null) {
+                output.writeDouble((Double) value);
+            }
+        }
+
+        @Override
+        public void readState(final CompactDataInput input) {
+            if (input.readBoolean()) {
+                value = input.readDouble();
+            }
+        }
     }
 
     public static final String NAME = "random";
@@ -16,6 +16,9 @@
 
 package stroom.dashboard.expression;
 
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
 public class Ref extends AbstractFunction {
     private static class NullGen extends AbstractNoChildGenerator {
         private static final long serialVersionUID = 8153777070911899616L;
@@ -28,6 +31,23 @@ public class Ref extends AbstractFunction {
         public Object eval() {
             return null;
         }
+
+        @Override
+        public double evalDouble() {
+            return Double.NaN;
+        }
+
+        // Write the same state as Gen so that readers don't need to know
+        // which of the two was used.
+        @Override
+        public void writeState(final CompactDataOutput output) {
+            output.writeString(null);
+        }
+
+        @Override
+        public void readState(final CompactDataInput input) {
+            input.readString();
+        }
     }
 
     private static class Gen extends AbstractNoChildGenerator {
@@ -35,6 +55,8 @@ public class Ref extends AbstractFunction {
 
         private final int fieldIndex;
         private String current;
+        private double currentDouble;
+        private boolean parsed;
 
         public Gen(final int fieldIndex) {
             this.fieldIndex = fieldIndex;
@@ -43,12 +65,34 @@ public class Ref extends AbstractFunction {
         @Override
         public void set(final String[] values) {
             current = values[fieldIndex];
+            parsed = false;
         }
 
         @Override
         public Object eval() {
             return current;
         }
+
+        @Override
+        public double evalDouble() {
+            // Only convert the value once however many times it is used.
+            if (!parsed) {
+                currentDouble = TypeConverter.parseDouble(current);
+                parsed = true;
+            }
+            return currentDouble;
+        }
+
+        @Override
+        public void writeState(final CompactDataOutput output) {
+            output.writeString(current);
+        }
+
+        @Override
+        public void readState(final CompactDataInput input) {
+            current = input.readString();
+            parsed = false;
+        }
     }
 
     private static final NullGen NULL_GEN = new NullGen();
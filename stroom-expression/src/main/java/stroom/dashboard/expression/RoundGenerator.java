@@ -33,8 +33,8 @@ public class RoundGenerator extends AbstractSingleChildGenerator {
 
     @Override
     public Object eval() {
-        final Double dbl = TypeConverter.getDouble(childGenerator.eval());
-        if (dbl != null) {
+        final double dbl = childGenerator.evalDouble();
+        if (!Double.isNaN(dbl)) {
             return calculator.calc(dbl);
         }
         return null;
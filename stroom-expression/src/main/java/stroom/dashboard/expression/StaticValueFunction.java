@@ -23,15 +23,27 @@ public class StaticValueFunction implements Function, Appendable {
         private static final long serialVersionUID = -7551073465232523106L;
 
         private final Object value;
+        private final double doubleValue;
 
         public Gen(final Object value) {
             this.value = value;
+            final Double dbl = TypeConverter.getDouble(value);
+            if (dbl == null) {
+                doubleValue = Double.NaN;
+            } else {
+                doubleValue = dbl;
+            }
         }
 
         @Override
         public Object eval() {
             return value;
         }
+
+        @Override
+        public double evalDouble() {
+            return doubleValue;
+        }
     }
 
     private final Object value;
@@ -34,17 +34,92 @@ public final class TypeConverter {
             return (Double) obj;
         }
 
-        try {
-            return Double.parseDouble(obj.toString());
-        } catch (final Exception e) {
+        if (obj instanceof Number) {
+            return ((Number) obj).doubleValue();
         }
 
-        try {
-            return Double.valueOf(DateUtil.parseNormalDateTimeString(obj.toString()));
-        } catch (final Exception e) {
+        final double dbl = parseDouble(obj.toString());
+        if (Double.isNaN(dbl)) {
+            return null;
+        }
+        return dbl;
+    }
+
+    /**
+     * Gets the numeric value of a string without using exceptions for
+     * strings that are obviously not numbers. Strings that are dates in the
+     * standard format are converted to milliseconds since the epoch.
+     *
+     * @return The value or NaN if the string is not a number or date.
+     */
+    public static double parseDouble(final String string) {
+        if (string == null) {
+            return Double.NaN;
+        }
+
+        final String trimmed = string.trim();
+        if (isNumber(trimmed)) {
+            return Double.parseDouble(trimmed);
+        }
+
+        if (isDate(trimmed)) {
+            try {
+                return DateUtil.parseNormalDateTimeString(trimmed);
+            } catch (final Exception e) {
+                // Not a date after all.
+            }
+        }
+
+        return Double.NaN;
+    }
+
+    private static boolean isNumber(final String string) {
+        final int length = string.length();
+        int i = 0;
+        if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+            i++;
+        }
+
+        int digits = 0;
+        while (i < length && isDigit(string.charAt(i))) {
+            i++;
+            digits++;
         }
+        if (i < length && string.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(string.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+
+        if (i < length && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && isDigit(string.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+
+        return i == length;
+    }
+
+    private static boolean isDate(final String string) {
+        return string.length() == DateUtil.DATE_LENGTH && string.charAt(4) == '-' && string.charAt(10) == 'T';
+    }
 
-        return null;
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
     }
 
     public static String getString(final Object obj) {
@@ -31,6 +31,27 @@ public class TestTypeConverter extends StroomUnitTest {
         test("123456789.000231", 123456789.000231D);
     }
 
+    @Test
+    public void testParseDouble() {
+        Assert.assertEquals(123D, TypeConverter.parseDouble("123"), 0);
+        Assert.assertEquals(-1.5D, TypeConverter.parseDouble("-1.5"), 0);
+        Assert.assertEquals(0.5D, TypeConverter.parseDouble(".5"), 0);
+        Assert.assertEquals(1.0E20D, TypeConverter.parseDouble("1.0E20"), 0);
+        Assert.assertEquals(12D, TypeConverter.parseDouble(" 12 "), 0);
+        Assert.assertEquals(1451642400000D, TypeConverter.parseDouble("2016-01-01T10:00:00.000Z"), 0);
+
+        Assert.assertTrue(Double.isNaN(TypeConverter.parseDouble(null)));
+        Assert.assertTrue(Double.isNaN(TypeConverter.parseDouble("")));
+        Assert.assertTrue(Double.isNaN(TypeConverter.parseDouble("-")));
+        Assert.assertTrue(Double.isNaN(TypeConverter.parseDouble("1e")));
+        Assert.assertTrue(Double.isNaN(TypeConverter.parseDouble("12a")));
+        Assert.assertTrue(Double.isNaN(TypeConverter.parseDouble("this")));
+        Assert.assertTrue(Double.isNaN(TypeConverter.parseDouble("2016-01-01Tnot a date")));
+
+        Assert.assertNull(TypeConverter.getDouble("this"));
+        Assert.assertEquals(Double.valueOf(3D), TypeConverter.getDouble(3L));
+    }
+
     private void test(final String expected, final double dbl) {
         final String actual = TypeConverter.getString(dbl);
         Assert.assertEquals(expected, actual);
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RateLimitedDirectoryWrapper;
+import org.apache.lucene.store.SimpleFSLockFactory;
+import org.apache.lucene.util.Version;
+
+import stroom.index.server.analyzer.AnalyzerFactory;
+import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
+import stroom.index.shared.IndexShardKey;
+import stroom.index.shared.IndexShardService;
+import stroom.node.shared.Node;
+import stroom.query.shared.IndexField.AnalyzerType;
+import stroom.streamstore.server.fs.FileSystemUtil;
+import stroom.util.logging.StroomLogger;
+import stroom.util.shared.ModelStringUtil;
+
+/**
+ * Merges small closed shards in a partition into fewer shards with a single
+ * segment each so that searches over old partitions open fewer shards and
+ * segments.
+ *
+ * A merged shard is created as deleted so that it is hidden from searches and
+ * writers while it is filled. It then replaces the shards it was made from in
+ * a single transaction. If a node stops part way through a merge the hidden
+ * shard is cleaned up along with any other deleted shards when it restarts.
+ */
+public class IndexShardCompactor {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(IndexShardCompactor.class);
+
+    private final IndexShardService indexShardService;
+
+    public IndexShardCompactor(final IndexShardService indexShardService) {
+        this.indexShardService = indexShardService;
+    }
+
+    /**
+     * Groups closed shards that haven't been written to for a while by index
+     * and partition and packs each group, smallest shards first, into sets
+     * that will fit in a single shard.
+     *
+     * @return Sets of two or more shards that can each be merged into one.
+     */
+    public static List<List<IndexShardWriter>> plan(final Collection<IndexShardWriter> writers, final long coldAgeMs,
+            final long now) {
+        final Map<String, List<IndexShardWriter>> partitions = new LinkedHashMap<>();
+        for (final IndexShardWriter writer : writers) {
+            final IndexShard indexShard = writer.getIndexShard();
+            if (writer.isClosed() && writer.getLastUsedMs() <= now - coldAgeMs
+                    && indexShard.getDocumentCount() < indexShard.getIndex().getMaxDocsPerShard()) {
+                final String key = indexShard.getIndex().getId() + ":" + indexShard.getPartition();
+                List<IndexShardWriter> list = partitions.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    partitions.put(key, list);
+                }
+                list.add(writer);
+            }
+        }
+
+        final List<List<IndexShardWriter>> groups = new ArrayList<>();
+        for (final List<IndexShardWriter> list : partitions.values()) {
+            list.sort(Comparator.comparingInt(writer -> writer.getIndexShard().getDocumentCount()));
+
+            List<IndexShardWriter> group = new ArrayList<>();
+            long groupDocs = 0;
+            for (final IndexShardWriter writer : list) {
+                final IndexShard indexShard = writer.getIndexShard();
+                final int maxDocs = indexShard.getIndex().getMaxDocsPerShard();
+                if (groupDocs + indexShard.getDocumentCount() > maxDocs) {
+                    if (group.size() > 1) {
+                        groups.add(group);
+                    }
+                    group = new ArrayList<>();
+                    groupDocs = 0;
+                }
+                group.add(writer);
+                groupDocs += indexShard.getDocumentCount();
+            }
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+        }
+
+        return groups;
+    }
+
+    /**
+     * Merges the shards written by the supplied writers into a new shard.
+     * Nothing is merged if any of the writers can't be stopped from opening.
+     *
+     * @param maxWriteMBPerSec
+     *            The rate at which the new shard can be written or 0 for no
+     *            limit.
+     * @return The new shard or null if the shards weren't merged.
+     */
+    public IndexShard compact(final List<IndexShardWriter> writers, final Node ownerNode,
+            final int maxWriteMBPerSec) {
+        final List<IndexShardWriter> stopped = new ArrayList<>(writers.size());
+        try {
+            for (final IndexShardWriter writer : writers) {
+                if (!writer.startCompaction()) {
+                    LOGGER.debug("compact() - Skipping as index shard %s is in use", writer.getIndexShard().getId());
+                    return null;
+                }
+                stopped.add(writer);
+            }
+
+            final IndexShard indexShard = merge(writers, ownerNode, maxWriteMBPerSec);
+
+            // Mark the old shards as deleted in memory too so that they are
+            // removed from disk.
+            for (final IndexShardWriter writer : writers) {
+                writer.delete();
+            }
+
+            return indexShard;
+        } finally {
+            for (final IndexShardWriter writer : stopped) {
+                writer.endCompaction();
+            }
+        }
+    }
+
+    private IndexShard merge(final List<IndexShardWriter> writers, final Node ownerNode,
+            final int maxWriteMBPerSec) {
+        final long startTime = System.currentTimeMillis();
+        final List<IndexShard> sources = new ArrayList<>(writers.size());
+        for (final IndexShardWriter writer : writers) {
+            sources.add(writer.getIndexShard());
+        }
+
+        final IndexShard first = sources.get(0);
+        final IndexShardKey key = new IndexShardKey(first.getIndex(), first.getPartition(),
+                first.getPartitionFromTime(), first.getPartitionToTime(), 0);
+        IndexShard target = indexShardService.createIndexShard(key, ownerNode, IndexShardStatus.DELETED);
+        final File dir = IndexShardUtil.getIndexDir(target);
+
+        try {
+            if (!dir.mkdirs()) {
+                throw new IndexException("Unable to create directories for new index in \"" + dir.getAbsolutePath()
+                        + "\"");
+            }
+
+            final int documentCount = write(sources, target, dir, maxWriteMBPerSec);
+
+            target.setDocumentCount(documentCount);
+            target.setFileSize(getFileSize(dir));
+            target.setCommitDocumentCount(documentCount);
+            target.setCommitMs(System.currentTimeMillis());
+            target.setCommitDurationMs(System.currentTimeMillis() - startTime);
+            setEventTimeRange(target, sources);
+            target.setStatus(IndexShardStatus.CLOSED);
+            target = indexShardService.swapIndexShards(target, sources);
+
+            LOGGER.info("merge() - Merged %s index shards into index shard %s with %s documents in %s",
+                    sources.size(), target.getId(), documentCount,
+                    ModelStringUtil.formatDurationString(System.currentTimeMillis() - startTime));
+
+            return target;
+        } catch (final Exception e) {
+            // Leave the source shards as they were and get rid of the partly
+            // written shard.
+            try {
+                FileSystemUtil.deleteDirectory(dir);
+                indexShardService.delete(target);
+            } catch (final Exception ex) {
+                LOGGER.error(ex.getMessage(), ex);
+            }
+
+            throw new IndexException("Unable to merge index shards for index " + first.getIndex().getName()
+                    + " and partition " + first.getPartition(), e);
+        }
+    }
+
+    private int write(final List<IndexShard> sources, final IndexShard target, final File dir,
+            final int maxWriteMBPerSec) throws Exception {
+        final Directory[] sourceDirectories = new Directory[sources.size()];
+        RateLimitedDirectoryWrapper directory = null;
+        try {
+            for (int i = 0; i < sourceDirectories.length; i++) {
+                sourceDirectories[i] = new NIOFSDirectory(IndexShardUtil.getIndexDir(sources.get(i)));
+            }
+
+            // Limit the rate we write at so that merges don't starve indexing
+            // and searches of disk bandwidth.
+            directory = new RateLimitedDirectoryWrapper(new NIOFSDirectory(dir, new SimpleFSLockFactory(dir)));
+            if (maxWriteMBPerSec > 0) {
+                directory.setMaxWriteMBPerSec((double) maxWriteMBPerSec, IOContext.Context.MERGE);
+            }
+
+            final Version luceneVersion = LuceneVersionUtil.getLuceneVersion(target.getIndexVersion());
+            final IndexWriterConfig indexWriterConfig = new IndexWriterConfig(luceneVersion,
+                    AnalyzerFactory.create(luceneVersion, AnalyzerType.KEYWORD, false));
+            indexWriterConfig.setOpenMode(OpenMode.CREATE);
+            indexWriterConfig.setUseCompoundFile(false);
+
+            try (final IndexWriter indexWriter = new IndexWriter(directory, indexWriterConfig)) {
+                indexWriter.addIndexes(sourceDirectories);
+                indexWriter.forceMerge(1);
+                indexWriter.commit();
+                return indexWriter.numDocs();
+            }
+        } finally {
+            for (final Directory sourceDirectory : sourceDirectories) {
+                if (sourceDirectory != null) {
+                    sourceDirectory.close();
+                }
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        }
+    }
+
+    /**
+     * The merged shard only has an event time range if every shard it was
+     * made from had one.
+     */
+    private void setEventTimeRange(final IndexShard target, final List<IndexShard> sources) {
+        Long min = null;
+        Long max = null;
+        for (final IndexShard source : sources) {
+            if (source.getMinEventTime() == null || source.getMaxEventTime() == null) {
+                return;
+            }
+            min = min == null ? source.getMinEventTime() : Math.min(min, source.getMinEventTime());
+            max = max == null ? source.getMaxEventTime() : Math.max(max, source.getMaxEventTime());
+        }
+        target.setMinEventTime(min);
+        target.setMaxEventTime(max);
+    }
+
+    private long getFileSize(final File dir) {
+        long totalSize = 0;
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                totalSize += file.length();
+            }
+        }
+        return totalSize;
+    }
+}
@@ -24,6 +24,7 @@ import stroom.entity.server.util.SQLBuilder;
 import stroom.entity.server.util.SQLUtil;
 import stroom.entity.shared.PermissionException;
 import stroom.index.shared.*;
+import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.node.shared.Node;
 import stroom.node.shared.Volume;
 import stroom.node.shared.VolumeService;
@@ -63,6 +64,12 @@ public class IndexShardServiceImpl
 
     @Override
     public IndexShard createIndexShard(final IndexShardKey indexShardKey, final Node ownerNode) {
+        return createIndexShard(indexShardKey, ownerNode, IndexShardStatus.CLOSED);
+    }
+
+    @Override
+    public IndexShard createIndexShard(final IndexShardKey indexShardKey, final Node ownerNode,
+                                       final IndexShardStatus status) {
         final Index index = indexShardKey.getIndex();
         if (index.getVolumes() == null || index.getVolumes().size() == 0) {
             LOGGER.error(VOLUME_ERROR);
@@ -91,10 +98,28 @@ public class IndexShardServiceImpl
         indexShard.setPartitionToTime(indexShardKey.getPartitionToTime());
         indexShard.setVolume(volume);
         indexShard.setIndexVersion(LuceneVersionUtil.getCurrentVersion());
+        indexShard.setStatus(status);
 
         return save(indexShard);
     }
 
+    @Override
+    public IndexShard swapIndexShards(final IndexShard target, final List<IndexShard> sources) {
+        for (final IndexShard source : sources) {
+            // Roll everything back if a source has been opened or deleted
+            // since it was merged.
+            final IndexShard indexShard = load(source);
+            if (indexShard == null || !IndexShardStatus.CLOSED.equals(indexShard.getStatus())) {
+                throw new IndexException("Unable to replace index shard " + source.getId()
+                        + " as it is no longer closed");
+            }
+            indexShard.setStatus(IndexShardStatus.DELETED);
+            save(indexShard);
+        }
+
+        return save(target);
+    }
+
     @Override
     public Class<IndexShard> getEntityClass() {
         return IndexShard.class;
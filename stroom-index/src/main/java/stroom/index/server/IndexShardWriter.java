@@ -59,4 +59,35 @@ public interface IndexShardWriter extends Destroyable {
     String getPartition();
 
     IndexWriter getWriter();
+
+    /**
+     * @return The number of bytes of RAM the writer is using to buffer
+     *         documents that haven't been flushed yet.
+     */
+    long getRamBytesUsed();
+
+    /**
+     * @return The time that a document was last added to the writer.
+     */
+    long getLastUsedMs();
+
+    /**
+     * @return True if documents have been added since the writer was last
+     *         flushed or closed.
+     */
+    boolean hasUncommittedDocuments();
+
+    /**
+     * Stops the writer from opening so that the shard can be merged into
+     * another one.
+     *
+     * @return False if the shard is not closed or is already being merged.
+     */
+    boolean startCompaction();
+
+    /**
+     * Lets the writer open again after the shard has been merged or the merge
+     * has failed.
+     */
+    void endCompaction();
 }
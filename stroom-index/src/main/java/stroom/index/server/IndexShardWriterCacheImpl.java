@@ -63,6 +63,12 @@ public class IndexShardWriterCacheImpl extends AbstractCacheBean<IndexShardKey,
         implements IndexShardWriterCache, EntityEvent.Handler {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(IndexShardWriterCacheImpl.class);
     private static final int MAX_CACHE_ENTRIES = 1000000;
+    private static final int DEFAULT_RAM_BUFFER_SIZE_MB = 1024;
+    private static final int DEFAULT_RAM_BUDGET_MB = 1024;
+    private static final String COMPACTION_COLD_AGE_PROPERTY = "stroom.index.compaction.coldAge";
+    private static final String COMPACTION_MAX_WRITE_MB_PER_SEC_PROPERTY = "stroom.index.compaction.maxWriteMBPerSec";
+    private static final long DEFAULT_COMPACTION_COLD_AGE_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int DEFAULT_COMPACTION_MAX_WRITE_MB_PER_SEC = 20;
 
     private final IndexService indexService;
     private final IndexShardService indexShardService;
@@ -72,6 +78,8 @@ public class IndexShardWriterCacheImpl extends AbstractCacheBean<IndexShardKey,
 
     private final ConcurrentHashMap<IndexShard, IndexShardWriter> ownedWriters = new ConcurrentHashMap<>();
     private final StripedLock writerCreationLocks = new StripedLock();
+    private final IndexShardWriterRamBudget ramBudget;
+    private final IndexShardCompactor compactor;
 
     @Inject
     public IndexShardWriterCacheImpl(final CacheManager cacheManager, final StroomPropertyService stroomPropertyService,
@@ -82,7 +90,12 @@ public class IndexShardWriterCacheImpl extends AbstractCacheBean<IndexShardKey,
         this.indexShardService = indexShardService;
         this.nodeCache = nodeCache;
 
-        setMaxIdleTime(10, TimeUnit.SECONDS);
+        // Writers are no longer closed when they have been idle for a short
+        // time. Instead the RAM budget commits idle writers, and closes cold
+        // writers and flushes big ones when open writers use more RAM than
+        // the node allows.
+        ramBudget = new IndexShardWriterRamBudget(ownedWriters.values(), getRamBudget());
+        compactor = new IndexShardCompactor(indexShardService);
         setMaxLiveTime(1, TimeUnit.DAYS);
     }
 
@@ -197,7 +210,12 @@ public class IndexShardWriterCacheImpl extends AbstractCacheBean<IndexShardKey,
             index = indexService.load(index);
         }
 
-        final int ramBufferSizeMB = getRamBufferSize();
+        // A single writer can't buffer more than the whole budget.
+        int ramBufferSizeMB = getRamBufferSize();
+        final int ramBudgetMB = getRamBudget();
+        if (ramBudgetMB > 0) {
+            ramBufferSizeMB = Math.min(ramBufferSizeMB, ramBudgetMB);
+        }
 
         // Get the index fields.
         final IndexFields indexFields = index.getIndexFieldsObject();
@@ -205,12 +223,13 @@ public class IndexShardWriterCacheImpl extends AbstractCacheBean<IndexShardKey,
         // Create the writer.
         final IndexShardWriterImpl writer = new IndexShardWriterImpl(indexShardService, indexFields, index, indexShard,
                 ramBufferSizeMB);
+        writer.setRamBudget(ramBudget);
 
         return writer;
     }
 
     private int getRamBufferSize() {
-        int ramBufferSizeMB = 1024;
+        int ramBufferSizeMB = DEFAULT_RAM_BUFFER_SIZE_MB;
         if (stroomPropertyService != null) {
             try {
                 final String property = stroomPropertyService.getProperty("stroom.index.ramBufferSizeMB");
@@ -224,6 +243,67 @@ public class IndexShardWriterCacheImpl extends AbstractCacheBean<IndexShardKey,
         return ramBufferSizeMB;
     }
 
+    private int getRamBudget() {
+        if (stroomPropertyService == null) {
+            return DEFAULT_RAM_BUDGET_MB;
+        }
+        return stroomPropertyService.getIntProperty("stroom.index.ramBudgetMB", DEFAULT_RAM_BUDGET_MB);
+    }
+
+    /**
+     * Picks up changes to the budget, commits writers that have gone idle and
+     * closes cold writers while the node is over budget even if nothing is
+     * being indexed.
+     */
+    @StroomFrequencySchedule("10s")
+    public void checkRamBudget() {
+        ramBudget.setBudgetMB(getRamBudget());
+        ramBudget.check();
+    }
+
+    /**
+     * Merges small shards in partitions that haven't been written to for a
+     * while into fewer, fully merged shards.
+     */
+    @StroomFrequencySchedule("1h")
+    @JobTrackedSchedule(jobName = "Index Shard Compaction", description = "Job to merge small index shards in partitions that are no longer being written to")
+    public void compact() {
+        final long startTime = System.currentTimeMillis();
+        final long coldAgeMs = getCompactionColdAge();
+        final int maxWriteMBPerSec = stroomPropertyService.getIntProperty(COMPACTION_MAX_WRITE_MB_PER_SEC_PROPERTY,
+                DEFAULT_COMPACTION_MAX_WRITE_MB_PER_SEC);
+
+        final List<List<IndexShardWriter>> groups = IndexShardCompactor.plan(ownedWriters.values(), coldAgeMs,
+                startTime);
+        LOGGER.debug("compact() - Found %s sets of index shards to merge", groups.size());
+
+        for (final List<IndexShardWriter> group : groups) {
+            try {
+                final IndexShard indexShard = compactor.compact(group, nodeCache.getDefaultNode(), maxWriteMBPerSec);
+                if (indexShard != null) {
+                    ownedWriters.put(indexShard, connectWrapper(indexShard));
+                }
+            } catch (final Exception e) {
+                LOGGER.error(e, e);
+            }
+        }
+
+        LOGGER.debug("compact() - Completed in %s",
+                ModelStringUtil.formatDurationString(System.currentTimeMillis() - startTime));
+    }
+
+    private long getCompactionColdAge() {
+        final String coldAge = stroomPropertyService.getProperty(COMPACTION_COLD_AGE_PROPERTY);
+        if (coldAge != null && coldAge.length() > 0) {
+            try {
+                return ModelStringUtil.parseDurationString(coldAge);
+            } catch (final Exception e) {
+                LOGGER.error("getCompactionColdAge() - Unable to parse %s", COMPACTION_COLD_AGE_PROPERTY, e);
+            }
+        }
+        return DEFAULT_COMPACTION_COLD_AGE_MS;
+    }
+
     @StroomStartup
     public void startup() {
         loadAllAtStartup();
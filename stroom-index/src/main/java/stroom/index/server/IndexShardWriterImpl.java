@@ -21,6 +21,7 @@ import stroom.index.shared.Index;
 import stroom.index.shared.IndexShard;
 import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.index.shared.IndexShardService;
+import stroom.query.shared.IndexConstants;
 import stroom.query.shared.IndexField;
 import stroom.query.shared.IndexField.AnalyzerType;
 import stroom.query.shared.IndexFields;
@@ -34,6 +35,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.LiveIndexWriterConfig;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
@@ -51,6 +53,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class IndexShardWriterImpl implements IndexShardWriter {
@@ -83,6 +86,18 @@ public class IndexShardWriterImpl implements IndexShardWriter {
     private volatile long lastCommitMs;
     private volatile int lastCommitDocumentCount;
     private volatile long lastCommitDurationMs;
+    private volatile long lastUsedMs = System.currentTimeMillis();
+    private volatile IndexShardWriterRamBudget ramBudget;
+    private volatile boolean compacting;
+
+    /**
+     * The range of event times added to the shard so that searches can skip
+     * shards that can't contain matching events. The range is only known if
+     * the shard was empty or already had a range when this writer was created.
+     */
+    private final boolean eventTimeRangeKnown;
+    private final AtomicLong minEventTime = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxEventTime = new AtomicLong(Long.MIN_VALUE);
 
     /**
      * When we are in debug mode we track some important info from the LUCENE
@@ -113,6 +128,15 @@ public class IndexShardWriterImpl implements IndexShardWriter {
         this.ramBufferSizeMB = ramBufferSizeMB;
         this.maxDocumentCount = index.getMaxDocsPerShard();
 
+        // Carry on from any event time range already recorded for the shard.
+        if (indexShard.getMinEventTime() != null && indexShard.getMaxEventTime() != null) {
+            eventTimeRangeKnown = true;
+            minEventTime.set(indexShard.getMinEventTime());
+            maxEventTime.set(indexShard.getMaxEventTime());
+        } else {
+            eventTimeRangeKnown = indexShard.getDocumentCount() == 0;
+        }
+
         // Find the index shard dir.
         dir = IndexShardUtil.getIndexDir(indexShard);
 
@@ -137,6 +161,14 @@ public class IndexShardWriterImpl implements IndexShardWriter {
         this.ramBufferSizeMB = ramBufferSizeMB;
     }
 
+    /**
+     * Sets the node wide budget that this writer tells about each document it
+     * adds.
+     */
+    public void setRamBudget(final IndexShardWriterRamBudget ramBudget) {
+        this.ramBudget = ramBudget;
+    }
+
     @Override
     public synchronized boolean open(final boolean create) {
         boolean success = false;
@@ -160,8 +192,11 @@ public class IndexShardWriterImpl implements IndexShardWriter {
         boolean success = false;
 
         try {
-            // Never open deleted index shards.
-            if (!IndexShardStatus.DELETED.equals(indexShard.getStatus())) {
+            // Never open deleted index shards or shards that are being merged
+            // into another.
+            if (compacting) {
+                LOGGER.debug("Not opening %s as it is being compacted", indexShard);
+            } else if (!IndexShardStatus.DELETED.equals(indexShard.getStatus())) {
                 final long startMs = System.currentTimeMillis();
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Opening " + indexShard);
@@ -429,6 +464,8 @@ public class IndexShardWriterImpl implements IndexShardWriter {
                             // new index to add documents to.
                             indexWriter.addDocument(document);
                             added = true;
+                            lastUsedMs = System.currentTimeMillis();
+                            recordEventTime(document);
 
                             final long duration = System.currentTimeMillis() - startTime;
                             if (duration > 1000) {
@@ -461,6 +498,12 @@ public class IndexShardWriterImpl implements IndexShardWriter {
             }
         }
 
+        // Let the budget check RAM use now the document is buffered.
+        final IndexShardWriterRamBudget ramBudget = this.ramBudget;
+        if (added && ramBudget != null) {
+            ramBudget.documentAdded();
+        }
+
         if (retry) {
             if (tryCount > 10) {
                 LOGGER.warn("Giving up adding document to this index shard after " + tryCount + " tries");
@@ -474,6 +517,17 @@ public class IndexShardWriterImpl implements IndexShardWriter {
         return added;
     }
 
+    private void recordEventTime(final Document document) {
+        if (eventTimeRangeKnown) {
+            final IndexableField field = document.getField(IndexConstants.EVENT_TIME);
+            if (field != null && field.numericValue() != null) {
+                final long time = field.numericValue().longValue();
+                minEventTime.accumulateAndGet(time, Math::min);
+                maxEventTime.accumulateAndGet(time, Math::max);
+            }
+        }
+    }
+
     @Override
     public void updateIndex(final Index index) {
         // There's no point updating the analysers on a deleted index.
@@ -721,6 +775,11 @@ public class IndexShardWriterImpl implements IndexShardWriter {
                 indexShard.setCommitDocumentCount(lastCommitDocumentCount);
                 indexShard.setCommitDurationMs(lastCommitDurationMs);
                 indexShard.setCommitMs(lastCommitMs);
+
+                if (eventTimeRangeKnown && minEventTime.get() <= maxEventTime.get()) {
+                    indexShard.setMinEventTime(minEventTime.get());
+                    indexShard.setMaxEventTime(maxEventTime.get());
+                }
             }
         } catch (final Throwable t) {
             LOGGER.error(t.getMessage(), t);
@@ -815,6 +874,44 @@ public class IndexShardWriterImpl implements IndexShardWriter {
         return indexWriter;
     }
 
+    @Override
+    public long getRamBytesUsed() {
+        final IndexWriter indexWriter = this.indexWriter;
+        if (indexWriter == null) {
+            return 0;
+        }
+
+        try {
+            return indexWriter.ramSizeInBytes();
+        } catch (final AlreadyClosedException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getLastUsedMs() {
+        return lastUsedMs;
+    }
+
+    @Override
+    public boolean hasUncommittedDocuments() {
+        return isOpen() && documentCount.get() != lastDocumentCount;
+    }
+
+    @Override
+    public synchronized boolean startCompaction() {
+        if (compacting || indexWriter != null || !isClosed()) {
+            return false;
+        }
+        compacting = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void endCompaction() {
+        compacting = false;
+    }
+
     @Override
     public synchronized void destroy() {
         if (isOpen()) {
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import stroom.util.logging.StroomLogger;
+import stroom.util.shared.ModelStringUtil;
+
+/**
+ * A node wide budget for the RAM used by open index shard writers. Each open
+ * writer is charged the RAM Lucene is using to buffer its documents plus a
+ * fixed overhead for being open at all. When the total goes over the budget
+ * the coldest writers are closed and then the biggest writers are flushed
+ * until the total drops below a low water mark. Whatever the budget, writers
+ * that have been idle for {@link #COLD_MS} commit any documents they are
+ * holding so that few documents are lost if the node stops.
+ *
+ * Checks are made every few documents added across all writers so that the
+ * budget holds however many shards are being written to at once.
+ */
+public class IndexShardWriterRamBudget {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(IndexShardWriterRamBudget.class);
+
+    static final long OPEN_WRITER_OVERHEAD_BYTES = 1024 * 1024;
+    static final long COLD_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final int CHECK_INTERVAL_DOCS = 1000;
+    private static final double LOW_WATER_MARK = 0.8;
+
+    private static class WriterUsage {
+        private final IndexShardWriter writer;
+        private final long ramBytesUsed;
+        private final long lastUsedMs;
+        private boolean closed;
+
+        WriterUsage(final IndexShardWriter writer) {
+            this.writer = writer;
+            this.ramBytesUsed = writer.getRamBytesUsed();
+            this.lastUsedMs = writer.getLastUsedMs();
+        }
+    }
+
+    private final Collection<IndexShardWriter> writers;
+    private final AtomicInteger docsSinceCheck = new AtomicInteger();
+    private final ReentrantLock checkLock = new ReentrantLock();
+    private volatile long budgetBytes;
+
+    /**
+     * @param writers
+     *            A live view of all of the writers on this node.
+     * @param budgetMB
+     *            The budget or 0 for no budget.
+     */
+    public IndexShardWriterRamBudget(final Collection<IndexShardWriter> writers, final int budgetMB) {
+        this.writers = writers;
+        setBudgetMB(budgetMB);
+    }
+
+    public void setBudgetMB(final int budgetMB) {
+        this.budgetBytes = budgetMB * 1024L * 1024L;
+    }
+
+    /**
+     * Called by writers each time they add a document.
+     */
+    public void documentAdded() {
+        if (docsSinceCheck.incrementAndGet() >= CHECK_INTERVAL_DOCS) {
+            docsSinceCheck.set(0);
+            check();
+        }
+    }
+
+    /**
+     * Flushes or closes writers if they are using more than the budget and
+     * commits idle writers. If another thread is already checking then this
+     * returns straight away.
+     */
+    public void check() {
+        final long budgetBytes = this.budgetBytes;
+        if (!checkLock.tryLock()) {
+            return;
+        }
+
+        try {
+            final List<WriterUsage> usages = new ArrayList<>();
+            long total = 0;
+            for (final IndexShardWriter writer : writers) {
+                if (writer.isOpen()) {
+                    final WriterUsage usage = new WriterUsage(writer);
+                    usages.add(usage);
+                    total += usage.ramBytesUsed + OPEN_WRITER_OVERHEAD_BYTES;
+                }
+            }
+
+            if (budgetBytes > 0 && total > budgetBytes) {
+                final long startTime = System.currentTimeMillis();
+                final long totalBefore = total;
+                final long target = (long) (budgetBytes * LOW_WATER_MARK);
+                int closeCount = 0;
+                int flushCount = 0;
+
+                // Close writers that haven't been used for a while, coldest
+                // first, as they free their buffers and the cost of being
+                // open.
+                usages.sort(Comparator.comparingLong(usage -> usage.lastUsedMs));
+                for (final WriterUsage usage : usages) {
+                    if (total <= target) {
+                        break;
+                    }
+                    if (startTime - usage.lastUsedMs >= COLD_MS && usage.writer.close()) {
+                        usage.closed = true;
+                        total -= usage.ramBytesUsed + OPEN_WRITER_OVERHEAD_BYTES;
+                        closeCount++;
+                    }
+                }
+
+                // Then flush the writers with the biggest buffers.
+                usages.sort(Comparator.comparingLong((WriterUsage usage) -> usage.ramBytesUsed).reversed());
+                for (final WriterUsage usage : usages) {
+                    if (total <= target || usage.ramBytesUsed == 0) {
+                        break;
+                    }
+                    if (!usage.closed && usage.writer.flush()) {
+                        total -= usage.ramBytesUsed;
+                        flushCount++;
+                    }
+                }
+
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("check() - Closed %s and flushed %s writers to reduce RAM use from %s to %s in %s",
+                            closeCount, flushCount, ModelStringUtil.formatByteSizeString(totalBefore),
+                            ModelStringUtil.formatByteSizeString(total),
+                            ModelStringUtil.formatDurationString(System.currentTimeMillis() - startTime));
+                }
+            }
+
+            commitIdleWriters(usages);
+        } catch (final Throwable t) {
+            LOGGER.error(t.getMessage(), t);
+        } finally {
+            checkLock.unlock();
+        }
+    }
+
+    /**
+     * Commits writers that have stopped being used so that their documents
+     * don't stay uncommitted until the writer is next flushed or closed.
+     */
+    private void commitIdleWriters(final List<WriterUsage> usages) {
+        final long now = System.currentTimeMillis();
+        int commitCount = 0;
+        for (final WriterUsage usage : usages) {
+            if (!usage.closed && now - usage.lastUsedMs >= COLD_MS && usage.writer.hasUncommittedDocuments()
+                    && usage.writer.flush()) {
+                commitCount++;
+            }
+        }
+
+        if (commitCount > 0) {
+            LOGGER.debug("commitIdleWriters() - Committed %s idle writers", commitCount);
+        }
+    }
+}
@@ -60,6 +60,10 @@ public class IndexShard extends AuditedEntity {
     public static final String PARTITION_TO_TIME = SQLNameConstants.PARTITION + SEP + SQLNameConstants.TO
             + SQLNameConstants.MS_SUFFIX;
     public static final String INDEX_VERSION = SQLNameConstants.INDEX + SEP + SQLNameConstants.VERSION;
+    public static final String MIN_EVENT_TIME = SQLNameConstants.MIN + SEP + SQLNameConstants.EVENT
+            + SQLNameConstants.MS_SUFFIX;
+    public static final String MAX_EVENT_TIME = SQLNameConstants.MAX + SEP + SQLNameConstants.EVENT
+            + SQLNameConstants.MS_SUFFIX;
     public static final String ENTITY_TYPE = "IndexShard";
     public static final Set<IndexShardStatus> NON_DELETED_INDEX_SHARD_STATUS = Collections.unmodifiableSet(
             new HashSet<>(Arrays.asList(IndexShardStatus.OPEN, IndexShardStatus.CLOSED, IndexShardStatus.CORRUPT)));
@@ -112,6 +116,8 @@ public class IndexShard extends AuditedEntity {
     private volatile byte pstatus = IndexShardStatus.CLOSED.getPrimitiveValue();
     private Long fileSize;
     private String indexVersion;
+    private Long minEventTime;
+    private Long maxEventTime;
 
     public IndexShard() {
     }
@@ -246,6 +252,30 @@ public class IndexShard extends AuditedEntity {
         this.indexVersion = indexVersion;
     }
 
+    /**
+     * @return the earliest event time in the shard or null if it is not known.
+     */
+    @Column(name = MIN_EVENT_TIME, columnDefinition = BIGINT)
+    public Long getMinEventTime() {
+        return minEventTime;
+    }
+
+    public void setMinEventTime(final Long minEventTime) {
+        this.minEventTime = minEventTime;
+    }
+
+    /**
+     * @return the latest event time in the shard or null if it is not known.
+     */
+    @Column(name = MAX_EVENT_TIME, columnDefinition = BIGINT)
+    public Long getMaxEventTime() {
+        return maxEventTime;
+    }
+
+    public void setMaxEventTime(final Long maxEventTime) {
+        this.maxEventTime = maxEventTime;
+    }
+
     @Transient
     public Long getCommitDocumentCountPs() {
         if (commitDocumentCount != null && commitDurationMs != null && commitDurationMs > 0) {
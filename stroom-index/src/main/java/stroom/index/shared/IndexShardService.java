@@ -18,8 +18,25 @@ package stroom.index.shared;
 
 import stroom.entity.shared.BaseEntityService;
 import stroom.entity.shared.FindService;
+import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.node.shared.Node;
 
+import java.util.List;
+
 public interface IndexShardService extends BaseEntityService<IndexShard>, FindService<IndexShard, FindIndexShardCriteria> {
     IndexShard createIndexShard(IndexShardKey indexShardKey, Node ownerNode);
+
+    /**
+     * Creates a shard with a status other than closed, e.g. so that it stays
+     * hidden from searches until it has been filled.
+     */
+    IndexShard createIndexShard(IndexShardKey indexShardKey, Node ownerNode, IndexShardStatus status);
+
+    /**
+     * Replaces a set of closed shards with a shard that holds all of their
+     * documents. The new shard is saved and the old ones are marked as
+     * deleted together so searches see either the old shards or the new one
+     * but never both.
+     */
+    IndexShard swapIndexShards(IndexShard target, List<IndexShard> sources);
 }
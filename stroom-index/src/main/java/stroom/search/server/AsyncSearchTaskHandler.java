@@ -21,7 +21,9 @@ import stroom.index.shared.*;
 import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.node.shared.Node;
 import stroom.query.ResultHandler;
+import stroom.query.shared.IndexConstants;
 import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexFieldType;
 import stroom.query.shared.Search;
 import stroom.security.SecurityContext;
 import stroom.task.cluster.*;
@@ -31,6 +33,7 @@ import stroom.task.server.GenericServerTask;
 import stroom.task.server.TaskHandlerBean;
 import stroom.task.server.TaskManager;
 import stroom.task.shared.FindTaskCriteria;
+import stroom.util.logging.StroomLogger;
 import stroom.util.shared.VoidResult;
 import stroom.util.spring.StroomScope;
 import stroom.util.task.TaskMonitor;
@@ -44,6 +47,8 @@ import java.util.Map.Entry;
 @TaskHandlerBean(task = AsyncSearchTask.class)
 @Scope(value = StroomScope.TASK)
 class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidResult> {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(AsyncSearchTaskHandler.class);
+
     private final TaskMonitor taskMonitor;
     private final TargetNodeSetFactory targetNodeSetFactory;
     private final ClusterDispatchAsync dispatcher;
@@ -91,11 +96,9 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
                     // Reload the index.
                     final Index index = indexService.loadByUuid(search.getDataSourceRef().getUuid());
 
-                    // Get an array of stored index fields that will be used for
-                    // getting stored data.
-                    // TODO : Specify stored fields based on the fields that all
-                    // coprocessors will require. Also
-                    // batch search only needs stream and event id stored fields.
+                    // Get an array of stored index fields that are available
+                    // for getting stored data. Each node only loads the ones
+                    // that its compiled coprocessors actually use.
                     final IndexField[] storedFields = getStoredFields(index);
 
                     // Get a list of search index shards to look through.
@@ -110,10 +113,17 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
                     findIndexShardCriteria.getFetchSet().add(Node.ENTITY_TYPE);
                     final List<IndexShard> indexShards = indexShardService.find(findIndexShardCriteria);
 
+                    // Find the range of event times the query can match so
+                    // that we can skip shards that only hold other times.
+                    final SearchTimeRange timeRange = getEventTimeRange(index, search);
+                    int skippedShardCount = 0;
+
                     // Build a map of nodes that will deal with each set of shards.
                     final Map<Node, List<Long>> shardMap = new HashMap<>();
                     for (final IndexShard indexShard : indexShards) {
-                        if (IndexShardStatus.CORRUPT.equals(indexShard.getStatus())) {
+                        if (!timeRange.overlaps(indexShard)) {
+                            skippedShardCount++;
+                        } else if (IndexShardStatus.CORRUPT.equals(indexShard.getStatus())) {
                             resultCollector.getErrorSet(indexShard.getNode()).add(
                                     "Attempt to search an index shard marked as corrupt: id=" + indexShard.getId() + ".");
                         } else {
@@ -127,6 +137,11 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
                         }
                     }
 
+                    if (skippedShardCount > 0) {
+                        LOGGER.debug("exec() - Skipped %s of %s shards outside event time range %s",
+                                skippedShardCount, indexShards.size(), timeRange);
+                    }
+
                     // Start remote cluster search execution.
                     int expectedNodeResultCount = 0;
                     for (final Entry<Node, List<Long>> entry : shardMap.entrySet()) {
@@ -208,6 +223,16 @@ class AsyncSearchTaskHandler extends AbstractTaskHandler<AsyncSearchTask, VoidRe
         taskManager.execAsync(outerTask);
     }
 
+    private SearchTimeRange getEventTimeRange(final Index index, final Search search) {
+        for (final IndexField indexField : index.getIndexFieldsObject().getIndexFields()) {
+            if (IndexConstants.EVENT_TIME.equals(indexField.getFieldName())
+                    && IndexFieldType.DATE_FIELD.equals(indexField.getFieldType())) {
+                return SearchTimeRange.create(search.getExpression(), IndexConstants.EVENT_TIME);
+            }
+        }
+        return SearchTimeRange.ALL;
+    }
+
     private IndexField[] getStoredFields(final Index index) {
         final List<IndexField> indexFields = index.getIndexFieldsObject().getIndexFields();
         final List<IndexField> list = new ArrayList<>(indexFields.size());
@@ -17,6 +17,7 @@
 package stroom.search.server;
 
 import stroom.dashboard.expression.FieldIndexMap;
+import stroom.dictionary.DictionaryTermsCache;
 import stroom.dictionary.shared.DictionaryService;
 import stroom.entity.shared.DocRef;
 import stroom.index.shared.Index;
@@ -78,6 +79,7 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
     private final TaskManager taskManager;
     private final IndexService indexService;
     private final DictionaryService dictionaryService;
+    private final DictionaryTermsCache dictionaryTermsCache;
     private final TaskMonitor taskMonitor;
     private final CoprocessorFactory coprocessorFactory;
     private final IndexShardSearchTaskExecutor indexShardSearchTaskExecutor;
@@ -98,7 +100,8 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
 
     @Inject
     public ClusterSearchTaskHandler(final TaskManager taskManager, final IndexService indexService,
-                                    final DictionaryService dictionaryService, final TaskMonitor taskMonitor,
+                                    final DictionaryService dictionaryService,
+                                    final DictionaryTermsCache dictionaryTermsCache, final TaskMonitor taskMonitor,
                                     final CoprocessorFactory coprocessorFactory,
                                     final IndexShardSearchTaskExecutor indexShardSearchTaskExecutor,
                                     final IndexShardSearchTaskProperties indexShardSearchTaskProperties,
@@ -107,6 +110,7 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
         this.taskManager = taskManager;
         this.indexService = indexService;
         this.dictionaryService = dictionaryService;
+        this.dictionaryTermsCache = dictionaryTermsCache;
         this.taskMonitor = taskMonitor;
         this.coprocessorFactory = coprocessorFactory;
         this.indexShardSearchTaskExecutor = indexShardSearchTaskExecutor;
@@ -146,14 +150,13 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
                         throw new SearchException("No stored fields have been requested");
                     }
 
-                    // Get an array of stored index fields that will be used for
-                    // getting stored data.
-                    final String[] storedFieldNames = new String[storedFields.length];
-                    final FieldIndexMap storedFieldIndexMap = new FieldIndexMap();
-                    for (int i = 0; i < storedFields.length; i++) {
-                        storedFieldNames[i] = storedFields[i].getFieldName();
-                        storedFieldIndexMap.create(storedFieldNames[i], true);
-                    }
+                    // Coprocessors ask this map for the stored fields they
+                    // use so that we only load those fields for each hit.
+                    // Stream and event ids are always needed to filter
+                    // streams and extract data.
+                    final StoredFieldIndexMap storedFieldIndexMap = new StoredFieldIndexMap(storedFields);
+                    storedFieldIndexMap.create(IndexConstants.STREAM_ID);
+                    storedFieldIndexMap.create(IndexConstants.EVENT_ID);
 
                     // See if we need to filter steams and if any of the
                     // coprocessors need us to extract data.
@@ -212,14 +215,29 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
                         }
                     }
 
+                    // Get an array of the stored index fields that will be
+                    // used for getting stored data. If nothing has been asked
+                    // for then fall back to loading all stored fields so that
+                    // hits are still counted.
+                    IndexField[] requiredStoredFields = storedFieldIndexMap.getRequiredFields();
+                    if (requiredStoredFields.length == 0) {
+                        requiredStoredFields = storedFields;
+                    }
+                    final String[] storedFieldNames = new String[requiredStoredFields.length];
+                    for (int i = 0; i < requiredStoredFields.length; i++) {
+                        storedFieldNames[i] = requiredStoredFields[i].getFieldName();
+                    }
+                    LOGGER.debug("exec() - Loading %s of %s stored fields", requiredStoredFields.length,
+                            storedFields.length);
+
                     // Start forwarding data to target node.
                     final SenderTask senderTask = new SenderTask(task, coprocessorMap, callback, frequency, sendingComplete,
                             searchComplete, errors);
                     taskManager.execAsync(senderTask);
 
                     taskMonitor.info("Searching...");
-                    search(task, search, storedFieldNames, filterStreams, indexFieldsMap, extractionFieldIndexMap,
-                            coprocessorMap, extractionCoprocessorsMap);
+                    search(task, search, requiredStoredFields, storedFieldNames, filterStreams, indexFieldsMap,
+                            extractionFieldIndexMap, coprocessorMap, extractionCoprocessorsMap);
 
                 } catch (final Throwable t) {
                     try {
@@ -247,7 +265,8 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
         }
     }
 
-    private void search(final ClusterSearchTask task, final Search search, final String[] storedFieldNames,
+    private void search(final ClusterSearchTask task, final Search search, final IndexField[] storedFields,
+                        final String[] storedFieldNames,
                         final boolean filterStreams, final IndexFieldsMap indexFieldsMap,
                         final FieldIndexMap extractionFieldIndexMap, final Map<Integer, Coprocessor<?>> coprocessorMap,
                         final Map<DocRef, Set<Coprocessor<?>>> extractionCoprocessorsMap) {
@@ -283,7 +302,7 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
                         SearchExpressionQuery query = null;
                         try {
                             final SearchExpressionQueryBuilder searchExpressionQueryBuilder = new SearchExpressionQueryBuilder(
-                                    dictionaryService, indexFieldsMap, maxBooleanClauseCount);
+                                    dictionaryService, dictionaryTermsCache, indexFieldsMap, maxBooleanClauseCount);
                             query = searchExpressionQueryBuilder.buildQuery(version, expression);
 
                             // Make sure the query was created successfully.
@@ -343,7 +362,7 @@ public class ClusterSearchTaskHandler implements TaskHandler<ClusterSearchTask,
 
                         // Create an object to make event lists from raw index
                         // data.
-                        final StreamMapCreator streamMapCreator = new StreamMapCreator(task.getStoredFields(), this,
+                        final StreamMapCreator streamMapCreator = new StreamMapCreator(storedFields, this,
                                 streamStore, securityContext);
 
                         // Make a task producer that will create event data
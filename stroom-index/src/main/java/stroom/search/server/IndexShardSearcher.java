@@ -17,6 +17,8 @@
 package stroom.search.server;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
 
 import stroom.index.shared.IndexShard;
 
@@ -27,6 +29,26 @@ public interface IndexShardSearcher {
 
     IndexReader getReader();
 
+    /**
+     * Gets the current searcher without blocking. Every searcher acquired must
+     * be released.
+     */
+    IndexSearcher acquire();
+
+    void release(IndexSearcher indexSearcher);
+
+    /**
+     * Makes documents added or committed since the last refresh visible to
+     * searchers acquired after this call.
+     */
+    void refresh();
+
+    /**
+     * @return The writer that near real time searchers are opened from or
+     *         null if searchers are opened from the index directory.
+     */
+    IndexWriter getWriter();
+
     int getDocumentCount();
 
     IndexShard getIndexShard();
@@ -20,9 +20,11 @@ import java.io.File;
 import java.io.IOException;
 
 import stroom.util.logging.StroomLogger;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.NoLockFactory;
@@ -32,6 +34,11 @@ import stroom.index.server.IndexShardUtil;
 import stroom.index.shared.IndexShard;
 import stroom.index.shared.IndexShard.IndexShardStatus;
 
+/**
+ * Searches an index shard through a Lucene {@link SearcherManager}. Searchers
+ * are reference counted so any number of searches can share the current
+ * searcher and a refresh never blocks searches that are using an older one.
+ */
 public class IndexShardSearcherImpl implements IndexShardSearcher {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(AbstractIndexShard.class);
 
@@ -41,8 +48,9 @@ public class IndexShardSearcherImpl implements IndexShardSearcher {
      * Lucene stuff
      */
     private Directory directory;
-    private IndexReader indexReader;
-    private final IndexWriter indexWriter;
+    private volatile SearcherManager searcherManager;
+    private IndexSearcher indexSearcher;
+    private IndexWriter indexWriter;
 
     public IndexShardSearcherImpl(final IndexShard indexShard) {
         this(indexShard, null);
@@ -53,12 +61,16 @@ public class IndexShardSearcherImpl implements IndexShardSearcher {
         this.indexWriter = indexWriter;
     }
 
+    /**
+     * Gets a reader that stays the same until this searcher is closed. Use
+     * {@link #acquire()} to see documents added after the searcher was opened.
+     */
     @Override
-    public IndexReader getReader() {
-        if (indexReader == null) {
-            throw new SearchException("Index is not open for searching");
+    public synchronized IndexReader getReader() {
+        if (indexSearcher == null) {
+            indexSearcher = acquire();
         }
-        return indexReader;
+        return indexSearcher.getIndexReader();
     }
 
     @Override
@@ -66,17 +78,18 @@ public class IndexShardSearcherImpl implements IndexShardSearcher {
         // First try and open the reader with the current writer if one is in
         // use. If a writer is available this will give us the benefit of being
         // able to search documents that have not yet been flushed to disk.
-        if (indexReader == null && indexWriter != null) {
+        if (searcherManager == null && indexWriter != null) {
             try {
-                indexReader = openWithWriter(indexWriter);
+                searcherManager = openWithWriter(indexWriter);
             } catch (final Exception e) {
                 LOGGER.error(e.getMessage());
+                indexWriter = null;
             }
         }
 
         // If we failed to open a reader with an existing writer then just try
         // and use the index shard directory.
-        if (indexReader == null) {
+        if (searcherManager == null) {
             try {
                 final File dir = IndexShardUtil.getIndexDir(indexShard);
 
@@ -86,10 +99,10 @@ public class IndexShardSearcherImpl implements IndexShardSearcher {
 
                 directory = new NIOFSDirectory(dir, NoLockFactory.getNoLockFactory());
 
-                indexReader = DirectoryReader.open(directory);
+                searcherManager = new SearcherManager(directory, null);
 
                 // Check the document count in the index matches the DB.
-                final int actualDocumentCount = indexReader.numDocs();
+                final int actualDocumentCount = getActualDocumentCount(searcherManager);
                 if (indexShard.getDocumentCount() != actualDocumentCount) {
                     // We should only worry about document mismatch if the shard
                     // is closed. However the shard
@@ -110,12 +123,12 @@ public class IndexShardSearcherImpl implements IndexShardSearcher {
         }
     }
 
-    private IndexReader openWithWriter(final IndexWriter indexWriter) throws IOException {
-        final IndexReader indexReader = DirectoryReader.open(indexWriter, false);
+    private SearcherManager openWithWriter(final IndexWriter indexWriter) throws IOException {
+        final SearcherManager searcherManager = new SearcherManager(indexWriter, false, null);
 
         // Check the document count in the index matches the DB. We are using
         // the writer so chances are there is a mismatch.
-        final int actualDocumentCount = indexReader.numDocs();
+        final int actualDocumentCount = getActualDocumentCount(searcherManager);
         if (indexShard.getDocumentCount() != actualDocumentCount) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("openWithWriter() - Mismatch document count.  Index says " + actualDocumentCount
@@ -123,20 +136,74 @@ public class IndexShardSearcherImpl implements IndexShardSearcher {
             }
         }
 
-        return indexReader;
+        return searcherManager;
+    }
+
+    private int getActualDocumentCount(final SearcherManager searcherManager) throws IOException {
+        final IndexSearcher indexSearcher = searcherManager.acquire();
+        try {
+            return indexSearcher.getIndexReader().numDocs();
+        } finally {
+            searcherManager.release(indexSearcher);
+        }
+    }
+
+    @Override
+    public IndexSearcher acquire() {
+        final SearcherManager searcherManager = this.searcherManager;
+        if (searcherManager == null) {
+            throw new AlreadyClosedException("Index is not open for searching");
+        }
+        return searcherManager.acquire();
+    }
+
+    @Override
+    public void release(final IndexSearcher indexSearcher) {
+        try {
+            // Releasing just drops the reference to the searcher's reader so it
+            // doesn't matter if the manager has been closed since.
+            indexSearcher.getIndexReader().decRef();
+        } catch (final IOException e) {
+            LOGGER.error(e, e);
+            throw SearchException.wrap(e);
+        }
+    }
+
+    @Override
+    public void refresh() {
+        final SearcherManager searcherManager = this.searcherManager;
+        if (searcherManager != null) {
+            try {
+                // Don't wait if another thread is already refreshing.
+                searcherManager.maybeRefresh();
+            } catch (final IOException e) {
+                throw SearchException.wrap(e);
+            }
+        }
+    }
+
+    @Override
+    public IndexWriter getWriter() {
+        return indexWriter;
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
         try {
-            if (indexReader != null) {
-                indexReader.close();
+            if (indexSearcher != null) {
+                release(indexSearcher);
+            }
+            if (searcherManager != null) {
+                // Searchers that are still in use keep their readers open until
+                // they are released.
+                searcherManager.close();
             }
         } catch (final IOException e) {
             LOGGER.error(e, e);
             throw SearchException.wrap(e);
         } finally {
-            indexReader = null;
+            indexSearcher = null;
+            searcherManager = null;
 
             try {
                 if (directory != null) {
@@ -39,6 +39,7 @@ import stroom.query.shared.QueryKey;
 import stroom.query.shared.Search;
 import stroom.query.shared.SearchRequest;
 import stroom.search.server.SearchExpressionQueryBuilder.SearchExpressionQuery;
+import stroom.dictionary.DictionaryTermsCache;
 import stroom.dictionary.shared.DictionaryService;
 import stroom.feed.shared.FeedService;
 import stroom.node.server.NodeCache;
@@ -60,6 +61,7 @@ public class LuceneSearchDataSourceProvider implements SearchDataSourceProvider
 
     private final IndexService indexService;
     private final DictionaryService dictionaryService;
+    private final DictionaryTermsCache dictionaryTermsCache;
     private final NodeCache nodeCache;
     private final TaskManager taskManager;
     private final FeedService feedService;
@@ -69,10 +71,11 @@ public class LuceneSearchDataSourceProvider implements SearchDataSourceProvider
 
     @Inject
     public LuceneSearchDataSourceProvider(final IndexService indexService, final DictionaryService dictionaryService,
-            final NodeCache nodeCache, final TaskManager taskManager, final FeedService feedService,
+            final DictionaryTermsCache dictionaryTermsCache, final NodeCache nodeCache, final TaskManager taskManager, final FeedService feedService,
             final ClusterResultCollectorCache clusterResultCollectorCache) {
         this.indexService = indexService;
         this.dictionaryService = dictionaryService;
+        this.dictionaryTermsCache = dictionaryTermsCache;
         this.nodeCache = nodeCache;
         this.taskManager = taskManager;
         this.feedService = feedService;
@@ -126,7 +129,7 @@ public class LuceneSearchDataSourceProvider implements SearchDataSourceProvider
             final IndexFieldsMap indexFieldsMap = new IndexFieldsMap(index.getIndexFieldsObject());
             // Parse the query.
             final SearchExpressionQueryBuilder searchExpressionQueryBuilder = new SearchExpressionQueryBuilder(
-                    dictionaryService, indexFieldsMap, maxBooleanClauseCount);
+                    dictionaryService, dictionaryTermsCache, indexFieldsMap, maxBooleanClauseCount);
             final SearchExpressionQuery query = searchExpressionQueryBuilder
                     .buildQuery(LuceneVersionUtil.CURRENT_LUCENE_VERSION, expression);
 
@@ -16,6 +16,8 @@
 
 package stroom.search.server;
 
+import stroom.dictionary.DictionaryTerms;
+import stroom.dictionary.DictionaryTermsCache;
 import stroom.dictionary.shared.Dictionary;
 import stroom.dictionary.shared.DictionaryService;
 import stroom.entity.shared.DocRef;
@@ -30,19 +32,28 @@ import stroom.query.shared.IndexFieldType;
 import stroom.query.shared.IndexFieldsMap;
 import stroom.util.date.DateUtil;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.AutomatonQuery;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
 import org.apache.lucene.util.Version;
+import org.apache.lucene.util.automaton.BasicAutomata;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -57,13 +68,17 @@ public class SearchExpressionQueryBuilder {
     private static final Pattern NON_WORD = Pattern.compile("[^a-zA-Z0-9]");
     private static final Pattern MULTIPLE_WILDCARD = Pattern.compile("[+]+");
     private static final Pattern MULTIPLE_SPACE = Pattern.compile("[ ]+");
+    private static final Pattern WORD = Pattern.compile("[a-zA-Z0-9]+");
     private final IndexFieldsMap indexFieldsMap;
     private final DictionaryService dictionaryService;
+    private final DictionaryTermsCache dictionaryTermsCache;
     private final int maxBooleanClauseCount;
 
-    public SearchExpressionQueryBuilder(final DictionaryService dictionaryService, final IndexFieldsMap indexFieldsMap,
+    public SearchExpressionQueryBuilder(final DictionaryService dictionaryService,
+            final DictionaryTermsCache dictionaryTermsCache, final IndexFieldsMap indexFieldsMap,
             final int maxBooleanClauseCount) {
         this.dictionaryService = dictionaryService;
+        this.dictionaryTermsCache = dictionaryTermsCache;
         this.indexFieldsMap = indexFieldsMap;
         this.maxBooleanClauseCount = maxBooleanClauseCount;
     }
@@ -382,45 +397,134 @@ public class SearchExpressionQueryBuilder {
 
     private Query getDictionary(final String fieldName, final DocRef docRef,
             final IndexField indexField, final Version matchVersion, final Set<String> terms) {
-        final String[] wordArr = loadWords(docRef);
-        if (wordArr != null) {
-            final BooleanQuery dictionaryQuery = new BooleanQuery();
-            for (final String val : wordArr) {
-                Query query = null;
-
-                if (indexField.getFieldType().isNumeric()) {
-                    query = getNumericIn(fieldName, val);
-                } else if (IndexFieldType.DATE_FIELD.equals(indexField.getFieldType())) {
-                    query = getDateIn(fieldName, val);
-                } else {
-                    query = getSubQuery(matchVersion, indexField, val, terms);
+        final DictionaryTerms dictionaryTerms = loadTerms(docRef);
+        if (dictionaryTerms.getLines().length == 0) {
+            return null;
+        }
+
+        // Lines that are a single term are compiled once per dictionary version
+        // and field into a single automaton query so that matching cost does
+        // not grow with the number of lines or run into the boolean clause
+        // limit.
+        final String key = fieldName + ":" + indexField.getFieldType() + ":" + indexField.getAnalyzerType() + ":"
+                + indexField.isCaseSensitive() + ":" + indexField.isTermPositions() + ":" + matchVersion;
+        final CompiledDictionary compiled = dictionaryTerms.getCompiled(key,
+                dt -> compile(dt, fieldName, indexField, matchVersion));
+
+        final BooleanQuery dictionaryQuery = new BooleanQuery();
+        if (compiled.getQuery() != null) {
+            terms.addAll(compiled.getHighlights());
+            dictionaryQuery.add(compiled.getQuery(), Occur.SHOULD);
+        }
+
+        // Any remaining lines need a query of their own.
+        for (final String val : compiled.getOtherLines()) {
+            Query query = null;
+
+            if (indexField.getFieldType().isNumeric()) {
+                query = getNumericIn(fieldName, val);
+            } else if (IndexFieldType.DATE_FIELD.equals(indexField.getFieldType())) {
+                query = getDateIn(fieldName, val);
+            } else {
+                query = getSubQuery(matchVersion, indexField, val, terms);
+            }
+
+            if (query != null) {
+                // Dictionary terms on one line must all exist in the
+                // matching documents so change to must.
+                query = modifyOccurance(query, Occur.MUST);
+                dictionaryQuery.add(query, Occur.SHOULD);
+            }
+        }
+        return dictionaryQuery;
+    }
+
+    private CompiledDictionary compile(final DictionaryTerms dictionaryTerms, final String fieldName,
+            final IndexField indexField, final Version matchVersion) {
+        final List<BytesRef> singleTerms = new ArrayList<>();
+        final Set<String> highlights = new HashSet<>();
+        final List<String> otherLines = new ArrayList<>();
+
+        for (final String line : dictionaryTerms.getLines()) {
+            String term = null;
+
+            if (indexField.getFieldType().isNumeric()) {
+                if (line.indexOf(DELIMITER) == -1) {
+                    term = encodeLong(getNumber(fieldName, line));
+                }
+            } else if (IndexFieldType.DATE_FIELD.equals(indexField.getFieldType())) {
+                if (line.indexOf(DELIMITER) == -1) {
+                    term = encodeLong(getDate(fieldName, line));
+                }
+            } else if (line.indexOf('*') == -1 && line.indexOf('?') == -1) {
+                if (AnalyzerType.KEYWORD.equals(indexField.getAnalyzerType())) {
+                    term = indexField.isCaseSensitive() ? line : line.toLowerCase();
+                } else if (WORD.matcher(line).matches()) {
+                    term = getSingleToken(matchVersion, indexField, line);
                 }
 
-                if (query != null) {
-                    // Dictionary terms on one line must all exist in the
-                    // matching documents so change to must.
-                    query = modifyOccurance(query, Occur.MUST);
-                    dictionaryQuery.add(query, Occur.SHOULD);
+                if (term != null) {
+                    addHighlights(line, highlights);
                 }
             }
-            return dictionaryQuery;
+
+            if (term != null) {
+                singleTerms.add(new BytesRef(term));
+            } else {
+                otherLines.add(line);
+            }
+        }
+
+        Query query = null;
+        if (singleTerms.size() > 0) {
+            // The automaton builder requires its input to be sorted.
+            Collections.sort(singleTerms);
+            query = new AutomatonQuery(new Term(fieldName), BasicAutomata.makeStringUnion(singleTerms));
+        }
+
+        return new CompiledDictionary(query, highlights, otherLines);
+    }
+
+    private String encodeLong(final long value) {
+        final BytesRef bytesRef = new BytesRef(NumericUtils.BUF_SIZE_LONG);
+        NumericUtils.longToPrefixCoded(value, 0, bytesRef);
+        return bytesRef.utf8ToString();
+    }
+
+    /**
+     * Analyses a value in the same way as the field and returns the resulting
+     * term if there is exactly one, otherwise null.
+     */
+    private String getSingleToken(final Version matchVersion, final IndexField field, final String value) {
+        final Analyzer analyzer = AnalyzerFactory.create(matchVersion, field.getAnalyzerType(),
+                field.isCaseSensitive());
+        String token = null;
+        int count = 0;
+        try (final TokenStream tokenStream = analyzer.tokenStream(field.getFieldName(), new StringReader(value))) {
+            final CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                token = termAttribute.toString();
+                count++;
+            }
+            tokenStream.end();
+        } catch (final IOException e) {
+            throw new SearchException("Unable to analyse dictionary term '" + value + "'", e);
         }
 
+        if (count == 1) {
+            return token;
+        }
         return null;
     }
 
-    private String[] loadWords(final DocRef docRef) {
+    private DictionaryTerms loadTerms(final DocRef docRef) {
         final Dictionary dictionary = dictionaryService.loadByUuid(docRef.getUuid());
         if (dictionary == null) {
             throw new SearchException("Dictionary \"" + docRef + "\" not found");
         }
 
-        final String words = dictionary.getData();
-        if (words != null) {
-            return words.trim().split("\n");
-        }
-
-        return null;
+        return dictionaryTermsCache.get(dictionary);
     }
 
     private Occur getOccur(final ExpressionOperator operator) {
@@ -443,14 +547,7 @@ public class SearchExpressionQueryBuilder {
         Query query = null;
 
         // Store terms for hit highlighting.
-        String highlight = value;
-        highlight = NON_WORD.matcher(highlight).replaceAll(" ");
-        highlight = highlight.trim();
-        highlight = MULTIPLE_SPACE.matcher(highlight).replaceAll(" ");
-        final String[] highlights = highlight.split(" ");
-        for (final String hl : highlights) {
-            terms.add(hl);
-        }
+        addHighlights(value, terms);
 
         // If we have omitted term frequencies and positions for this field then
         // we can't expect to do a sentence match. In this case we need to
@@ -503,6 +600,17 @@ public class SearchExpressionQueryBuilder {
         return query;
     }
 
+    private void addHighlights(final String value, final Set<String> terms) {
+        String highlight = value;
+        highlight = NON_WORD.matcher(highlight).replaceAll(" ");
+        highlight = highlight.trim();
+        highlight = MULTIPLE_SPACE.matcher(highlight).replaceAll(" ");
+        final String[] highlights = highlight.split(" ");
+        for (final String hl : highlights) {
+            terms.add(hl);
+        }
+    }
+
     private boolean hasChildren(final ExpressionOperator operator) {
         if (operator != null && operator.isEnabled() && operator.getChildren() != null
                 && operator.getChildren().size() > 0) {
@@ -561,6 +669,30 @@ public class SearchExpressionQueryBuilder {
         return numbers;
     }
 
+    private static class CompiledDictionary {
+        private final Query query;
+        private final Set<String> highlights;
+        private final List<String> otherLines;
+
+        CompiledDictionary(final Query query, final Set<String> highlights, final List<String> otherLines) {
+            this.query = query;
+            this.highlights = highlights;
+            this.otherLines = otherLines;
+        }
+
+        Query getQuery() {
+            return query;
+        }
+
+        Set<String> getHighlights() {
+            return highlights;
+        }
+
+        List<String> getOtherLines() {
+            return otherLines;
+        }
+    }
+
     public static class SearchExpressionQuery {
         private final Query query;
         private final Set<String> terms;
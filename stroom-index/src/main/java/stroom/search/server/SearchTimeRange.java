@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
+import stroom.query.shared.ExpressionItem;
+import stroom.query.shared.ExpressionOperator;
+import stroom.query.shared.ExpressionOperator.Op;
+import stroom.query.shared.ExpressionTerm;
+import stroom.util.date.DateUtil;
+
+/**
+ * The inclusive range of times that a search expression can match on a given
+ * date field. The range is found conservatively so that anything that might
+ * match falls within it, e.g. terms under a NOT are ignored and an OR covers
+ * the range of all of its children.
+ */
+public final class SearchTimeRange {
+    public static final SearchTimeRange ALL = new SearchTimeRange(Long.MIN_VALUE, Long.MAX_VALUE);
+    private static final String DELIMITER = ",";
+
+    private final long from;
+    private final long to;
+
+    private SearchTimeRange(final long from, final long to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public static SearchTimeRange create(final ExpressionItem item, final String fieldName) {
+        if (item == null || !item.isEnabled()) {
+            return ALL;
+        }
+
+        if (item instanceof ExpressionTerm) {
+            return create((ExpressionTerm) item, fieldName);
+        }
+
+        final ExpressionOperator operator = (ExpressionOperator) item;
+        if (operator.getChildren() == null || Op.NOT.equals(operator.getType())) {
+            return ALL;
+        }
+
+        SearchTimeRange range = null;
+        for (final ExpressionItem child : operator.getChildren()) {
+            if (child.isEnabled()) {
+                final SearchTimeRange childRange = create(child, fieldName);
+                if (range == null) {
+                    range = childRange;
+                } else if (Op.AND.equals(operator.getType())) {
+                    range = new SearchTimeRange(Math.max(range.from, childRange.from),
+                            Math.min(range.to, childRange.to));
+                } else {
+                    range = new SearchTimeRange(Math.min(range.from, childRange.from),
+                            Math.max(range.to, childRange.to));
+                }
+            }
+        }
+
+        if (range == null) {
+            return ALL;
+        }
+        return range;
+    }
+
+    private static SearchTimeRange create(final ExpressionTerm term, final String fieldName) {
+        if (term.getField() == null || term.getCondition() == null || term.getValue() == null
+                || !fieldName.equals(term.getField().trim())) {
+            return ALL;
+        }
+
+        try {
+            final String value = term.getValue().trim();
+            switch (term.getCondition()) {
+            case EQUALS:
+            case CONTAINS:
+                final long time = DateUtil.parseNormalDateTimeString(value);
+                return new SearchTimeRange(time, time);
+            case GREATER_THAN:
+                return new SearchTimeRange(DateUtil.parseNormalDateTimeString(value) + 1, Long.MAX_VALUE);
+            case GREATER_THAN_OR_EQUAL_TO:
+                return new SearchTimeRange(DateUtil.parseNormalDateTimeString(value), Long.MAX_VALUE);
+            case LESS_THAN:
+                return new SearchTimeRange(Long.MIN_VALUE, DateUtil.parseNormalDateTimeString(value) - 1);
+            case LESS_THAN_OR_EQUAL_TO:
+                return new SearchTimeRange(Long.MIN_VALUE, DateUtil.parseNormalDateTimeString(value));
+            case BETWEEN:
+                final String[] between = value.split(DELIMITER);
+                if (between.length == 2) {
+                    return new SearchTimeRange(DateUtil.parseNormalDateTimeString(between[0].trim()),
+                            DateUtil.parseNormalDateTimeString(between[1].trim()));
+                }
+                return ALL;
+            case IN:
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (final String in : value.split(DELIMITER)) {
+                    final long inTime = DateUtil.parseNormalDateTimeString(in.trim());
+                    min = Math.min(min, inTime);
+                    max = Math.max(max, inTime);
+                }
+                return new SearchTimeRange(min, max);
+            default:
+                return ALL;
+            }
+        } catch (final Exception e) {
+            // Leave it to the query builder to report bad dates.
+            return ALL;
+        }
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public boolean isAll() {
+        return from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the shard might contain events in this range, i.e.
+     *         unless the shard has a known event time range that doesn't
+     *         overlap this one. Open shards always might, as searches see
+     *         documents that their writer has added since it last saved the
+     *         range.
+     */
+    public boolean overlaps(final IndexShard indexShard) {
+        if (IndexShardStatus.OPEN.equals(indexShard.getStatus())) {
+            return from <= to;
+        }
+
+        final Long min = indexShard.getMinEventTime();
+        final Long max = indexShard.getMaxEventTime();
+        if (min == null || max == null) {
+            return from <= to;
+        }
+        return from <= to && min <= to && max >= from;
+    }
+
+    @Override
+    public String toString() {
+        return toString(from, Long.MIN_VALUE) + " - " + toString(to, Long.MAX_VALUE);
+    }
+
+    private static String toString(final long time, final long unbounded) {
+        if (time == unbounded) {
+            return "*";
+        }
+        return DateUtil.createNormalDateTimeString(time);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.query.shared.IndexField;
+
+/**
+ * A field index map that only gives positions to fields that are stored in the
+ * index. Coprocessors are compiled against this map so that afterwards it
+ * holds exactly the stored fields that the search needs to load.
+ */
+public class StoredFieldIndexMap extends FieldIndexMap {
+    private final Map<String, IndexField> storedFields = new HashMap<>();
+    private final List<IndexField> requiredFields = new ArrayList<>();
+
+    public StoredFieldIndexMap(final IndexField[] storedFields) {
+        for (final IndexField storedField : storedFields) {
+            this.storedFields.put(storedField.getFieldName(), storedField);
+        }
+    }
+
+    @Override
+    public int create(final String fieldName, final boolean forceCreation) {
+        int index = get(fieldName);
+        if (index == -1) {
+            final IndexField storedField = storedFields.get(fieldName);
+            if (storedField != null) {
+                index = super.create(fieldName, true);
+                requiredFields.add(storedField);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return The stored fields that have been asked for, in the order of
+     *         their positions in this map.
+     */
+    public IndexField[] getRequiredFields() {
+        return requiredFields.toArray(new IndexField[requiredFields.size()]);
+    }
+}
@@ -23,14 +23,16 @@ import stroom.query.CompiledDepths;
 import stroom.query.CompiledFields;
 import stroom.query.Item;
 import stroom.query.ItemMapper;
-import stroom.query.ItemPartitioner;
+import stroom.query.ItemReducer;
 import stroom.query.Payload;
 import stroom.query.TableCoprocessorSettings;
 import stroom.query.TablePayload;
+import stroom.query.TablePayloadCodec;
 import stroom.query.shared.Field;
 import stroom.query.shared.IndexFieldsMap;
 import stroom.query.shared.TableSettings;
-import stroom.mapreduce.BlockingPairQueue;
+import stroom.mapreduce.CombiningPairQueue;
+import stroom.mapreduce.Pair;
 import stroom.mapreduce.PairQueue;
 import stroom.mapreduce.UnsafePairQueue;
 import stroom.util.task.TaskMonitor;
@@ -41,6 +43,7 @@ public class TableCoprocessor implements Coprocessor<TableCoprocessorSettings> {
 
     private final CompiledFields compiledFields;
     private final CompiledDepths compiledDepths;
+    private final TablePayloadCodec codec;
 
     public TableCoprocessor(final IndexFieldsMap indexFieldsMap, final TableCoprocessorSettings settings,
             final FieldIndexMap fieldIndexMap, final TaskMonitor taskMonitor) {
@@ -50,7 +53,12 @@ public class TableCoprocessor implements Coprocessor<TableCoprocessorSettings> {
         compiledDepths = new CompiledDepths(fields, tableSettings.showDetail());
         compiledFields = new CompiledFields(indexFieldsMap, fields, fieldIndexMap);
 
-        queue = new BlockingPairQueue<>(taskMonitor);
+        // Combine items with the same group key as they arrive so that the
+        // queue only grows with the number of groups rather than the number
+        // of hits.
+        queue = new CombiningPairQueue<>(taskMonitor,
+                new ItemReducer(compiledDepths.getDepths(), compiledDepths.getMaxDepth()));
+        codec = new TablePayloadCodec(compiledFields);
         mapper = new ItemMapper(queue, compiledFields, compiledDepths.getMaxDepth(), compiledDepths.getMaxGroupDepth());
     }
 
@@ -63,22 +71,19 @@ public class TableCoprocessor implements Coprocessor<TableCoprocessorSettings> {
     public Payload createPayload() {
         final UnsafePairQueue<String, Item> outputQueue = new UnsafePairQueue<>();
 
-        // Create a partitioner to perform result reduction if needed.
-        final ItemPartitioner partitioner = new ItemPartitioner(compiledDepths.getDepths(),
-                compiledDepths.getMaxDepth());
-        partitioner.setOutputCollector(outputQueue);
-
-        // Partition the data prior to forwarding to the target node.
-        partitioner.read(queue);
-
-        // Perform partitioning.
-        partitioner.partition();
+        // Items have already been reduced by the queue so just copy them to
+        // the payload.
+        for (final Pair<String, Item> pair : queue) {
+            outputQueue.collect(pair.getKey(), pair.getValue());
+        }
 
         // Don't create a payload if the queue is empty.
         if (outputQueue.size() == 0) {
             return null;
         }
 
-        return new TablePayload(outputQueue);
+        // Payloads are sent to the node that started the search so encode
+        // them rather than relying on Java serialisation of the generators.
+        return new TablePayload(codec.encode(outputQueue));
     }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server.extraction;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.entity.server.event.EntityEvent;
+import stroom.entity.server.event.EntityEventBus;
+import stroom.entity.server.event.EntityEventHandler;
+import stroom.entity.shared.Clearable;
+import stroom.node.server.StroomPropertyService;
+import stroom.pipeline.shared.PipelineEntity;
+import stroom.pipeline.shared.TextConverter;
+import stroom.pipeline.shared.XSLT;
+import stroom.query.shared.IndexConstants;
+import stroom.search.server.extraction.ExtractionTask.ResultReceiver;
+import stroom.util.logging.StroomLogger;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration.Strategy;
+
+/**
+ * A node local cache of the records that an extraction pipeline produced for
+ * each event. Records are held as name/value pairs so that they can be reused
+ * by searches that want different fields. Recently used records are held in
+ * memory and the rest overflow to local disk up to a configured number of
+ * events.
+ *
+ * Entries are keyed by pipeline version, stream id and event id. As a pipeline
+ * also depends on the XSLT and text converters it uses, the whole cache is
+ * cleared whenever a pipeline, XSLT or text converter changes.
+ */
+@Component
+@EntityEventHandler(type = PipelineEntity.ENTITY_TYPE)
+public class ExtractionCache implements Clearable, InitializingBean, EntityEvent.Handler {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(ExtractionCache.class);
+
+    private static final int MAX_HEAP_ENTRIES = 10000;
+    private static final int DEFAULT_MAX_ENTRIES = 1000000;
+
+    private final CacheManager cacheManager;
+    private final EntityEventBus entityEventBus;
+    private final StroomPropertyService propertyService;
+
+    private Cache cache;
+
+    @Inject
+    public ExtractionCache(final CacheManager cacheManager, final EntityEventBus entityEventBus,
+            final StroomPropertyService propertyService) {
+        this.cacheManager = cacheManager;
+        this.entityEventBus = entityEventBus;
+        this.propertyService = propertyService;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        final int maxEntries = propertyService.getIntProperty("stroom.search.extraction.cache.maxEntries",
+                DEFAULT_MAX_ENTRIES);
+        if (maxEntries > 0) {
+            final CacheConfiguration cacheConfiguration = new CacheConfiguration("Extraction Cache",
+                    Math.min(MAX_HEAP_ENTRIES, maxEntries));
+            cacheConfiguration.setEternal(false);
+            // Forget events that nobody has searched for in a day.
+            cacheConfiguration.setTimeToIdleSeconds(86400);
+            cacheConfiguration.setMaxEntriesLocalDisk(maxEntries);
+            cacheConfiguration.persistence(new PersistenceConfiguration().strategy(Strategy.LOCALTEMPSWAP));
+
+            cache = new Cache(cacheConfiguration);
+            cacheManager.addCache(cache);
+        }
+
+        // Pipelines depend on these entities so changes to them must also
+        // clear the cache.
+        entityEventBus.addHandler(this, XSLT.ENTITY_TYPE);
+        entityEventBus.addHandler(this, TextConverter.ENTITY_TYPE);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Sends any cached records for an event to a result receiver.
+     *
+     * @return True if the records for the event were cached.
+     */
+    public boolean replay(final PipelineEntity pipelineEntity, final long streamId, final long eventId,
+            final FieldIndexMap fieldIndexes, final ResultReceiver resultReceiver) {
+        if (cache == null) {
+            return false;
+        }
+
+        final Element element = cache.get(new Key(pipelineEntity, streamId, eventId));
+        if (element == null) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        final List<String[]> records = (List<String[]>) element.getObjectValue();
+        for (final String[] pairs : records) {
+            final String[] values = new String[fieldIndexes.size()];
+            for (int i = 0; i < pairs.length; i += 2) {
+                final int fieldIndex = fieldIndexes.get(pairs[i]);
+                if (fieldIndex >= 0) {
+                    values[fieldIndex] = pairs[i + 1];
+                }
+            }
+            resultReceiver.receive(values);
+        }
+        return true;
+    }
+
+    public Recorder createRecorder(final PipelineEntity pipelineEntity, final long streamId) {
+        return new Recorder(pipelineEntity, streamId);
+    }
+
+    @Override
+    public void clear() {
+        if (cache != null) {
+            cache.removeAll();
+        }
+    }
+
+    @Override
+    public void onChange(final EntityEvent event) {
+        clear();
+    }
+
+    /**
+     * Collects the records produced by a single run of an extraction pipeline
+     * so that they can be cached against the events that produced them.
+     */
+    public class Recorder {
+        private final PipelineEntity pipelineEntity;
+        private final long streamId;
+        private final Map<Long, ArrayList<String[]>> recordsByEvent = new HashMap<>();
+        private boolean attributable = true;
+
+        Recorder(final PipelineEntity pipelineEntity, final long streamId) {
+            this.pipelineEntity = pipelineEntity;
+            this.streamId = streamId;
+        }
+
+        /**
+         * @param pairs
+         *            The alternating names and values of a record.
+         */
+        public void record(final String[] pairs) {
+            // We can only tell which event a record belongs to if the pipeline
+            // output its event id.
+            Long eventId = null;
+            for (int i = 0; i < pairs.length && eventId == null; i += 2) {
+                if (IndexConstants.EVENT_ID.equals(pairs[i])) {
+                    try {
+                        eventId = Long.valueOf(pairs[i + 1]);
+                    } catch (final NumberFormatException e) {
+                        LOGGER.debug(e.getMessage(), e);
+                    }
+                }
+            }
+
+            if (eventId == null) {
+                attributable = false;
+            } else if (attributable) {
+                ArrayList<String[]> records = recordsByEvent.get(eventId);
+                if (records == null) {
+                    records = new ArrayList<>();
+                    recordsByEvent.put(eventId, records);
+                }
+                records.add(pairs);
+            }
+        }
+
+        /**
+         * Caches the records of a successful extraction.
+         *
+         * @param eventIds
+         *            All of the events that were extracted, including those
+         *            that produced no records.
+         */
+        public void commit(final long[] eventIds) {
+            if (cache != null && attributable) {
+                for (final long eventId : eventIds) {
+                    ArrayList<String[]> records = recordsByEvent.get(eventId);
+                    if (records == null) {
+                        records = new ArrayList<>(0);
+                    }
+                    cache.put(new Element(new Key(pipelineEntity, streamId, eventId), records));
+                }
+            }
+        }
+    }
+
+    private static class Key implements Serializable {
+        private static final long serialVersionUID = 2183632961728536245L;
+
+        private final String pipelineUuid;
+        private final byte pipelineVersion;
+        private final long streamId;
+        private final long eventId;
+
+        Key(final PipelineEntity pipelineEntity, final long streamId, final long eventId) {
+            this.pipelineUuid = pipelineEntity.getUuid();
+            this.pipelineVersion = pipelineEntity.getVersion();
+            this.streamId = streamId;
+            this.eventId = eventId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return pipelineVersion == key.pipelineVersion && streamId == key.streamId && eventId == key.eventId
+                    && pipelineUuid.equals(key.pipelineUuid);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = pipelineUuid.hashCode();
+            result = 31 * result + pipelineVersion;
+            result = 31 * result + (int) (streamId ^ (streamId >>> 32));
+            result = 31 * result + (int) (eventId ^ (eventId >>> 32));
+            return result;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package stroom.search.server.extraction;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -76,8 +77,10 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
     private final PipelineDataCache pipelineDataCache;
     private final TaskMonitor taskMonitor;
     private final SecurityContext securityContext;
+    private final ExtractionCache extractionCache;
 
     private ExtractionTask task;
+    private boolean failed;
 
     @Inject
     public ExtractionTaskHandler(final StreamStore streamStore, final FeedService feedService,
@@ -85,7 +88,8 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
             final PipelineHolder pipelineHolder, final ErrorReceiverProxy errorReceiverProxy,
             final PipelineFactory pipelineFactory,
             @Named("cachedPipelineEntityService") final PipelineEntityService pipelineEntityService,
-            final PipelineDataCache pipelineDataCache, final TaskMonitor taskMonitor, final SecurityContext securityContext) {
+            final PipelineDataCache pipelineDataCache, final TaskMonitor taskMonitor, final SecurityContext securityContext,
+            final ExtractionCache extractionCache) {
         this.streamStore = streamStore;
         this.feedService = feedService;
         this.feedHolder = feedHolder;
@@ -98,6 +102,7 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
         this.pipelineDataCache = pipelineDataCache;
         this.taskMonitor = taskMonitor;
         this.securityContext = securityContext;
+        this.extractionCache = extractionCache;
     }
 
     @Override
@@ -135,6 +140,18 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
                 throw new SearchException("Unable to find result pipeline: " + pipelineRef);
             }
 
+            // Send the records of events that have been extracted before
+            // straight from the cache and only extract the rest.
+            long[] eventIds = task.getEventIds();
+            ExtractionCache.Recorder recorder = null;
+            if (extractionCache.isEnabled()) {
+                eventIds = replayCached(pipelineEntity, task);
+                if (eventIds.length == 0) {
+                    return;
+                }
+                recorder = extractionCache.createRecorder(pipelineEntity, task.getStreamId());
+            }
+
             // Create the parser.
             final PipelineData pipelineData = pipelineDataCache.get(pipelineEntity);
             final Pipeline pipeline = pipelineFactory.create(pipelineData);
@@ -149,7 +166,7 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
             // just counting events.
             final String streamId = String.valueOf(task.getStreamId());
             final IdEnrichmentFilter idEnrichmentFilter = getFilter(pipeline, IdEnrichmentFilter.class);
-            idEnrichmentFilter.setup(streamId, task.getEventIds());
+            idEnrichmentFilter.setup(streamId, eventIds);
 
             // Setup the search result output filter to expect the same order of
             // event ids and give it the result cache and stored data to write
@@ -157,10 +174,16 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
             final SearchResultOutputFilter searchResultOutputFilter = getFilter(pipeline,
                     SearchResultOutputFilter.class);
 
-            searchResultOutputFilter.setup(task.getFieldIndexes(), task.getResultReceiver());
+            searchResultOutputFilter.setup(task.getFieldIndexes(), task.getResultReceiver(), recorder);
 
             // Process the stream segments.
-            processData(task.getStreamId(), task.getEventIds(), pipelineEntity, pipeline);
+            final long count = processData(task.getStreamId(), eventIds, pipelineEntity, pipeline);
+
+            // Only cache the records if every event was extracted. Nothing is
+            // extracted if the stream could not be opened.
+            if (recorder != null && count == eventIds.length && !failed && !taskMonitor.isTerminated()) {
+                recorder.commit(eventIds);
+            }
 
         } catch (final CacheException e) {
             if (e.getCause() != null) {
@@ -173,6 +196,30 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
         }
     }
 
+    /**
+     * Sends cached records to the result receiver.
+     *
+     * @return The ids of events that are not cached.
+     */
+    private long[] replayCached(final PipelineEntity pipelineEntity, final ExtractionTask task) {
+        final long[] eventIds = task.getEventIds();
+        final long[] uncached = new long[eventIds.length];
+        int count = 0;
+        for (final long eventId : eventIds) {
+            if (!extractionCache.replay(pipelineEntity, task.getStreamId(), eventId, task.getFieldIndexes(),
+                    task.getResultReceiver())) {
+                uncached[count++] = eventId;
+            }
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Found " + (eventIds.length - count) + " of " + eventIds.length
+                    + " events in the extraction cache for stream " + task.getStreamId());
+        }
+
+        return Arrays.copyOf(uncached, count);
+    }
+
     private <T extends XMLFilter> T getFilter(final Pipeline pipeline, final Class<T> clazz) {
         final List<T> filters = pipeline.findFilters(clazz);
         if (filters == null || filters.size() != 1) {
@@ -277,6 +324,7 @@ public class ExtractionTaskHandler extends AbstractTaskHandler<ExtractionTask, V
     }
 
     private void error(final String message, final Throwable t) {
+        failed = true;
         task.getErrorReceiver().log(Severity.ERROR, null, null, message, t);
     }
 }
@@ -16,6 +16,9 @@
 
 package stroom.search.server.extraction;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import stroom.util.spring.StroomScope;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
@@ -42,7 +45,9 @@ public class SearchResultOutputFilter extends AbstractXMLFilter {
 
     private FieldIndexMap fieldIndexes;
     private ResultReceiver resultReceiver;
+    private ExtractionCache.Recorder recorder;
     private String[] values;
+    private final List<String> pairs = new ArrayList<>();
 
     @Override
     public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
@@ -59,10 +64,17 @@ public class SearchResultOutputFilter extends AbstractXMLFilter {
                     if (fieldIndex >= 0) {
                         values[fieldIndex] = value;
                     }
+
+                    // Remember every value if we are caching the record.
+                    if (recorder != null) {
+                        pairs.add(name);
+                        pairs.add(value);
+                    }
                 }
             }
         } else if (RECORD.equals(localName)) {
             values = new String[fieldIndexes.size()];
+            pairs.clear();
         }
 
         super.startElement(uri, localName, qName, atts);
@@ -72,13 +84,19 @@ public class SearchResultOutputFilter extends AbstractXMLFilter {
     public void endElement(final String uri, final String localName, final String qName) throws SAXException {
         if (RECORD.equals(localName)) {
             resultReceiver.receive(values);
+
+            if (recorder != null) {
+                recorder.record(pairs.toArray(new String[pairs.size()]));
+            }
         }
 
         super.endElement(uri, localName, qName);
     }
 
-    public void setup(final FieldIndexMap fieldIndexes, final ResultReceiver resultReceiver) {
+    public void setup(final FieldIndexMap fieldIndexes, final ResultReceiver resultReceiver,
+            final ExtractionCache.Recorder recorder) {
         this.fieldIndexes = fieldIndexes;
         this.resultReceiver = resultReceiver;
+        this.recorder = recorder;
     }
 }
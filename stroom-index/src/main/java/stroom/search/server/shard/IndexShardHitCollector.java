@@ -18,6 +18,7 @@ package stroom.search.server.shard;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import stroom.util.logging.StroomLogger;
@@ -34,16 +35,24 @@ public class IndexShardHitCollector extends Collector {
     private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
 
     private final Monitor taskMonitor;
-    private final TransferList<Integer> docIdStore;
+    private final IntTransferList docIdStore;
     private final AtomicLong hitCount;
+    private final AtomicBoolean stop;
     private int docBase;
     private Long pauseTime;
 
-    public IndexShardHitCollector(final Monitor taskMonitor, final TransferList<Integer> docIdStore,
-            final AtomicLong hitCount) {
+    /**
+     * @param stop
+     *            Shared by all of the collectors searching slices of a shard so
+     *            that they all quit as soon as one of them fails or the shard
+     *            search is abandoned.
+     */
+    public IndexShardHitCollector(final Monitor taskMonitor, final IntTransferList docIdStore,
+            final AtomicLong hitCount, final AtomicBoolean stop) {
         this.docIdStore = docIdStore;
         this.taskMonitor = taskMonitor;
         this.hitCount = hitCount;
+        this.stop = stop;
     }
 
     @Override
@@ -52,7 +61,7 @@ public class IndexShardHitCollector extends Collector {
         final int docId = docBase + doc;
 
         try {
-            while (!docIdStore.offer(docId, ONE_SECOND) && !taskMonitor.isTerminated()) {
+            while (!docIdStore.offer(docId, ONE_SECOND) && !isTerminated()) {
                 if (isProvidingInfo()) {
                     if (pauseTime == null) {
                         pauseTime = System.currentTimeMillis();
@@ -70,7 +79,7 @@ public class IndexShardHitCollector extends Collector {
         hitCount.incrementAndGet();
 
         // Quit searching if the task monitor is set to stop.
-        if (taskMonitor.isTerminated()) {
+        if (isTerminated()) {
             if (isProvidingInfo()) {
                 if (pauseTime != null) {
                     final long elapsed = System.currentTimeMillis() - pauseTime;
@@ -93,6 +102,10 @@ public class IndexShardHitCollector extends Collector {
         }
     }
 
+    private boolean isTerminated() {
+        return stop.get() || taskMonitor.isTerminated();
+    }
+
     private boolean isProvidingInfo() {
         return true;
     }
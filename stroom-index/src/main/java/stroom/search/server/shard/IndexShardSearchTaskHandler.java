@@ -20,7 +20,6 @@ import stroom.index.server.LuceneVersionUtil;
 import stroom.index.shared.IndexShard;
 import stroom.node.server.StroomPropertyService;
 import stroom.pipeline.server.errorhandler.TerminatedException;
-import stroom.search.server.IndexShardSearcher;
 import stroom.search.server.shard.IndexShardSearcherCache.IndexShardSearcherPool;
 import stroom.task.server.AbstractTaskHandler;
 import stroom.task.server.GenericServerTask;
@@ -31,24 +30,47 @@ import stroom.util.shared.Severity;
 import stroom.util.shared.VoidResult;
 import stroom.util.spring.StroomScope;
 import stroom.util.task.TaskMonitor;
-import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Version;
 import org.springframework.context.annotation.Scope;
 
 import javax.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 @TaskHandlerBean(task = IndexShardSearchTask.class)
 @Scope(StroomScope.TASK)
 public class IndexShardSearchTaskHandler extends AbstractTaskHandler<IndexShardSearchTask, VoidResult> {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(IndexShardSearchTaskHandler.class);
     private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int MIN_SLICE_SIZE = 100000;
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * A range of doc ids within a segment of a shard.
+     */
+    private static class Slice {
+        private final AtomicReaderContext leaf;
+        private final int start;
+        private final int end;
+
+        Slice(final AtomicReaderContext leaf, final int start, final int end) {
+            this.leaf = leaf;
+            this.start = start;
+            this.end = end;
+        }
+    }
 
     private final IndexShardSearcherCache indexShardSearcherCache;
     private final StroomPropertyService propertyService;
@@ -92,19 +114,19 @@ public class IndexShardSearchTaskHandler extends AbstractTaskHandler<IndexShardS
                 error(task, "Null searcher", null);
 
             } else if (!pool.hasExceptions()) {
-                // Borrow a searcher from this pool.
-                final IndexShardSearcher indexShardSearcher = pool.borrowObject();
+                // Borrow the current searcher from this pool.
+                final IndexSearcher indexSearcher = pool.borrowObject();
                 try {
                     // Exceptions might have been created when the searcher was
                     // borrowed from the pool.
                     if (!pool.hasExceptions()) {
-                        searchShard(task, indexShardSearcher);
+                        searchShard(task, pool.getIndexShard(), indexSearcher);
                     }
                 } catch (final Throwable t) {
                     error(task, t.getMessage(), t);
 
                 } finally {
-                    pool.returnObject(indexShardSearcher);
+                    pool.returnObject(indexSearcher);
                 }
             }
         } catch (final Throwable t) {
@@ -121,9 +143,8 @@ public class IndexShardSearchTaskHandler extends AbstractTaskHandler<IndexShardS
         }
     }
 
-    private void searchShard(final IndexShardSearchTask task, final IndexShardSearcher indexShardSearcher) {
-        // Get the index shard that this searcher uses.
-        final IndexShard indexShard = indexShardSearcher.getIndexShard();
+    private void searchShard(final IndexShardSearchTask task, final IndexShard indexShard,
+            final IndexSearcher searcher) {
         // Get the Lucene version being used.
         final Version luceneVersion = LuceneVersionUtil.getLuceneVersion(indexShard.getIndexVersion());
         // Get a query for this lucene version.
@@ -132,99 +153,177 @@ public class IndexShardSearchTaskHandler extends AbstractTaskHandler<IndexShardS
         // If there is an error building the query then it will be null here.
         if (query != null) {
             final int maxDocIdQueueSize = getIntProperty("stroom.search.shard.maxDocIdQueueSize", 1000);
-            final TransferList<Integer> docIdStore = new TransferList<>(maxDocIdQueueSize);
-            final AtomicBoolean completedSearch = new AtomicBoolean();
+            final IntTransferList docIdStore = new IntTransferList(maxDocIdQueueSize);
+            final AtomicBoolean stop = new AtomicBoolean();
 
-            // Create a collector.
-            final IndexShardHitCollector collector = new IndexShardHitCollector(task.getMonitor(), docIdStore,
-                    task.getHitCount());
-
-            final IndexReader reader = indexShardSearcher.getReader();
-            final IndexSearcher searcher = new IndexSearcher(reader);
+            final IndexReader reader = searcher.getIndexReader();
 
+            CountDownLatch slicesComplete = null;
             try {
-                final GenericServerTask searchingTask = new GenericServerTask(task, task.getSessionId(),
-                        task.getUserId(), "Index Searcher", "");
-                searchingTask.setRunnable(() -> {
-                    try {
-                        searcher.search(query, collector);
-                    } catch (final Throwable t) {
-                        error(task, t.getMessage(), t);
-                    } finally {
-                        completedSearch.set(true);
-                    }
-                });
-                taskManager.execAsync(searchingTask, IndexShardSearchTask.THREAD_POOL);
+                // Split the shard into slices so that the segments of large
+                // shards are searched in parallel.
+                final Weight weight = searcher.createNormalizedWeight(query);
+                final int maxThreads = getMaxSliceThreads();
+                final List<Slice> slices = createSlices(reader, maxThreads);
+                final AtomicInteger nextSlice = new AtomicInteger();
+                final int threads = Math.min(slices.size(), maxThreads);
+                slicesComplete = new CountDownLatch(threads);
 
-                // Start retrieving stored data from the shard.
-                boolean complete = false;
-                List<Integer> list = null;
-
-                while (!complete && !task.isTerminated()) {
-                    complete = completedSearch.get();
-
-                    if (complete) {
-                        // If we are finished then we don't need to wait for
-                        // items to arrive in the list.
-                        list = docIdStore.swap();
-                    } else {
-                        // Search is in progress so wait for items to arrive in
-                        // the list if necessary.
+                for (int i = 0; i < threads; i++) {
+                    final CountDownLatch latch = slicesComplete;
+                    final GenericServerTask searchingTask = new GenericServerTask(task, task.getSessionId(),
+                            task.getUserId(), "Index Searcher", "");
+                    searchingTask.setRunnable(() -> {
                         try {
-                            list = docIdStore.swap(ONE_SECOND);
-                        } catch (final InterruptedException e) {
-                            // Ignore.
-                        }
-                    }
-
-                    // Get stored data for every doc id in the list.
-                    if (list != null && list.size() > 0) {
-                        for (final Integer docId : list) {
-                            if (task.isTerminated()) {
-                                throw new TerminatedException();
+                            // Each thread takes the next slice that hasn't
+                            // been searched until there are none left.
+                            final IndexShardHitCollector collector = new IndexShardHitCollector(task.getMonitor(),
+                                    docIdStore, task.getHitCount(), stop);
+                            int sliceNo;
+                            while (!stop.get() && (sliceNo = nextSlice.getAndIncrement()) < slices.size()) {
+                                searchSlice(weight, slices.get(sliceNo), collector);
                             }
-
-                            getStoredData(task, reader, docId);
+                        } catch (final TerminatedException e) {
+                            // Ignore as another slice failed or the search
+                            // was stopped.
+                        } catch (final Throwable t) {
+                            stop.set(true);
+                            error(task, t.getMessage(), t);
+                        } finally {
+                            latch.countDown();
                         }
-                    }
+                    });
+                    taskManager.execAsync(searchingTask, IndexShardSearchTask.THREAD_POOL);
                 }
+
+                // Start retrieving stored data from the shard.
+                final StoredDataVisitor visitor = new StoredDataVisitor(task.getFieldNames());
+                drainDocIds(task, docIdStore, slicesComplete, docId -> getStoredData(task, reader, visitor, docId));
             } catch (final Throwable t) {
                 error(task, t.getMessage(), t);
+            } finally {
+                // Make sure no slices are still being searched before the
+                // searcher is returned to the pool.
+                stop.set(true);
+                awaitSlices(slicesComplete);
+            }
+        }
+    }
+
+    /**
+     * Passes doc ids to the consumer as the slices add them to the store. Once
+     * the slices are complete the store is drained until it is empty as the
+     * remaining doc ids may not fit in a single batch.
+     */
+    static void drainDocIds(final IndexShardSearchTask task, final IntTransferList docIdStore,
+            final CountDownLatch slicesComplete, final IntConsumer consumer) {
+        final int[] batch = new int[Math.min(docIdStore.getCapacity(), BATCH_SIZE)];
+        boolean drained = false;
+
+        while (!drained && !task.isTerminated()) {
+            final boolean complete = slicesComplete.getCount() == 0;
+
+            int count = 0;
+            if (complete) {
+                // If we are finished then we don't need to wait for items to
+                // arrive in the list.
+                count = docIdStore.drain(batch);
+            } else {
+                // Search is in progress so wait for items to arrive in the
+                // list if necessary.
+                try {
+                    count = docIdStore.drain(batch, ONE_SECOND);
+                } catch (final InterruptedException e) {
+                    // Ignore.
+                }
+            }
+
+            // Get stored data for every doc id in the batch.
+            for (int i = 0; i < count; i++) {
+                if (task.isTerminated()) {
+                    throw new TerminatedException();
+                }
+
+                consumer.accept(batch[i]);
             }
+
+            drained = complete && count == 0;
         }
     }
 
+    /**
+     * Splits the segments of a shard into slices of doc ids. Segments that are
+     * bigger than a fair share of the shard for each thread are split so that
+     * optimised shards with a single large segment can also be searched in
+     * parallel.
+     */
+    private List<Slice> createSlices(final IndexReader reader, final int threads) {
+        final List<AtomicReaderContext> leaves = reader.leaves();
+        final int sliceSize = Math.max(MIN_SLICE_SIZE, (reader.maxDoc() + threads - 1) / Math.max(1, threads));
+
+        final List<Slice> slices = new ArrayList<>();
+        for (final AtomicReaderContext leaf : leaves) {
+            final int maxDoc = leaf.reader().maxDoc();
+            for (int start = 0; start < maxDoc; start += sliceSize) {
+                slices.add(new Slice(leaf, start, (int) Math.min((long) start + sliceSize, maxDoc)));
+            }
+        }
+        return slices;
+    }
+
+    private void searchSlice(final Weight weight, final Slice slice, final IndexShardHitCollector collector)
+            throws IOException {
+        final AtomicReaderContext leaf = slice.leaf;
+        // Score docs in order so that we can advance to the start of the
+        // slice.
+        final Scorer scorer = weight.scorer(leaf, true, false, leaf.reader().getLiveDocs());
+        if (scorer != null) {
+            collector.setNextReader(leaf);
+            collector.setScorer(scorer);
+
+            int doc = scorer.advance(slice.start);
+            while (doc < slice.end) {
+                collector.collect(doc);
+                doc = scorer.nextDoc();
+            }
+        }
+    }
+
+    private void awaitSlices(final CountDownLatch slicesComplete) {
+        if (slicesComplete != null) {
+            try {
+                while (!slicesComplete.await(1, TimeUnit.SECONDS)) {
+                    LOGGER.debug("Waiting for index shard slices to stop");
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Slice threads are not counted by the node wide shard thread limit so
+     * searching slices in parallel is opt in.
+     */
+    private int getMaxSliceThreads() {
+        return Math.max(1, getIntProperty("stroom.search.shard.maxThreadsPerShard", 1));
+    }
+
     /**
      * This method takes a list of document id's and extracts the stored fields
      * that are required for data display. In some cases such as batch search we
      * only want to get stream and event ids, in these cases no values are
      * retrieved, only stream and event ids.
      */
-    private void getStoredData(final IndexShardSearchTask task, final IndexReader reader, final int docId) {
-        final String[] fieldNames = task.getFieldNames();
+    private void getStoredData(final IndexShardSearchTask task, final IndexReader reader,
+            final StoredDataVisitor visitor, final int docId) {
         try {
-            final Document document = reader.document(docId);
-            String[] values = null;
-
-            for (int i = 0; i < fieldNames.length; i++) {
-                final String storedField = fieldNames[i];
-                final IndexableField indexableField = document.getField(storedField);
-
-                // If the field is not in fact stored then it will be null here.
-                if (indexableField != null) {
-                    final String value = indexableField.stringValue();
-                    if (value != null) {
-                        final String trimmed = value.trim();
-                        if (trimmed.length() > 0) {
-                            if (values == null) {
-                                values = new String[fieldNames.length];
-                            }
-                            values[i] = trimmed;
-                        }
-                    }
-                }
-            }
+            // Only the requested fields are loaded. If a field is not in fact
+            // stored then its value will be null.
+            visitor.reset();
+            reader.document(docId, visitor);
 
+            final String[] values = visitor.getValues();
             if (values != null) {
                 task.getResultReceiver().receive(task.getIndexShardId(), values);
             }
@@ -19,12 +19,15 @@ package stroom.search.server.shard;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
 import stroom.util.logging.StroomLogger;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Component;
 
@@ -32,8 +35,11 @@ import stroom.index.server.IndexShardWriter;
 import stroom.index.server.IndexShardWriterCache;
 import stroom.index.shared.IndexShard;
 import stroom.index.shared.IndexShardService;
+import stroom.node.server.StroomPropertyService;
 import stroom.search.server.IndexShardSearcher;
 import stroom.search.server.IndexShardSearcherImpl;
+import stroom.util.shared.ModelStringUtil;
+import stroom.util.spring.StroomFrequencySchedule;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheException;
 import net.sf.ehcache.CacheManager;
@@ -53,29 +59,74 @@ public class IndexShardSearcherCache implements InitializingBean {
         void returnObject(T object);
     }
 
-    public class IndexShardSearcherPool implements Pool<IndexShardSearcher> {
+    /**
+     * Holds the searcher for a shard while it is cached. The searcher is
+     * refreshed in the background so searches never wait for a reader to
+     * open once the searcher is open.
+     */
+    public class IndexShardSearcherPool implements Pool<IndexSearcher> {
         private final IndexShard indexShard;
         private volatile IndexShardSearcher indexShardSearcher;
         private final AtomicInteger openCount = new AtomicInteger();
         private volatile ConcurrentLinkedQueue<Throwable> exceptions;
         private volatile boolean cached;
         private volatile boolean open;
+        private volatile long lastRefreshMs;
+        private volatile Long lastCommitMs;
 
         public IndexShardSearcherPool(final IndexShard indexShard) {
             this.indexShard = indexShard;
         }
 
+        public IndexShard getIndexShard() {
+            return indexShard;
+        }
+
+        /**
+         * @return The current searcher or null if the shard couldn't be
+         *         opened. The searcher must be returned even if it is null.
+         */
         @Override
-        public IndexShardSearcher borrowObject() {
+        public IndexSearcher borrowObject() {
             openCount.incrementAndGet();
             open();
-            return indexShardSearcher;
+            if (hasExceptions()) {
+                return null;
+            }
+
+            try {
+                return acquire();
+            } catch (final Throwable t) {
+                addException(t);
+                return null;
+            }
+        }
+
+        private IndexSearcher acquire() {
+            while (true) {
+                final IndexShardSearcher indexShardSearcher = this.indexShardSearcher;
+                try {
+                    return indexShardSearcher.acquire();
+                } catch (final AlreadyClosedException e) {
+                    // Try again if the searcher was replaced by a refresh
+                    // after we got it.
+                    if (indexShardSearcher == this.indexShardSearcher) {
+                        throw e;
+                    }
+                }
+            }
         }
 
         @Override
-        public void returnObject(final IndexShardSearcher object) {
-            openCount.decrementAndGet();
-            tryClose();
+        public void returnObject(final IndexSearcher object) {
+            try {
+                if (object != null) {
+                    indexShardSearcher.release(object);
+                }
+            } finally {
+                openCount.decrementAndGet();
+                tryClose();
+            }
         }
 
         private void addException(final Throwable e) {
@@ -109,6 +160,7 @@ public class IndexShardSearcherCache implements InitializingBean {
                         final IndexShardWriter indexShardWriter = indexShardWriterPool.getWriter(indexShard);
                         if (indexShardWriter != null) {
                             indexWriter = indexShardWriter.getWriter();
+                            lastCommitMs = indexShardWriter.getIndexShard().getCommitMs();
                         }
                     } catch (final Exception e) {
                         writerException = e;
@@ -122,6 +174,7 @@ public class IndexShardSearcherCache implements InitializingBean {
 
                     // Open the index.
                     indexShardSearcher.open();
+                    lastRefreshMs = System.currentTimeMillis();
 
                 } catch (final Throwable t) {
                     addException(t);
@@ -131,6 +184,66 @@ public class IndexShardSearcherCache implements InitializingBean {
             }
         }
 
+        /**
+         * Refreshes the searcher if the refresh interval has passed or the
+         * shard has been committed since the last refresh. If the shard has
+         * been opened or closed for writing since the searcher was opened then
+         * the searcher is replaced with one that reads from the current writer
+         * or the index directory.
+         */
+        private synchronized void refresh(final long refreshIntervalMs) {
+            if (open && !hasExceptions()) {
+                IndexWriter indexWriter = null;
+                Long commitMs = null;
+                final IndexShardWriter indexShardWriter = indexShardWriterPool.getWriter(indexShard);
+                if (indexShardWriter != null) {
+                    indexWriter = indexShardWriter.getWriter();
+                    commitMs = indexShardWriter.getIndexShard().getCommitMs();
+                }
+
+                // Only record the time of refreshes that happen so that
+                // refresh intervals longer than the schedule still elapse.
+                final long now = System.currentTimeMillis();
+                if (indexWriter != indexShardSearcher.getWriter()) {
+                    reopen(indexWriter);
+                    lastRefreshMs = now;
+                } else if (now - lastRefreshMs >= refreshIntervalMs
+                        || (commitMs != null && !commitMs.equals(lastCommitMs))) {
+                    try {
+                        indexShardSearcher.refresh();
+                    } catch (final Throwable t) {
+                        LOGGER.debug(t.getMessage(), t);
+                        reopen(indexWriter);
+                    }
+                    lastRefreshMs = now;
+                }
+
+                lastCommitMs = commitMs;
+            }
+        }
+
+        private void reopen(final IndexWriter indexWriter) {
+            final IndexShardSearcher previous = indexShardSearcher;
+            final IndexShardSearcher replacement = new IndexShardSearcherImpl(indexShard, indexWriter);
+            try {
+                replacement.open();
+            } catch (final Throwable t) {
+                // Keep searching with the previous searcher.
+                LOGGER.error(t.getMessage(), t);
+                return;
+            }
+
+            indexShardSearcher = replacement;
+
+            // Searches that are still using the previous searcher keep its
+            // reader open until they return it.
+            try {
+                previous.close();
+            } catch (final Throwable t) {
+                LOGGER.error(t.getMessage(), t);
+            }
+        }
+
         private synchronized void close() {
             if (open) {
                 try {
@@ -151,27 +264,31 @@ public class IndexShardSearcherCache implements InitializingBean {
     }
 
     public static final int MAX_OPEN_SHARDS = 2;
+    private static final String REFRESH_INTERVAL_PROPERTY = "stroom.search.shard.refreshInterval";
+    private static final long DEFAULT_REFRESH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
 
     private final IndexShardWriterCache indexShardWriterPool;
     private final CacheManager cacheManager;
+    private final StroomPropertyService stroomPropertyService;
 
     private final Cache cache;
     private final SelfPopulatingCache selfPopulatingCache;
 
     @Inject
     public IndexShardSearcherCache(final IndexShardWriterCache indexShardWriterPool,
-            final IndexShardService indexShardService, final CacheManager cacheManager) {
+            final IndexShardService indexShardService, final CacheManager cacheManager,
+            final StroomPropertyService stroomPropertyService) {
         this.indexShardWriterPool = indexShardWriterPool;
         this.cacheManager = cacheManager;
+        this.stroomPropertyService = stroomPropertyService;
 
         final CacheConfiguration cacheConfiguration = new CacheConfiguration("Index Shard Searcher Cache",
                 MAX_OPEN_SHARDS);
         cacheConfiguration.setEternal(false);
         cacheConfiguration.setOverflowToOffHeap(false);
-        // Allow readers to idle for 1 minute.
+        // Allow readers to idle for 1 minute. Readers are refreshed while they
+        // are cached so they don't need a time to live.
         cacheConfiguration.setTimeToIdleSeconds(60);
-        // Allow readers to live for 2 minutes.
-        cacheConfiguration.setTimeToLiveSeconds(120);
         cache = new Cache(cacheConfiguration) {
             @Override
             public void removeAll() throws IllegalStateException, CacheException {
@@ -236,6 +353,39 @@ public class IndexShardSearcherCache implements InitializingBean {
         cache.getCacheConfiguration().setMaxEntriesLocalHeap(maxOpenShards);
     }
 
+    /**
+     * Refreshes the searchers of cached shards so that searches see new
+     * documents within the refresh interval.
+     */
+    @StroomFrequencySchedule("10s")
+    public void refresh() {
+        final long refreshIntervalMs = getRefreshInterval();
+        for (final Object key : cache.getKeys()) {
+            final IndexShardSearcherPool pool = getPool(cache.getQuiet(key));
+            if (pool != null) {
+                try {
+                    pool.refresh(refreshIntervalMs);
+                } catch (final Throwable t) {
+                    LOGGER.error(t.getMessage(), t);
+                }
+            }
+        }
+    }
+
+    private long getRefreshInterval() {
+        if (stroomPropertyService != null) {
+            final String refreshInterval = stroomPropertyService.getProperty(REFRESH_INTERVAL_PROPERTY);
+            if (refreshInterval != null && refreshInterval.length() > 0) {
+                try {
+                    return ModelStringUtil.parseDurationString(refreshInterval);
+                } catch (final Exception e) {
+                    LOGGER.error("getRefreshInterval() - Unable to parse %s", REFRESH_INTERVAL_PROPERTY, e);
+                }
+            }
+        }
+        return DEFAULT_REFRESH_INTERVAL_MS;
+    }
+
     private IndexShardSearcherPool createPool(final IndexShard indexShard) {
         return new IndexShardSearcherPool(indexShard);
     }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server.shard;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded buffer of primitive ints that a consumer drains in batches. This
+ * is used to pass doc ids from the threads searching an index shard to the
+ * thread retrieving stored data without boxing every id. The buffer starts
+ * small and grows up to its capacity as needed.
+ */
+public class IntTransferList {
+    private static final int INITIAL_SIZE = 1024;
+
+    private final int capacity;
+    private int[] values;
+    private int head;
+    private int size;
+
+    // Main lock guarding all access
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Condition for waiting takes
+    private final Condition notEmpty = lock.newCondition();
+
+    // Condition for waiting puts
+    private final Condition notFull = lock.newCondition();
+
+    public IntTransferList(final int capacity) {
+        this.capacity = capacity;
+        this.values = new int[Math.min(capacity, INITIAL_SIZE)];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean offer(final int value, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long nanos = unit.toNanos(timeout);
+        return offer(value, nanos);
+    }
+
+    public boolean offer(final int value, final long nanos) throws InterruptedException {
+        long n = nanos;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                if (n <= 0) {
+                    return false;
+                }
+                n = notFull.awaitNanos(n);
+            }
+            if (size == values.length) {
+                grow();
+            }
+            values[(head + size) % values.length] = value;
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves as many values as will fit into the supplied batch without
+     * waiting.
+     *
+     * @return The number of values that were moved.
+     */
+    public int drain(final int[] batch) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doDrain(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves as many values as will fit into the supplied batch waiting up to
+     * the specified time for some to arrive.
+     *
+     * @return The number of values that were moved.
+     */
+    public int drain(final int[] batch, final long nanos) throws InterruptedException {
+        long n = nanos;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (n <= 0) {
+                    return 0;
+                }
+                n = notEmpty.awaitNanos(n);
+            }
+            return doDrain(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int doDrain(final int[] batch) {
+        final int count = Math.min(size, batch.length);
+        if (count > 0) {
+            // Copy values from the head up to the end of the array and then
+            // from the start of the array if they wrap around.
+            final int first = Math.min(count, values.length - head);
+            System.arraycopy(values, head, batch, 0, first);
+            System.arraycopy(values, 0, batch, first, count - first);
+            head = (head + count) % values.length;
+            size -= count;
+            notFull.signalAll();
+        }
+        return count;
+    }
+
+    private void grow() {
+        final int[] newValues = new int[(int) Math.min(capacity, values.length * 2L)];
+        final int first = Math.min(size, values.length - head);
+        System.arraycopy(values, head, newValues, 0, first);
+        System.arraycopy(values, 0, newValues, first, size - first);
+        values = newValues;
+        head = 0;
+    }
+}
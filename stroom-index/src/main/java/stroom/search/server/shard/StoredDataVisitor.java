@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server.shard;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+
+/**
+ * Loads the values of a fixed set of stored fields from a document. Fields that
+ * are not needed are skipped without being decoded and loading stops as soon as
+ * every requested field has been seen.
+ */
+public class StoredDataVisitor extends StoredFieldVisitor {
+    private final Map<String, Integer> fieldIndexes;
+    private final boolean[] seen;
+    private String[] values;
+    private int remaining;
+
+    public StoredDataVisitor(final String[] fieldNames) {
+        fieldIndexes = new HashMap<>();
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldIndexes.put(fieldNames[i], i);
+        }
+        seen = new boolean[fieldNames.length];
+        reset();
+    }
+
+    /**
+     * Prepares the visitor to load another document.
+     */
+    public void reset() {
+        for (int i = 0; i < seen.length; i++) {
+            seen[i] = false;
+        }
+        values = null;
+        remaining = fieldIndexes.size();
+    }
+
+    /**
+     * @return The trimmed values of the requested fields in the order they
+     *         were requested or null if none of the fields had a value.
+     */
+    public String[] getValues() {
+        return values;
+    }
+
+    @Override
+    public Status needsField(final FieldInfo fieldInfo) {
+        if (remaining == 0) {
+            return Status.STOP;
+        }
+
+        // Only use the first value of each field.
+        final Integer index = fieldIndexes.get(fieldInfo.name);
+        if (index == null || seen[index]) {
+            return Status.NO;
+        }
+        return Status.YES;
+    }
+
+    @Override
+    public void stringField(final FieldInfo fieldInfo, final String value) {
+        set(fieldInfo, value);
+    }
+
+    @Override
+    public void intField(final FieldInfo fieldInfo, final int value) {
+        set(fieldInfo, String.valueOf(value));
+    }
+
+    @Override
+    public void longField(final FieldInfo fieldInfo, final long value) {
+        set(fieldInfo, String.valueOf(value));
+    }
+
+    @Override
+    public void floatField(final FieldInfo fieldInfo, final float value) {
+        set(fieldInfo, String.valueOf(value));
+    }
+
+    @Override
+    public void doubleField(final FieldInfo fieldInfo, final double value) {
+        set(fieldInfo, String.valueOf(value));
+    }
+
+    private void set(final FieldInfo fieldInfo, final String value) {
+        final int index = fieldIndexes.get(fieldInfo.name);
+        seen[index] = true;
+        remaining--;
+
+        if (value != null) {
+            final String trimmed = value.trim();
+            if (trimmed.length() > 0) {
+                if (values == null) {
+                    values = new String[seen.length];
+                }
+                values[index] = trimmed;
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import stroom.entity.server.MockEntityService;
 import stroom.entity.shared.BaseResultList;
 import stroom.index.shared.FindIndexShardCriteria;
 import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
 import stroom.index.shared.IndexShardKey;
 import stroom.index.shared.IndexShardService;
 import stroom.node.server.NodeCache;
@@ -34,6 +35,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.File;
+import java.util.List;
 
 @Profile(StroomSpringProfiles.TEST)
 @Component("indexShardService")
@@ -44,6 +46,12 @@ public class MockIndexShardService extends MockEntityService<IndexShard, FindInd
 
     @Override
     public IndexShard createIndexShard(final IndexShardKey indexShardKey, final Node ownerNode) {
+        return createIndexShard(indexShardKey, ownerNode, IndexShardStatus.CLOSED);
+    }
+
+    @Override
+    public IndexShard createIndexShard(final IndexShardKey indexShardKey, final Node ownerNode,
+            final IndexShardStatus status) {
         final IndexShard indexShard = new IndexShard();
         indexShard.setVolume(
                 Volume.create(nodeCache.getDefaultNode(), FileUtil.getTempDir().getAbsolutePath(), VolumeType.PUBLIC));
@@ -51,6 +59,7 @@ public class MockIndexShardService extends MockEntityService<IndexShard, FindInd
         indexShard.setPartition(indexShardKey.getPartition());
         indexShard.setPartitionFromTime(indexShardKey.getPartitionFromTime());
         indexShard.setPartitionToTime(indexShardKey.getPartitionToTime());
+        indexShard.setStatus(status);
         final IndexShard il = save(indexShard);
         final File indexDir = IndexShardUtil.getIndexDir(indexShard);
         if (indexDir.isDirectory()) {
@@ -59,6 +68,25 @@ public class MockIndexShardService extends MockEntityService<IndexShard, FindInd
         return il;
     }
 
+    @Override
+    public IndexShard swapIndexShards(final IndexShard target, final List<IndexShard> sources) {
+        // Check every source before changing anything as the real service
+        // rolls back the whole swap.
+        for (final IndexShard source : sources) {
+            final IndexShard indexShard = load(source);
+            if (indexShard == null || !IndexShardStatus.CLOSED.equals(indexShard.getStatus())) {
+                throw new IndexException("Unable to replace index shard " + source.getId()
+                        + " as it is no longer closed");
+            }
+        }
+        for (final IndexShard source : sources) {
+            final IndexShard indexShard = load(source);
+            indexShard.setStatus(IndexShardStatus.DELETED);
+            save(indexShard);
+        }
+        return save(target);
+    }
+
     @Override
     public BaseResultList<IndexShard> find(final FindIndexShardCriteria criteria) throws RuntimeException {
         final BaseResultList<IndexShard> results = new BaseResultList<IndexShard>();
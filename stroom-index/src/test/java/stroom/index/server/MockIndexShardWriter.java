@@ -136,4 +136,28 @@ public class MockIndexShardWriter implements IndexShardWriter {
     public IndexWriter getWriter() {
         return null;
     }
+
+    @Override
+    public long getRamBytesUsed() {
+        return 0;
+    }
+
+    @Override
+    public long getLastUsedMs() {
+        return 0;
+    }
+
+    @Override
+    public boolean hasUncommittedDocuments() {
+        return false;
+    }
+
+    @Override
+    public boolean startCompaction() {
+        return false;
+    }
+
+    @Override
+    public void endCompaction() {
+    }
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.index.shared.Index;
+import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
+import stroom.index.shared.IndexShardKey;
+import stroom.node.shared.Node;
+import stroom.node.shared.Volume;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexFields;
+import stroom.search.server.IndexShardSearcher;
+import stroom.search.server.IndexShardSearcherImpl;
+import stroom.streamstore.server.fs.FileSystemUtil;
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestIndexShardCompactor extends StroomUnitTest {
+    private static final long COLD_AGE_MS = 60000;
+    private static final long NOW = 1000000;
+
+    private static class CompactableWriter extends MockIndexShardWriter {
+        private final IndexShard indexShard;
+        private final boolean closed;
+        private final long lastUsedMs;
+
+        CompactableWriter(final IndexShard indexShard, final boolean closed, final long lastUsedMs) {
+            this.indexShard = indexShard;
+            this.closed = closed;
+            this.lastUsedMs = lastUsedMs;
+        }
+
+        @Override
+        public IndexShard getIndexShard() {
+            return indexShard;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public long getLastUsedMs() {
+            return lastUsedMs;
+        }
+    }
+
+    /**
+     * Creates merged shards on the same volume as the shards they are made
+     * from.
+     */
+    private class CompactorIndexShardService extends MockIndexShardService {
+        private final List<IndexShard> created = new ArrayList<>();
+
+        @Override
+        public IndexShard createIndexShard(final IndexShardKey indexShardKey, final Node ownerNode,
+                final IndexShardStatus status) {
+            IndexShard indexShard = new IndexShard();
+            indexShard.setVolume(volume);
+            indexShard.setIndex(indexShardKey.getIndex());
+            indexShard.setPartition(indexShardKey.getPartition());
+            indexShard.setIndexVersion(LuceneVersionUtil.getCurrentVersion());
+            indexShard.setStatus(status);
+            indexShard = save(indexShard);
+            created.add(indexShard);
+            return indexShard;
+        }
+    }
+
+    private final List<IndexShardWriter> writers = new ArrayList<>();
+    private long shardId;
+
+    private final CompactorIndexShardService indexShardService = new CompactorIndexShardService();
+    private final IndexFields indexFields = IndexFields.createStreamIndexFields();
+    private Volume volume;
+
+    @Test
+    public void testGroupsByPartition() {
+        final Index index = createIndex(1, 100);
+        final IndexShardWriter a1 = add(index, "2016-01", 10, true, 0);
+        final IndexShardWriter a2 = add(index, "2016-01", 20, true, 0);
+        final IndexShardWriter b1 = add(index, "2016-02", 10, true, 0);
+        final IndexShardWriter b2 = add(index, "2016-02", 10, true, 0);
+        // The only shard in its partition.
+        add(index, "2016-03", 10, true, 0);
+        // The same partition in another index.
+        add(createIndex(2, 100), "2016-01", 10, true, 0);
+
+        final List<List<IndexShardWriter>> groups = plan();
+
+        Assert.assertEquals(2, groups.size());
+        assertGroup(groups.get(0), a1, a2);
+        assertGroup(groups.get(1), b1, b2);
+    }
+
+    @Test
+    public void testSkipsShardsInUse() {
+        final Index index = createIndex(1, 100);
+        final IndexShardWriter cold1 = add(index, "2016-01", 10, true, 0);
+        final IndexShardWriter cold2 = add(index, "2016-01", 10, true, NOW - COLD_AGE_MS);
+        // Open.
+        add(index, "2016-01", 10, false, 0);
+        // Written to recently.
+        add(index, "2016-01", 10, true, NOW - COLD_AGE_MS + 1);
+        // Full.
+        add(index, "2016-01", 100, true, 0);
+
+        final List<List<IndexShardWriter>> groups = plan();
+
+        Assert.assertEquals(1, groups.size());
+        assertGroup(groups.get(0), cold1, cold2);
+    }
+
+    @Test
+    public void testPacksSmallestFirst() {
+        final Index index = createIndex(1, 100);
+        final IndexShardWriter s45 = add(index, "2016-01", 45, true, 0);
+        final IndexShardWriter s10 = add(index, "2016-01", 10, true, 0);
+        final IndexShardWriter s50 = add(index, "2016-01", 50, true, 0);
+        final IndexShardWriter s30 = add(index, "2016-01", 30, true, 0);
+        final IndexShardWriter s40 = add(index, "2016-01", 40, true, 0);
+        // Too big to be merged with anything else.
+        add(index, "2016-01", 90, true, 0);
+
+        final List<List<IndexShardWriter>> groups = plan();
+
+        Assert.assertEquals(2, groups.size());
+        assertGroup(groups.get(0), s10, s30, s40);
+        assertGroup(groups.get(1), s45, s50);
+    }
+
+    @Test
+    public void testCompact() {
+        final Index index = createShardIndex();
+        final IndexShardWriter writer1 = createShard(index, 0, 10, 1000L, 2000L);
+        final IndexShardWriter writer2 = createShard(index, 10, 20, 500L, 1500L);
+
+        final IndexShard merged = new IndexShardCompactor(indexShardService).compact(Arrays.asList(writer1, writer2),
+                null, 0);
+
+        Assert.assertNotNull(merged);
+        Assert.assertEquals(IndexShardStatus.CLOSED, merged.getStatus());
+        Assert.assertEquals(30, merged.getDocumentCount());
+        Assert.assertEquals(500L, merged.getMinEventTime().longValue());
+        Assert.assertEquals(2000L, merged.getMaxEventTime().longValue());
+
+        // The merged shard replaces the shards it was made from.
+        Assert.assertTrue(writer1.isDeleted());
+        Assert.assertTrue(writer2.isDeleted());
+        Assert.assertEquals(IndexShardStatus.DELETED, getStatus(writer1));
+        Assert.assertEquals(IndexShardStatus.DELETED, getStatus(writer2));
+
+        // Every document is in a single segment.
+        final IndexShardSearcher searcher = new IndexShardSearcherImpl(merged);
+        searcher.open();
+        try {
+            Assert.assertEquals(30, searcher.getReader().maxDoc());
+            Assert.assertEquals(1, searcher.getReader().leaves().size());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testCompactWithoutEventTimes() {
+        final Index index = createShardIndex();
+        final IndexShardWriter writer1 = createShard(index, 0, 10, 1000L, 2000L);
+        final IndexShardWriter writer2 = createShard(index, 10, 10, null, null);
+
+        final IndexShard merged = new IndexShardCompactor(indexShardService).compact(Arrays.asList(writer1, writer2),
+                null, 0);
+
+        // The time range is unknown if any shard didn't have one.
+        Assert.assertEquals(20, merged.getDocumentCount());
+        Assert.assertNull(merged.getMinEventTime());
+        Assert.assertNull(merged.getMaxEventTime());
+    }
+
+    @Test
+    public void testSourceReopenedDuringCompaction() {
+        final Index index = createShardIndex();
+        final IndexShardWriter writer1 = createShard(index, 0, 10, null, null);
+        final IndexShardWriter writer2 = createShard(index, 10, 10, null, null);
+
+        // Another node opens one of the shards for writing while it is being
+        // merged.
+        final IndexShard reopened = new IndexShard();
+        reopened.setId(writer1.getIndexShard().getId());
+        reopened.setStatus(IndexShardStatus.OPEN);
+        indexShardService.save(reopened);
+
+        try {
+            new IndexShardCompactor(indexShardService).compact(Arrays.asList(writer1, writer2), null, 0);
+            Assert.fail("Expected the swap to fail");
+        } catch (final IndexException e) {
+            // Expected.
+        }
+
+        // The swap is rolled back so the shards are left as they were.
+        Assert.assertFalse(writer1.isDeleted());
+        Assert.assertFalse(writer2.isDeleted());
+        Assert.assertEquals(IndexShardStatus.OPEN, getStatus(writer1));
+        Assert.assertEquals(IndexShardStatus.CLOSED, getStatus(writer2));
+        Assert.assertTrue(IndexShardUtil.getIndexDir(writer2.getIndexShard()).isDirectory());
+
+        // The hidden shard and its directory are removed.
+        Assert.assertEquals(1, indexShardService.created.size());
+        final IndexShard hidden = indexShardService.created.get(0);
+        Assert.assertNull(indexShardService.loadById(hidden.getId()));
+        Assert.assertFalse(IndexShardUtil.getIndexDir(hidden).exists());
+    }
+
+    private List<List<IndexShardWriter>> plan() {
+        return IndexShardCompactor.plan(writers, COLD_AGE_MS, NOW);
+    }
+
+    private void assertGroup(final List<IndexShardWriter> actual, final IndexShardWriter... expected) {
+        Assert.assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertSame(expected[i], actual.get(i));
+        }
+    }
+
+    private Index createIndex(final long id, final int maxDocsPerShard) {
+        final Index index = new Index();
+        index.setId(id);
+        index.setMaxDocsPerShard(maxDocsPerShard);
+        return index;
+    }
+
+    private Index createShardIndex() {
+        volume = new Volume();
+        volume.setPath(getCurrentTestDir().getAbsolutePath());
+
+        // Clean up from previous tests.
+        FileSystemUtil.deleteDirectory(new File(getCurrentTestDir(), "index"));
+
+        indexFields.add(IndexField.createIdField("Id"));
+
+        final Index index = new Index();
+        index.setId(1);
+        index.setName("Test");
+        return index;
+    }
+
+    private IndexShardWriter createShard(final Index index, final int firstId, final int documentCount,
+            final Long minEventTime, final Long maxEventTime) {
+        IndexShard indexShard = new IndexShard();
+        indexShard.setIndex(index);
+        indexShard.setPartition("all");
+        indexShard.setVolume(volume);
+        indexShard.setIndexVersion(LuceneVersionUtil.getCurrentVersion());
+        indexShard = indexShardService.save(indexShard);
+
+        final IndexShardWriter writer = new IndexShardWriterImpl(indexShardService, indexFields, index, indexShard);
+        writer.open(true);
+        for (int i = firstId; i < firstId + documentCount; i++) {
+            final Document document = new Document();
+            document.add(FieldFactory.create(IndexField.createIdField("Id"), i));
+            writer.addDocument(document);
+        }
+        writer.close();
+
+        writer.getIndexShard().setMinEventTime(minEventTime);
+        writer.getIndexShard().setMaxEventTime(maxEventTime);
+        return writer;
+    }
+
+    private IndexShardStatus getStatus(final IndexShardWriter writer) {
+        return indexShardService.loadById(writer.getIndexShard().getId()).getStatus();
+    }
+
+    private IndexShardWriter add(final Index index, final String partition, final int documentCount,
+            final boolean closed, final long lastUsedMs) {
+        final IndexShard indexShard = new IndexShard();
+        indexShard.setId(shardId++);
+        indexShard.setIndex(index);
+        indexShard.setPartition(partition);
+        indexShard.setDocumentCount(documentCount);
+        final IndexShardWriter writer = new CompactableWriter(indexShard, closed, lastUsedMs);
+        writers.add(writer);
+        return writer;
+    }
+}
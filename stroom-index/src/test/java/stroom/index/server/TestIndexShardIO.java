@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.HashSet;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.IndexSearcher;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -122,6 +123,53 @@ public class TestIndexShardIO extends StroomUnitTest {
         }
     }
 
+    @Test
+    public void testNearRealTimeRefresh() throws IOException {
+        final Index index = new Index();
+        index.setName("Test");
+
+        final Volume volume = new Volume();
+        volume.setPath(getCurrentTestDir().getAbsolutePath());
+        final IndexShard idx1 = new IndexShard();
+        idx1.setIndex(index);
+        idx1.setPartition("all");
+        idx1.setId(1L);
+        idx1.setVolume(volume);
+        idx1.setIndexVersion(LuceneVersionUtil.getCurrentVersion());
+
+        // Clean up from previous tests.
+        final File dir = IndexShardUtil.getIndexDir(idx1);
+        FileSystemUtil.deleteDirectory(dir);
+
+        final IndexShardWriter writer = new IndexShardWriterImpl(service, indexFields, index, idx1);
+        writer.open(true);
+        writer.addDocument(buildDocument(1));
+
+        final IndexShardSearcher searcher = new IndexShardSearcherImpl(idx1, writer.getWriter());
+        searcher.open();
+
+        // Documents that haven't been committed can be searched.
+        final IndexSearcher first = searcher.acquire();
+        Assert.assertEquals(1, first.getIndexReader().maxDoc());
+
+        writer.addDocument(buildDocument(2));
+        IndexSearcher current = searcher.acquire();
+        Assert.assertEquals(1, current.getIndexReader().maxDoc());
+        searcher.release(current);
+
+        // New documents are seen after a refresh without affecting searchers
+        // that are still in use.
+        searcher.refresh();
+        current = searcher.acquire();
+        Assert.assertEquals(2, current.getIndexReader().maxDoc());
+        Assert.assertEquals(1, first.getIndexReader().maxDoc());
+        searcher.release(current);
+        searcher.release(first);
+
+        searcher.close();
+        writer.close();
+    }
+
     @Test
     public void testFailToCloseAndReopen() throws IOException {
         final Index index = new Index();
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.index.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.util.test.StroomUnitTest;
+
+public class TestIndexShardWriterRamBudget extends StroomUnitTest {
+    private static final long MB = 1024 * 1024;
+
+    private static class BudgetedWriter extends MockIndexShardWriter {
+        private boolean open = true;
+        private long ramBytesUsed;
+        private final long lastUsedMs;
+        private int flushCount;
+
+        BudgetedWriter(final long ramMB, final long idleMs) {
+            this.ramBytesUsed = ramMB * MB;
+            this.lastUsedMs = System.currentTimeMillis() - idleMs;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public boolean close() {
+            open = false;
+            ramBytesUsed = 0;
+            return true;
+        }
+
+        @Override
+        public boolean flush() {
+            flushCount++;
+            ramBytesUsed = 0;
+            return true;
+        }
+
+        @Override
+        public long getRamBytesUsed() {
+            return ramBytesUsed;
+        }
+
+        @Override
+        public long getLastUsedMs() {
+            return lastUsedMs;
+        }
+
+        @Override
+        public boolean hasUncommittedDocuments() {
+            return open && ramBytesUsed > 0;
+        }
+    }
+
+    private final List<IndexShardWriter> writers = new ArrayList<>();
+
+    @Test
+    public void testUnderBudget() {
+        final BudgetedWriter writer = add(50, 0);
+
+        new IndexShardWriterRamBudget(writers, 100).check();
+
+        Assert.assertTrue(writer.isOpen());
+        Assert.assertEquals(0, writer.flushCount);
+    }
+
+    @Test
+    public void testCommitsIdleWritersUnderBudget() {
+        final BudgetedWriter hot = add(10, 0);
+        final BudgetedWriter idle = add(10, IndexShardWriterRamBudget.COLD_MS * 2);
+        final BudgetedWriter committed = add(0, IndexShardWriterRamBudget.COLD_MS * 2);
+
+        new IndexShardWriterRamBudget(writers, 100).check();
+
+        // Idle writers commit their documents but stay open.
+        Assert.assertTrue(idle.isOpen());
+        Assert.assertEquals(1, idle.flushCount);
+        Assert.assertEquals(0, hot.flushCount);
+        Assert.assertEquals(0, committed.flushCount);
+    }
+
+    @Test
+    public void testClosesColdWritersFirst() {
+        final BudgetedWriter hot = add(40, 0);
+        final BudgetedWriter cold = add(30, IndexShardWriterRamBudget.COLD_MS * 2);
+        final BudgetedWriter coldest = add(30, IndexShardWriterRamBudget.COLD_MS * 3);
+
+        // 100MB of buffers plus the open overhead is over a 100MB budget and
+        // closing the coldest writer brings it under the low water mark.
+        new IndexShardWriterRamBudget(writers, 100).check();
+
+        Assert.assertFalse(coldest.isOpen());
+        Assert.assertTrue(cold.isOpen());
+        Assert.assertTrue(hot.isOpen());
+        Assert.assertEquals(0, hot.flushCount);
+    }
+
+    @Test
+    public void testFlushesBiggestHotWriters() {
+        final BudgetedWriter small = add(10, 0);
+        final BudgetedWriter big = add(60, 0);
+        final BudgetedWriter medium = add(40, 0);
+
+        new IndexShardWriterRamBudget(writers, 100).check();
+
+        // Hot writers stay open and the biggest is flushed first.
+        Assert.assertTrue(small.isOpen() && big.isOpen() && medium.isOpen());
+        Assert.assertEquals(1, big.flushCount);
+        Assert.assertEquals(0, medium.flushCount);
+        Assert.assertEquals(0, small.flushCount);
+    }
+
+    @Test
+    public void testOpenWritersCountTowardsBudget() {
+        // Lots of idle writers with nothing buffered still use the budget.
+        for (int i = 0; i < 20; i++) {
+            add(0, IndexShardWriterRamBudget.COLD_MS * 2);
+        }
+
+        new IndexShardWriterRamBudget(writers, 10).check();
+
+        int open = 0;
+        for (final IndexShardWriter writer : writers) {
+            if (writer.isOpen()) {
+                open++;
+            }
+        }
+        Assert.assertTrue(open * IndexShardWriterRamBudget.OPEN_WRITER_OVERHEAD_BYTES <= 8 * MB);
+    }
+
+    @Test
+    public void testNoBudget() {
+        final BudgetedWriter writer = add(500, IndexShardWriterRamBudget.COLD_MS * 2);
+
+        new IndexShardWriterRamBudget(writers, 0).check();
+
+        // Without a budget idle writers are still committed.
+        Assert.assertTrue(writer.isOpen());
+        Assert.assertEquals(1, writer.flushCount);
+    }
+
+    private BudgetedWriter add(final long ramMB, final long idleMs) {
+        final BudgetedWriter writer = new BudgetedWriter(ramMB, idleMs);
+        writers.add(writer);
+        return writer;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.search.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.index.shared.IndexShard;
+import stroom.index.shared.IndexShard.IndexShardStatus;
+import stroom.query.shared.Condition;
+import stroom.query.shared.ExpressionOperator;
+import stroom.query.shared.ExpressionOperator.Op;
+import stroom.query.shared.ExpressionTerm;
+import stroom.util.date.DateUtil;
+import stroom.util.test.StroomUnitTest;
+
+public class TestSearchTimeRange extends StroomUnitTest {
+    private static final String FIELD = "EventTime";
+    private static final String FROM = "2016-01-01T10:00:00.000Z";
+    private static final String TO = "2016-01-01T11:00:00.000Z";
+
+    @Test
+    public void testBetween() {
+        final ExpressionOperator and = new ExpressionOperator(Op.AND);
+        and.addChild(new ExpressionTerm("UserId", Condition.EQUALS, "user1"));
+        and.addChild(new ExpressionTerm(FIELD, Condition.BETWEEN, FROM + "," + TO));
+
+        final SearchTimeRange range = SearchTimeRange.create(and, FIELD);
+        Assert.assertEquals(DateUtil.parseNormalDateTimeString(FROM), range.getFrom());
+        Assert.assertEquals(DateUtil.parseNormalDateTimeString(TO), range.getTo());
+
+        Assert.assertTrue(range.overlaps(shard("2016-01-01T00:00:00.000Z", "2016-01-01T10:00:00.000Z")));
+        Assert.assertTrue(range.overlaps(shard("2016-01-01T10:30:00.000Z", "2016-01-01T10:31:00.000Z")));
+        Assert.assertFalse(range.overlaps(shard("2015-01-01T00:00:00.000Z", "2015-12-31T00:00:00.000Z")));
+        Assert.assertFalse(range.overlaps(shard("2016-01-01T11:00:00.001Z", "2016-02-01T00:00:00.000Z")));
+        // Shards without a known range must always be searched.
+        Assert.assertTrue(range.overlaps(new IndexShard()));
+        // Open shards may have searchable documents outside their saved range.
+        final IndexShard open = shard("2015-01-01T00:00:00.000Z", "2015-12-31T00:00:00.000Z");
+        open.setStatus(IndexShardStatus.OPEN);
+        Assert.assertTrue(range.overlaps(open));
+    }
+
+    @Test
+    public void testNestedOperators() {
+        final ExpressionOperator or = new ExpressionOperator(Op.OR);
+        or.addChild(new ExpressionTerm(FIELD, Condition.EQUALS, FROM));
+        or.addChild(new ExpressionTerm(FIELD, Condition.EQUALS, TO));
+
+        final ExpressionOperator and = new ExpressionOperator(Op.AND);
+        and.addChild(or);
+        and.addChild(new ExpressionTerm(FIELD, Condition.LESS_THAN, TO));
+
+        final SearchTimeRange range = SearchTimeRange.create(and, FIELD);
+        Assert.assertEquals(DateUtil.parseNormalDateTimeString(FROM), range.getFrom());
+        Assert.assertEquals(DateUtil.parseNormalDateTimeString(TO) - 1, range.getTo());
+    }
+
+    @Test
+    public void testUnbounded() {
+        // An OR with a term on another field could match any time.
+        final ExpressionOperator or = new ExpressionOperator(Op.OR);
+        or.addChild(new ExpressionTerm("UserId", Condition.EQUALS, "user1"));
+        or.addChild(new ExpressionTerm(FIELD, Condition.GREATER_THAN_OR_EQUAL_TO, FROM));
+        Assert.assertTrue(SearchTimeRange.create(or, FIELD).isAll());
+
+        // Negated terms don't restrict the range.
+        final ExpressionOperator not = new ExpressionOperator(Op.NOT);
+        not.addChild(new ExpressionTerm(FIELD, Condition.GREATER_THAN_OR_EQUAL_TO, FROM));
+        Assert.assertTrue(SearchTimeRange.create(not, FIELD).isAll());
+
+        // Disabled terms are ignored.
+        final ExpressionTerm disabled = new ExpressionTerm(FIELD, Condition.EQUALS, FROM);
+        disabled.setEnabled(false);
+        final ExpressionOperator and = new ExpressionOperator(Op.AND);
+        and.addChild(disabled);
+        Assert.assertTrue(SearchTimeRange.create(and, FIELD).isAll());
+
+        // Bad dates are left for the query builder to report.
+        Assert.assertTrue(SearchTimeRange.create(new ExpressionTerm(FIELD, Condition.EQUALS, "bad"), FIELD).isAll());
+    }
+
+    private IndexShard shard(final String min, final String max) {
+        final IndexShard indexShard = new IndexShard();
+        indexShard.setMinEventTime(DateUtil.parseNormalDateTimeString(min));
+        indexShard.setMaxEventTime(DateUtil.parseNormalDateTimeString(max));
+        return indexShard;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.query.shared.IndexConstants;
+import stroom.query.shared.IndexField;
+import stroom.util.test.StroomUnitTest;
+
+public class TestStoredFieldIndexMap extends StroomUnitTest {
+    @Test
+    public void testOnlyStoredFieldsRequired() {
+        final IndexField streamId = IndexField.createIdField(IndexConstants.STREAM_ID);
+        final IndexField eventId = IndexField.createIdField(IndexConstants.EVENT_ID);
+        final IndexField userId = IndexField.createField("UserId");
+        final IndexField feed = IndexField.createField("Feed");
+
+        final StoredFieldIndexMap map = new StoredFieldIndexMap(
+                new IndexField[] { streamId, eventId, userId, feed });
+        Assert.assertEquals(0, map.create(IndexConstants.STREAM_ID));
+        Assert.assertEquals(1, map.create(IndexConstants.EVENT_ID));
+
+        // Fields that are not stored never get a position.
+        Assert.assertEquals(-1, map.create("NotStored"));
+        Assert.assertEquals(-1, map.create("NotStored", true));
+
+        Assert.assertEquals(2, map.create("UserId"));
+        Assert.assertEquals(2, map.create("UserId"));
+        Assert.assertEquals(2, map.get("UserId"));
+        Assert.assertEquals(-1, map.get("Feed"));
+
+        Assert.assertArrayEquals(new IndexField[] { streamId, eventId, userId }, map.getRequiredFields());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server.extraction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.entity.server.event.EntityEvent;
+import stroom.entity.server.event.EntityEventBus;
+import stroom.entity.shared.EntityAction;
+import stroom.node.server.MockStroomPropertyService;
+import stroom.pipeline.shared.PipelineEntity;
+import stroom.query.shared.IndexConstants;
+import stroom.search.server.extraction.ExtractionTask.ResultReceiver;
+import stroom.util.test.StroomUnitTest;
+import net.sf.ehcache.CacheManager;
+
+public class TestExtractionCache extends StroomUnitTest {
+    private static final long STREAM_ID = 10;
+
+    private static class CollectingReceiver implements ResultReceiver {
+        private final List<String[]> values = new ArrayList<>();
+
+        @Override
+        public void receive(final String[] values) {
+            this.values.add(values);
+        }
+
+        @Override
+        public void complete() {
+        }
+    }
+
+    private CacheManager cacheManager;
+    private ExtractionCache extractionCache;
+    private PipelineEntity pipelineEntity;
+    private FieldIndexMap fieldIndexes;
+
+    @Before
+    public void setup() throws Exception {
+        cacheManager = new CacheManager();
+        final EntityEventBus entityEventBus = new EntityEventBus() {
+            @Override
+            public void addHandler(final EntityEvent.Handler handler, final String type,
+                    final EntityAction... action) {
+            }
+
+            @Override
+            public void fire(final EntityEvent event) {
+            }
+        };
+        final MockStroomPropertyService propertyService = new MockStroomPropertyService();
+        propertyService.setProperty("stroom.search.extraction.cache.maxEntries", "100");
+        extractionCache = new ExtractionCache(cacheManager, entityEventBus, propertyService);
+        extractionCache.afterPropertiesSet();
+
+        pipelineEntity = new PipelineEntity();
+        pipelineEntity.setUuid("test-pipeline");
+
+        fieldIndexes = new FieldIndexMap(true);
+        fieldIndexes.create(IndexConstants.EVENT_ID);
+        fieldIndexes.create("Name");
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testCommitAndReplay() {
+        final ExtractionCache.Recorder recorder = extractionCache.createRecorder(pipelineEntity, STREAM_ID);
+        recorder.record(record(1, "a"));
+        recorder.record(record(1, "b"));
+        recorder.record(record(3, "c"));
+        recorder.commit(new long[] { 1, 2, 3 });
+
+        final CollectingReceiver receiver = new CollectingReceiver();
+        Assert.assertTrue(replay(1, receiver));
+        Assert.assertEquals(2, receiver.values.size());
+        Assert.assertEquals("1", receiver.values.get(0)[fieldIndexes.get(IndexConstants.EVENT_ID)]);
+        Assert.assertEquals("a", receiver.values.get(0)[fieldIndexes.get("Name")]);
+        Assert.assertEquals("b", receiver.values.get(1)[fieldIndexes.get("Name")]);
+
+        // Events that produced no records are cached as having none.
+        receiver.values.clear();
+        Assert.assertTrue(replay(2, receiver));
+        Assert.assertEquals(0, receiver.values.size());
+
+        Assert.assertTrue(replay(3, receiver));
+        Assert.assertEquals(1, receiver.values.size());
+        Assert.assertEquals("c", receiver.values.get(0)[fieldIndexes.get("Name")]);
+
+        // Events that weren't extracted are not cached.
+        Assert.assertFalse(replay(4, receiver));
+    }
+
+    @Test
+    public void testReplayOnlyRequestedFields() {
+        final ExtractionCache.Recorder recorder = extractionCache.createRecorder(pipelineEntity, STREAM_ID);
+        recorder.record(record(1, "a"));
+        recorder.commit(new long[] { 1 });
+
+        final FieldIndexMap nameOnly = new FieldIndexMap(true);
+        nameOnly.create("Name");
+        final CollectingReceiver receiver = new CollectingReceiver();
+        Assert.assertTrue(extractionCache.replay(pipelineEntity, STREAM_ID, 1, nameOnly, receiver));
+        Assert.assertEquals(1, receiver.values.get(0).length);
+        Assert.assertEquals("a", receiver.values.get(0)[0]);
+    }
+
+    @Test
+    public void testNoCommit() {
+        // Records from an extraction that failed or was terminated are never
+        // committed so nothing is cached.
+        final ExtractionCache.Recorder recorder = extractionCache.createRecorder(pipelineEntity, STREAM_ID);
+        recorder.record(record(1, "a"));
+
+        Assert.assertFalse(replay(1, new CollectingReceiver()));
+    }
+
+    @Test
+    public void testUnattributableRecordsNotCached() {
+        final ExtractionCache.Recorder recorder = extractionCache.createRecorder(pipelineEntity, STREAM_ID);
+        recorder.record(record(1, "a"));
+        recorder.record(new String[] { "Name", "b" });
+        recorder.commit(new long[] { 1 });
+
+        Assert.assertFalse(replay(1, new CollectingReceiver()));
+    }
+
+    @Test
+    public void testNewPipelineVersionNotReplayed() {
+        final ExtractionCache.Recorder recorder = extractionCache.createRecorder(pipelineEntity, STREAM_ID);
+        recorder.record(record(1, "a"));
+        recorder.commit(new long[] { 1 });
+
+        pipelineEntity.setVersion((byte) (pipelineEntity.getVersion() + 1));
+        Assert.assertFalse(replay(1, new CollectingReceiver()));
+    }
+
+    @Test
+    public void testClearOnChange() {
+        final ExtractionCache.Recorder recorder = extractionCache.createRecorder(pipelineEntity, STREAM_ID);
+        recorder.record(record(1, "a"));
+        recorder.commit(new long[] { 1 });
+
+        extractionCache.onChange(new EntityEvent());
+        Assert.assertFalse(replay(1, new CollectingReceiver()));
+    }
+
+    private boolean replay(final long eventId, final ResultReceiver receiver) {
+        return extractionCache.replay(pipelineEntity, STREAM_ID, eventId, fieldIndexes, receiver);
+    }
+
+    private String[] record(final long eventId, final String name) {
+        return new String[] { IndexConstants.EVENT_ID, String.valueOf(eventId), "Name", name };
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.search.server.ClusterSearchTask;
+import stroom.util.test.StroomUnitTest;
+
+public class TestIndexShardSearchTaskHandler extends StroomUnitTest {
+    private static final int HITS = 2500;
+
+    private IndexShardSearchTask createTask() {
+        final ClusterSearchTask clusterSearchTask = new ClusterSearchTask(null, null, "Test", null, null, null, null,
+                0, null);
+        return new IndexShardSearchTask(clusterSearchTask, null, 1L, null, null, null, null);
+    }
+
+    @Test
+    public void testDrainMoreThanBatchAfterComplete() throws Exception {
+        // All of the hits for the shard are queued before the doc ids are
+        // retrieved.
+        final IntTransferList docIdStore = new IntTransferList(HITS);
+        for (int i = 0; i < HITS; i++) {
+            Assert.assertTrue(docIdStore.offer(i, 0, TimeUnit.NANOSECONDS));
+        }
+
+        final List<Integer> docIds = new ArrayList<>();
+        IndexShardSearchTaskHandler.drainDocIds(createTask(), docIdStore, new CountDownLatch(0), docIds::add);
+
+        Assert.assertEquals(HITS, docIds.size());
+        for (int i = 0; i < HITS; i++) {
+            Assert.assertEquals(i, docIds.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testDrainMoreThanBatchWhileSearching() throws Exception {
+        final IntTransferList docIdStore = new IntTransferList(HITS);
+        final CountDownLatch slicesComplete = new CountDownLatch(1);
+
+        // Complete the search with more hits queued than fit in one batch.
+        final Thread slice = new Thread(() -> {
+            try {
+                for (int i = 0; i < HITS; i++) {
+                    docIdStore.offer(i, 1, TimeUnit.SECONDS);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                slicesComplete.countDown();
+            }
+        });
+        slice.start();
+
+        final List<Integer> docIds = new ArrayList<>();
+        IndexShardSearchTaskHandler.drainDocIds(createTask(), docIdStore, slicesComplete, docIds::add);
+        slice.join();
+
+        Assert.assertEquals(HITS, docIds.size());
+        for (int i = 0; i < HITS; i++) {
+            Assert.assertEquals(i, docIds.get(i).intValue());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server.shard;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.IndexSearcher;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.index.server.FieldFactory;
+import stroom.index.server.IndexShardUtil;
+import stroom.index.server.IndexShardWriter;
+import stroom.index.server.IndexShardWriterImpl;
+import stroom.index.server.LuceneVersionUtil;
+import stroom.index.server.MockIndexShardService;
+import stroom.index.server.MockIndexShardWriterCache;
+import stroom.index.shared.Index;
+import stroom.index.shared.IndexShard;
+import stroom.node.server.MockStroomPropertyService;
+import stroom.node.shared.Volume;
+import stroom.query.shared.IndexField;
+import stroom.query.shared.IndexFields;
+import stroom.search.server.shard.IndexShardSearcherCache.IndexShardSearcherPool;
+import stroom.streamstore.server.fs.FileSystemUtil;
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+import net.sf.ehcache.CacheManager;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestIndexShardSearcherCache extends StroomUnitTest {
+    private static final long TICK_MS = 200;
+
+    private final MockIndexShardService service = new MockIndexShardService();
+    private final IndexFields indexFields = IndexFields.createStreamIndexFields();
+
+    private CacheManager cacheManager;
+    private Index index;
+    private IndexShard indexShard;
+
+    @Before
+    public void setup() {
+        indexFields.add(IndexField.createIdField("Id"));
+        cacheManager = new CacheManager();
+
+        final Volume volume = new Volume();
+        volume.setPath(getCurrentTestDir().getAbsolutePath());
+        index = new Index();
+        index.setName("Test");
+
+        indexShard = new IndexShard();
+        indexShard.setIndex(index);
+        indexShard.setPartition("all");
+        indexShard.setVolume(volume);
+        indexShard.setIndexVersion(LuceneVersionUtil.getCurrentVersion());
+        indexShard = service.save(indexShard);
+
+        // Clean up from previous tests.
+        FileSystemUtil.deleteDirectory(IndexShardUtil.getIndexDir(indexShard));
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testRefreshIntervalLongerThanSchedule() throws Exception {
+        addDocument(1, true);
+
+        final MockStroomPropertyService propertyService = new MockStroomPropertyService();
+        propertyService.setProperty("stroom.search.shard.refreshInterval", "2s");
+        final IndexShardSearcherCache indexShardSearcherCache = new IndexShardSearcherCache(
+                new MockIndexShardWriterCache(), service, cacheManager, propertyService);
+        indexShardSearcherCache.afterPropertiesSet();
+
+        final IndexShardSearcherPool pool = indexShardSearcherCache.getOrCreate(indexShard.getId());
+        Assert.assertEquals(1, getMaxDoc(pool));
+
+        // Add a document that can only be seen once the searcher is refreshed.
+        addDocument(2, false);
+        indexShardSearcherCache.refresh();
+        Assert.assertEquals(1, getMaxDoc(pool));
+
+        // Run scheduled refreshes that are more frequent than the refresh
+        // interval until the interval has passed.
+        for (int i = 0; i < 12; i++) {
+            Thread.sleep(TICK_MS);
+            indexShardSearcherCache.refresh();
+        }
+        Assert.assertEquals(2, getMaxDoc(pool));
+    }
+
+    private void addDocument(final int id, final boolean create) {
+        final IndexShardWriter writer = new IndexShardWriterImpl(service, indexFields, index, indexShard);
+        writer.open(create);
+        final Document document = new Document();
+        document.add(FieldFactory.create(IndexField.createIdField("Id"), id));
+        writer.addDocument(document);
+        writer.close();
+    }
+
+    private int getMaxDoc(final IndexShardSearcherPool pool) {
+        final IndexSearcher searcher = pool.borrowObject();
+        try {
+            Assert.assertNotNull(searcher);
+            return searcher.getIndexReader().maxDoc();
+        } finally {
+            pool.returnObject(searcher);
+        }
+    }
+}
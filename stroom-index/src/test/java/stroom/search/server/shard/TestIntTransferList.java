@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search.server.shard;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.util.test.StroomUnitTest;
+
+public class TestIntTransferList extends StroomUnitTest {
+    @Test
+    public void testDrainInOrderAcrossWrap() throws Exception {
+        final IntTransferList list = new IntTransferList(4000);
+        final int[] batch = new int[300];
+
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 20; round++) {
+            // Keep the buffer partly full so that values wrap around and the
+            // buffer has to grow.
+            for (int i = 0; i < 250 * (round % 5 + 1); i++) {
+                Assert.assertTrue(list.offer(next++, 0, TimeUnit.NANOSECONDS));
+            }
+
+            for (int i = 0; i < 3; i++) {
+                final int count = list.drain(batch);
+                for (int j = 0; j < count; j++) {
+                    Assert.assertEquals(expected++, batch[j]);
+                }
+            }
+        }
+
+        int count;
+        while ((count = list.drain(batch)) > 0) {
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(expected++, batch[i]);
+            }
+        }
+        Assert.assertEquals(next, expected);
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        final IntTransferList list = new IntTransferList(2);
+        Assert.assertTrue(list.offer(1, 0, TimeUnit.NANOSECONDS));
+        Assert.assertTrue(list.offer(2, 0, TimeUnit.NANOSECONDS));
+        Assert.assertFalse(list.offer(3, 0, TimeUnit.NANOSECONDS));
+        Assert.assertEquals(2, list.drain(new int[2], 0));
+        Assert.assertEquals(0, list.drain(new int[2], 0));
+    }
+}
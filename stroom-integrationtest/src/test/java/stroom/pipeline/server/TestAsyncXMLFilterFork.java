@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server;
+
+import stroom.AbstractProcessIntegrationTest;
+import stroom.feed.shared.Feed;
+import stroom.pipeline.server.errorhandler.ErrorReceiverProxy;
+import stroom.pipeline.server.errorhandler.LoggingErrorReceiver;
+import stroom.pipeline.server.factory.Pipeline;
+import stroom.pipeline.server.factory.PipelineDataCache;
+import stroom.pipeline.server.factory.PipelineFactory;
+import stroom.pipeline.shared.PipelineEntity;
+import stroom.pipeline.shared.PipelineEntityService;
+import stroom.pipeline.shared.XSLT;
+import stroom.pipeline.shared.XSLTService;
+import stroom.pipeline.shared.data.PipelineData;
+import stroom.pipeline.shared.data.PipelineDataUtil;
+import stroom.pipeline.state.FeedHolder;
+import stroom.test.PipelineTestUtil;
+import stroom.test.StroomProcessTestFileUtil;
+import stroom.util.config.StroomProperties;
+import stroom.util.io.FileUtil;
+import stroom.util.io.StreamUtil;
+import stroom.util.shared.Severity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+/**
+ * Runs an XSLT that uses task scoped state on each branch of an asynchronous
+ * fork.
+ */
+public class TestAsyncXMLFilterFork extends AbstractProcessIntegrationTest {
+    private static final String DIR = "TestAsyncXMLFilterFork/";
+    private static final String FEED_NAME = "TEST_ASYNC_FORK_FEED";
+    private static final int RECORDS = 100;
+
+    @Resource
+    private PipelineFactory pipelineFactory;
+    @Resource
+    private ErrorReceiverProxy errorReceiver;
+    @Resource
+    private FeedHolder feedHolder;
+    @Resource
+    private XSLTService xsltService;
+    @Resource
+    private PipelineEntityService pipelineEntityService;
+    @Resource
+    private PipelineMarshaller pipelineMarshaller;
+    @Resource
+    private PipelineDataCache pipelineDataCache;
+
+    @Test
+    public void testFeedNameOnEachBranch() throws Exception {
+        final File tempDir = getCurrentTestDir();
+        System.setProperty("stroom.temp", tempDir.getCanonicalPath());
+
+        final File outputFile1 = new File(tempDir, "TestAsyncXMLFilterFork1.xml");
+        final File outputFile2 = new File(tempDir, "TestAsyncXMLFilterFork2.xml");
+        FileUtil.deleteFile(outputFile1);
+        FileUtil.deleteFile(outputFile2);
+
+        XSLT xslt = xsltService.create(null, "TestAsyncXMLFilterFork");
+        xslt.setData(StroomProcessTestFileUtil.getString(DIR + "TestAsyncXMLFilterFork.xsl"));
+        xslt = xsltService.save(xslt);
+
+        PipelineEntity pipelineEntity = PipelineTestUtil.createTestPipeline(pipelineEntityService, pipelineMarshaller,
+                StroomProcessTestFileUtil.getString(DIR + "TestAsyncXMLFilterFork Pipeline.xml"));
+        pipelineEntity.getPipelineData().addProperty(PipelineDataUtil.createProperty("xsltFilter1", "xslt", xslt));
+        pipelineEntity.getPipelineData().addProperty(PipelineDataUtil.createProperty("xsltFilter2", "xslt", xslt));
+        pipelineEntity = pipelineEntityService.save(pipelineEntity);
+
+        final LoggingErrorReceiver loggingErrorReceiver = new LoggingErrorReceiver();
+        errorReceiver.setErrorReceiver(loggingErrorReceiver);
+
+        final Feed feed = new Feed();
+        feed.setName(FEED_NAME);
+        feedHolder.setFeed(feed);
+
+        final StringBuilder input = new StringBuilder("<Events>");
+        for (int i = 0; i < RECORDS; i++) {
+            input.append("<Event>").append(i).append("</Event>");
+        }
+        input.append("</Events>");
+
+        StroomProperties.setOverrideProperty(PipelineFactory.ASYNC_FORK_QUEUE_SIZE_PROPERTY, "2",
+                StroomProperties.Source.TEST);
+        try {
+            final PipelineData pipelineData = pipelineDataCache.get(pipelineEntity);
+            final Pipeline pipeline = pipelineFactory.create(pipelineData);
+            pipeline.process(new ByteArrayInputStream(input.toString().getBytes(StreamUtil.DEFAULT_CHARSET)));
+        } finally {
+            StroomProperties.setOverrideProperty(PipelineFactory.ASYNC_FORK_QUEUE_SIZE_PROPERTY, "0",
+                    StroomProperties.Source.TEST);
+        }
+
+        Assert.assertEquals(loggingErrorReceiver.toString(), 0, loggingErrorReceiver.getRecords(Severity.ERROR));
+        Assert.assertEquals(loggingErrorReceiver.toString(), 0,
+                loggingErrorReceiver.getRecords(Severity.FATAL_ERROR));
+
+        // Both branches must see the feed of the task that runs the pipeline.
+        for (final File outputFile : new File[] { outputFile1, outputFile2 }) {
+            final String output = StreamUtil.fileToString(outputFile);
+            for (int i = 0; i < RECORDS; i++) {
+                Assert.assertTrue(output, output.contains("<Feed id=\"" + i + "\">" + FEED_NAME + "</Feed>"));
+            }
+        }
+    }
+}
@@ -17,9 +17,11 @@
 package stroom.pipeline.server.factory;
 
 import stroom.AbstractProcessIntegrationTest;
+import stroom.entity.shared.DocRef;
 import stroom.pipeline.server.PipelineMarshaller;
 import stroom.pipeline.shared.PipelineDataMerger;
 import stroom.pipeline.shared.PipelineEntity;
+import stroom.pipeline.shared.XSLT;
 import stroom.pipeline.shared.data.PipelineData;
 import stroom.pipeline.shared.data.PipelineDataUtil;
 import stroom.pipeline.shared.data.PipelineElementType;
@@ -29,6 +31,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import javax.annotation.Resource;
+import java.util.List;
 import java.util.Map;
 
 public class TestPipelineFactory extends AbstractProcessIntegrationTest {
@@ -56,6 +59,43 @@ public class TestPipelineFactory extends AbstractProcessIntegrationTest {
         System.out.println(pipeline);
     }
 
+    @Test
+    public void testTemplate() throws Exception {
+        final PipelineEntity pipelineEntity = PipelineTestUtil.createBasicPipeline(pipelineMarshaller,
+                StroomProcessTestFileUtil.getString("TestPipelineFactory/EventDataPipeline.Pipeline.data.xml"));
+
+        final PipelineDataMerger pipelineDataMerger = new PipelineDataMerger();
+        pipelineDataMerger.merge(pipelineEntity.getPipelineData());
+        final PipelineData mergedPipelineData = pipelineDataMerger.createMergedData();
+
+        final PipelineTemplate template = PipelineTemplate.create(elementRegistryFactory.get(), mergedPipelineData);
+
+        // Every element should be in the template and be linked from the
+        // root or another element.
+        Assert.assertEquals(mergedPipelineData.getElements().getAdd().size(), template.getElements().size());
+        Assert.assertFalse(template.getLinkSets().get(null).isEmpty());
+        for (final PipelineTemplate.ElementTemplate element : template.getElements()) {
+            Assert.assertNotNull(element.getElementClass());
+            Assert.assertTrue(template.getLinkSets().containsKey(element.getId()));
+        }
+    }
+
+    @Test
+    public void testTemplateDoesNotHoldEntities() throws Exception {
+        final DocRef xsltRef = new DocRef(XSLT.ENTITY_TYPE, "template-xslt");
+        final PipelineData pipelineData = new PipelineData();
+        pipelineData.addElement(PipelineDataUtil.createElement("xsltFilter", "XSLTFilter"));
+        pipelineData.addProperty(PipelineDataUtil.createProperty("xsltFilter", "xslt", xsltRef));
+
+        // Templates are shared between users so entities must be left for
+        // the factory to load with the current user's permissions.
+        final PipelineTemplate template = PipelineTemplate.create(elementRegistryFactory.get(), pipelineData);
+        final List<PipelineTemplate.Setter> setters = template.getElements().get(0).getSetters();
+        Assert.assertEquals(1, setters.size());
+        Assert.assertEquals(xsltRef, setters.get(0).getDocRef());
+        Assert.assertNull(setters.get(0).getValue());
+    }
+
     @Test
     public void testOverride() throws Exception {
         final PipelineFactory pipelineFactory = new PipelineFactory(elementRegistryFactory, elementRegistryFactory,
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.dashboard.expression.FieldIndexMap;
+import stroom.dashboard.expression.Generator;
+import stroom.mapreduce.Pair;
+import stroom.mapreduce.UnsafePairQueue;
+import stroom.query.CompiledDepths;
+import stroom.query.CompiledFields;
+import stroom.query.Item;
+import stroom.query.ItemMapper;
+import stroom.query.TablePayloadCodec;
+import stroom.query.shared.Field;
+import stroom.query.shared.TableSettings;
+import stroom.util.test.StroomUnitTest;
+
+public class TestTablePayloadCodec extends StroomUnitTest {
+    @Test
+    public void testRoundTrip() throws IOException {
+        final TableSettings tableSettings = new TableSettings();
+        tableSettings.addField(createField("Text", "${Text}", 0));
+        tableSettings.addField(createField("Count", "count()", null));
+        tableSettings.addField(createField("Average", "average(${Number})", null));
+        tableSettings.addField(createField("Max", "max(${Number})+1", null));
+        tableSettings.addField(createField("Groups", "countGroups()", null));
+        tableSettings.addField(createField("Number", "${Number}", null));
+
+        final CompiledDepths compiledDepths = new CompiledDepths(tableSettings.getFields(), true);
+        final CompiledFields compiledFields = new CompiledFields(null, tableSettings.getFields(),
+                new FieldIndexMap(true));
+
+        final UnsafePairQueue<String, Item> queue = new UnsafePairQueue<>();
+        final ItemMapper itemMapper = new ItemMapper(queue, compiledFields, compiledDepths.getMaxDepth(),
+                compiledDepths.getMaxGroupDepth());
+        for (int i = 0; i < 2000; i++) {
+            itemMapper.collect(null, new String[] { "Text " + (i % 20), String.valueOf(i) });
+        }
+
+        final TablePayloadCodec codec = new TablePayloadCodec(compiledFields);
+        final byte[] data = codec.encode(queue);
+
+        // Decode with fields compiled separately as the receiving node would.
+        final UnsafePairQueue<String, Item> decoded = new TablePayloadCodec(
+                new CompiledFields(null, tableSettings.getFields(), new FieldIndexMap(true))).decode(data);
+
+        Assert.assertEquals(queue.size(), decoded.size());
+        final Iterator<Pair<String, Item>> iterator = decoded.iterator();
+        for (final Pair<String, Item> expected : queue) {
+            final Pair<String, Item> actual = iterator.next();
+            Assert.assertEquals(expected.getKey(), actual.getKey());
+            Assert.assertEquals(expected.getValue().getGroupKey(), actual.getValue().getGroupKey());
+            Assert.assertEquals(expected.getValue().getDepth(), actual.getValue().getDepth());
+
+            final Object[] expectedValues = expected.getValue().getValues();
+            final Object[] actualValues = actual.getValue().getValues();
+            for (int i = 0; i < expectedValues.length; i++) {
+                if (expectedValues[i] == null) {
+                    Assert.assertNull(actualValues[i]);
+                } else {
+                    Assert.assertEquals(((Generator) expectedValues[i]).eval(), ((Generator) actualValues[i]).eval());
+                }
+            }
+        }
+
+        Assert.assertTrue(data.length < javaSerialisedSize(queue) / 4);
+    }
+
+    @Test
+    public void testEmpty() {
+        final TableSettings tableSettings = new TableSettings();
+        tableSettings.addField(createField("Text", "${Text}", null));
+        final CompiledFields compiledFields = new CompiledFields(null, tableSettings.getFields(),
+                new FieldIndexMap(true));
+
+        final TablePayloadCodec codec = new TablePayloadCodec(compiledFields);
+        Assert.assertEquals(0, codec.decode(codec.encode(new UnsafePairQueue<String, Item>())).size());
+    }
+
+    private Field createField(final String name, final String expression, final Integer group) {
+        final Field field = new Field(name);
+        field.setExpression(expression);
+        field.setGroup(group);
+        return field;
+    }
+
+    private int javaSerialisedSize(final Object object) throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeObject(object);
+        }
+        return byteArrayOutputStream.size();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.headless;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import stroom.util.shared.Location;
+import stroom.util.shared.Severity;
+import stroom.util.zip.HeaderMap;
+import stroom.xml.event.BaseEvent;
+import stroom.xml.event.Event;
+import stroom.xml.event.simple.Characters;
+import stroom.xml.event.simple.EndDocument;
+import stroom.xml.event.simple.EndElement;
+import stroom.xml.event.simple.EndPrefixMapping;
+import stroom.xml.event.simple.IgnorableWhitespace;
+import stroom.xml.event.simple.ProcessingInstruction;
+import stroom.xml.event.simple.SkippedEntity;
+import stroom.xml.event.simple.StartDocument;
+import stroom.xml.event.simple.StartElement;
+import stroom.xml.event.simple.StartPrefixMapping;
+
+/**
+ * Records everything a translation sends to its headless filter so that
+ * entries can be translated concurrently and then replayed into the shared
+ * {@link HeadlessFilter} in input order. Meta data changes and errors are
+ * recorded in line with the SAX events so that the replayed output is exactly
+ * what a serial translation would have produced.
+ */
+public class BufferedHeadlessFilter extends HeadlessFilter {
+    private static class ChangeMetaData extends BaseEvent {
+        private final HeaderMap metaData;
+
+        public ChangeMetaData(final HeaderMap metaData) {
+            this.metaData = metaData;
+        }
+
+        @Override
+        public void fire(final ContentHandler handler) throws SAXException {
+            ((HeadlessFilter) handler).changeMetaData(metaData);
+        }
+    }
+
+    private static class LogError extends BaseEvent {
+        private final Severity severity;
+        private final Location location;
+        private final String elementId;
+        private final String message;
+
+        public LogError(final Severity severity, final Location location, final String elementId,
+                final String message) {
+            this.severity = severity;
+            this.location = location;
+            this.elementId = elementId;
+            this.message = message;
+        }
+
+        @Override
+        public void fire(final ContentHandler handler) throws SAXException {
+            ((HeadlessFilter) handler).log(severity, location, elementId, message);
+        }
+    }
+
+    private final List<Event> events = new ArrayList<>();
+
+    /**
+     * Fires all recorded events at the supplied filter in the order they were
+     * received.
+     */
+    public void replay(final HeadlessFilter headlessFilter) throws SAXException {
+        for (final Event event : events) {
+            event.fire(headlessFilter);
+        }
+        events.clear();
+    }
+
+    @Override
+    public void changeMetaData(final HeaderMap metaData) {
+        events.add(new ChangeMetaData(metaData));
+    }
+
+    @Override
+    public void log(final Severity severity, final Location location, final String elementId, final String message) {
+        events.add(new LogError(severity, location, elementId, message));
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        events.add(new StartDocument());
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        events.add(new EndDocument());
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        events.add(new StartPrefixMapping(prefix, uri));
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        events.add(new EndPrefixMapping(prefix));
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        events.add(new StartElement(uri, localName, qName, atts));
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        events.add(new EndElement(uri, localName, qName));
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        events.add(new Characters(ch, start, length));
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        events.add(new IgnorableWhitespace(ch, start, length));
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        events.add(new ProcessingInstruction(target, data));
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        events.add(new SkippedEntity(name));
+    }
+}
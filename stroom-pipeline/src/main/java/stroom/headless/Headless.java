@@ -17,12 +17,18 @@
 package stroom.headless;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
@@ -58,6 +64,7 @@ import stroom.util.logging.StroomLogger;
 import stroom.util.shared.ModelStringUtil;
 import stroom.util.spring.StroomSpringProfiles;
 import stroom.util.task.TaskScopeRunnable;
+import stroom.util.thread.CustomThreadFactory;
 import stroom.util.thread.ThreadScopeRunnable;
 import stroom.util.zip.StroomZipRepository;
 
@@ -66,6 +73,7 @@ import stroom.util.zip.StroomZipRepository;
  */
 public class Headless extends AbstractCommandLineTool {
     private static final StroomLogger LOGGER = StroomLogger.getLogger(Headless.class);
+    private static final int PROGRESS_INTERVAL = 1000;
 
     private ApplicationContext appContext = null;
 
@@ -73,6 +81,7 @@ public class Headless extends AbstractCommandLineTool {
     private String output;
     private String config;
     private String tmp;
+    private int threads = 1;
 
     private File inputDir;
     private File outputFile;
@@ -102,6 +111,14 @@ public class Headless extends AbstractCommandLineTool {
         FileUtil.forgetTempDir();
     }
 
+    /**
+     * The number of entries to translate concurrently. Output is always
+     * written in input order regardless of the number of threads.
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
     @Override
     protected void checkArgs() {
         if (input == null) {
@@ -116,6 +133,9 @@ public class Headless extends AbstractCommandLineTool {
         if (tmp == null) {
             failArg("tmp", "required");
         }
+        if (threads < 1) {
+            failArg("threads", "must be greater than 0");
+        }
     }
 
     private void init() {
@@ -210,9 +230,77 @@ public class Headless extends AbstractCommandLineTool {
     }
 
     private void processRepository(final HeadlessFilter headlessFilter) {
+        final long startTime = System.currentTimeMillis();
+        long entryCount = 0;
+
         try {
             final TaskManager taskManager = getAppContext().getBean(TaskManager.class);
 
+            if (threads > 1) {
+                entryCount = processRepositoryInParallel(taskManager, headlessFilter);
+            } else {
+                entryCount = processRepositoryInSerial(taskManager, headlessFilter);
+            }
+
+        } catch (final Exception e) {
+            LOGGER.error(e, e);
+        }
+
+        final long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        LOGGER.info("Translated " + entryCount + " entries using " + threads + " thread(s) in "
+                + ModelStringUtil.formatDurationString(elapsed) + " (" + (entryCount * 1000 / elapsed)
+                + " entries/s)");
+    }
+
+    private long processRepositoryInSerial(final TaskManager taskManager, final HeadlessFilter headlessFilter)
+            throws IOException {
+        long entryCount = 0;
+
+        // Loop over all of the data files in the repository.
+        final StroomZipRepository repo = new StroomZipRepository(inputDir.getAbsolutePath());
+        for (final File zipFile : repo.getZipFiles()) {
+            LOGGER.info("Processing: " + zipFile.getAbsolutePath());
+
+            final StroomZipFile stroomZipFile = new StroomZipFile(zipFile);
+            final StroomZipNameSet nameSet = stroomZipFile.getStroomZipNameSet();
+
+            // Process each base file in a consistent order
+            for (final String baseName : nameSet.getBaseNameList()) {
+                final InputStream dataStream = stroomZipFile.getInputStream(baseName, StroomZipFileType.Data);
+                final InputStream metaStream = stroomZipFile.getInputStream(baseName, StroomZipFileType.Meta);
+                final InputStream contextStream = stroomZipFile.getInputStream(baseName, StroomZipFileType.Context);
+
+                final HeadlessTranslationTask task = new HeadlessTranslationTask(
+                        IgnoreCloseInputStream.wrap(dataStream), IgnoreCloseInputStream.wrap(metaStream),
+                        IgnoreCloseInputStream.wrap(contextStream), headlessFilter);
+                taskManager.exec(task);
+                entryCount++;
+            }
+
+            // Close the zip file.
+            stroomZipFile.close();
+        }
+
+        return entryCount;
+    }
+
+    /**
+     * Translates entries on a pool of worker threads. Each translation writes
+     * to its own {@link BufferedHeadlessFilter} and the buffers are replayed
+     * into the shared filter in the order the entries were read so the output
+     * is identical to a serial run. The number of entries held in memory is
+     * bounded to twice the number of threads.
+     */
+    private long processRepositoryInParallel(final TaskManager taskManager, final HeadlessFilter headlessFilter)
+            throws Exception {
+        final CustomThreadFactory threadFactory = new CustomThreadFactory("Headless Translation #");
+        threadFactory.setDaemon(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
+        final Deque<Future<BufferedHeadlessFilter>> pending = new ArrayDeque<>();
+        final int maxPending = threads * 2;
+        long entryCount = 0;
+
+        try {
             // Loop over all of the data files in the repository.
             final StroomZipRepository repo = new StroomZipRepository(inputDir.getAbsolutePath());
             for (final File zipFile : repo.getZipFiles()) {
@@ -221,25 +309,72 @@ public class Headless extends AbstractCommandLineTool {
                 final StroomZipFile stroomZipFile = new StroomZipFile(zipFile);
                 final StroomZipNameSet nameSet = stroomZipFile.getStroomZipNameSet();
 
-                // Process each base file in a consistent order
+                // Read each base file in a consistent order so that the
+                // zip file can be closed before the entries are translated.
                 for (final String baseName : nameSet.getBaseNameList()) {
-                    final InputStream dataStream = stroomZipFile.getInputStream(baseName, StroomZipFileType.Data);
-                    final InputStream metaStream = stroomZipFile.getInputStream(baseName, StroomZipFileType.Meta);
-                    final InputStream contextStream = stroomZipFile.getInputStream(baseName, StroomZipFileType.Context);
-
-                    final HeadlessTranslationTask task = new HeadlessTranslationTask(
-                            IgnoreCloseInputStream.wrap(dataStream), IgnoreCloseInputStream.wrap(metaStream),
-                            IgnoreCloseInputStream.wrap(contextStream), headlessFilter);
-                    taskManager.exec(task);
+                    final byte[] data = read(stroomZipFile.getInputStream(baseName, StroomZipFileType.Data));
+                    final byte[] meta = read(stroomZipFile.getInputStream(baseName, StroomZipFileType.Meta));
+                    final byte[] context = read(
+                            stroomZipFile.getInputStream(baseName, StroomZipFileType.Context));
+
+                    pending.add(executor.submit(() -> translate(taskManager, data, meta, context)));
+
+                    // Merge completed output before reading more entries.
+                    while (pending.size() >= maxPending) {
+                        pending.poll().get().replay(headlessFilter);
+                        entryCount++;
+                        logProgress(entryCount);
+                    }
                 }
 
                 // Close the zip file.
                 stroomZipFile.close();
             }
 
-        } catch (final Exception e) {
-            LOGGER.error(e, e);
+            while (!pending.isEmpty()) {
+                pending.poll().get().replay(headlessFilter);
+                entryCount++;
+                logProgress(entryCount);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return entryCount;
+    }
+
+    private BufferedHeadlessFilter translate(final TaskManager taskManager, final byte[] data, final byte[] meta,
+            final byte[] context) {
+        final BufferedHeadlessFilter bufferedHeadlessFilter = new BufferedHeadlessFilter();
+        new ThreadScopeRunnable() {
+            @Override
+            protected void exec() {
+                final HeadlessTranslationTask task = new HeadlessTranslationTask(toStream(data), toStream(meta),
+                        toStream(context), bufferedHeadlessFilter);
+                taskManager.exec(task);
+            }
+        }.run();
+        return bufferedHeadlessFilter;
+    }
+
+    private void logProgress(final long entryCount) {
+        if (entryCount % PROGRESS_INTERVAL == 0) {
+            LOGGER.info("Translated " + entryCount + " entries");
+        }
+    }
+
+    private byte[] read(final InputStream inputStream) {
+        if (inputStream == null) {
+            return null;
+        }
+        return StreamUtil.streamToBuffer(inputStream, true).toByteArray();
+    }
+
+    private InputStream toStream(final byte[] bytes) {
+        if (bytes == null) {
+            return null;
         }
+        return new ByteArrayInputStream(bytes);
     }
 
     private void readConfig() {
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.mapreduce;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantLock;
+
+import stroom.util.shared.Monitor;
+import stroom.util.thread.ThreadUtil;
+
+/**
+ * A queue that combines values with the same key as they are collected so
+ * that the queue only ever holds one value per key. Values with a null key
+ * can't be combined and are queued individually. Producers only wait for the
+ * queue to be drained if it is full and the key is not already present.
+ */
+public class CombiningPairQueue<K, V> implements PairQueue<K, V> {
+    private static final long serialVersionUID = -1545126410339785361L;
+
+    private static final int MAX_SIZE = 1000000;
+
+    private final Monitor monitor;
+    private final Combiner<K, V> combiner;
+
+    private Map<K, V> combined;
+    private List<Pair<K, V>> uncombined;
+    private int size;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public CombiningPairQueue(final Monitor monitor, final Combiner<K, V> combiner) {
+        this.monitor = monitor;
+        this.combiner = combiner;
+    }
+
+    @Override
+    public void collect(final K key, final V value) {
+        while (!offer(key, value) && (monitor == null || !monitor.isTerminated())) {
+            ThreadUtil.sleep(100);
+        }
+    }
+
+    private boolean offer(final K key, final V value) {
+        lock.lock();
+        try {
+            if (key != null && combined != null) {
+                final V existing = combined.get(key);
+                if (existing != null) {
+                    combined.put(key, combiner.combine(key, existing, value));
+                    return true;
+                }
+            }
+
+            // We won't allow more than max results to go into the queue.
+            if (size >= MAX_SIZE) {
+                return false;
+            }
+
+            if (key != null) {
+                if (combined == null) {
+                    combined = new HashMap<>();
+                }
+                combined.put(key, value);
+            } else {
+                if (uncombined == null) {
+                    uncombined = new ArrayList<>();
+                }
+                uncombined.add(new Pair<>(key, value));
+            }
+            size++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Pair<K, V>> iterator() {
+        Map<K, V> localCombined = null;
+        List<Pair<K, V>> local = null;
+        lock.lock();
+        try {
+            localCombined = combined;
+            local = uncombined;
+            combined = null;
+            uncombined = null;
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        if (local == null) {
+            local = new ArrayList<>();
+        }
+        if (localCombined != null) {
+            for (final Entry<K, V> entry : localCombined.entrySet()) {
+                local.add(new Pair<>(entry.getKey(), entry.getValue()));
+            }
+        }
+        return local.iterator();
+    }
+}
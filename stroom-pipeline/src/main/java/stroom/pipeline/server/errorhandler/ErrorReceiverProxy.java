@@ -38,8 +38,12 @@ public class ErrorReceiverProxy implements ErrorReceiver {
         this.errorReceiver = errorReceiver;
     }
 
+    /**
+     * Synchronised as branches of an asynchronous fork log errors from their
+     * own threads.
+     */
     @Override
-    public void log(final Severity severity, final Location location, final String elementId, final String message,
+    public synchronized void log(final Severity severity, final Location location, final String elementId, final String message,
             final Throwable e) {
         errorReceiver.log(severity, location, elementId, message, e);
 
@@ -17,9 +17,11 @@
 package stroom.pipeline.server.factory;
 
 import stroom.entity.server.GenericEntityService;
-import stroom.entity.shared.BaseEntity;
 import stroom.entity.shared.DocRef;
+import stroom.node.server.StroomPropertyService;
 import stroom.pipeline.destination.DestinationProvider;
+import stroom.pipeline.server.filter.AsyncXMLFilterFork;
+import stroom.pipeline.server.filter.ProfilingFilter;
 import stroom.pipeline.server.filter.SAXEventRecorder;
 import stroom.pipeline.server.filter.SAXRecordDetector;
 import stroom.pipeline.server.filter.SplitFilter;
@@ -31,6 +33,7 @@ import stroom.pipeline.server.reader.InputStreamElement;
 import stroom.pipeline.server.reader.InputStreamRecordDetectorElement;
 import stroom.pipeline.server.reader.ReaderRecordDetectorElement;
 import stroom.pipeline.server.task.ElementMonitor;
+import stroom.pipeline.server.task.PipelineProfiler;
 import stroom.pipeline.server.task.Recorder;
 import stroom.pipeline.server.task.SteppingController;
 import stroom.pipeline.server.task.SteppingFilter;
@@ -38,37 +41,47 @@ import stroom.pipeline.server.task.SteppingTask;
 import stroom.pipeline.server.writer.OutputRecorder;
 import stroom.pipeline.shared.SteppingFilterSettings;
 import stroom.pipeline.shared.data.PipelineData;
-import stroom.pipeline.shared.data.PipelineElement;
 import stroom.pipeline.shared.data.PipelineElementType;
-import stroom.pipeline.shared.data.PipelineLink;
-import stroom.pipeline.shared.data.PipelineProperty;
-import stroom.pipeline.shared.data.PipelinePropertyValue;
-import stroom.pipeline.shared.data.PipelineReference;
+import stroom.task.server.GenericServerTask;
+import stroom.task.server.TaskManager;
 import stroom.util.logging.StroomLogger;
+import stroom.util.shared.Task;
 import stroom.util.spring.StroomScope;
+import stroom.util.task.TaskScopeContextHolder;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import javax.inject.Inject;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 @Component
 @Scope(StroomScope.TASK)
 public class PipelineFactory {
+    public static final String ASYNC_FORK_QUEUE_SIZE_PROPERTY = "stroom.pipeline.asyncForkQueueSize";
+
     private static final StroomLogger LOGGER = StroomLogger.getLogger(PipelineFactory.class);
     private final ElementRegistryFactory pipelineElementRegistryFactory;
     private final ElementFactory elementFactory;
     private final ProcessorFactory processorFactory;
     private final GenericEntityService genericEntityService;
 
+    @Resource
+    private PipelineProfiler pipelineProfiler;
+    @Resource
+    private PipelineTemplateCache pipelineTemplateCache;
+    @Resource
+    private StroomPropertyService propertyService;
+    @Resource
+    private TaskManager taskManager;
+
     @Inject
     public PipelineFactory(final ElementRegistryFactory pipelineElementRegistryFactory,
                            final ElementFactory elementFactory, final ProcessorFactory processorFactory, final GenericEntityService genericEntityService) {
@@ -90,30 +103,27 @@ public class PipelineFactory {
     }
 
     public Pipeline create(final PipelineData pipelineData, final SteppingController controller) {
-        final ElementRegistry pipelineElementRegistry = pipelineElementRegistryFactory.get();
+        // If we are stepping then we don't want to use the cache as stepping
+        // may inject code into entities.
+        final PipelineTemplate template;
+        if (controller == null && pipelineTemplateCache != null) {
+            template = pipelineTemplateCache.get(pipelineData);
+        } else {
+            template = PipelineTemplate.create(pipelineElementRegistryFactory.get(), pipelineData);
+        }
 
-        // If we are stepping then we don't want to use the cache.
         // Create an instance of each element.
         final Map<String, Element> elementInstances = new HashMap<>();
         final Map<Element, PipelineElementType> elementTypeMap = new HashMap<>();
-        final Map<String, Set<String>> linkSets = new HashMap<>();
 
-        final Set<String> rootLinkSet = new HashSet<>();
-        linkSets.put(null, rootLinkSet);
-
-        for (final PipelineElement element : pipelineData.getElements().getAdd()) {
-            LOGGER.debug("create() - loading element %s", element);
-
-            final Class<Element> elementClass = pipelineElementRegistry.getElementClass(element.getType());
-
-            if (elementClass == null) {
-                throw new PipelineFactoryException("Unable to load elementClass for type " + element.getType());
-            }
+        for (final PipelineTemplate.ElementTemplate element : template.getElements()) {
+            LOGGER.debug("create() - loading element %s", element.getId());
 
-            final Element elementInstance = elementFactory.getElementInstance(elementClass);
+            final Element elementInstance = elementFactory.getElementInstance(element.getElementClass());
 
             if (elementInstance == null) {
-                throw new PipelineFactoryException("Unable to load elementInstance for class " + elementClass);
+                throw new PipelineFactoryException(
+                        "Unable to load elementInstance for class " + element.getElementClass());
             }
 
             // Set the id on the pipeline element for use in tracing
@@ -122,38 +132,17 @@ public class PipelineFactory {
                 elementInstance.setElementId(element.getId());
             }
 
-            // Set the properties on this instance.
-            setProperties(pipelineElementRegistry, element.getId(), element.getType(), elementInstance, pipelineData,
-                    controller);
-
-            // Set the pipeline references on this instance.
-            setPipelineReferences(pipelineElementRegistry, element.getId(), element.getType(), elementInstance,
-                    pipelineData);
+            // Set the properties and pipeline references on this instance.
+            for (final PipelineTemplate.Setter setter : element.getSetters()) {
+                setProperty(element.getId(), elementInstance, setter, controller);
+            }
 
             // Store the instance.
             elementInstances.put(element.getId(), elementInstance);
-            elementTypeMap.put(elementInstance, pipelineElementRegistry.getElementType(element.getType()));
-
-            // Record links.
-            boolean root = true;
-            final Set<String> linkSet = new HashSet<>();
-            linkSets.put(element.getId(), linkSet);
-            for (final PipelineLink link : pipelineData.getLinks().getAdd()) {
-                if (link.getFrom().equals(element.getId())) {
-                    linkSet.add(link.getTo());
-                } else if (link.getTo().equals(element.getId())) {
-                    root = false;
-                }
-            }
-
-            if (root) {
-                rootLinkSet.add(element.getId());
-            }
+            elementTypeMap.put(elementInstance, element.getElementType());
         }
 
-        if (rootLinkSet.size() == 0) {
-            throw new PipelineFactoryException("The pipeline has no elements");
-        }
+        final Map<String, Set<String>> linkSets = template.getLinkSets();
 
         // Link the instances.
         final List<Element> rootElements = link(elementInstances, elementTypeMap, linkSets, controller);
@@ -208,122 +197,50 @@ public class PipelineFactory {
     }
 
     /**
-     * Set the properties on the newly created element instance.
-     */
-    private void setProperties(final ElementRegistry pipelineElementRegistry, final String id, final String elementType,
-                               final Object elementInstance, final PipelineData pipelineData, final SteppingController controller) {
-        // Set the properties on this instance.
-        for (final PipelineProperty property : pipelineData.getProperties().getAdd()) {
-            if (property.getElement().equals(id)) {
-                setProperty(pipelineElementRegistry, id, elementType, elementInstance, property.getName(),
-                        property.getValue(), controller);
-            }
-        }
-    }
-
-    /**
-     * Code for properties.
+     * Set a property or pipeline reference on the newly created element
+     * instance.
      */
-    private void setProperty(final ElementRegistry pipelineElementRegistry, final String id, final String elementType,
-                             final Object elementInstance, final String propertyName, final PipelinePropertyValue value,
+    private void setProperty(final String id, final Object elementInstance, final PipelineTemplate.Setter setter,
                              final SteppingController controller) {
-        // Some methods might be removed so ignore them if they don't exist.
-        final Method method = pipelineElementRegistry.getMethod(elementType, propertyName);
-
-        if (method != null) {
-            try {
-                // Allow this method to be invoked.
-                method.setAccessible(true);
-
-                Object obj = null;
-                if (value != null) {
-                    final Class<?> paramType = method.getParameterTypes()[0];
-                    if (boolean.class.isAssignableFrom(paramType) || Boolean.class.isAssignableFrom(paramType)) {
-                        obj = value.isBoolean();
-                    } else if (int.class.isAssignableFrom(paramType) || Integer.class.isAssignableFrom(paramType)) {
-                        obj = value.getInteger();
-                    } else if (long.class.isAssignableFrom(paramType) || Long.class.isAssignableFrom(paramType)) {
-                        obj = value.getLong();
-                    } else if (String.class.isAssignableFrom(paramType)) {
-                        obj = value.getString();
-                    } else if (BaseEntity.class.isAssignableFrom(paramType)) {
-                        // Load an entity by id.
-                        final DocRef docRef = value.getEntity();
-                        if (docRef != null) {
-                            BaseEntity entity = null;
-                            if (genericEntityService != null) {
-                                entity = genericEntityService.loadByUuid(docRef.getType(), docRef.getUuid());
-                                if (entity == null) {
-                                    throw new PipelineFactoryException(
-                                            "Unable to resolve entity reference from element '" + id + "' to "
-                                                    + docRef.toString());
-                                }
-                                obj = entity;
-                            }
+        try {
+            Object obj = setter.getValue();
+            final DocRef docRef = setter.getDocRef();
+            if (docRef != null) {
+                // Load the entity for each pipeline so that the current user
+                // must be able to read it.
+                if (genericEntityService != null) {
+                    obj = genericEntityService.loadByUuid(docRef.getType(), docRef.getUuid());
+                    if (obj == null) {
+                        throw new PipelineFactoryException(
+                                "Unable to resolve entity reference from element '" + id + "' to " + docRef.toString());
+                    }
+                }
 
-                            // Modify properties of element instance if we are
-                            // stepping and have code to insert.
-                            if (controller != null && entity != null) {
-                                final SteppingTask request = controller.getRequest();
-                                if (request.getCode() != null && request.getCode().size() > 0) {
-                                    final String code = request.getCode().get(id);
-                                    if (code != null) {
-                                        if (elementInstance instanceof CombinedParser) {
-                                            final CombinedParser parser = (CombinedParser) elementInstance;
-                                            parser.setInjectedCode(code);
-                                        } else if (elementInstance instanceof XSLTFilter) {
-                                            final XSLTFilter xsltFilter = (XSLTFilter) elementInstance;
-                                            xsltFilter.setInjectedCode(code);
-                                        }
-                                    }
-                                }
+                // Modify properties of element instance if we are stepping
+                // and have code to insert.
+                if (controller != null && obj != null) {
+                    final SteppingTask request = controller.getRequest();
+                    if (request.getCode() != null && request.getCode().size() > 0) {
+                        final String code = request.getCode().get(id);
+                        if (code != null) {
+                            if (elementInstance instanceof CombinedParser) {
+                                final CombinedParser parser = (CombinedParser) elementInstance;
+                                parser.setInjectedCode(code);
+                            } else if (elementInstance instanceof XSLTFilter) {
+                                final XSLTFilter xsltFilter = (XSLTFilter) elementInstance;
+                                xsltFilter.setInjectedCode(code);
                             }
                         }
                     }
                 }
-
-                method.invoke(elementInstance, obj);
-
-            } catch (final InvocationTargetException e) {
-                throw new PipelineFactoryException(e);
-            } catch (final IllegalAccessException e) {
-                throw new PipelineFactoryException(e);
             }
-        }
-    }
 
-    /**
-     * Set the pipeline references on the newly created element instance.
-     */
-    private void setPipelineReferences(final ElementRegistry pipelineElementRegistry, final String id,
-                                       final String elementType, final Object elementInstance, final PipelineData pipelineData) {
-        // Set the properties on this instance.
-        for (final PipelineReference pipelineReference : pipelineData.getPipelineReferences().getAdd()) {
-            if (pipelineReference.getElement().equals(id)) {
-                setPipelineReference(pipelineElementRegistry, elementType, elementInstance, pipelineReference.getName(),
-                        pipelineReference);
-            }
-        }
-    }
+            setter.getMethod().invoke(elementInstance, obj);
 
-    /**
-     * Code for pipeline references.
-     */
-    private void setPipelineReference(final ElementRegistry pipelineElementRegistry, final String elementType,
-                                      final Object elementInstance, final String propertyName, final PipelineReference pipelineReference) {
-        final Method method = pipelineElementRegistry.getMethod(elementType, propertyName);
-
-        if (method != null) {
-            try {
-                // Allow this method to be invoked.
-                method.setAccessible(true);
-                method.invoke(elementInstance, pipelineReference);
-
-            } catch (final InvocationTargetException e) {
-                throw new PipelineFactoryException(e);
-            } catch (final IllegalAccessException e) {
-                throw new PipelineFactoryException(e);
-            }
+        } catch (final InvocationTargetException e) {
+            throw new PipelineFactoryException(e);
+        } catch (final IllegalAccessException e) {
+            throw new PipelineFactoryException(e);
         }
     }
 
@@ -347,6 +264,9 @@ public class PipelineFactory {
         // All elements that are successfully created will be returned in this
         // list.
         final List<Element> elements = new ArrayList<>(childElements.size());
+        // Targets of the parent element are added once all children are
+        // linked so that they can be forked asynchronously if required.
+        final List<Target> targets = new ArrayList<>(childElements.size());
 
         // Loop over the child elements and link them to the parent.
         for (final Element childElement : childElements) {
@@ -375,6 +295,8 @@ public class PipelineFactory {
                     fragment = insertRecordDetector(elementId, elementType, fragment, true, controller);
                     fragment = insertRecordDetector(elementId, elementType, fragment, false, controller);
                 }
+            } else if (parentElement != null && pipelineProfiler != null && pipelineProfiler.isEnabled()) {
+                fragment = insertProfiler(elementId, fragment);
             }
 
             // Continue to link the children of this child.
@@ -393,21 +315,77 @@ public class PipelineFactory {
                             + parentElement.getElementId() + " > " + elementId);
                 }
 
-                if (parentElement instanceof HasTargets) {
-                    final HasTargets hasTargets = (HasTargets) parentElement;
-                    if (fragment.getIn() instanceof Target) {
-                        final Target target = (Target) fragment.getIn();
-                        hasTargets.addTarget(target);
-                    }
+                if (fragment.getIn() instanceof Target) {
+                    targets.add((Target) fragment.getIn());
                 }
             }
 
             elements.add(fragment.getIn());
         }
 
+        if (targets.size() > 0) {
+            final HasTargets hasTargets = (HasTargets) parentElement;
+            final int asyncForkQueueSize = getAsyncForkQueueSize(controller);
+            if (asyncForkQueueSize > 0 && targets.size() > 1 && isAllXMLFilters(targets)) {
+                // Run each branch of the fork on its own thread.
+                final XMLFilter[] filters = targets.toArray(new XMLFilter[targets.size()]);
+                final AsyncXMLFilterFork fork = new AsyncXMLFilterFork(filters, asyncForkQueueSize,
+                        createBranchExecutor());
+                fork.setElementId(parentElementId);
+                hasTargets.setTarget(fork);
+            } else {
+                targets.forEach(hasTargets::addTarget);
+            }
+        }
+
         return elements;
     }
 
+    private int getAsyncForkQueueSize(final SteppingController controller) {
+        // Stepping needs all elements to run on the stepping thread.
+        if (controller != null || propertyService == null || taskManager == null) {
+            return 0;
+        }
+        return propertyService.getIntProperty(ASYNC_FORK_QUEUE_SIZE_PROPERTY, 0);
+    }
+
+    private boolean isAllXMLFilters(final List<Target> targets) {
+        for (final Target target : targets) {
+            if (!(target instanceof XMLFilter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Branch threads run in a task scope of their own so they must only replay
+     * SAX events. The fork calls the lifecycle methods of the branches on the
+     * pipeline thread so that task scoped beans come from the pipeline task.
+     * Branch tasks run as the user of the pipeline task.
+     */
+    private Executor createBranchExecutor() {
+        Task<?> parentTask = null;
+        String sessionId = null;
+        String userId = null;
+        if (TaskScopeContextHolder.contextExists()) {
+            parentTask = TaskScopeContextHolder.getContext().getTask();
+            if (parentTask != null) {
+                sessionId = parentTask.getSessionId();
+                userId = parentTask.getUserId();
+            }
+        }
+        final Task<?> branchParentTask = parentTask;
+        final String branchSessionId = sessionId;
+        final String branchUserId = userId;
+        return runnable -> {
+            final GenericServerTask task = new GenericServerTask(branchParentTask, branchSessionId, branchUserId,
+                    "Pipeline fork branch", null);
+            task.setRunnable(runnable);
+            taskManager.execAsync(task);
+        };
+    }
+
     /**
      * Get child elements for the given parent or descendants if some
      * intermediate children are to be excluded due to stepping mode being used.
@@ -594,6 +572,27 @@ public class PipelineFactory {
         controller.registerMonitor(elementMonitor);
     }
 
+    /**
+     * Insert a filter in front of an XML filter that will record the time spent
+     * in the filter and the records and characters passed to it.
+     *
+     * @param elementId The id of the element to profile.
+     * @param fragment  The fragment to add the profiling filter to.
+     * @return A new fragment beginning with the profiling filter.
+     */
+    private Fragment insertProfiler(final String elementId, final Fragment fragment) {
+        Fragment result = fragment;
+        if (fragment.getIn() instanceof XMLFilter) {
+            final ProfilingFilter profilingFilter = elementFactory.getElementInstance(ProfilingFilter.class);
+            profilingFilter.setElementId(elementId);
+            profilingFilter.setProfile(pipelineProfiler.createProfile(elementId));
+            profilingFilter.setTarget((XMLFilter) fragment.getIn());
+
+            result = new Fragment(profilingFilter, fragment.getOut());
+        }
+        return result;
+    }
+
     /**
      * Insert a pipeline element that will notify the controller when the end of
      * a record is detected. For XML this is whenever endDocument() is called.
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.factory;
+
+import stroom.entity.shared.BaseEntity;
+import stroom.entity.shared.DocRef;
+import stroom.pipeline.shared.data.PipelineData;
+import stroom.pipeline.shared.data.PipelineElement;
+import stroom.pipeline.shared.data.PipelineElementType;
+import stroom.pipeline.shared.data.PipelineLink;
+import stroom.pipeline.shared.data.PipelineProperty;
+import stroom.pipeline.shared.data.PipelinePropertyValue;
+import stroom.pipeline.shared.data.PipelineReference;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything about a pipeline that can be worked out from merged pipeline data
+ * alone, i.e. the element classes to create, the setter to call and converted
+ * value to pass for each property and how the elements link together.
+ *
+ * Element instances can't be shared between tasks as they hold task scoped
+ * beans, so {@link PipelineFactory} still creates new elements for each
+ * pipeline but only has to apply a template to them. Templates are cached per
+ * pipeline data by {@link PipelineTemplateCache} and are shared by all users,
+ * so they never hold entities. Referenced entities are loaded by the factory
+ * for each pipeline so that the current user's permissions are checked.
+ */
+public class PipelineTemplate {
+    public static class ElementTemplate {
+        private final String id;
+        private final String type;
+        private final Class<Element> elementClass;
+        private final PipelineElementType elementType;
+        private final List<Setter> setters = new ArrayList<>();
+
+        ElementTemplate(final String id, final String type, final Class<Element> elementClass,
+                        final PipelineElementType elementType) {
+            this.id = id;
+            this.type = type;
+            this.elementClass = elementClass;
+            this.elementType = elementType;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Class<Element> getElementClass() {
+            return elementClass;
+        }
+
+        public PipelineElementType getElementType() {
+            return elementType;
+        }
+
+        public List<Setter> getSetters() {
+            return setters;
+        }
+    }
+
+    /**
+     * A property or pipeline reference to set on an element.
+     */
+    public static class Setter {
+        private final Method method;
+        private final Object value;
+        private final DocRef docRef;
+
+        Setter(final Method method, final Object value, final DocRef docRef) {
+            this.method = method;
+            this.value = value;
+            this.docRef = docRef;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * @return The value to set or null if the value is an entity.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return The entity that the value refers to or null if this is not an
+         *         entity property.
+         */
+        public DocRef getDocRef() {
+            return docRef;
+        }
+    }
+
+    private final List<ElementTemplate> elements;
+    private final Map<String, Set<String>> linkSets;
+
+    private PipelineTemplate(final List<ElementTemplate> elements, final Map<String, Set<String>> linkSets) {
+        this.elements = elements;
+        this.linkSets = linkSets;
+    }
+
+    /**
+     * @param pipelineElementRegistry
+     *            The registry to resolve element classes and property setters
+     *            with.
+     * @param pipelineData
+     *            The merged pipeline data.
+     */
+    public static PipelineTemplate create(final ElementRegistry pipelineElementRegistry,
+                                          final PipelineData pipelineData) {
+        final List<ElementTemplate> elements = new ArrayList<>();
+        final Map<String, Set<String>> linkSets = new HashMap<>();
+
+        final Set<String> rootLinkSet = new HashSet<>();
+        linkSets.put(null, rootLinkSet);
+
+        for (final PipelineElement element : pipelineData.getElements().getAdd()) {
+            final Class<Element> elementClass = pipelineElementRegistry.getElementClass(element.getType());
+
+            if (elementClass == null) {
+                throw new PipelineFactoryException("Unable to load elementClass for type " + element.getType());
+            }
+
+            final ElementTemplate elementTemplate = new ElementTemplate(element.getId(), element.getType(),
+                    elementClass, pipelineElementRegistry.getElementType(element.getType()));
+
+            // Resolve the properties for this element.
+            for (final PipelineProperty property : pipelineData.getProperties().getAdd()) {
+                if (property.getElement().equals(element.getId())) {
+                    // Some methods might be removed so ignore them if they
+                    // don't exist.
+                    final Method method = getMethod(pipelineElementRegistry, element.getType(), property.getName());
+                    if (method != null) {
+                        elementTemplate.setters.add(createSetter(method, property.getValue()));
+                    }
+                }
+            }
+
+            // Resolve the pipeline references for this element.
+            for (final PipelineReference pipelineReference : pipelineData.getPipelineReferences().getAdd()) {
+                if (pipelineReference.getElement().equals(element.getId())) {
+                    final Method method = getMethod(pipelineElementRegistry, element.getType(),
+                            pipelineReference.getName());
+                    if (method != null) {
+                        elementTemplate.setters.add(new Setter(method, pipelineReference, null));
+                    }
+                }
+            }
+
+            elements.add(elementTemplate);
+
+            // Record links.
+            boolean root = true;
+            final Set<String> linkSet = new HashSet<>();
+            linkSets.put(element.getId(), linkSet);
+            for (final PipelineLink link : pipelineData.getLinks().getAdd()) {
+                if (link.getFrom().equals(element.getId())) {
+                    linkSet.add(link.getTo());
+                } else if (link.getTo().equals(element.getId())) {
+                    root = false;
+                }
+            }
+
+            if (root) {
+                rootLinkSet.add(element.getId());
+            }
+        }
+
+        if (rootLinkSet.size() == 0) {
+            throw new PipelineFactoryException("The pipeline has no elements");
+        }
+
+        return new PipelineTemplate(Collections.unmodifiableList(elements), Collections.unmodifiableMap(linkSets));
+    }
+
+    private static Method getMethod(final ElementRegistry pipelineElementRegistry, final String elementType,
+                                    final String name) {
+        final Method method = pipelineElementRegistry.getMethod(elementType, name);
+        if (method != null) {
+            // Allow this method to be invoked.
+            method.setAccessible(true);
+        }
+        return method;
+    }
+
+    private static Setter createSetter(final Method method, final PipelinePropertyValue value) {
+        Object obj = null;
+        DocRef docRef = null;
+        if (value != null) {
+            final Class<?> paramType = method.getParameterTypes()[0];
+            if (boolean.class.isAssignableFrom(paramType) || Boolean.class.isAssignableFrom(paramType)) {
+                obj = value.isBoolean();
+            } else if (int.class.isAssignableFrom(paramType) || Integer.class.isAssignableFrom(paramType)) {
+                obj = value.getInteger();
+            } else if (long.class.isAssignableFrom(paramType) || Long.class.isAssignableFrom(paramType)) {
+                obj = value.getLong();
+            } else if (String.class.isAssignableFrom(paramType)) {
+                obj = value.getString();
+            } else if (BaseEntity.class.isAssignableFrom(paramType)) {
+                docRef = value.getEntity();
+            }
+        }
+
+        return new Setter(method, obj, docRef);
+    }
+
+    public List<ElementTemplate> getElements() {
+        return elements;
+    }
+
+    /**
+     * @return A map of element ids to the ids of the elements they link to.
+     *         The ids of root elements are held against a null key.
+     */
+    public Map<String, Set<String>> getLinkSets() {
+        return linkSets;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.factory;
+
+import stroom.cache.AbstractCacheBean;
+import stroom.pipeline.shared.data.PipelineData;
+import stroom.security.Insecure;
+import net.sf.ehcache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches a {@link PipelineTemplate} for each merged pipeline data instance
+ * held by the {@link PipelineDataCache} so that pipelines can be created for
+ * each task without resolving element classes and property setters again.
+ * Hits and misses are reported with the other caches.
+ *
+ * Templates don't hold referenced entities so they can be shared by all
+ * users. The pipeline factory loads entities for each pipeline it creates.
+ */
+@Insecure
+@Component
+public class PipelineTemplateCache extends AbstractCacheBean<PipelineData, PipelineTemplate> {
+    private static final int MAX_CACHE_ENTRIES = 1000;
+
+    private final ElementRegistryFactory pipelineElementRegistryFactory;
+
+    @Inject
+    public PipelineTemplateCache(final CacheManager cacheManager,
+                                 final ElementRegistryFactory pipelineElementRegistryFactory) {
+        super(cacheManager, "Pipeline Template Cache", MAX_CACHE_ENTRIES);
+        this.pipelineElementRegistryFactory = pipelineElementRegistryFactory;
+        // Keys are only reused for as long as the pipeline data cache keeps
+        // them.
+        setMaxIdleTime(10, TimeUnit.MINUTES);
+        setMaxLiveTime(10, TimeUnit.MINUTES);
+    }
+
+    @Override
+    protected PipelineTemplate create(final PipelineData key) {
+        return PipelineTemplate.create(pipelineElementRegistryFactory.get(), key);
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import stroom.pipeline.server.errorhandler.ProcessException;
+import stroom.pipeline.server.factory.AbstractElement;
+import stroom.pipeline.server.factory.Processor;
+import stroom.util.logging.StroomLogger;
+
+/**
+ * An XML filter fork that runs each child filter on its own thread. SAX events
+ * are collected into a {@link SAXEventBuffer} for each record (each child of
+ * the root element) and the same buffer is handed to every branch through a
+ * bounded queue so a slow branch holds up the producer rather than using
+ * unlimited memory.
+ *
+ * Branch threads only replay SAX events. Start and end of processing and of
+ * each stream are barriers: the producer waits for every branch to finish the
+ * events queued before them and then calls the child filters itself. This
+ * keeps the lifecycle methods, which get task scoped beans such as the feed and
+ * stream holders, in the task scope of the pipeline and means downstream
+ * elements have finished with a stream before it is closed. Errors thrown by a
+ * branch are rethrown on the producer thread at the next event or barrier, and
+ * branches continue to receive events after an error just as they would with
+ * {@link XMLFilterFork}.
+ */
+public class AsyncXMLFilterFork extends AbstractElement implements XMLFilter {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(AsyncXMLFilterFork.class);
+
+    // Very large records are handed over in parts.
+    private static final int MAX_BUFFER_EVENTS = 10000;
+    private static final int MAX_BUFFER_CHARS = 1000000;
+
+    private interface Command {
+        void execute(Branch branch) throws Exception;
+    }
+
+    private interface Lifecycle {
+        void execute(XMLFilter filter);
+    }
+
+    private static final Command STOP = branch -> {
+    };
+
+    /**
+     * A locator that gives the position that the buffer currently being
+     * replayed was taken from.
+     */
+    private static class BufferLocator implements Locator {
+        private String publicId;
+        private String systemId;
+        private int lineNumber = -1;
+        private int columnNumber = -1;
+
+        @Override
+        public String getPublicId() {
+            return publicId;
+        }
+
+        @Override
+        public String getSystemId() {
+            return systemId;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columnNumber;
+        }
+    }
+
+    private static class Branch implements Runnable {
+        private final XMLFilter filter;
+        private final BlockingQueue<Command> queue;
+        private final BufferLocator locator = new BufferLocator();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        public Branch(final XMLFilter filter, final int queueSize) {
+            this.filter = filter;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Command command = queue.take();
+                while (command != STOP) {
+                    try {
+                        command.execute(this);
+                    } catch (final Throwable t) {
+                        LOGGER.trace(t, t);
+                        error.compareAndSet(null, t);
+                    }
+                    command = queue.take();
+                }
+            } catch (final InterruptedException e) {
+                LOGGER.debug(e, e);
+                error.compareAndSet(null, e);
+            } finally {
+                stopped.countDown();
+            }
+        }
+
+        public void put(final Command command) {
+            try {
+                queue.put(command);
+            } catch (final InterruptedException e) {
+                throw ProcessException.wrap(e);
+            }
+        }
+    }
+
+    private final XMLFilter[] filters;
+    private final int queueSize;
+    private final Executor executor;
+
+    private Branch[] branches;
+    private SAXEventBuffer buffer = new SAXEventBuffer();
+    private Locator locator;
+    private int depth;
+
+    /**
+     * @param filters
+     *            The child filters.
+     * @param queueSize
+     *            The number of buffers that can be waiting for each branch.
+     * @param executor
+     *            Runs each branch for the duration of processing.
+     */
+    public AsyncXMLFilterFork(final XMLFilter[] filters, final int queueSize, final Executor executor) {
+        this.filters = filters;
+        this.queueSize = queueSize;
+        this.executor = executor;
+    }
+
+    @Override
+    public void startProcessing() {
+        if (branches != null) {
+            stopBranches();
+        }
+
+        branches = new Branch[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            branches[i] = new Branch(filters[i], queueSize);
+            executor.execute(branches[i]);
+        }
+
+        barrier(XMLFilter::startProcessing);
+    }
+
+    @Override
+    public void endProcessing() {
+        try {
+            flush();
+            barrier(XMLFilter::endProcessing);
+        } finally {
+            stopBranches();
+        }
+    }
+
+    @Override
+    public void startStream() {
+        flush();
+        barrier(XMLFilter::startStream);
+    }
+
+    @Override
+    public void endStream() {
+        flush();
+        barrier(XMLFilter::endStream);
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+        this.locator = locator;
+        flush();
+        put(branch -> {
+            if (locator != null) {
+                branch.locator.publicId = locator.getPublicId();
+                branch.locator.systemId = locator.getSystemId();
+            }
+            branch.filter.setDocumentLocator(branch.locator);
+        });
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        depth = 0;
+        buffer.startDocument();
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        buffer.endDocument();
+        flush();
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        buffer.startPrefixMapping(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        buffer.endPrefixMapping(prefix);
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        depth++;
+        buffer.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        buffer.endElement(uri, localName, qName);
+        depth--;
+
+        // Hand over each record as soon as it is complete.
+        if (depth <= 1 || buffer.size() >= MAX_BUFFER_EVENTS) {
+            flush();
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        buffer.characters(ch, start, length);
+        if (buffer.getCharCount() >= MAX_BUFFER_CHARS) {
+            flush();
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        buffer.ignorableWhitespace(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        buffer.processingInstruction(target, data);
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        buffer.skippedEntity(name);
+    }
+
+    public XMLFilter[] getFilters() {
+        return filters;
+    }
+
+    @Override
+    public List<Processor> createProcessors() {
+        final List<Processor> processors = new ArrayList<>(filters.length);
+        for (final XMLFilter filter : filters) {
+            processors.addAll(filter.createProcessors());
+        }
+        return processors;
+    }
+
+    /**
+     * Hands the current buffer to every branch and starts a new one.
+     */
+    private void flush() {
+        if (buffer.size() > 0) {
+            final SAXEventBuffer full = buffer;
+            full.setLocation(locator);
+            buffer = new SAXEventBuffer();
+
+            put(branch -> {
+                branch.locator.lineNumber = full.getLineNumber();
+                branch.locator.columnNumber = full.getColumnNumber();
+                full.fire(branch.filter);
+            });
+        }
+    }
+
+    private void put(final Command command) {
+        if (branches != null) {
+            for (final Branch branch : branches) {
+                branch.put(command);
+            }
+        }
+        checkErrors();
+    }
+
+    /**
+     * Waits for every branch to replay the events queued so far and then calls
+     * the lifecycle method of every child filter on this thread. As with
+     * {@link XMLFilterFork} every filter is called even if an earlier one
+     * fails.
+     */
+    private void barrier(final Lifecycle lifecycle) {
+        Throwable error = null;
+        if (branches != null) {
+            final CountDownLatch latch = new CountDownLatch(branches.length);
+            for (final Branch branch : branches) {
+                branch.put(b -> latch.countDown());
+            }
+
+            try {
+                latch.await();
+            } catch (final InterruptedException e) {
+                throw ProcessException.wrap(e);
+            }
+
+            for (final Branch branch : branches) {
+                try {
+                    lifecycle.execute(branch.filter);
+                } catch (final Throwable t) {
+                    LOGGER.trace(t, t);
+                    if (error == null) {
+                        error = t;
+                    }
+                }
+            }
+        }
+        checkErrors();
+
+        if (error != null) {
+            throw ProcessException.wrap(error);
+        }
+    }
+
+    /**
+     * Rethrows the first error from any branch. As with
+     * {@link XMLFilterFork} the other branches carry on.
+     */
+    private void checkErrors() {
+        if (branches != null) {
+            for (final Branch branch : branches) {
+                final Throwable t = branch.error.getAndSet(null);
+                if (t != null) {
+                    throw ProcessException.wrap(t);
+                }
+            }
+        }
+    }
+
+    private void stopBranches() {
+        final Branch[] stopping = branches;
+        branches = null;
+
+        for (final Branch branch : stopping) {
+            branch.put(STOP);
+        }
+        for (final Branch branch : stopping) {
+            try {
+                branch.stopped.await();
+            } catch (final InterruptedException e) {
+                throw ProcessException.wrap(e);
+            }
+
+            final Throwable t = branch.error.get();
+            if (t != null) {
+                LOGGER.debug(t, t);
+            }
+        }
+    }
+}
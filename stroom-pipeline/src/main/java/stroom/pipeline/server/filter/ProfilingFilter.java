@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.filter;
+
+import javax.annotation.Resource;
+
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import stroom.pipeline.server.task.ElementProfile;
+import stroom.pipeline.server.task.PipelineProfiler;
+import stroom.util.spring.StroomScope;
+
+/**
+ * Inserted in front of an XML element when a pipeline is not being stepped to
+ * record how long the element spends on each SAX event and how many records and
+ * characters it receives.
+ */
+@Component
+@Scope(StroomScope.PROTOTYPE)
+public class ProfilingFilter extends AbstractXMLFilter {
+    private static final int RECORD_DEPTH = 2;
+
+    @Resource
+    private PipelineProfiler pipelineProfiler;
+
+    private ElementProfile profile;
+    private int depth;
+
+    public void setProfile(final ElementProfile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        depth = 0;
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.startDocument();
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.endDocument();
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.startPrefixMapping(prefix, uri);
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.endPrefixMapping(prefix);
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        depth++;
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.startElement(uri, localName, qName, atts);
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        // Count each child of the root element as a record.
+        if (depth == RECORD_DEPTH) {
+            profile.incrementRecordsIn();
+        }
+        depth--;
+
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.endElement(uri, localName, qName);
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        profile.addCharsIn(length);
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.characters(ch, start, length);
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.ignorableWhitespace(ch, start, length);
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        final boolean entered = pipelineProfiler.enter(profile);
+        try {
+            super.processingInstruction(target, data);
+        } finally {
+            if (entered) {
+                pipelineProfiler.exit(profile);
+            }
+        }
+    }
+}
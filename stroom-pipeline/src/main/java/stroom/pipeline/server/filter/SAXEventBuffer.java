@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.filter;
+
+import java.util.Arrays;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A compact, replayable buffer of SAX events. Event types are held in a byte
+ * array, names in a string array and character data in a single char array
+ * so a record of events costs a handful of array writes rather than an object
+ * per event. Once filled a buffer is only read so it can be replayed by
+ * several threads at the same time.
+ */
+public class SAXEventBuffer {
+    private static final byte START_DOCUMENT = 1;
+    private static final byte END_DOCUMENT = 2;
+    private static final byte START_PREFIX_MAPPING = 3;
+    private static final byte END_PREFIX_MAPPING = 4;
+    private static final byte START_ELEMENT = 5;
+    private static final byte END_ELEMENT = 6;
+    private static final byte CHARACTERS = 7;
+    private static final byte IGNORABLE_WHITESPACE = 8;
+    private static final byte PROCESSING_INSTRUCTION = 9;
+    private static final byte SKIPPED_ENTITY = 10;
+
+    private static final Attributes EMPTY_ATTRIBUTES = new AttributesImpl();
+
+    private byte[] types = new byte[64];
+    private int typeCount;
+    private String[] strings = new String[128];
+    private int stringCount;
+    private Attributes[] attributes = new Attributes[16];
+    private int attributeCount;
+    private int[] lengths = new int[16];
+    private int lengthCount;
+    private char[] chars = new char[1024];
+    private int charCount;
+
+    private int lineNumber = -1;
+    private int columnNumber = -1;
+
+    public void startDocument() {
+        addType(START_DOCUMENT);
+    }
+
+    public void endDocument() {
+        addType(END_DOCUMENT);
+    }
+
+    public void startPrefixMapping(final String prefix, final String uri) {
+        addType(START_PREFIX_MAPPING);
+        addString(prefix);
+        addString(uri);
+    }
+
+    public void endPrefixMapping(final String prefix) {
+        addType(END_PREFIX_MAPPING);
+        addString(prefix);
+    }
+
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts) {
+        addType(START_ELEMENT);
+        addString(uri);
+        addString(localName);
+        addString(qName);
+        if (attributeCount == attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        }
+        if (atts == null || atts.getLength() == 0) {
+            attributes[attributeCount++] = EMPTY_ATTRIBUTES;
+        } else {
+            // Attributes objects are reused by parsers so take a copy.
+            attributes[attributeCount++] = new AttributesImpl(atts);
+        }
+    }
+
+    public void endElement(final String uri, final String localName, final String qName) {
+        addType(END_ELEMENT);
+        addString(uri);
+        addString(localName);
+        addString(qName);
+    }
+
+    public void characters(final char[] ch, final int start, final int length) {
+        addType(CHARACTERS);
+        addChars(ch, start, length);
+    }
+
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) {
+        addType(IGNORABLE_WHITESPACE);
+        addChars(ch, start, length);
+    }
+
+    public void processingInstruction(final String target, final String data) {
+        addType(PROCESSING_INSTRUCTION);
+        addString(target);
+        addString(data);
+    }
+
+    public void skippedEntity(final String name) {
+        addType(SKIPPED_ENTITY);
+        addString(name);
+    }
+
+    /**
+     * Records the position of the source document that the last event in
+     * this buffer came from.
+     */
+    public void setLocation(final Locator locator) {
+        if (locator != null) {
+            lineNumber = locator.getLineNumber();
+            columnNumber = locator.getColumnNumber();
+        }
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * @return The number of events held in this buffer.
+     */
+    public int size() {
+        return typeCount;
+    }
+
+    /**
+     * @return The number of characters held in this buffer.
+     */
+    public int getCharCount() {
+        return charCount;
+    }
+
+    /**
+     * Fires all of the buffered events at the supplied handler in the order
+     * they were received.
+     */
+    public void fire(final ContentHandler handler) throws SAXException {
+        int stringIndex = 0;
+        int attributeIndex = 0;
+        int lengthIndex = 0;
+        int charIndex = 0;
+
+        for (int i = 0; i < typeCount; i++) {
+            switch (types[i]) {
+            case START_DOCUMENT:
+                handler.startDocument();
+                break;
+            case END_DOCUMENT:
+                handler.endDocument();
+                break;
+            case START_PREFIX_MAPPING:
+                handler.startPrefixMapping(strings[stringIndex], strings[stringIndex + 1]);
+                stringIndex += 2;
+                break;
+            case END_PREFIX_MAPPING:
+                handler.endPrefixMapping(strings[stringIndex++]);
+                break;
+            case START_ELEMENT:
+                handler.startElement(strings[stringIndex], strings[stringIndex + 1], strings[stringIndex + 2],
+                        attributes[attributeIndex++]);
+                stringIndex += 3;
+                break;
+            case END_ELEMENT:
+                handler.endElement(strings[stringIndex], strings[stringIndex + 1], strings[stringIndex + 2]);
+                stringIndex += 3;
+                break;
+            case CHARACTERS: {
+                final int length = lengths[lengthIndex++];
+                handler.characters(chars, charIndex, length);
+                charIndex += length;
+                break;
+            }
+            case IGNORABLE_WHITESPACE: {
+                final int length = lengths[lengthIndex++];
+                handler.ignorableWhitespace(chars, charIndex, length);
+                charIndex += length;
+                break;
+            }
+            case PROCESSING_INSTRUCTION:
+                handler.processingInstruction(strings[stringIndex], strings[stringIndex + 1]);
+                stringIndex += 2;
+                break;
+            case SKIPPED_ENTITY:
+                handler.skippedEntity(strings[stringIndex++]);
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + types[i]);
+            }
+        }
+    }
+
+    private void addType(final byte type) {
+        if (typeCount == types.length) {
+            types = Arrays.copyOf(types, types.length * 2);
+        }
+        types[typeCount++] = type;
+    }
+
+    private void addString(final String string) {
+        if (stringCount == strings.length) {
+            strings = Arrays.copyOf(strings, strings.length * 2);
+        }
+        strings[stringCount++] = string;
+    }
+
+    private void addChars(final char[] ch, final int start, final int length) {
+        if (lengthCount == lengths.length) {
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[lengthCount++] = length;
+
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        System.arraycopy(ch, start, chars, charCount, length);
+        charCount += length;
+    }
+}
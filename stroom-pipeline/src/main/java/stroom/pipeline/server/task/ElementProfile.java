@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The time spent in a single pipeline element along with the records and
+ * characters that passed into it. Output is taken to be the total input of
+ * the elements directly downstream of this one, so an element that forks to
+ * several targets counts each record once per target.
+ */
+public class ElementProfile {
+    private final String elementId;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final List<ElementProfile> children = new ArrayList<>();
+    private long recordsIn;
+    private long charsIn;
+
+    public ElementProfile(final String elementId) {
+        this.elementId = elementId;
+    }
+
+    public String getElementId() {
+        return elementId;
+    }
+
+    /**
+     * @return a histogram of the time spent in this element for each SAX
+     *         event excluding time spent in downstream elements.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    void addChild(final ElementProfile child) {
+        if (!children.contains(child)) {
+            children.add(child);
+        }
+    }
+
+    public void incrementRecordsIn() {
+        recordsIn++;
+    }
+
+    public void addCharsIn(final long chars) {
+        charsIn += chars;
+    }
+
+    public long getRecordsIn() {
+        return recordsIn;
+    }
+
+    public long getCharsIn() {
+        return charsIn;
+    }
+
+    /**
+     * @return the records output or null if nothing downstream was profiled.
+     */
+    public Long getRecordsOut() {
+        if (children.size() == 0) {
+            return null;
+        }
+        long recordsOut = 0;
+        for (final ElementProfile child : children) {
+            recordsOut += child.recordsIn;
+        }
+        return recordsOut;
+    }
+
+    /**
+     * @return the characters output or null if nothing downstream was
+     *         profiled.
+     */
+    public Long getCharsOut() {
+        if (children.size() == 0) {
+            return null;
+        }
+        long charsOut = 0;
+        for (final ElementProfile child : children) {
+            charsOut += child.charsIn;
+        }
+        return charsOut;
+    }
+
+    @Override
+    public String toString() {
+        return elementId + " (events=" + histogram.getCount() + ", selfNs=" + histogram.getTotal() + ", recordsIn="
+                + recordsIn + ", recordsOut=" + getRecordsOut() + ")";
+    }
+}
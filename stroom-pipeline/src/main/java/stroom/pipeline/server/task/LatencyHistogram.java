@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+/**
+ * A cheap fixed size histogram of nanosecond latencies. Values are counted in
+ * power of two buckets so recording a value is just a couple of instructions
+ * and percentiles are accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+    // Bucket i holds values from 2^i to 2^(i + 1) - 1 with 0 in bucket 0.
+    private static final int BUCKETS = 63;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    public void record(final long nanos) {
+        final long value = nanos < 0 ? 0 : nanos;
+        counts[bucket(value)]++;
+        count++;
+        total += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public void add(final LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        if (other.max > max) {
+            max = other.max;
+        }
+    }
+
+    /**
+     * @param percentile
+     *            The percentile to get between 0 and 100.
+     * @return the upper bound of the bucket that holds the requested
+     *         percentile.
+     */
+    public long getPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        final long target = (long) Math.ceil(count * percentile / 100D);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return Math.min(max, (1L << (i + 1)) - 1);
+            }
+        }
+        return max;
+    }
+
+    private static int bucket(final long value) {
+        if (value == 0) {
+            return 0;
+        }
+        return 63 - Long.numberOfLeadingZeros(value);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.Resource;
+
+import org.springframework.stereotype.Component;
+
+import stroom.statistics.common.StatisticEvent;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.common.StatisticsFactory;
+import stroom.util.logging.StroomLogger;
+import stroom.util.spring.StroomFrequencySchedule;
+
+/**
+ * Aggregates element profiles from all pipelines run on this node and writes
+ * them to the internal statistics once a minute. The following statistics are
+ * written, all tagged with 'Pipeline' and 'Element':
+ *
+ * <ul>
+ * <li>'Pipeline Element Records' - count of records, tagged with 'Direction'
+ * of 'In' or 'Out'</li>
+ * <li>'Pipeline Element Characters' - count of characters, tagged with
+ * 'Direction' of 'In' or 'Out'</li>
+ * <li>'Pipeline Element Time' - value of the time spent in each element
+ * excluding downstream elements, tagged with 'Measure' of 'Total ms',
+ * 'P50 ns', 'P95 ns', 'P99 ns' or 'Max ns' where the percentiles are of the
+ * time spent handling each SAX event</li>
+ * </ul>
+ *
+ * Statistic stores with these names must exist for the statistics to be
+ * kept.
+ */
+@Component
+public class PipelineProfileStatistics {
+    public static final String RECORDS_STATISTIC = "Pipeline Element Records";
+    public static final String CHARACTERS_STATISTIC = "Pipeline Element Characters";
+    public static final String TIME_STATISTIC = "Pipeline Element Time";
+
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(PipelineProfileStatistics.class);
+
+    private static final String PIPELINE_TAG = "Pipeline";
+    private static final String ELEMENT_TAG = "Element";
+    private static final String DIRECTION_TAG = "Direction";
+    private static final String MEASURE_TAG = "Measure";
+
+    private static final class Aggregate {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long recordsIn;
+        private long charsIn;
+        private long recordsOut;
+        private long charsOut;
+        private boolean hasOutput;
+
+        private void add(final ElementProfile profile) {
+            histogram.add(profile.getHistogram());
+            recordsIn += profile.getRecordsIn();
+            charsIn += profile.getCharsIn();
+            if (profile.getRecordsOut() != null) {
+                hasOutput = true;
+                recordsOut += profile.getRecordsOut();
+                charsOut += profile.getCharsOut();
+            }
+        }
+    }
+
+    @Resource
+    private StatisticsFactory statisticsFactory;
+
+    private Map<String, Map<String, Aggregate>> pipelines = new HashMap<>();
+
+    public synchronized void add(final String pipelineName, final List<ElementProfile> profiles) {
+        if (profiles.size() == 0) {
+            return;
+        }
+
+        Map<String, Aggregate> elements = pipelines.get(pipelineName);
+        if (elements == null) {
+            elements = new HashMap<>();
+            pipelines.put(pipelineName, elements);
+        }
+
+        for (final ElementProfile profile : profiles) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("add() - %s %s", pipelineName, profile);
+            }
+
+            Aggregate aggregate = elements.get(profile.getElementId());
+            if (aggregate == null) {
+                aggregate = new Aggregate();
+                elements.put(profile.getElementId(), aggregate);
+            }
+            aggregate.add(profile);
+        }
+    }
+
+    @StroomFrequencySchedule("1m")
+    public void flush() {
+        final Map<String, Map<String, Aggregate>> current;
+        synchronized (this) {
+            if (pipelines.size() == 0) {
+                return;
+            }
+            current = pipelines;
+            pipelines = new HashMap<>();
+        }
+
+        try {
+            final long timeMs = System.currentTimeMillis();
+            final List<StatisticEvent> events = new ArrayList<>();
+            for (final Entry<String, Map<String, Aggregate>> pipelineEntry : current.entrySet()) {
+                for (final Entry<String, Aggregate> elementEntry : pipelineEntry.getValue().entrySet()) {
+                    addEvents(events, timeMs, pipelineEntry.getKey(), elementEntry.getKey(), elementEntry.getValue());
+                }
+            }
+
+            if (statisticsFactory != null) {
+                statisticsFactory.instance().putEvents(events);
+            }
+        } catch (final Exception e) {
+            LOGGER.error("flush()", e);
+        }
+    }
+
+    private void addEvents(final List<StatisticEvent> events, final long timeMs, final String pipelineName,
+            final String elementId, final Aggregate aggregate) {
+        events.add(count(timeMs, RECORDS_STATISTIC, pipelineName, elementId, DIRECTION_TAG, "In",
+                aggregate.recordsIn));
+        events.add(count(timeMs, CHARACTERS_STATISTIC, pipelineName, elementId, DIRECTION_TAG, "In",
+                aggregate.charsIn));
+        if (aggregate.hasOutput) {
+            events.add(count(timeMs, RECORDS_STATISTIC, pipelineName, elementId, DIRECTION_TAG, "Out",
+                    aggregate.recordsOut));
+            events.add(count(timeMs, CHARACTERS_STATISTIC, pipelineName, elementId, DIRECTION_TAG, "Out",
+                    aggregate.charsOut));
+        }
+
+        final LatencyHistogram histogram = aggregate.histogram;
+        events.add(value(timeMs, pipelineName, elementId, "Total ms", histogram.getTotal() / 1000000D));
+        events.add(value(timeMs, pipelineName, elementId, "P50 ns", histogram.getPercentile(50)));
+        events.add(value(timeMs, pipelineName, elementId, "P95 ns", histogram.getPercentile(95)));
+        events.add(value(timeMs, pipelineName, elementId, "P99 ns", histogram.getPercentile(99)));
+        events.add(value(timeMs, pipelineName, elementId, "Max ns", histogram.getMax()));
+    }
+
+    private StatisticEvent count(final long timeMs, final String name, final String pipelineName,
+            final String elementId, final String tagName, final String tagValue, final long count) {
+        return new StatisticEvent(timeMs, name, Arrays.asList(new StatisticTag(PIPELINE_TAG, pipelineName),
+                new StatisticTag(ELEMENT_TAG, elementId), new StatisticTag(tagName, tagValue)), count);
+    }
+
+    private StatisticEvent value(final long timeMs, final String pipelineName, final String elementId,
+            final String measure, final double value) {
+        return new StatisticEvent(timeMs, TIME_STATISTIC, Arrays.asList(new StatisticTag(PIPELINE_TAG, pipelineName),
+                new StatisticTag(ELEMENT_TAG, elementId), new StatisticTag(MEASURE_TAG, measure)), value);
+    }
+}
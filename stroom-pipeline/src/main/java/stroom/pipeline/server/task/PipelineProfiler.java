@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import stroom.node.server.StroomPropertyService;
+import stroom.util.spring.StroomScope;
+
+/**
+ * Collects the profiles of all profiled elements in the pipeline being run by
+ * the current task. Profiled elements call {@link #enter(ElementProfile)} and
+ * {@link #exit(ElementProfile)} around every SAX event they pass on so that
+ * time spent in downstream elements can be subtracted from the time spent in
+ * each element. Branches of an asynchronous fork run on their own threads so
+ * each thread keeps its own stack of profiled elements.
+ */
+@Component
+@Scope(StroomScope.TASK)
+public class PipelineProfiler {
+    public static final String ENABLED_PROPERTY = "stroom.pipeline.profile.enabled";
+
+    private static final int MAX_DEPTH = 256;
+
+    @Resource
+    private StroomPropertyService propertyService;
+
+    private static class Stack {
+        private final long[] startNanos = new long[MAX_DEPTH];
+        private final long[] childNanos = new long[MAX_DEPTH];
+        private final ElementProfile[] profiles = new ElementProfile[MAX_DEPTH];
+        private int depth = -1;
+    }
+
+    private final List<ElementProfile> profiles = new ArrayList<>();
+    private final ThreadLocal<Stack> stacks = ThreadLocal.withInitial(Stack::new);
+    private Boolean enabled;
+
+    public boolean isEnabled() {
+        if (enabled == null) {
+            enabled = propertyService != null && propertyService.getBooleanProperty(ENABLED_PROPERTY, false);
+        }
+        return enabled;
+    }
+
+    public ElementProfile createProfile(final String elementId) {
+        final ElementProfile profile = new ElementProfile(elementId);
+        profiles.add(profile);
+        return profile;
+    }
+
+    public List<ElementProfile> getProfiles() {
+        return Collections.unmodifiableList(profiles);
+    }
+
+    /**
+     * Called when an event enters a profiled element.
+     *
+     * @return false if the pipeline is nested too deeply to profile this
+     *         event, in which case {@link #exit(ElementProfile)} must not be
+     *         called.
+     */
+    public boolean enter(final ElementProfile profile) {
+        final Stack stack = stacks.get();
+        if (stack.depth + 1 >= MAX_DEPTH) {
+            return false;
+        }
+        final int depth = ++stack.depth;
+        stack.profiles[depth] = profile;
+        stack.childNanos[depth] = 0;
+        stack.startNanos[depth] = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Called when an event leaves a profiled element.
+     */
+    public void exit(final ElementProfile profile) {
+        final Stack stack = stacks.get();
+        int depth = stack.depth;
+        final long elapsed = System.nanoTime() - stack.startNanos[depth];
+        profile.getHistogram().record(elapsed - stack.childNanos[depth]);
+
+        stack.profiles[depth] = null;
+        depth = --stack.depth;
+        if (depth >= 0) {
+            stack.childNanos[depth] += elapsed;
+            // Link the element to the one upstream of it so that the output
+            // of the upstream element can be found.
+            stack.profiles[depth].addChild(profile);
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import javax.annotation.Resource;
@@ -34,6 +36,7 @@ import stroom.feed.shared.Feed;
 import stroom.feed.shared.FeedService;
 import stroom.io.StreamCloser;
 import stroom.node.server.NodeCache;
+import stroom.node.server.StroomPropertyService;
 import stroom.pipeline.destination.Destination;
 import stroom.pipeline.destination.DestinationProvider;
 import stroom.pipeline.server.DefaultErrorWriter;
@@ -79,13 +82,17 @@ import stroom.streamtask.server.StreamProcessorTaskExecutor;
 import stroom.streamtask.shared.StreamProcessor;
 import stroom.streamtask.shared.StreamProcessorFilter;
 import stroom.streamtask.shared.StreamTask;
+import stroom.task.server.TaskCallback;
+import stroom.task.server.TaskManager;
 import stroom.util.date.DateUtil;
 import stroom.util.io.PreviewInputStream;
 import stroom.util.io.WrappedOutputStream;
 import stroom.util.shared.ModelStringUtil;
 import stroom.util.shared.Severity;
+import stroom.util.shared.Task;
 import stroom.util.spring.StroomScope;
 import stroom.util.task.TaskMonitor;
+import stroom.util.task.TaskScopeContextHolder;
 import stroom.util.zip.HeaderMap;
 
 @Component
@@ -175,6 +182,11 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
     private static final int MIN_STREAM_SIZE = 1;
     private static final Pattern XML_DECL_PATTERN = Pattern.compile("<\\?\\s*xml[^>]*>", Pattern.CASE_INSENSITIVE);
 
+    public static final String MAX_STREAM_RANGES_PROPERTY = "stroom.pipeline.maxStreamRanges";
+    // Don't bother splitting streams that are too small to benefit.
+    static final long MIN_RANGE_PARTS = 10;
+    static final long MIN_RANGE_SEGMENTS = 10000;
+
     @Resource
     private PipelineFactory pipelineFactory;
     @Resource
@@ -216,21 +228,41 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
 
     @Resource
     private StatisticsFactory statisticEventStoreFactory;
+    @Resource
+    private PipelineProfiler pipelineProfiler;
+    @Resource
+    private PipelineProfileStatistics pipelineProfileStatistics;
+    @Resource
+    private StroomPropertyService propertyService;
+    @Resource
+    private TaskManager taskManager;
 
     private StreamProcessor streamProcessor;
     private StreamProcessorFilter streamProcessorFilter;
     private StreamTask streamTask;
     private StreamSource streamSource;
     private ProcessInfoOutputStreamProvider processInfoOutputStreamProvider;
+    private StreamRange range;
+    private final StreamRangeResult rangeTotals = new StreamRangeResult();
 
     @Override
     public void exec(final StreamProcessor streamProcessor, final StreamProcessorFilter streamProcessorFilter,
             final StreamTask streamTask, final StreamSource streamSource) {
+        exec(streamProcessor, streamProcessorFilter, streamTask, streamSource, null);
+    }
+
+    /**
+     * Processes a stream or, if a range is supplied, just the part of the
+     * stream that the range covers.
+     */
+    public void exec(final StreamProcessor streamProcessor, final StreamProcessorFilter streamProcessorFilter,
+            final StreamTask streamTask, final StreamSource streamSource, final StreamRange range) {
         try {
             this.streamProcessor = streamProcessor;
             this.streamProcessorFilter = streamProcessorFilter;
             this.streamTask = streamTask;
             this.streamSource = streamSource;
+            this.range = range;
 
             // Setup the error handler and receiver.
             errorReceiverProxy.setErrorReceiver(recordErrorReceiver);
@@ -266,9 +298,15 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
             final PipelineEntity pipelineEntity = pipelineEntityService.load(streamProcessor.getPipeline());
             pipelineHolder.setPipeline(pipelineEntity);
 
-            // Create the parser.
-            final PipelineData pipelineData = pipelineDataCache.get(pipelineEntity);
-            final Pipeline pipeline = pipelineFactory.create(pipelineData);
+            // Get the stream providers.
+            streamHolder.setStream(stream);
+            streamHolder.addProvider(streamSource);
+            streamHolder.addProvider(streamSource.getChildStream(StreamType.META));
+            streamHolder.addProvider(streamSource.getChildStream(StreamType.CONTEXT));
+
+            // See if the stream is big enough to be split into ranges that can
+            // be processed at the same time.
+            final List<StreamRange> ranges = createRanges(streamHolder.getProvider(stream.getStreamType()));
 
             // Create some processing info.
             final StringBuilder infoSb = new StringBuilder();
@@ -280,6 +318,13 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
             infoSb.append(stream.getId());
             infoSb.append(", streamCreated=");
             infoSb.append(DateUtil.createNormalDateTimeString(stream.getCreateMs()));
+            if (range != null) {
+                infoSb.append(", ");
+                infoSb.append(range);
+            } else if (ranges.size() > 1) {
+                infoSb.append(", ranges=");
+                infoSb.append(ranges.size());
+            }
             final String info = infoSb.toString();
 
             // Create processing start message.
@@ -302,8 +347,17 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
             streamProcessorHolder.setStreamProcessor(streamProcessor, streamTask);
             feedHolder.setFeed(feed);
 
-            // Process the streams.
-            processNestedStreams(pipeline, stream, streamSource, feed, stream.getStreamType());
+            if (ranges.size() > 1) {
+                // Process the ranges as child tasks.
+                processRanges(ranges);
+            } else {
+                // Create the parser.
+                final PipelineData pipelineData = pipelineDataCache.get(pipelineEntity);
+                final Pipeline pipeline = pipelineFactory.create(pipelineData);
+
+                // Process the streams.
+                processNestedStreams(pipeline, stream, streamSource, feed, stream.getStreamType());
+            }
 
             // Create processing finished message.
             final StringBuilder finishedInfoSb = new StringBuilder();
@@ -322,7 +376,11 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
             // Check we are not superseded
             checkSuperseded();
 
-            recordStats(feed, pipelineEntity);
+            if (range == null) {
+                recordStats(feed, pipelineEntity);
+            } else {
+                recordProfiles(pipelineEntity);
+            }
 
         } catch (final Exception e) {
             outputError(e);
@@ -410,18 +468,122 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
         } catch (final Exception ex) {
             LOGGER.error("recordStats", ex);
         }
+
+        recordProfiles(pipelineEntity);
+    }
+
+    private void recordProfiles(final PipelineEntity pipelineEntity) {
+        try {
+            if (pipelineProfiler.isEnabled()) {
+                pipelineProfileStatistics.add(pipelineEntity.getName(), pipelineProfiler.getProfiles());
+            }
+        } catch (final Exception ex) {
+            LOGGER.error("recordProfiles", ex);
+        }
+    }
+
+    /**
+     * Works out how to split the stream into ranges that can be processed at
+     * the same time. Streams are only split if splitting is enabled, the
+     * stream is big enough and the task doesn't select specific records.
+     */
+    private List<StreamRange> createRanges(final StreamSourceInputStreamProvider mainProvider) throws IOException {
+        if (range != null) {
+            return Collections.emptyList();
+        }
+        final String data = streamTask.getData();
+        if (data != null && data.length() > 0) {
+            return Collections.emptyList();
+        }
+        final int maxRanges = propertyService.getIntProperty(MAX_STREAM_RANGES_PROPERTY, 1);
+        if (maxRanges <= 1) {
+            return Collections.emptyList();
+        }
+
+        final long partCount = mainProvider.getStreamCount();
+        if (partCount > 1) {
+            return StreamRange.splitParts(partCount, (int) Math.min(maxRanges, partCount / MIN_RANGE_PARTS));
+        }
+
+        if (partCount == 1) {
+            final RASegmentInputStream segmentInputStream = mainProvider.getSegmentInputStream(0);
+            if (segmentInputStream != null) {
+                // The first and last segments are the header and footer.
+                final long recordCount = segmentInputStream.count() - 2;
+                return StreamRange.splitSegments(segmentInputStream.count(),
+                        (int) Math.min(maxRanges, recordCount / MIN_RANGE_SEGMENTS));
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Processes each range as a child task and waits for them all to finish.
+     * Each range writes its own output and the record counts of all ranges
+     * are added together once they have finished so that the meta data for
+     * this task reflects the whole stream.
+     */
+    private void processRanges(final List<StreamRange> ranges) {
+        final Task<?> parentTask = TaskScopeContextHolder.getContext().getTask();
+        final CountDownLatch countDownLatch = new CountDownLatch(ranges.size());
+
+        try {
+            for (final StreamRange range : ranges) {
+                final TaskCallback<StreamRangeResult> taskCallback = new TaskCallback<StreamRangeResult>() {
+                    @Override
+                    public void onSuccess(final StreamRangeResult result) {
+                        try {
+                            synchronized (rangeTotals) {
+                                rangeTotals.add(result);
+                            }
+                        } finally {
+                            countDownLatch.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable t) {
+                        try {
+                            outputError(t instanceof Exception ? (Exception) t : new RuntimeException(t));
+                        } finally {
+                            countDownLatch.countDown();
+                        }
+                    }
+                };
+
+                final StreamRangeTask task = new StreamRangeTask(parentTask, streamProcessor, streamProcessorFilter,
+                        streamTask, streamSource.getStream().getId(), range);
+                taskManager.execAsync(task, taskCallback);
+            }
+
+            while (!parentTask.isTerminated() && countDownLatch.getCount() > 0) {
+                countDownLatch.await(10, TimeUnit.SECONDS);
+            }
+        } catch (final InterruptedException e) {
+            outputError(e);
+        } finally {
+            // Update the meta data for any output this task has written, e.g.
+            // errors.
+            updateMetaData(streamSource);
+        }
     }
 
     public long getRead() {
-        return recordCount.getRead();
+        return recordCount.getRead() + rangeTotals.getRead();
     }
 
     public long getWritten() {
-        return recordCount.getWritten();
+        return recordCount.getWritten() + rangeTotals.getWritten();
     }
 
     public long getMarkerCount(final Severity... severity) {
         long count = 0;
+        synchronized (rangeTotals) {
+            for (final Severity sev : severity) {
+                count += rangeTotals.getMarkerCount(sev);
+            }
+        }
         if (errorReceiverProxy.getErrorReceiver() instanceof ErrorStatistics) {
             final ErrorStatistics statistics = (ErrorStatistics) errorReceiverProxy.getErrorReceiver();
             for (final Severity sev : severity) {
@@ -439,12 +601,6 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
         try {
             boolean startedProcessing = false;
 
-            // Get the stream providers.
-            streamHolder.setStream(stream);
-            streamHolder.addProvider(streamSource);
-            streamHolder.addProvider(streamSource.getChildStream(StreamType.META));
-            streamHolder.addProvider(streamSource.getChildStream(StreamType.CONTEXT));
-
             // Get the main stream provider.
             final StreamSourceInputStreamProvider mainProvider = streamHolder.getProvider(streamType);
 
@@ -453,15 +609,33 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
                 locationFactory.setLocationFactory(streamLocationFactory);
 
                 // Loop over the stream boundaries and process each
-                // sequentially.
-                final long streamCount = mainProvider.getStreamCount();
-                for (long streamNo = 0; streamNo < streamCount && !taskMonitor.isTerminated(); streamNo++) {
+                // sequentially. If we are processing a range then only
+                // process the boundaries within it.
+                long firstStreamNo = 0;
+                long lastStreamNo = mainProvider.getStreamCount() - 1;
+                if (range != null) {
+                    firstStreamNo = Math.max(firstStreamNo, range.getFirstPart());
+                    lastStreamNo = Math.min(lastStreamNo, range.getLastPart());
+                }
+                for (long streamNo = firstStreamNo; streamNo <= lastStreamNo
+                        && !taskMonitor.isTerminated(); streamNo++) {
                     InputStream inputStream = null;
 
                     // If the task requires specific events to be processed then
                     // add them.
                     final String data = streamTask.getData();
-                    if (data != null && data.length() > 0) {
+                    if (range != null && range.isSegmentRange()) {
+                        // Include the header, the records in the range and
+                        // the footer.
+                        final RASegmentInputStream raSegmentInputStream = mainProvider.getSegmentInputStream(streamNo);
+                        raSegmentInputStream.include(0);
+                        for (long i = range.getFirstSegment(); i <= range.getLastSegment(); i++) {
+                            raSegmentInputStream.include(i);
+                        }
+                        raSegmentInputStream.include(raSegmentInputStream.count() - 1);
+                        inputStream = raSegmentInputStream;
+
+                    } else if (data != null && data.length() > 0) {
                         final List<InclusiveRange> ranges = InclusiveRanges.rangesFromString(data);
                         final RASegmentInputStream raSegmentInputStream = mainProvider.getSegmentInputStream(streamNo);
                         raSegmentInputStream.include(0);
@@ -571,8 +745,8 @@ public class PipelineStreamProcessor implements StreamProcessorTaskExecutor {
             // Write some meta data to the map for all output streams to use
             // when they close.
             metaData.put("Source Stream", String.valueOf(source.getStream().getId()));
-            metaData.put(StreamAttributeConstants.REC_READ, String.valueOf(recordCount.getRead()));
-            metaData.put(StreamAttributeConstants.REC_WRITE, String.valueOf(recordCount.getWritten()));
+            metaData.put(StreamAttributeConstants.REC_READ, String.valueOf(getRead()));
+            metaData.put(StreamAttributeConstants.REC_WRITE, String.valueOf(getWritten()));
             metaData.put(StreamAttributeConstants.REC_INFO, String.valueOf(getMarkerCount(Severity.INFO)));
             metaData.put(StreamAttributeConstants.REC_WARN, String.valueOf(getMarkerCount(Severity.WARNING)));
             metaData.put(StreamAttributeConstants.REC_ERROR, String.valueOf(getMarkerCount(Severity.ERROR)));
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import stroom.pipeline.shared.SharedElementData;
+import stroom.pipeline.shared.SharedStepData;
+import stroom.pipeline.shared.StepLocation;
+
+/**
+ * Records that have already been stepped to in a stepping session, kept
+ * between stepping requests so that refreshing a record, or stepping back or
+ * forward to an adjacent record that has been visited before, does not need
+ * the stream to be processed again. Stepping to a record that has not been
+ * visited still processes the stream from the start.
+ *
+ * Records are held as the shared step data returned to the client so they
+ * are not tied to the task that produced them. The least recently used
+ * records are dropped once the total input and output held exceeds a
+ * character budget.
+ */
+public class SteppingSession {
+    public static class SteppedRecord {
+        private final SharedStepData stepData;
+        private final int streamOffset;
+        private final long size;
+
+        public SteppedRecord(final SharedStepData stepData, final int streamOffset) {
+            this.stepData = stepData;
+            this.streamOffset = streamOffset;
+            this.size = estimateSize(stepData);
+        }
+
+        public SharedStepData getStepData() {
+            return stepData;
+        }
+
+        public int getStreamOffset() {
+            return streamOffset;
+        }
+
+        /**
+         * @return The number of input and output characters held.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        private static long estimateSize(final SharedStepData stepData) {
+            long size = 0;
+            if (stepData.getElementMap() != null) {
+                for (final SharedElementData elementData : stepData.getElementMap().values()) {
+                    if (elementData != null) {
+                        if (elementData.getInput() != null) {
+                            size += elementData.getInput().length();
+                        }
+                        if (elementData.getOutput() != null) {
+                            size += elementData.getOutput().length();
+                        }
+                    }
+                }
+            }
+            return size;
+        }
+    }
+
+    static final int MAX_RECORDS = 1000;
+    static final long MAX_CHARS = 1000000;
+
+    private final Map<StepLocation, SteppedRecord> records = new LinkedHashMap<>(16, 0.75F, true);
+    private final long maxChars;
+    private long chars;
+
+    public SteppingSession() {
+        this(MAX_CHARS);
+    }
+
+    SteppingSession(final long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    public synchronized SteppedRecord getRecord(final StepLocation location) {
+        return records.get(location);
+    }
+
+    public synchronized void putRecord(final StepLocation location, final SteppedRecord record) {
+        // Don't let a single huge record clear out all of the others.
+        if (record.getSize() > maxChars) {
+            return;
+        }
+
+        final SteppedRecord previous = records.put(location, record);
+        if (previous != null) {
+            chars -= previous.getSize();
+        }
+        chars += record.getSize();
+
+        // Drop the least recently used records until we are within budget.
+        final Iterator<SteppedRecord> iter = records.values().iterator();
+        while (iter.hasNext() && (records.size() > MAX_RECORDS || chars > maxChars)) {
+            chars -= iter.next().getSize();
+            iter.remove();
+        }
+    }
+
+    synchronized int getRecordCount() {
+        return records.size();
+    }
+
+    synchronized long getChars() {
+        return chars;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import stroom.cache.AbstractCacheBean;
+import stroom.dictionary.shared.Dictionary;
+import stroom.entity.server.event.EntityEvent;
+import stroom.entity.server.event.EntityEventBus;
+import stroom.entity.server.event.EntityEventHandler;
+import stroom.feed.shared.Feed;
+import stroom.pipeline.shared.PipelineEntity;
+import stroom.pipeline.shared.TextConverter;
+import stroom.pipeline.shared.XSLT;
+import stroom.security.Insecure;
+import stroom.util.spring.StroomFrequencySchedule;
+import stroom.xmlschema.shared.XMLSchema;
+import net.sf.ehcache.CacheManager;
+
+/**
+ * Holds stepping sessions between stepping requests so that records that have
+ * already been stepped to can be returned without processing the stream again.
+ * Each session limits how much output it holds so the cache holds at most
+ * {@link #MAX_CACHE_ENTRIES} times {@link SteppingSession#MAX_CHARS}
+ * characters.
+ *
+ * Sessions hold output produced with the XSLT, text converters, dictionaries,
+ * schemas, feeds and referenced pipelines at the time so the cache is cleared
+ * whenever one of these changes. Only code that is being edited in the
+ * stepper is part of the key.
+ */
+@Insecure
+@Component
+@EntityEventHandler(type = XSLT.ENTITY_TYPE)
+public class SteppingSessionCache extends AbstractCacheBean<SteppingSessionKey, SteppingSession>
+        implements EntityEvent.Handler, InitializingBean {
+    static final int MAX_CACHE_ENTRIES = 20;
+
+    private final EntityEventBus entityEventBus;
+
+    @Inject
+    public SteppingSessionCache(final CacheManager cacheManager, final EntityEventBus entityEventBus) {
+        super(cacheManager, "Stepping Session Cache", MAX_CACHE_ENTRIES);
+        this.entityEventBus = entityEventBus;
+        setMaxIdleTime(10, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        entityEventBus.addHandler(this, TextConverter.ENTITY_TYPE);
+        entityEventBus.addHandler(this, Dictionary.ENTITY_TYPE);
+        entityEventBus.addHandler(this, XMLSchema.ENTITY_TYPE);
+        entityEventBus.addHandler(this, Feed.ENTITY_TYPE);
+        entityEventBus.addHandler(this, PipelineEntity.ENTITY_TYPE);
+    }
+
+    @Override
+    protected SteppingSession create(final SteppingSessionKey key) {
+        return new SteppingSession();
+    }
+
+    @Override
+    @StroomFrequencySchedule("1m")
+    public void evictExpiredElements() {
+        super.evictExpiredElements();
+    }
+
+    /**
+     * Sessions may hold output from out of date entities so clear them all.
+     */
+    @Override
+    public void onChange(final EntityEvent event) {
+        clear();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.Map;
+
+import stroom.entity.shared.VersionedEntityDecorator;
+import stroom.pipeline.shared.PipelineEntity;
+import stroom.util.shared.EqualsBuilder;
+import stroom.util.shared.HashCodeBuilder;
+
+/**
+ * Identifies a stepping session. Stepping output is only reusable while the
+ * user, pipeline and any code being edited in the stepper stay the same.
+ */
+public class SteppingSessionKey {
+    private final String sessionId;
+    private final String userId;
+    private final VersionedEntityDecorator<PipelineEntity> pipeline;
+    private final Long childStreamTypeId;
+    private final Map<String, String> code;
+    private final int hashCode;
+
+    public SteppingSessionKey(final String sessionId, final String userId,
+            final VersionedEntityDecorator<PipelineEntity> pipeline, final Long childStreamTypeId,
+            final Map<String, String> code) {
+        this.sessionId = sessionId;
+        this.userId = userId;
+        this.pipeline = pipeline;
+        this.childStreamTypeId = childStreamTypeId;
+        this.code = code;
+
+        final HashCodeBuilder builder = new HashCodeBuilder();
+        builder.append(sessionId);
+        builder.append(userId);
+        builder.append(pipeline);
+        builder.append(childStreamTypeId);
+        builder.append(code);
+        hashCode = builder.toHashCode();
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || !(o instanceof SteppingSessionKey)) {
+            return false;
+        }
+
+        final SteppingSessionKey key = (SteppingSessionKey) o;
+        final EqualsBuilder builder = new EqualsBuilder();
+        builder.append(sessionId, key.sessionId);
+        builder.append(userId, key.userId);
+        builder.append(pipeline, key.pipeline);
+        builder.append(childStreamTypeId, key.childStreamTypeId);
+        builder.append(code, key.code);
+        return builder.isEquals();
+    }
+
+    @Override
+    public String toString() {
+        return "[" + sessionId + ":" + userId + ":" + pipeline.getEntity() + "]";
+    }
+}
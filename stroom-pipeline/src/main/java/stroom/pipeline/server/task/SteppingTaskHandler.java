@@ -16,6 +16,7 @@
 
 package stroom.pipeline.server.task;
 
+import stroom.entity.shared.VersionedEntityDecorator;
 import stroom.feed.shared.Feed;
 import stroom.feed.shared.FeedService;
 import stroom.io.StreamCloser;
@@ -33,6 +34,7 @@ import stroom.pipeline.shared.PipelineEntity;
 import stroom.pipeline.shared.PipelineEntityService;
 import stroom.pipeline.shared.StepLocation;
 import stroom.pipeline.shared.StepType;
+import stroom.pipeline.shared.SteppingFilterSettings;
 import stroom.pipeline.shared.SteppingResult;
 import stroom.pipeline.shared.data.PipelineData;
 import stroom.pipeline.shared.data.PipelineElementType;
@@ -115,6 +117,8 @@ public class SteppingTaskHandler extends AbstractTaskHandler<SteppingTask, Stepp
     @Resource
     private SteppingResponseCache steppingResponseCache;
     @Resource
+    private SteppingSessionCache steppingSessionCache;
+    @Resource
     private PipelineDataCache pipelineDataCache;
     @Resource
     private PipelineContext pipelineContext;
@@ -137,6 +141,20 @@ public class SteppingTaskHandler extends AbstractTaskHandler<SteppingTask, Stepp
         StepData stepData = null;
         generalErrors = new HashSet<>();
 
+        // If we have already stepped to the requested record in this session
+        // then return it without processing the stream again.
+        final SteppingSession session = getSession(request);
+        if (session != null) {
+            final StepLocation checkpointLocation = getCheckpointLocation(request);
+            if (checkpointLocation != null) {
+                final SteppingSession.SteppedRecord record = session.getRecord(checkpointLocation);
+                if (record != null) {
+                    return new SteppingResult(request.getStepFilterMap(), checkpointLocation, record.getStepData(),
+                            record.getStreamOffset(), true, generalErrors);
+                }
+            }
+        }
+
         loggingErrorReceiver = new LoggingErrorReceiver();
         errorReceiverProxy.setErrorReceiver(loggingErrorReceiver);
 
@@ -182,6 +200,12 @@ public class SteppingTaskHandler extends AbstractTaskHandler<SteppingTask, Stepp
                 }
             }
 
+            // Remember this record so we can come back to it.
+            if (session != null && generalErrors.size() == 0) {
+                session.putRecord(currentLocation,
+                        new SteppingSession.SteppedRecord(stepData.convertToShared(), curentStreamOffset));
+            }
+
         } else {
             // Pick up any step data that remains so we can deliver any errors
             // that caused the system not to step.
@@ -193,6 +217,59 @@ public class SteppingTaskHandler extends AbstractTaskHandler<SteppingTask, Stepp
                 curentStreamOffset, controller.isFound(), generalErrors);
     }
 
+    private SteppingSession getSession(final SteppingTask request) {
+        if (request.getPipeline() == null) {
+            return null;
+        }
+
+        final PipelineEntity pipelineEntity = pipelineEntityService.loadByUuid(request.getPipeline().getUuid());
+        if (pipelineEntity == null) {
+            return null;
+        }
+
+        Long childStreamTypeId = null;
+        if (request.getChildStreamType() != null) {
+            childStreamTypeId = request.getChildStreamType().getId();
+        }
+
+        final SteppingSessionKey key = new SteppingSessionKey(request.getSessionId(), request.getUserId(),
+                new VersionedEntityDecorator<>(pipelineEntity), childStreamTypeId, request.getCode());
+        return steppingSessionCache.get(key);
+    }
+
+    /**
+     * Gets the location of the record that a request will step to if it can
+     * be known without processing, i.e. the same record for a refresh or the
+     * adjacent record in the same stream when no step filters are active.
+     */
+    private StepLocation getCheckpointLocation(final SteppingTask request) {
+        final StepLocation location = request.getStepLocation();
+        final StepType stepType = request.getStepType();
+        if (location == null || stepType == null) {
+            return null;
+        }
+
+        if (StepType.REFRESH.equals(stepType)) {
+            return location;
+        }
+
+        if (request.getStepFilterMap() != null) {
+            for (final SteppingFilterSettings settings : request.getStepFilterMap().values()) {
+                if (settings != null && settings.isActive()) {
+                    return null;
+                }
+            }
+        }
+
+        if (StepType.FORWARD.equals(stepType) && location.getRecordNo() < Long.MAX_VALUE) {
+            return new StepLocation(location.getStreamId(), location.getStreamNo(), location.getRecordNo() + 1);
+        } else if (StepType.BACKWARD.equals(stepType) && location.getRecordNo() > 1) {
+            return new StepLocation(location.getStreamId(), location.getStreamNo(), location.getRecordNo() - 1);
+        }
+
+        return null;
+    }
+
     private void initialise(final SteppingTask request) {
         if (!taskMonitor.isTerminated()) {
             final StepType stepType = request.getStepType();
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A contiguous slice of a stream that can be processed independently of the
+ * rest of the stream. A range either covers a run of nested parts of a multi
+ * part stream or a run of record segments within a single segmented part. In
+ * the latter case the first and last segments of the part (the XML header and
+ * footer) are always included so that each slice is a well formed document.
+ */
+public class StreamRange implements Serializable {
+    private static final long serialVersionUID = -1386327391946720434L;
+
+    private static final long ALL_SEGMENTS = -1;
+
+    private final long firstPart;
+    private final long lastPart;
+    private final long firstSegment;
+    private final long lastSegment;
+
+    private StreamRange(final long firstPart, final long lastPart, final long firstSegment, final long lastSegment) {
+        this.firstPart = firstPart;
+        this.lastPart = lastPart;
+        this.firstSegment = firstSegment;
+        this.lastSegment = lastSegment;
+    }
+
+    /**
+     * Splits the parts of a multi part stream into a number of contiguous
+     * ranges of roughly equal size.
+     */
+    public static List<StreamRange> splitParts(final long partCount, final int rangeCount) {
+        if (partCount < 1) {
+            return Collections.emptyList();
+        }
+
+        final List<StreamRange> ranges = new ArrayList<>();
+        for (final long[] span : split(0, partCount - 1, rangeCount)) {
+            ranges.add(new StreamRange(span[0], span[1], ALL_SEGMENTS, ALL_SEGMENTS));
+        }
+        return ranges;
+    }
+
+    /**
+     * Splits the record segments of a single segmented part into a number of
+     * contiguous ranges of roughly equal size. The header and footer segments
+     * are not part of any range as every range includes them.
+     */
+    public static List<StreamRange> splitSegments(final long segmentCount, final int rangeCount) {
+        if (segmentCount < 3) {
+            return Collections.emptyList();
+        }
+
+        final List<StreamRange> ranges = new ArrayList<>();
+        for (final long[] span : split(1, segmentCount - 2, rangeCount)) {
+            ranges.add(new StreamRange(0, 0, span[0], span[1]));
+        }
+        return ranges;
+    }
+
+    private static List<long[]> split(final long min, final long max, final int rangeCount) {
+        final long total = max - min + 1;
+        final long count = Math.max(1, Math.min(rangeCount, total));
+        final long size = total / count;
+        final long remainder = total % count;
+
+        final List<long[]> spans = new ArrayList<>();
+        long start = min;
+        for (long i = 0; i < count; i++) {
+            // Spread any remainder over the first ranges.
+            final long end = start + size - 1 + (i < remainder ? 1 : 0);
+            spans.add(new long[] { start, end });
+            start = end + 1;
+        }
+        return spans;
+    }
+
+    public long getFirstPart() {
+        return firstPart;
+    }
+
+    public long getLastPart() {
+        return lastPart;
+    }
+
+    /**
+     * @return True if this range selects record segments within a part rather
+     *         than whole parts.
+     */
+    public boolean isSegmentRange() {
+        return firstSegment != ALL_SEGMENTS;
+    }
+
+    public long getFirstSegment() {
+        return firstSegment;
+    }
+
+    public long getLastSegment() {
+        return lastSegment;
+    }
+
+    @Override
+    public String toString() {
+        if (isSegmentRange()) {
+            return "part " + firstPart + ", segments " + firstSegment + "-" + lastSegment;
+        }
+        return "parts " + firstPart + "-" + lastPart;
+    }
+}
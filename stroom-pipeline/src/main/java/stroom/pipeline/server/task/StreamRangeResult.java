@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import stroom.util.shared.Severity;
+import stroom.util.shared.SharedObject;
+
+/**
+ * The record counts produced by processing a single {@link StreamRange}.
+ */
+public class StreamRangeResult implements SharedObject {
+    private static final long serialVersionUID = 2861447290167375126L;
+
+    private long read;
+    private long written;
+    private final Map<Severity, Long> markerCounts = new EnumMap<>(Severity.class);
+
+    public StreamRangeResult() {
+    }
+
+    public StreamRangeResult(final long read, final long written) {
+        this.read = read;
+        this.written = written;
+    }
+
+    public long getRead() {
+        return read;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public void setMarkerCount(final Severity severity, final long count) {
+        markerCounts.put(severity, count);
+    }
+
+    public long getMarkerCount(final Severity severity) {
+        final Long count = markerCounts.get(severity);
+        if (count == null) {
+            return 0;
+        }
+        return count;
+    }
+
+    /**
+     * Adds the counts from another range to this one.
+     */
+    public void add(final StreamRangeResult result) {
+        read += result.read;
+        written += result.written;
+        for (final Severity severity : Severity.values()) {
+            final long count = getMarkerCount(severity) + result.getMarkerCount(severity);
+            if (count > 0) {
+                markerCounts.put(severity, count);
+            }
+        }
+    }
+}
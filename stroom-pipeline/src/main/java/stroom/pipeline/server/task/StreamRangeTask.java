@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import stroom.streamtask.shared.StreamProcessor;
+import stroom.streamtask.shared.StreamProcessorFilter;
+import stroom.streamtask.shared.StreamTask;
+import stroom.util.shared.Task;
+import stroom.util.task.ServerTask;
+
+/**
+ * Processes one range of a stream that has been split so that the ranges can
+ * be processed at the same time.
+ */
+public class StreamRangeTask extends ServerTask<StreamRangeResult> {
+    private StreamProcessor streamProcessor;
+    private StreamProcessorFilter streamProcessorFilter;
+    private StreamTask streamTask;
+    private long streamId;
+    private StreamRange range;
+
+    public StreamRangeTask() {
+    }
+
+    public StreamRangeTask(final Task<?> parentTask, final StreamProcessor streamProcessor,
+            final StreamProcessorFilter streamProcessorFilter, final StreamTask streamTask, final long streamId,
+            final StreamRange range) {
+        super(parentTask);
+        this.streamProcessor = streamProcessor;
+        this.streamProcessorFilter = streamProcessorFilter;
+        this.streamTask = streamTask;
+        this.streamId = streamId;
+        this.range = range;
+        setTaskName("Process stream " + streamId + " " + range);
+    }
+
+    public StreamProcessor getStreamProcessor() {
+        return streamProcessor;
+    }
+
+    public StreamProcessorFilter getStreamProcessorFilter() {
+        return streamProcessorFilter;
+    }
+
+    public StreamTask getStreamTask() {
+        return streamTask;
+    }
+
+    public long getStreamId() {
+        return streamId;
+    }
+
+    public StreamRange getRange() {
+        return range;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import javax.annotation.Resource;
+
+import org.springframework.context.annotation.Scope;
+
+import stroom.streamstore.server.StreamSource;
+import stroom.streamstore.server.StreamStore;
+import stroom.task.server.AbstractTaskHandler;
+import stroom.task.server.TaskHandlerBean;
+import stroom.util.shared.Severity;
+import stroom.util.spring.StroomScope;
+
+@TaskHandlerBean(task = StreamRangeTask.class)
+@Scope(value = StroomScope.TASK)
+public class StreamRangeTaskHandler extends AbstractTaskHandler<StreamRangeTask, StreamRangeResult> {
+    @Resource
+    private StreamStore streamStore;
+    @Resource
+    private PipelineStreamProcessor pipelineStreamProcessor;
+
+    @Override
+    public StreamRangeResult exec(final StreamRangeTask task) {
+        // Each range reads through its own stream source so that ranges don't
+        // move the position of streams that other ranges are using.
+        final StreamSource streamSource = streamStore.openStreamSource(task.getStreamId());
+        try {
+            pipelineStreamProcessor.exec(task.getStreamProcessor(), task.getStreamProcessorFilter(),
+                    task.getStreamTask(), streamSource, task.getRange());
+
+            final StreamRangeResult result = new StreamRangeResult(pipelineStreamProcessor.getRead(),
+                    pipelineStreamProcessor.getWritten());
+            for (final Severity severity : Severity.values()) {
+                result.setMarkerCount(severity, pipelineStreamProcessor.getMarkerCount(severity));
+            }
+            return result;
+        } finally {
+            streamStore.closeStreamSource(streamSource);
+        }
+    }
+}
@@ -67,11 +67,19 @@ public abstract class AbstractWriter extends AbstractXMLFilter implements Target
         return outputStream;
     }
 
+    /**
+     * @return The output stream of the borrowed destinations for writers that
+     *         encode their own output rather than writing through
+     *         {@link #getWriter()}.
+     */
+    protected OutputStream getEncodedOutputStream() {
+        checkDestinationProviders();
+        return outputStream;
+    }
+
     protected Writer getWriter() {
         if (writer == null) {
-            if (getDestinationProviders().size() == 0) {
-                throw new ProcessException("No destination providers have been set");
-            }
+            checkDestinationProviders();
             if (writer != null) {
                 throw new IllegalStateException("Stream writer is not null");
             }
@@ -91,6 +99,12 @@ public abstract class AbstractWriter extends AbstractXMLFilter implements Target
         return writer;
     }
 
+    private void checkDestinationProviders() {
+        if (getDestinationProviders().size() == 0) {
+            throw new ProcessException("No destination providers have been set");
+        }
+    }
+
     protected Charset getCharset() {
         Charset charset = StreamUtil.DEFAULT_CHARSET;
         if (encoding != null && encoding.length() > 0) {
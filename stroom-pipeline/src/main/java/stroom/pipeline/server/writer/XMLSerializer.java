@@ -0,0 +1,524 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Serialises SAX events straight to encoded bytes. Characters are escaped
+ * using precomputed lookup tables and UTF-8, ISO-8859-1 and US-ASCII output is
+ * encoded directly into a reusable byte buffer without going through a
+ * {@link java.io.Writer}. Other charsets are encoded with a
+ * {@link CharsetEncoder} that replaces unmappable characters in the same way
+ * an {@link java.io.OutputStreamWriter} does.
+ *
+ * Escaping follows the rules used for XML 1.1 output by
+ * {@link stroom.xml.util.XMLWriter}. Namespace declarations are only written
+ * where they are not already in scope.
+ *
+ * Start tags are left open until the next event so that empty elements can be
+ * written as <code>&lt;elem/&gt;</code>. Call {@link #closeStartTag()} before
+ * taking the bytes written so far if the open start tag must be complete.
+ */
+public class XMLSerializer implements ContentHandler {
+    private enum Encoding {
+        UTF_8, ISO_8859_1, US_ASCII, OTHER
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final byte REPLACEMENT = '?';
+
+    // Lookup tables holding the escaped form of characters below 160 that
+    // can't be output as they are.
+    private static final byte[][] TEXT_ESCAPES = new byte[160][];
+    private static final byte[][] ATTRIBUTE_ESCAPES = new byte[160][];
+    private static final byte[] LINE_SEPARATOR_ESCAPE = ascii("&#x2028;");
+
+    static {
+        for (int i = 1; i < 160; i++) {
+            if (i <= 31 || i >= 127) {
+                TEXT_ESCAPES[i] = ascii("&#x" + Integer.toHexString(i) + ";");
+            }
+        }
+        TEXT_ESCAPES['\n'] = null;
+        TEXT_ESCAPES['\t'] = null;
+        TEXT_ESCAPES['\r'] = ascii("&#xD;");
+        TEXT_ESCAPES['<'] = ascii("&lt;");
+        TEXT_ESCAPES['>'] = ascii("&gt;");
+        TEXT_ESCAPES['&'] = ascii("&amp;");
+
+        System.arraycopy(TEXT_ESCAPES, 0, ATTRIBUTE_ESCAPES, 0, TEXT_ESCAPES.length);
+        ATTRIBUTE_ESCAPES['\n'] = ascii("&#xA;");
+        ATTRIBUTE_ESCAPES['\t'] = ascii("&#x9;");
+        ATTRIBUTE_ESCAPES['\"'] = ascii("&#34;");
+    }
+
+    private final Charset charset;
+    private final Encoding encoding;
+    private final CharsetEncoder encoder;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    // Characters waiting to be encoded when a general purpose encoder is
+    // being used.
+    private char[] pending;
+    private int pendingLength;
+
+    // In scope namespace declarations as prefix and URI pairs plus the
+    // number of pairs declared at each depth.
+    private String[] namespaces = new String[32];
+    private int namespaceCount;
+    private int[] namespaceCounts = new int[16];
+    private int depth;
+
+    // Prefix mappings that have been started for the next element.
+    private String[] newMappings = new String[16];
+    private int newMappingCount;
+
+    // Attribute values are copied here so they can be escaped in the same
+    // way as character arrays.
+    private char[] valueChars = new char[256];
+
+    private boolean inStartTag;
+
+    public XMLSerializer(final Charset charset) {
+        this.charset = charset;
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            encoding = Encoding.UTF_8;
+            encoder = null;
+        } else if (StandardCharsets.ISO_8859_1.equals(charset)) {
+            encoding = Encoding.ISO_8859_1;
+            encoder = null;
+        } else if (StandardCharsets.US_ASCII.equals(charset)) {
+            encoding = Encoding.US_ASCII;
+            encoder = null;
+        } else {
+            encoding = Encoding.OTHER;
+            encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            pending = new char[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Completes an open start tag so that the bytes written so far form a
+     * complete start tag.
+     */
+    public void closeStartTag() {
+        if (inStartTag) {
+            inStartTag = false;
+            writeAscii('>');
+        }
+    }
+
+    /**
+     * @return The number of bytes written since the last reset.
+     */
+    public int size() {
+        encodePending();
+        return length;
+    }
+
+    /**
+     * Discards everything written so far. Namespace declarations that are in
+     * scope are kept.
+     */
+    public void reset() {
+        length = 0;
+        pendingLength = 0;
+    }
+
+    public byte[] toByteArray() {
+        encodePending();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Writes everything written since the last reset to an output stream as a
+     * single block.
+     */
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        encodePending();
+        if (length > 0) {
+            outputStream.write(buffer, 0, length);
+        }
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        writeAscii("<?xml version=\"1.1\" encoding=\"" + charset.name() + "\"?>");
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        closeStartTag();
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        if (newMappingCount + 2 > newMappings.length) {
+            newMappings = Arrays.copyOf(newMappings, newMappings.length * 2);
+        }
+        newMappings[newMappingCount++] = prefix == null ? "" : prefix;
+        newMappings[newMappingCount++] = uri == null ? "" : uri;
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        // Declarations go out of scope when the element they were declared on
+        // ends.
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        closeStartTag();
+
+        if (depth + 1 >= namespaceCounts.length) {
+            namespaceCounts = Arrays.copyOf(namespaceCounts, namespaceCounts.length * 2);
+        }
+        namespaceCounts[depth] = namespaceCount;
+        depth++;
+
+        final String name = qName != null && qName.length() > 0 ? qName : localName;
+        writeAscii('<');
+        writeChars(name);
+
+        // Declare any new prefix mappings that aren't already in scope.
+        for (int i = 0; i < newMappingCount; i += 2) {
+            declare(newMappings[i], newMappings[i + 1]);
+        }
+        newMappingCount = 0;
+
+        // Make sure the element and attribute prefixes are bound.
+        declare(getPrefix(name), uri == null ? "" : uri);
+        final int attributeCount = atts.getLength();
+        for (int i = 0; i < attributeCount; i++) {
+            final String attributeName = getName(atts, i);
+            if (!isNamespaceDeclaration(attributeName)) {
+                final String prefix = getPrefix(attributeName);
+                if (prefix.length() > 0) {
+                    declare(prefix, atts.getURI(i));
+                }
+            }
+        }
+
+        for (int i = 0; i < attributeCount; i++) {
+            final String attributeName = getName(atts, i);
+            if (!isNamespaceDeclaration(attributeName)) {
+                writeAttribute(attributeName, atts.getValue(i));
+            }
+        }
+
+        inStartTag = true;
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        if (inStartTag) {
+            inStartTag = false;
+            writeAscii('/');
+            writeAscii('>');
+        } else {
+            writeAscii('<');
+            writeAscii('/');
+            writeChars(qName != null && qName.length() > 0 ? qName : localName);
+            writeAscii('>');
+        }
+
+        if (depth > 0) {
+            depth--;
+            namespaceCount = namespaceCounts[depth];
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (length > 0) {
+            closeStartTag();
+            writeEscaped(ch, start, length, TEXT_ESCAPES);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        closeStartTag();
+        writeAscii('<');
+        writeAscii('?');
+        writeChars(target);
+        if (data != null && data.length() > 0) {
+            writeAscii(' ');
+            writeChars(data);
+        }
+        writeAscii('?');
+        writeAscii('>');
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+    }
+
+    private void declare(final String prefix, final String uri) {
+        // Look for the nearest declaration of this prefix.
+        String current = "";
+        for (int i = namespaceCount - 2; i >= 0; i -= 2) {
+            if (namespaces[i].equals(prefix)) {
+                current = namespaces[i + 1];
+                break;
+            }
+        }
+        if (current.equals(uri)) {
+            return;
+        }
+
+        if (namespaceCount + 2 > namespaces.length) {
+            namespaces = Arrays.copyOf(namespaces, namespaces.length * 2);
+        }
+        namespaces[namespaceCount++] = prefix;
+        namespaces[namespaceCount++] = uri;
+
+        if (prefix.length() == 0) {
+            writeAttribute("xmlns", uri);
+        } else {
+            writeAttribute("xmlns:" + prefix, uri);
+        }
+    }
+
+    private void writeAttribute(final String name, final String value) {
+        writeAscii(' ');
+        writeChars(name);
+        writeAscii('=');
+        writeAscii('\"');
+        if (value != null) {
+            final int valueLength = value.length();
+            if (valueLength > valueChars.length) {
+                valueChars = new char[Math.max(valueLength, valueChars.length * 2)];
+            }
+            value.getChars(0, valueLength, valueChars, 0);
+            writeEscaped(valueChars, 0, valueLength, ATTRIBUTE_ESCAPES);
+        }
+        writeAscii('\"');
+    }
+
+    private static String getName(final Attributes atts, final int index) {
+        final String qName = atts.getQName(index);
+        if (qName != null && qName.length() > 0) {
+            return qName;
+        }
+        return atts.getLocalName(index);
+    }
+
+    private static String getPrefix(final String name) {
+        final int index = name.indexOf(':');
+        if (index == -1) {
+            return "";
+        }
+        return name.substring(0, index);
+    }
+
+    private static boolean isNamespaceDeclaration(final String name) {
+        return name.startsWith("xmlns") && (name.length() == 5 || name.charAt(5) == ':');
+    }
+
+    private void writeEscaped(final char[] ch, final int start, final int len, final byte[][] escapes) {
+        final int end = start + len;
+        for (int i = start; i < end; i++) {
+            final char c = ch[i];
+            if (c < 160) {
+                final byte[] escape = escapes[c];
+                if (escape != null) {
+                    writeBytes(escape);
+                } else if (c != 0) {
+                    writeChar(c);
+                }
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(ch[i + 1])) {
+                writeCodePoint(Character.toCodePoint(c, ch[++i]));
+            } else {
+                writeSpecial(c);
+            }
+        }
+    }
+
+    private void writeSpecial(final char c) {
+        if (c == 0x2028) {
+            writeBytes(LINE_SEPARATOR_ESCAPE);
+        } else if (c < 0xfffe) {
+            // Characters from 0xfffe are not valid in XML 1.0 or XML 1.1.
+            writeChar(c);
+        }
+    }
+
+    private void writeChars(final String string) {
+        final int len = string.length();
+        for (int i = 0; i < len; i++) {
+            final char c = string.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(string.charAt(i + 1))) {
+                writeCodePoint(Character.toCodePoint(c, string.charAt(++i)));
+            } else {
+                writeChar(c);
+            }
+        }
+    }
+
+    private void writeAscii(final String string) {
+        final int len = string.length();
+        for (int i = 0; i < len; i++) {
+            writeAscii(string.charAt(i));
+        }
+    }
+
+    private void writeAscii(final char c) {
+        if (encoding == Encoding.OTHER) {
+            appendPending(c);
+        } else {
+            ensureCapacity(1);
+            buffer[length++] = (byte) c;
+        }
+    }
+
+    private void writeBytes(final byte[] bytes) {
+        if (encoding == Encoding.OTHER) {
+            for (final byte b : bytes) {
+                appendPending((char) b);
+            }
+        } else {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+    }
+
+    private void writeChar(final char c) {
+        switch (encoding) {
+        case UTF_8:
+            if (c < 0x80) {
+                ensureCapacity(1);
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate can't be encoded.
+                ensureCapacity(1);
+                buffer[length++] = REPLACEMENT;
+            } else {
+                ensureCapacity(3);
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+            break;
+        case ISO_8859_1:
+            ensureCapacity(1);
+            buffer[length++] = c < 0x100 ? (byte) c : REPLACEMENT;
+            break;
+        case US_ASCII:
+            ensureCapacity(1);
+            buffer[length++] = c < 0x80 ? (byte) c : REPLACEMENT;
+            break;
+        default:
+            appendPending(c);
+            break;
+        }
+    }
+
+    private void writeCodePoint(final int codePoint) {
+        if (encoding == Encoding.UTF_8) {
+            ensureCapacity(4);
+            buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (encoding == Encoding.OTHER) {
+            appendPending(Character.highSurrogate(codePoint));
+            appendPending(Character.lowSurrogate(codePoint));
+        } else {
+            // Supplementary characters can't be encoded in single byte
+            // charsets.
+            ensureCapacity(1);
+            buffer[length++] = REPLACEMENT;
+        }
+    }
+
+    private void appendPending(final char c) {
+        if (pendingLength == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[pendingLength++] = c;
+    }
+
+    private void encodePending() {
+        if (pendingLength == 0) {
+            return;
+        }
+
+        final CharBuffer in = CharBuffer.wrap(pending, 0, pendingLength);
+        ensureCapacity((int) (pendingLength * encoder.maxBytesPerChar()) + 16);
+        ByteBuffer out = ByteBuffer.wrap(buffer, length, buffer.length - length);
+        CoderResult result = encoder.encode(in, out, false);
+        while (result.isOverflow()) {
+            length = out.position();
+            ensureCapacity(buffer.length);
+            out = ByteBuffer.wrap(buffer, length, buffer.length - length);
+            result = encoder.encode(in, out, false);
+        }
+        length = out.position();
+
+        // Keep any trailing high surrogate until the rest of the pair
+        // arrives.
+        final int remaining = in.remaining();
+        if (remaining > 0) {
+            System.arraycopy(pending, pendingLength - remaining, pending, 0, remaining);
+        }
+        pendingLength = remaining;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private static byte[] ascii(final String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+}
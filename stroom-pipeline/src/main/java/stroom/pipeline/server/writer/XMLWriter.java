@@ -47,7 +47,10 @@ import stroom.pipeline.shared.data.PipelineElementType.Category;
 import stroom.util.CharBuffer;
 
 /**
- * Writes out XML and records segment boundaries as it goes.
+ * Writes out XML and records segment boundaries as it goes. Unless the output
+ * is indented, XML is serialised straight to encoded bytes by an
+ * {@link XMLSerializer} and each record is written to the destinations as a
+ * single block.
  */
 @Component
 @Scope("prototype")
@@ -69,6 +72,7 @@ public class XMLWriter extends AbstractWriter implements XMLFilter {
     private byte[] header;
     private byte[] footer;
 
+    private XMLSerializer serializer;
     private CharBufferWriter stringWriter;
     private BufferedWriter bufferedWriter;
 
@@ -85,15 +89,21 @@ public class XMLWriter extends AbstractWriter implements XMLFilter {
     @Override
     public void startProcessing() {
         try {
-            stringWriter = new CharBufferWriter();
-            bufferedWriter = new BufferedWriter(stringWriter);
-
-            final ErrorListener errorListener = new ErrorListenerAdaptor(getElementId(), locationFactory,
-                    getErrorReceiver());
-            final TransformerHandler th = XMLUtil.createTransformerHandler(errorListener, indentOutput);
-            th.setResult(new StreamResult(bufferedWriter));
-            th.setDocumentLocator(locator);
-            handler = th;
+            if (indentOutput) {
+                // Use an identity transformer to pretty print the output.
+                stringWriter = new CharBufferWriter();
+                bufferedWriter = new BufferedWriter(stringWriter);
+
+                final ErrorListener errorListener = new ErrorListenerAdaptor(getElementId(), locationFactory,
+                        getErrorReceiver());
+                final TransformerHandler th = XMLUtil.createTransformerHandler(errorListener, indentOutput);
+                th.setResult(new StreamResult(bufferedWriter));
+                th.setDocumentLocator(locator);
+                handler = th;
+            } else {
+                serializer = new XMLSerializer(getCharset());
+                handler = serializer;
+            }
 
         } catch (final TransformerConfigurationException e) {
             fatal(e);
@@ -206,7 +216,25 @@ public class XMLWriter extends AbstractWriter implements XMLFilter {
                 rootElement = localName;
             }
 
-            if (depth == 1) {
+            if (depth == 1 && serializer != null) {
+                if (!doneElement) {
+                    doneElement = true;
+
+                    // Root start elements are always written as full elements
+                    // so make sure the start tag is closed before it becomes
+                    // part of the header.
+                    serializer.closeStartTag();
+
+                    // Only allow the header and footer to be set once.
+                    if (serializer.size() > 0 && this.header == null && this.footer == null) {
+                        this.header = serializer.toByteArray();
+                        this.footer = ("</" + rootElement + ">").getBytes(getCharset());
+                    }
+                }
+
+                serializer.reset();
+
+            } else if (depth == 1) {
                 bufferedWriter.flush();
                 final CharBuffer cb = stringWriter.getBuffer();
 
@@ -283,7 +311,21 @@ public class XMLWriter extends AbstractWriter implements XMLFilter {
         depth--;
 
         try {
-            if (depth <= 1) {
+            if (depth <= 1 && serializer != null) {
+                // If depth = 1 then we have finished an event.
+                if (depth == 1) {
+                    if (serializer.size() > 0) {
+                        borrowDestinations(header, footer);
+                        serializer.writeTo(getEncodedOutputStream());
+                        returnDestinations();
+                    }
+                } else {
+                    doneElement = false;
+                }
+
+                serializer.reset();
+
+            } else if (depth <= 1) {
                 bufferedWriter.flush();
                 final CharBuffer cb = stringWriter.getBuffer();
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.xsltfunctions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+import stroom.dictionary.shared.DictionaryService;
+import stroom.dictionary.shared.FindDictionaryCriteria;
+import stroom.entity.shared.BaseResultList;
+import stroom.util.shared.Severity;
+import net.sf.saxon.expr.XPathContext;
+
+/**
+ * Base class for functions that look dictionaries up by name. Each dictionary
+ * is only looked up once per task.
+ */
+public abstract class AbstractDictionary extends StroomExtensionFunctionCall {
+    @Resource
+    private DictionaryService dictionaryService;
+
+    private Map<String, stroom.dictionary.shared.Dictionary> cachedDictionaries;
+
+    protected stroom.dictionary.shared.Dictionary getDictionary(final XPathContext context, final String name) {
+        if (cachedDictionaries == null) {
+            cachedDictionaries = new HashMap<>();
+        }
+
+        if (cachedDictionaries.containsKey(name)) {
+            return cachedDictionaries.get(name);
+        }
+
+        stroom.dictionary.shared.Dictionary dictionary = null;
+        try {
+            // Try and load a dictionary with the supplied name.
+            final FindDictionaryCriteria criteria = new FindDictionaryCriteria(name);
+            criteria.setOrderBy(FindDictionaryCriteria.ORDER_BY_ID);
+            final BaseResultList<stroom.dictionary.shared.Dictionary> list = dictionaryService.find(criteria);
+
+            if (list == null || list.size() == 0) {
+                log(context, Severity.WARNING, "Dictionary not found with name '" + name
+                        + "'. You might not have permission to access this dictionary", null);
+            } else {
+                if (list.size() > 1) {
+                    log(context, Severity.INFO, "Multple dictionaries found with name '" + name
+                            + "' - using the first one that was created", null);
+                }
+
+                dictionary = list.getFirst();
+            }
+        } catch (final Exception e) {
+            log(context, Severity.ERROR, e.getMessage(), e);
+        }
+
+        // Remember this dictionary for the next call.
+        cachedDictionaries.put(name, dictionary);
+        return dictionary;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.xsltfunctions;
+
+import javax.annotation.Resource;
+
+import stroom.dictionary.DictionaryTermsCache;
+import stroom.util.spring.StroomScope;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.om.Sequence;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.value.BooleanValue;
+
+/**
+ * Tests if a value matches a line of a dictionary. The dictionary lines are
+ * held in a set that is shared with search so large dictionaries are not
+ * scanned for every call.
+ */
+@Component
+@Scope(value = StroomScope.TASK)
+public class InDictionary extends AbstractDictionary {
+    @Resource
+    private DictionaryTermsCache dictionaryTermsCache;
+
+    @Override
+    protected Sequence call(final String functionName, final XPathContext context, final Sequence[] arguments)
+            throws XPathException {
+        boolean found = false;
+
+        final String name = getSafeString(functionName, context, arguments, 0);
+        final String value = getSafeString(functionName, context, arguments, 1);
+        if (name != null && name.length() > 0 && value != null) {
+            final stroom.dictionary.shared.Dictionary dictionary = getDictionary(context, name);
+            if (dictionary != null) {
+                found = dictionaryTermsCache.get(dictionary).contains(value);
+            }
+        }
+
+        return BooleanValue.get(found);
+    }
+}
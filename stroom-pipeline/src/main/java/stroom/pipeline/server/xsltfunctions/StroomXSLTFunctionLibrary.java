@@ -55,6 +55,9 @@ public class StroomXSLTFunctionLibrary {
                     SequenceType.SINGLE_STRING);
             register("get", Get.class, 1, 1, new SequenceType[] { SequenceType.SINGLE_STRING },
                     SequenceType.OPTIONAL_STRING);
+            register("in-dictionary", InDictionary.class, 2, 2,
+                    new SequenceType[] { SequenceType.SINGLE_STRING, SequenceType.OPTIONAL_STRING },
+                    SequenceType.SINGLE_BOOLEAN);
             register("json-to-xml", JsonToXml.class, 1, 1, new SequenceType[] { SequenceType.SINGLE_STRING },
                     SequenceType.NODE_SEQUENCE);
             register("log", Log.class, 2, 2,
@@ -20,12 +20,16 @@ import stroom.util.spring.StroomScope;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+/**
+ * Counts are volatile as a pipeline can run elements on more than one thread,
+ * e.g. the branches of an asynchronous fork.
+ */
 @Component
 @Scope(value = StroomScope.TASK)
 public class RecordCount {
-    private long read;
-    private long written;
-    private long duration;
+    private volatile long read;
+    private volatile long written;
+    private volatile long duration;
 
     public long getRead() {
         return read;
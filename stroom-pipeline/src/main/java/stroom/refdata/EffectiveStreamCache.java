@@ -54,6 +54,9 @@ public class EffectiveStreamCache extends AbstractCacheBean<EffectiveStreamKey,
         this.internPool = internPool;
         setMaxIdleTime(10, TimeUnit.MINUTES);
         setMaxLiveTime(10, TimeUnit.MINUTES);
+        // Reload sets that are still in use in the background so that
+        // reference data lookups don't wait for the database when they expire.
+        setRefreshAfter(5, TimeUnit.MINUTES);
     }
 
     @Override
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.headless;
+
+import java.io.StringWriter;
+
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import stroom.entity.server.util.XMLUtil;
+import stroom.util.shared.Severity;
+import stroom.util.test.StroomUnitTest;
+import stroom.util.zip.HeaderMap;
+
+public class TestBufferedHeadlessFilter extends StroomUnitTest {
+    private static final String URI = "event-logging:3";
+
+    @Test
+    public void testReplayMatchesSerialOutput() throws Exception {
+        final StringWriter serial = new StringWriter();
+        final HeadlessFilter serialFilter = createFilter(serial);
+        translate(serialFilter, 1);
+        translate(serialFilter, 2);
+        serialFilter.endOutput();
+
+        final StringWriter replayed = new StringWriter();
+        final HeadlessFilter replayFilter = createFilter(replayed);
+        final BufferedHeadlessFilter first = new BufferedHeadlessFilter();
+        final BufferedHeadlessFilter second = new BufferedHeadlessFilter();
+        // Translate out of order to mimic concurrent translation.
+        translate(second, 2);
+        translate(first, 1);
+        first.replay(replayFilter);
+        second.replay(replayFilter);
+        replayFilter.endOutput();
+
+        Assert.assertTrue(serial.toString().contains("Entry 1 failed"));
+        Assert.assertEquals(serial.toString(), replayed.toString());
+    }
+
+    private HeadlessFilter createFilter(final StringWriter writer) throws Exception {
+        final TransformerHandler th = XMLUtil.createTransformerHandler(true);
+        th.setResult(new StreamResult(writer));
+        final HeadlessFilter headlessFilter = new HeadlessFilter();
+        headlessFilter.setContentHandler(th);
+        headlessFilter.beginOutput();
+        return headlessFilter;
+    }
+
+    private void translate(final HeadlessFilter headlessFilter, final int entryNo) throws SAXException {
+        final HeaderMap metaData = new HeaderMap();
+        metaData.put("Feed", "FEED_" + entryNo);
+        headlessFilter.changeMetaData(metaData);
+
+        headlessFilter.startDocument();
+        headlessFilter.startPrefixMapping("", URI);
+        headlessFilter.startElement(URI, "Events", "Events", new AttributesImpl());
+        headlessFilter.startElement(URI, "Event", "Event", new AttributesImpl());
+        headlessFilter.log(Severity.ERROR, null, "XSLTFilter", "Entry " + entryNo + " failed");
+        final char[] chars = ("Event " + entryNo).toCharArray();
+        headlessFilter.characters(chars, 0, chars.length);
+        headlessFilter.endElement(URI, "Event", "Event");
+        headlessFilter.endElement(URI, "Events", "Events");
+        headlessFilter.endPrefixMapping("");
+        headlessFilter.endDocument();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.mapreduce;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.util.test.StroomUnitTest;
+
+public class TestCombiningPairQueue extends StroomUnitTest {
+    @Test
+    public void test() {
+        final CombiningPairQueue<String, Integer> queue = new CombiningPairQueue<>(null,
+                (key, existing, added) -> existing + added);
+
+        for (int i = 0; i < 1000; i++) {
+            queue.collect("host" + (i % 3), 1);
+        }
+        queue.collect(null, 5);
+        queue.collect(null, 7);
+
+        final Map<String, Integer> combined = new HashMap<>();
+        int uncombined = 0;
+        for (final Pair<String, Integer> pair : queue) {
+            if (pair.getKey() == null) {
+                uncombined++;
+            } else {
+                Assert.assertNull(combined.put(pair.getKey(), pair.getValue()));
+            }
+        }
+
+        Assert.assertEquals(2, uncombined);
+        Assert.assertEquals(3, combined.size());
+        Assert.assertEquals(Integer.valueOf(334), combined.get("host0"));
+        Assert.assertEquals(Integer.valueOf(333), combined.get("host1"));
+        Assert.assertEquals(Integer.valueOf(333), combined.get("host2"));
+
+        // Reading the queue drains it.
+        Assert.assertFalse(queue.iterator().hasNext());
+    }
+}
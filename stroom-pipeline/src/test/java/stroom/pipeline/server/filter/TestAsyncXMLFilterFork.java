@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.filter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import stroom.pipeline.server.errorhandler.ProcessException;
+import stroom.util.test.StroomJUnit4ClassRunner;
+import stroom.util.test.StroomUnitTest;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestAsyncXMLFilterFork extends StroomUnitTest {
+    private static final int RECORDS = 1000;
+
+    private static class RecordingFilter extends AbstractXMLFilter {
+        private final StringBuilder sb = new StringBuilder();
+        private final String failOn;
+        private volatile Thread thread;
+        private volatile Thread streamThread;
+
+        public RecordingFilter(final String failOn) {
+            this.failOn = failOn;
+        }
+
+        @Override
+        public void startStream() {
+            streamThread = Thread.currentThread();
+            sb.append("[");
+        }
+
+        @Override
+        public void endStream() {
+            sb.append("]");
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                final Attributes atts) throws SAXException {
+            thread = Thread.currentThread();
+            sb.append("<").append(localName);
+            for (int i = 0; i < atts.getLength(); i++) {
+                sb.append(" ").append(atts.getLocalName(i)).append("=").append(atts.getValue(i));
+            }
+            sb.append(">");
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            sb.append("</").append(localName).append(">");
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            final String string = new String(ch, start, length);
+            if (string.equals(failOn)) {
+                throw new ProcessException("Failed on " + string);
+            }
+            sb.append(string);
+        }
+    }
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOutputMatchesSynchronousFork() throws Exception {
+        final RecordingFilter sync1 = new RecordingFilter(null);
+        final RecordingFilter sync2 = new RecordingFilter(null);
+        process(new XMLFilterFork(new XMLFilter[] { sync1, sync2 }));
+
+        final RecordingFilter async1 = new RecordingFilter(null);
+        final RecordingFilter async2 = new RecordingFilter(null);
+        process(new AsyncXMLFilterFork(new XMLFilter[] { async1, async2 }, 2, executor));
+
+        Assert.assertTrue(sync1.sb.toString().endsWith("</Events>]"));
+        Assert.assertEquals(sync1.sb.toString(), async1.sb.toString());
+        Assert.assertEquals(sync2.sb.toString(), async2.sb.toString());
+
+        // Each branch runs on its own thread.
+        Assert.assertNotEquals(Thread.currentThread(), async1.thread);
+        Assert.assertNotEquals(Thread.currentThread(), async2.thread);
+        Assert.assertNotEquals(async1.thread, async2.thread);
+
+        // Lifecycle methods are called on the pipeline thread so that they
+        // use the task scope of the pipeline.
+        Assert.assertEquals(Thread.currentThread(), async1.streamThread);
+        Assert.assertEquals(Thread.currentThread(), async2.streamThread);
+    }
+
+    @Test
+    public void testBranchErrorIsRethrown() throws Exception {
+        final RecordingFilter good = new RecordingFilter(null);
+        final RecordingFilter bad = new RecordingFilter("Event 500");
+        final AsyncXMLFilterFork fork = new AsyncXMLFilterFork(new XMLFilter[] { good, bad }, 2, executor);
+
+        try {
+            process(fork);
+            Assert.fail("Expected branch error");
+        } catch (final ProcessException e) {
+            Assert.assertEquals("Failed on Event 500", e.getMessage());
+        }
+
+        // The other branch still gets the failed event as it would with a
+        // synchronous fork.
+        fork.endStream();
+        fork.endProcessing();
+        Assert.assertTrue(good.sb.toString().contains("Event 500"));
+    }
+
+    private void process(final XMLFilter fork) throws SAXException {
+        fork.startProcessing();
+        fork.startStream();
+        fork.startDocument();
+        fork.startElement("", "Events", "Events", new AttributesImpl());
+        for (int i = 0; i < RECORDS; i++) {
+            final AttributesImpl atts = new AttributesImpl();
+            atts.addAttribute("", "Id", "Id", "string", String.valueOf(i));
+            fork.startElement("", "Event", "Event", atts);
+            final char[] chars = ("Event " + i).toCharArray();
+            fork.characters(chars, 0, chars.length);
+            fork.endElement("", "Event", "Event");
+        }
+        fork.endElement("", "Events", "Events");
+        fork.endDocument();
+        fork.endStream();
+        fork.endProcessing();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.util.test.StroomUnitTest;
+
+public class TestPipelineProfiler extends StroomUnitTest {
+    @Test
+    public void testHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentile(50));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(5050, histogram.getTotal());
+        Assert.assertEquals(100, histogram.getMax());
+        // Percentiles are the upper bound of the power of two bucket.
+        Assert.assertEquals(63, histogram.getPercentile(50));
+        Assert.assertEquals(100, histogram.getPercentile(99));
+
+        final LatencyHistogram other = new LatencyHistogram();
+        other.record(1000);
+        histogram.add(other);
+        Assert.assertEquals(101, histogram.getCount());
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testNestedElements() {
+        final PipelineProfiler profiler = new PipelineProfiler();
+        final ElementProfile parent = profiler.createProfile("parent");
+        final ElementProfile child = profiler.createProfile("child");
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(profiler.enter(parent));
+            parent.incrementRecordsIn();
+            Assert.assertTrue(profiler.enter(child));
+            child.incrementRecordsIn();
+            child.addCharsIn(10);
+            profiler.exit(child);
+            profiler.exit(parent);
+        }
+
+        Assert.assertEquals(2, profiler.getProfiles().size());
+        Assert.assertEquals(3, parent.getHistogram().getCount());
+        Assert.assertEquals(3, child.getHistogram().getCount());
+        Assert.assertEquals(3, parent.getRecordsIn());
+        Assert.assertEquals(Long.valueOf(3), parent.getRecordsOut());
+        Assert.assertEquals(Long.valueOf(30), parent.getCharsOut());
+        Assert.assertNull(child.getRecordsOut());
+    }
+
+    @Test
+    public void testForkedElement() {
+        final PipelineProfiler profiler = new PipelineProfiler();
+        final ElementProfile parent = profiler.createProfile("parent");
+        final ElementProfile child1 = profiler.createProfile("child1");
+        final ElementProfile child2 = profiler.createProfile("child2");
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(profiler.enter(parent));
+            parent.incrementRecordsIn();
+            Assert.assertTrue(profiler.enter(child1));
+            child1.incrementRecordsIn();
+            child1.addCharsIn(10);
+            profiler.exit(child1);
+            Assert.assertTrue(profiler.enter(child2));
+            child2.incrementRecordsIn();
+            child2.addCharsIn(5);
+            profiler.exit(child2);
+            profiler.exit(parent);
+        }
+
+        // Output to every target is counted.
+        Assert.assertEquals(Long.valueOf(4), parent.getRecordsOut());
+        Assert.assertEquals(Long.valueOf(30), parent.getCharsOut());
+    }
+
+    @Test
+    public void testDisabledWithoutProperties() {
+        Assert.assertFalse(new PipelineProfiler().isEnabled());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.pipeline.server.task;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.pipeline.shared.SharedElementData;
+import stroom.pipeline.shared.SharedStepData;
+import stroom.pipeline.shared.StepLocation;
+import stroom.util.test.StroomUnitTest;
+
+public class TestSteppingSession extends StroomUnitTest {
+    @Test
+    public void testGetRecord() {
+        final SteppingSession session = new SteppingSession();
+        final SteppingSession.SteppedRecord record = createRecord(10);
+        session.putRecord(location(1), record);
+
+        Assert.assertSame(record, session.getRecord(location(1)));
+        Assert.assertNull(session.getRecord(location(2)));
+        Assert.assertEquals(20, session.getChars());
+    }
+
+    @Test
+    public void testCharLimit() {
+        final SteppingSession session = new SteppingSession(100);
+        session.putRecord(location(1), createRecord(20));
+        session.putRecord(location(2), createRecord(20));
+
+        // Using record 1 makes record 2 the least recently used.
+        Assert.assertNotNull(session.getRecord(location(1)));
+        session.putRecord(location(3), createRecord(20));
+
+        Assert.assertNotNull(session.getRecord(location(1)));
+        Assert.assertNull(session.getRecord(location(2)));
+        Assert.assertNotNull(session.getRecord(location(3)));
+        Assert.assertEquals(2, session.getRecordCount());
+        Assert.assertEquals(80, session.getChars());
+    }
+
+    @Test
+    public void testReplaceRecord() {
+        final SteppingSession session = new SteppingSession(100);
+        session.putRecord(location(1), createRecord(20));
+        session.putRecord(location(1), createRecord(10));
+
+        Assert.assertEquals(1, session.getRecordCount());
+        Assert.assertEquals(20, session.getChars());
+    }
+
+    @Test
+    public void testRecordTooBig() {
+        final SteppingSession session = new SteppingSession(100);
+        session.putRecord(location(1), createRecord(20));
+        session.putRecord(location(2), createRecord(60));
+
+        // A record bigger than the whole budget is not kept and doesn't
+        // push out the others.
+        Assert.assertNotNull(session.getRecord(location(1)));
+        Assert.assertNull(session.getRecord(location(2)));
+        Assert.assertEquals(40, session.getChars());
+    }
+
+    @Test
+    public void testRecordLimit() {
+        final SteppingSession session = new SteppingSession();
+        for (int i = 1; i <= SteppingSession.MAX_RECORDS + 10; i++) {
+            session.putRecord(location(i), createRecord(0));
+        }
+
+        Assert.assertEquals(SteppingSession.MAX_RECORDS, session.getRecordCount());
+        Assert.assertNull(session.getRecord(location(10)));
+        Assert.assertNotNull(session.getRecord(location(11)));
+    }
+
+    private StepLocation location(final long recordNo) {
+        return new StepLocation(1, 1, recordNo);
+    }
+
+    private SteppingSession.SteppedRecord createRecord(final int length) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append('x');
+        }
+        final Map<String, SharedElementData> elementMap = new HashMap<>();
+        elementMap.put("xsltFilter",
+                new SharedElementData(sb.toString(), sb.toString(), null, null, false, false));
+        return new SteppingSession.SteppedRecord(
+                new SharedStepData(Collections.emptyList(), elementMap), 0);
+    }
+}
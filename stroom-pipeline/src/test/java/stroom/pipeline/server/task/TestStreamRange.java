@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.task;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.util.shared.Severity;
+import stroom.util.test.StroomUnitTest;
+
+public class TestStreamRange extends StroomUnitTest {
+    @Test
+    public void testSplitParts() {
+        final List<StreamRange> ranges = StreamRange.splitParts(10, 3);
+        Assert.assertEquals(3, ranges.size());
+        assertParts(ranges.get(0), 0, 3);
+        assertParts(ranges.get(1), 4, 6);
+        assertParts(ranges.get(2), 7, 9);
+    }
+
+    @Test
+    public void testSplitPartsMoreRangesThanParts() {
+        final List<StreamRange> ranges = StreamRange.splitParts(2, 5);
+        Assert.assertEquals(2, ranges.size());
+        assertParts(ranges.get(0), 0, 0);
+        assertParts(ranges.get(1), 1, 1);
+    }
+
+    @Test
+    public void testSplitSegments() {
+        // 8 record segments between a header and a footer.
+        final List<StreamRange> ranges = StreamRange.splitSegments(10, 4);
+        Assert.assertEquals(4, ranges.size());
+        long expected = 1;
+        for (final StreamRange range : ranges) {
+            Assert.assertTrue(range.isSegmentRange());
+            Assert.assertEquals(0, range.getFirstPart());
+            Assert.assertEquals(expected, range.getFirstSegment());
+            Assert.assertEquals(expected + 1, range.getLastSegment());
+            expected += 2;
+        }
+        Assert.assertEquals(9, expected);
+    }
+
+    @Test
+    public void testNothingToSplit() {
+        Assert.assertTrue(StreamRange.splitParts(0, 4).isEmpty());
+        Assert.assertTrue(StreamRange.splitSegments(2, 4).isEmpty());
+        Assert.assertEquals(1, StreamRange.splitParts(20, 0).size());
+    }
+
+    @Test
+    public void testResultAdd() {
+        final StreamRangeResult total = new StreamRangeResult();
+        final StreamRangeResult result = new StreamRangeResult(10, 8);
+        result.setMarkerCount(Severity.ERROR, 2);
+        total.add(result);
+        total.add(result);
+        Assert.assertEquals(20, total.getRead());
+        Assert.assertEquals(16, total.getWritten());
+        Assert.assertEquals(4, total.getMarkerCount(Severity.ERROR));
+        Assert.assertEquals(0, total.getMarkerCount(Severity.WARNING));
+    }
+
+    private void assertParts(final StreamRange range, final long firstPart, final long lastPart) {
+        Assert.assertFalse(range.isSegmentRange());
+        Assert.assertEquals(firstPart, range.getFirstPart());
+        Assert.assertEquals(lastPart, range.getLastPart());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package stroom.pipeline.server.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+import stroom.pipeline.server.errorhandler.ErrorReceiverProxy;
+import stroom.pipeline.server.errorhandler.FatalErrorReceiver;
+import stroom.util.test.StroomUnitTest;
+
+public class TestXMLSerializer extends StroomUnitTest {
+    private static final String NS = "event-logging:3";
+    private static final AttributesImpl NO_ATTS = new AttributesImpl();
+
+    @Test
+    public void testSerialise() throws Exception {
+        final XMLSerializer serializer = new XMLSerializer(StandardCharsets.UTF_8);
+        serializer.startDocument();
+        serializer.startPrefixMapping("", NS);
+        serializer.startPrefixMapping("xsi", "http://www.w3.org/2001/XMLSchema-instance");
+        serializer.startElement(NS, "Events", "Events", atts("Version", "3.0"));
+        serializer.startElement(NS, "Event", "Event", NO_ATTS);
+        text(serializer, "a < b & c > d\r\n\t\u0001\u2028");
+        serializer.startElement(NS, "Empty", "Empty", atts("Value", "\"quoted\"\n\t<&>"));
+        serializer.endElement(NS, "Empty", "Empty");
+        serializer.endElement(NS, "Event", "Event");
+        serializer.endElement(NS, "Events", "Events");
+        serializer.endDocument();
+
+        Assert.assertEquals("<?xml version=\"1.1\" encoding=\"UTF-8\"?>"
+                + "<Events xmlns=\"event-logging:3\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " Version=\"3.0\"><Event>a &lt; b &amp; c &gt; d&#xD;\n\t&#x1;&#x2028;"
+                + "<Empty Value=\"&#34;quoted&#34;&#xA;&#x9;&lt;&amp;&gt;\"/></Event></Events>",
+                new String(serializer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNamespacesInScope() throws Exception {
+        final XMLSerializer serializer = new XMLSerializer(StandardCharsets.UTF_8);
+        serializer.startPrefixMapping("evt", NS);
+        serializer.startElement(NS, "Events", "evt:Events", NO_ATTS);
+        // Declaring the same mapping again shouldn't write it again.
+        serializer.startPrefixMapping("evt", NS);
+        serializer.startElement(NS, "Event", "evt:Event", NO_ATTS);
+        serializer.endElement(NS, "Event", "evt:Event");
+        // Prefixes without a mapping event still get declared.
+        serializer.startElement("other", "Data", "o:Data", NO_ATTS);
+        serializer.endElement("other", "Data", "o:Data");
+        serializer.startElement("", "Plain", "Plain", NO_ATTS);
+        serializer.endElement("", "Plain", "Plain");
+        serializer.endElement(NS, "Events", "evt:Events");
+
+        Assert.assertEquals("<evt:Events xmlns:evt=\"event-logging:3\"><evt:Event/>"
+                + "<o:Data xmlns:o=\"other\"/><Plain/></evt:Events>",
+                new String(serializer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEncodings() throws Exception {
+        final String text = "caf\u00e9 \u03b1 \ud83d\ude00";
+
+        Assert.assertEquals("<a>" + text + "</a>", serialise(StandardCharsets.UTF_8, text));
+        Assert.assertEquals("<a>" + text + "</a>", serialise(StandardCharsets.UTF_16LE, text));
+        Assert.assertEquals("<a>caf\u00e9 ? ?</a>", serialise(StandardCharsets.ISO_8859_1, text));
+        Assert.assertEquals("<a>caf? ? ?</a>", serialise(StandardCharsets.US_ASCII, text));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        final XMLSerializer serializer = new XMLSerializer(StandardCharsets.UTF_8);
+        serializer.startElement("", "root", "root", NO_ATTS);
+        serializer.closeStartTag();
+        Assert.assertEquals("<root>", new String(serializer.toByteArray(), StandardCharsets.UTF_8));
+
+        serializer.reset();
+        Assert.assertEquals(0, serializer.size());
+        serializer.startElement("", "record", "record", NO_ATTS);
+        text(serializer, "x");
+        serializer.endElement("", "record", "record");
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        serializer.writeTo(outputStream);
+        Assert.assertEquals("<record>x</record>", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testXMLWriterRecords() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final XMLWriter xmlWriter = new XMLWriter(new ErrorReceiverProxy(new FatalErrorReceiver()), null);
+        xmlWriter.setTarget(new OutputStreamAppender(outputStream));
+
+        xmlWriter.startProcessing();
+        xmlWriter.startStream();
+        xmlWriter.startDocument();
+        xmlWriter.startElement("", "records", "records", NO_ATTS);
+        for (int i = 1; i <= 3; i++) {
+            xmlWriter.startElement("", "record", "record", atts("id", String.valueOf(i)));
+            text(xmlWriter, "value " + i);
+            xmlWriter.endElement("", "record", "record");
+        }
+        xmlWriter.endElement("", "records", "records");
+        xmlWriter.endDocument();
+        xmlWriter.endStream();
+        xmlWriter.endProcessing();
+
+        Assert.assertEquals("<?xml version=\"1.1\" encoding=\"UTF-8\"?><records>"
+                + "<record id=\"1\">value 1</record><record id=\"2\">value 2</record>"
+                + "<record id=\"3\">value 3</record></records>",
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private String serialise(final Charset charset, final String text) throws Exception {
+        final XMLSerializer serializer = new XMLSerializer(charset);
+        serializer.startElement("", "a", "a", NO_ATTS);
+        text(serializer, text);
+        serializer.endElement("", "a", "a");
+        return new String(serializer.toByteArray(), charset);
+    }
+
+    private void text(final ContentHandler handler, final String text) throws Exception {
+        final char[] chars = text.toCharArray();
+        handler.characters(chars, 0, chars.length);
+    }
+
+    private AttributesImpl atts(final String name, final String value) {
+        final AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", name, name, "CDATA", value);
+        return atts;
+    }
+}
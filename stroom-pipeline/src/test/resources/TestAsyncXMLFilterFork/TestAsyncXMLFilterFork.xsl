@@ -0,0 +1,13 @@
+<?xml version="1.0" encoding="UTF-8" ?>
+<xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" xmlns:stroom="stroom" version="2.0">
+  <xsl:template match="/Events">
+    <Feeds>
+      <xsl:apply-templates select="Event" />
+    </Feeds>
+  </xsl:template>
+  <xsl:template match="Event">
+    <Feed id="{.}">
+      <xsl:value-of select="stroom:feed-name()" />
+    </Feed>
+  </xsl:template>
+</xsl:stylesheet>
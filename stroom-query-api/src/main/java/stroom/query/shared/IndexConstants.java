@@ -19,6 +19,7 @@ package stroom.query.shared;
 public interface IndexConstants {
     String STREAM_ID = "StreamId";
     String EVENT_ID = "EventId";
+    String EVENT_TIME = "EventTime";
     String FEED_ID = "FeedId";
     String INDEX_FLUSH_COMMAND = "IndexFlush";
     String INDEX_CLOSE_COMMAND = "IndexClose";
@@ -128,12 +128,15 @@ public class ItemMapper extends MapperBase<Object, String[], String, Item> {
             }
         }
 
-        // Add the new item.
-        output.collect(groupKey, new Item(parentKey, groupKey, generators, depth));
-
-        // If we haven't reached the max depth then recurse.
+        // If we haven't reached the max depth then recurse. Children are added
+        // first so that they have registered their group keys with this item
+        // before it is output as the output collector may combine it with an
+        // existing item straight away.
         if (depth < maxDepth) {
             addItem(values, groupKey, generators, depth + 1, maxDepth, maxGroupDepth, output);
         }
+
+        // Add the new item.
+        output.collect(groupKey, new Item(parentKey, groupKey, generators, depth));
     }
 }
@@ -17,10 +17,11 @@
 package stroom.query;
 
 import stroom.dashboard.expression.Generator;
+import stroom.mapreduce.Combiner;
 import stroom.mapreduce.OutputCollector;
 import stroom.mapreduce.Reducer;
 
-public class ItemReducer implements Reducer<String, Item, String, Item> {
+public class ItemReducer implements Reducer<String, Item, String, Item>, Combiner<String, Item> {
     private final int[] depths;
     private final int maxDepth;
 
@@ -37,16 +38,22 @@ public class ItemReducer implements Reducer<String, Item, String, Item> {
                 dest = item;
 
             } else {
-                // Combine new values into original item values.
-                for (int i = 0; i < depths.length; i++) {
-                    dest.values[i] = combine(depths[i], maxDepth, dest.values[i], item.values[i], item.depth);
-                }
+                dest = combine(key, dest, item);
             }
         }
 
         output.collect(key, dest);
     }
 
+    @Override
+    public Item combine(final String key, final Item existing, final Item added) {
+        // Combine new values into original item values.
+        for (int i = 0; i < depths.length; i++) {
+            existing.values[i] = combine(depths[i], maxDepth, existing.values[i], added.values[i], added.depth);
+        }
+        return existing;
+    }
+
     private Object combine(final int groupDepth, final int maxDepth, final Object existingValue,
             final Object addedValue, final int depth) {
         Object output = null;
@@ -23,7 +23,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import stroom.query.shared.CoprocessorSettings;
 import stroom.query.shared.TableSettings;
-import stroom.mapreduce.UnsafePairQueue;
 import stroom.util.shared.HasTerminate;
 
 public class SearchResultHandler implements ResultHandler {
@@ -54,10 +53,7 @@ public class SearchResultHandler implements ResultHandler {
                     final TablePayload tablePayload = (TablePayload) payload;
 
                     final TablePayloadHandler payloadHandler = handlerMap.get(entry.getKey());
-                    final UnsafePairQueue<String, Item> newQueue = tablePayload.getQueue();
-                    if (newQueue != null) {
-                        payloadHandler.addQueue(newQueue, hasTerminate);
-                    }
+                    payloadHandler.addPayload(tablePayload, hasTerminate);
                 }
             }
         }
@@ -22,6 +22,7 @@ public class TablePayload implements Payload {
     private static final long serialVersionUID = 5271438218782010968L;
 
     private UnsafePairQueue<String, Item> queue;
+    private byte[] data;
 
     public TablePayload() {
     }
@@ -30,7 +31,19 @@ public class TablePayload implements Payload {
         this.queue = queue;
     }
 
+    /**
+     * @param data
+     *            Items encoded by {@link TablePayloadCodec}.
+     */
+    public TablePayload(final byte[] data) {
+        this.data = data;
+    }
+
     public UnsafePairQueue<String, Item> getQueue() {
         return queue;
     }
+
+    public byte[] getData() {
+        return data;
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.query;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import stroom.dashboard.expression.Expression;
+import stroom.dashboard.expression.Generator;
+import stroom.mapreduce.Pair;
+import stroom.mapreduce.UnsafePairQueue;
+import stroom.util.io.CompactDataInput;
+import stroom.util.io.CompactDataOutput;
+
+/**
+ * Encodes the items of a table payload in a compact versioned binary form for
+ * sending between nodes.
+ *
+ * Only the state of each generator is written. The decoding node creates
+ * generators from the same table fields and restores their state so no class
+ * information needs to be sent. Payloads larger than a few kilobytes are
+ * deflated.
+ *
+ * <pre>
+ * [version][flags][uncompressed length if deflated][body]
+ * body = [field count][item count]([key][parent key][group key][depth]([has value][generator state])*)*
+ * </pre>
+ */
+public class TablePayloadCodec {
+    private static final int VERSION = 1;
+    private static final int FLAG_DEFLATED = 1;
+    private static final int MIN_DEFLATE_SIZE = 4096;
+
+    private final CompiledFields compiledFields;
+
+    public TablePayloadCodec(final CompiledFields compiledFields) {
+        this.compiledFields = compiledFields;
+    }
+
+    public byte[] encode(final UnsafePairQueue<String, Item> queue) {
+        final int fieldCount = compiledFields.size();
+        final CompactDataOutput body = new CompactDataOutput();
+        body.writeVarInt(fieldCount);
+        body.writeVarInt(queue.size());
+        for (final Pair<String, Item> pair : queue) {
+            final Item item = pair.getValue();
+            body.writeString(pair.getKey());
+            body.writeString(item.parentKey);
+            body.writeString(item.groupKey);
+            body.writeVarInt(item.depth);
+
+            for (int i = 0; i < fieldCount; i++) {
+                final Generator generator = (Generator) item.values[i];
+                body.writeBoolean(generator != null);
+                if (generator != null) {
+                    generator.writeState(body);
+                }
+            }
+        }
+
+        final byte[] bytes = body.toByteArray();
+        final CompactDataOutput output = new CompactDataOutput(bytes.length + 8);
+        output.writeByte(VERSION);
+        if (bytes.length >= MIN_DEFLATE_SIZE) {
+            final byte[] deflated = deflate(bytes);
+            if (deflated.length < bytes.length) {
+                output.writeByte(FLAG_DEFLATED);
+                output.writeVarInt(bytes.length);
+                output.write(deflated, 0, deflated.length);
+                return output.toByteArray();
+            }
+        }
+
+        output.writeByte(0);
+        output.write(bytes, 0, bytes.length);
+        return output.toByteArray();
+    }
+
+    public UnsafePairQueue<String, Item> decode(final byte[] data) {
+        final CompactDataInput header = new CompactDataInput(data);
+        final int version = header.readByte();
+        if (version != VERSION) {
+            throw new RuntimeException("Unsupported table payload version " + version);
+        }
+
+        final int flags = header.readByte();
+        final CompactDataInput body;
+        if ((flags & FLAG_DEFLATED) != 0) {
+            final int length = header.readVarInt();
+            body = new CompactDataInput(inflate(data, header.getPosition(), length));
+        } else {
+            body = new CompactDataInput(data, header.getPosition(), header.available());
+        }
+
+        final int fieldCount = body.readVarInt();
+        if (fieldCount != compiledFields.size()) {
+            throw new RuntimeException(
+                    "Table payload has " + fieldCount + " fields but " + compiledFields.size() + " were expected");
+        }
+
+        final int itemCount = body.readVarInt();
+        final UnsafePairQueue<String, Item> queue = new UnsafePairQueue<>();
+        for (int i = 0; i < itemCount; i++) {
+            final String key = body.readString();
+            final String parentKey = body.readString();
+            final String groupKey = body.readString();
+            final int depth = body.readVarInt();
+
+            final Generator[] generators = new Generator[fieldCount];
+            for (int j = 0; j < fieldCount; j++) {
+                if (body.readBoolean()) {
+                    final Expression expression = compiledFields.getField(j).getExpression();
+                    if (expression == null) {
+                        throw new RuntimeException("Table payload has a value for field " + j
+                                + " but the field has no expression");
+                    }
+                    final Generator generator = expression.createGenerator();
+                    generator.readState(body);
+                    generators[j] = generator;
+                }
+            }
+
+            queue.collect(key, new Item(parentKey, groupKey, generators, depth));
+        }
+
+        return queue;
+    }
+
+    private byte[] deflate(final byte[] bytes) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2);
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                final int len = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, len);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(final byte[] data, final int offset, final int length) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            final byte[] bytes = new byte[length];
+            int pos = 0;
+            while (pos < length) {
+                final int len = inflater.inflate(bytes, pos, length - pos);
+                if (len == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new RuntimeException("Table payload is truncated");
+                }
+                pos += len;
+            }
+            return bytes;
+        } catch (final DataFormatException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
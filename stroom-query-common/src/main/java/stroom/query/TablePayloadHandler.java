@@ -23,6 +23,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+import stroom.dashboard.expression.FieldIndexMap;
 import stroom.query.Items.RemoveHandler;
 import stroom.query.shared.Field;
 import stroom.mapreduce.Pair;
@@ -128,6 +129,7 @@ public class TablePayloadHandler implements PayloadHandler {
 
     private final CompiledSorter compiledSorter;
     private final CompiledDepths compiledDepths;
+    private final TablePayloadCodec codec;
     private final int[] storeTrimSizes;
     private volatile PairQueue<String, Item> currentQueue;
     private volatile ResultStore resultStore;
@@ -139,6 +141,9 @@ public class TablePayloadHandler implements PayloadHandler {
     public TablePayloadHandler(final List<Field> fields, final boolean showDetails, final int[] storeTrimSizes) {
         this.compiledSorter = new CompiledSorter(fields);
         this.compiledDepths = new CompiledDepths(fields, showDetails);
+        // Fields are compiled the same way as they are for search so that
+        // encoded payloads can be decoded into equivalent generators.
+        this.codec = new TablePayloadCodec(new CompiledFields(null, fields, new FieldIndexMap(true)));
         this.storeTrimSizes = getStoreTrimSizes(storeTrimSizes);
     }
 
@@ -178,6 +183,14 @@ public class TablePayloadHandler implements PayloadHandler {
         return array;
     }
 
+    public void addPayload(final TablePayload payload, final HasTerminate hasTerminate) {
+        UnsafePairQueue<String, Item> newQueue = payload.getQueue();
+        if (newQueue == null && payload.getData() != null && !hasTerminate.isTerminated()) {
+            newQueue = codec.decode(payload.getData());
+        }
+        addQueue(newQueue, hasTerminate);
+    }
+
     public void addQueue(final UnsafePairQueue<String, Item> newQueue, final HasTerminate hasTerminate) {
         if (newQueue != null) {
             if (hasTerminate.isTerminated()) {
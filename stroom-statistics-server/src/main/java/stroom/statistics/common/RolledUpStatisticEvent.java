@@ -20,30 +20,32 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.statistics.common.rollup.RollUpMaskTable;
 import stroom.statistics.shared.StatisticType;
 
 /**
- * Wrapper for a {@link StatisticEvent} that adds a list of {@link StatisticTag}
- * lists, i.e. the different rollup permutations of the original statistic tag
- * list. The iterator allows you to get access to the underlying
+ * Wrapper for a {@link StatisticEvent} that adds a table of roll up masks, i.e.
+ * the different rollup permutations of the original statistic tag list. The
+ * iterator allows you to get access to the underlying
  * {@link TimeAgnosticStatisticEvent} objects which are built on the fly.
+ * Stores that build their own keys can use the mask table directly to avoid
+ * building the tag list of each permutation.
  */
 public class RolledUpStatisticEvent implements Iterable<TimeAgnosticStatisticEvent> {
     private final StatisticEvent originalStatisticEvent;
-    private final List<List<StatisticTag>> tagListPermutations;
+    private final RollUpMaskTable rollUpMaskTable;
 
-    public RolledUpStatisticEvent(StatisticEvent originalStatisticEvent, List<List<StatisticTag>> tagListPermutations) {
+    public RolledUpStatisticEvent(StatisticEvent originalStatisticEvent, RollUpMaskTable rollUpMaskTable) {
         this.originalStatisticEvent = originalStatisticEvent;
-        this.tagListPermutations = tagListPermutations;
+        this.rollUpMaskTable = rollUpMaskTable;
     }
 
     /**
      * To be used when no roll ups are required
      */
     public RolledUpStatisticEvent(StatisticEvent originalStatisticEvent) {
-        this.originalStatisticEvent = originalStatisticEvent;
-        this.tagListPermutations = new ArrayList<List<StatisticTag>>();
-        this.tagListPermutations.add(originalStatisticEvent.getTagList());
+        this(originalStatisticEvent, RollUpMaskTable.NONE);
     }
 
     public long getTimeMs() {
@@ -70,8 +72,42 @@ public class RolledUpStatisticEvent implements Iterable<TimeAgnosticStatisticEve
         return originalStatisticEvent.getCount();
     }
 
+    /**
+     * @return The tag list of the original event.
+     */
+    public List<StatisticTag> getTagList() {
+        return originalStatisticEvent.getTagList();
+    }
+
+    public RollUpMaskTable getRollUpMaskTable() {
+        return rollUpMaskTable;
+    }
+
     public int getPermutationCount() {
-        return tagListPermutations.size();
+        return rollUpMaskTable.size();
+    }
+
+    /**
+     * @return The tag list for one roll up mask with rolled up tags given the
+     *         roll up marker as their value.
+     */
+    public List<StatisticTag> getTagList(final short mask) {
+        final List<StatisticTag> tagList = originalStatisticEvent.getTagList();
+        if (mask == 0) {
+            return tagList;
+        }
+
+        final int tagListSize = tagList.size();
+        final List<StatisticTag> tags = new ArrayList<StatisticTag>(tagListSize);
+        for (int i = 0; i < tagListSize; i++) {
+            final StatisticTag tag = tagList.get(i);
+            if (RollUpMaskTable.isRolledUp(mask, i)) {
+                tags.add(new StatisticTag(tag.getTag(), RollUpBitMask.ROLL_UP_TAG_VALUE));
+            } else {
+                tags.add(tag);
+            }
+        }
+        return tags;
     }
 
     @Override
@@ -81,28 +117,22 @@ public class RolledUpStatisticEvent implements Iterable<TimeAgnosticStatisticEve
 
             @Override
             public boolean hasNext() {
-                if (tagListPermutations == null || tagListPermutations.size() == 0) {
-                    return false;
-                }
-
-                return nextElement < tagListPermutations.size();
+                return nextElement < rollUpMaskTable.size();
             }
 
             @Override
             public TimeAgnosticStatisticEvent next() {
-                if (tagListPermutations == null || tagListPermutations.size() == 0) {
+                if (!hasNext()) {
                     return null;
                 }
 
-                // the tag list embedded in the originalStatisticEvent is
-                // ignored as it will be contained within the
-                // tagListPermutations
+                final List<StatisticTag> tags = getTagList(rollUpMaskTable.getMask(nextElement++));
                 if (originalStatisticEvent.getType().equals(StatisticType.COUNT)) {
-                    return new TimeAgnosticStatisticEvent(originalStatisticEvent.getName(),
-                            tagListPermutations.get(nextElement++), originalStatisticEvent.getCount());
+                    return new TimeAgnosticStatisticEvent(originalStatisticEvent.getName(), tags,
+                            originalStatisticEvent.getCount());
                 } else {
-                    return new TimeAgnosticStatisticEvent(originalStatisticEvent.getName(),
-                            tagListPermutations.get(nextElement++), originalStatisticEvent.getValue());
+                    return new TimeAgnosticStatisticEvent(originalStatisticEvent.getName(), tags,
+                            originalStatisticEvent.getValue());
                 }
             }
 
@@ -119,7 +149,7 @@ public class RolledUpStatisticEvent implements Iterable<TimeAgnosticStatisticEve
         final int prime = 31;
         int result = 1;
         result = prime * result + ((originalStatisticEvent == null) ? 0 : originalStatisticEvent.hashCode());
-        result = prime * result + ((tagListPermutations == null) ? 0 : tagListPermutations.hashCode());
+        result = prime * result + ((rollUpMaskTable == null) ? 0 : rollUpMaskTable.hashCode());
         return result;
     }
 
@@ -137,18 +167,18 @@ public class RolledUpStatisticEvent implements Iterable<TimeAgnosticStatisticEve
                 return false;
         } else if (!originalStatisticEvent.equals(other.originalStatisticEvent))
             return false;
-        if (tagListPermutations == null) {
-            if (other.tagListPermutations != null)
+        if (rollUpMaskTable == null) {
+            if (other.rollUpMaskTable != null)
                 return false;
-        } else if (!tagListPermutations.equals(other.tagListPermutations))
+        } else if (!rollUpMaskTable.equals(other.rollUpMaskTable))
             return false;
         return true;
     }
 
     @Override
     public String toString() {
-        return "RolledUpStatisticEvent [originalStatisticEvent=" + originalStatisticEvent + ", tagListPermutations="
-                + tagListPermutations + "]";
+        return "RolledUpStatisticEvent [originalStatisticEvent=" + originalStatisticEvent + ", rollUpMaskTable="
+                + rollUpMaskTable + "]";
     }
 
 }
@@ -16,16 +16,20 @@
 
 package stroom.statistics.common;
 
+import stroom.statistics.internal.InternalStatisticEventStore;
+import stroom.statistics.internal.InternalStatisticsEventValidator;
 import stroom.statistics.sql.SQLStatisticEventStore;
 import stroom.statistics.sql.SQLStatisticsEventValidator;
 
 public class StatisticsEventValidatorFactory {
     private static final StatisticsEventValidator SQL_STATISTICS_EVENT_VALIDATOR;
+    private static final StatisticsEventValidator INTERNAL_STATISTICS_EVENT_VALIDATOR;
 
     // The validators are stateless so hold a single instance that can be reused
     // again and again.
     static {
         SQL_STATISTICS_EVENT_VALIDATOR = new SQLStatisticsEventValidator();
+        INTERNAL_STATISTICS_EVENT_VALIDATOR = new InternalStatisticsEventValidator();
     }
 
     public static StatisticsEventValidator getInstance(String engineName) {
@@ -33,6 +37,8 @@ public class StatisticsEventValidatorFactory {
             throw new NullPointerException("Cannot pass a null engineName to getInstance");
         } else if (engineName.toLowerCase().equals(SQLStatisticEventStore.ENGINE_NAME)) {
             return SQL_STATISTICS_EVENT_VALIDATOR;
+        } else if (engineName.toLowerCase().equals(InternalStatisticEventStore.ENGINE_NAME)) {
+            return INTERNAL_STATISTICS_EVENT_VALIDATOR;
         } else {
             throw new IllegalArgumentException(
                     String.format("The supplied engineName [%s] is not supported", engineName));
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.common.rollup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import stroom.statistics.shared.CustomRollUpMask;
+
+/**
+ * The distinct roll up masks to apply to a statistic event with a given number
+ * of tags, held as short values so that expanding an event into its roll up
+ * permutations needs no per event objects. Bit n of a mask being set means the
+ * tag at position n in the (sorted) tag list is rolled up.
+ *
+ * Tables are immutable and cached so the same instance is returned for every
+ * event of a statistic data source with the same tag count.
+ */
+public final class RollUpMaskTable {
+    /**
+     * A table with a single mask that rolls up nothing.
+     */
+    public static final RollUpMaskTable NONE = new RollUpMaskTable(new short[] { 0 });
+
+    private static final RollUpMaskTable[] ALL_TABLES = new RollUpMaskTable[RollUpBitMask.MASK_LENGTH + 1];
+    private static final Map<Set<CustomRollUpMask>, RollUpMaskTable[]> CUSTOM_TABLES = new ConcurrentHashMap<>();
+
+    private final short[] masks;
+
+    private RollUpMaskTable(final short[] masks) {
+        this.masks = masks;
+    }
+
+    /**
+     * @return A table holding every permutation of rolled up tags for the
+     *         passed number of tags.
+     */
+    public static RollUpMaskTable all(final int tagCount) {
+        checkTagCount(tagCount);
+
+        RollUpMaskTable table = ALL_TABLES[tagCount];
+        if (table == null) {
+            // if multiple threads hit this at once then it just means some
+            // brief duplicated effort as they will build identical tables.
+            final short[] masks = new short[1 << tagCount];
+            for (int i = 0; i < masks.length; i++) {
+                masks[i] = (short) i;
+            }
+            table = new RollUpMaskTable(masks);
+            ALL_TABLES[tagCount] = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return A table holding the passed custom roll up masks for the passed
+     *         number of tags. Positions beyond the number of tags are ignored.
+     */
+    public static RollUpMaskTable custom(final Set<CustomRollUpMask> customRollUpMasks, final int tagCount) {
+        checkTagCount(tagCount);
+
+        RollUpMaskTable[] tables = CUSTOM_TABLES.get(customRollUpMasks);
+        if (tables == null) {
+            // Key the cache on a copy as the masks on the data source are
+            // mutable.
+            final Set<CustomRollUpMask> key = new HashSet<>();
+            for (final CustomRollUpMask customRollUpMask : customRollUpMasks) {
+                key.add(new CustomRollUpMask(new ArrayList<>(customRollUpMask.getRolledUpTagPositions())));
+            }
+            tables = new RollUpMaskTable[RollUpBitMask.MASK_LENGTH + 1];
+            final RollUpMaskTable[] existing = CUSTOM_TABLES.putIfAbsent(key, tables);
+            if (existing != null) {
+                tables = existing;
+            }
+        }
+
+        RollUpMaskTable table = tables[tagCount];
+        if (table == null) {
+            table = build(customRollUpMasks, tagCount);
+            tables[tagCount] = table;
+        }
+        return table;
+    }
+
+    private static RollUpMaskTable build(final Collection<CustomRollUpMask> customRollUpMasks, final int tagCount) {
+        final int tagBits = (1 << tagCount) - 1;
+        final Set<Short> distinct = new TreeSet<>();
+        for (final CustomRollUpMask customRollUpMask : customRollUpMasks) {
+            final short mask = RollUpBitMask.fromTagPositions(customRollUpMask.getRolledUpTagPositions()).asShort();
+            distinct.add((short) (mask & tagBits));
+        }
+
+        final short[] masks = new short[distinct.size()];
+        int i = 0;
+        for (final Short mask : distinct) {
+            masks[i++] = mask;
+        }
+        return new RollUpMaskTable(masks);
+    }
+
+    private static void checkTagCount(final int tagCount) {
+        if (tagCount < 0 || tagCount > RollUpBitMask.MASK_LENGTH) {
+            throw new IllegalArgumentException(String.format("Invalid tagCount [%s], valid values are 0 to %s",
+                    tagCount, RollUpBitMask.MASK_LENGTH));
+        }
+    }
+
+    /**
+     * @return The number of permutations in the table.
+     */
+    public int size() {
+        return masks.length;
+    }
+
+    public short getMask(final int index) {
+        return masks[index];
+    }
+
+    public static boolean isRolledUp(final short mask, final int tagPosition) {
+        return (mask & (1 << tagPosition)) != 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(masks);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RollUpMaskTable)) {
+            return false;
+        }
+        return Arrays.equals(masks, ((RollUpMaskTable) obj).masks);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(masks);
+    }
+}
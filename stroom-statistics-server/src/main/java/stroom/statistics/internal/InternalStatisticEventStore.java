@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import stroom.node.server.StroomPropertyService;
+import stroom.query.shared.Search;
+import stroom.statistics.common.FilterOperationMode;
+import stroom.statistics.common.FilterTermsTree.OperatorNode;
+import stroom.statistics.common.FilterTermsTree.TermNode;
+import stroom.statistics.common.FindEventCriteria;
+import stroom.statistics.common.PrintableNode;
+import stroom.statistics.common.RolledUpStatisticEvent;
+import stroom.statistics.common.StatisticDataPoint;
+import stroom.statistics.common.StatisticDataSet;
+import stroom.statistics.common.StatisticEvent;
+import stroom.statistics.common.StatisticStoreCache;
+import stroom.statistics.common.StatisticStoreValidator;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.common.TimeAgnosticStatisticEvent;
+import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.statistics.server.common.AbstractStatistics;
+import stroom.statistics.shared.StatisticStore;
+import stroom.statistics.shared.StatisticStoreEntity;
+import stroom.statistics.shared.StatisticType;
+import stroom.util.io.FileUtil;
+import stroom.util.logging.StroomLogger;
+import stroom.util.spring.StroomFrequencySchedule;
+import stroom.util.spring.StroomShutdown;
+import stroom.util.spring.StroomStartup;
+
+/**
+ * A statistics engine for Stroom's own metrics, e.g. node CPU, memory and
+ * volume use, that keeps rolled up values in memory and in a local file
+ * rather than putting extra load on the database. Internal statistics are
+ * sent to it by including 'internal' in stroom.stats.common.statisticEngines
+ * and it can be searched by creating statistic data sources that use the
+ * 'internal' engine.
+ *
+ * Each node only holds the statistics that it recorded itself and searches
+ * run on the node that receives them, so search results only cover that
+ * node.
+ */
+@Component
+public class InternalStatisticEventStore extends AbstractStatistics {
+    private static final StroomLogger LOGGER = StroomLogger.getLogger(InternalStatisticEventStore.class);
+
+    public static final String ENGINE_NAME = "internal";
+
+    static final String PROP_KEY_DIR = "stroom.stats.internal.dir";
+
+    private static final String DEFAULT_DIR = ".stroom/internalStatistics";
+    private static final String FILE_NAME = "internalStatistics.dat";
+
+    private final InternalStatisticSeriesStore seriesStore = new InternalStatisticSeriesStore();
+    private final StroomPropertyService propertyService;
+
+    @Inject
+    public InternalStatisticEventStore(final StatisticStoreValidator statisticsDataSourceValidator,
+            final StatisticStoreCache statisticsDataSourceCache, final StroomPropertyService propertyService) {
+        super(statisticsDataSourceValidator, statisticsDataSourceCache, propertyService);
+        this.propertyService = propertyService;
+    }
+
+    @Override
+    public String getEngineName() {
+        return ENGINE_NAME;
+    }
+
+    @StroomStartup
+    public void startup() {
+        if (isDataStoreEnabled()) {
+            final File file = getFile();
+            if (file.isFile()) {
+                try {
+                    seriesStore.load(file);
+                    LOGGER.info("startup() - Loaded %s internal statistic series from %s", seriesStore.size(), file);
+                } catch (final Exception e) {
+                    LOGGER.error("startup() - Unable to load internal statistics from %s", file, e);
+                    keepUnreadableFile(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a file that could not be loaded out of the way so that it isn't
+     * replaced by the next save.
+     */
+    private void keepUnreadableFile(final File file) {
+        final File badFile = new File(file.getParentFile(), file.getName() + "." + System.currentTimeMillis() + ".bad");
+        try {
+            FileUtil.rename(file, badFile);
+            LOGGER.info("startup() - Moved unreadable internal statistics file to %s", badFile);
+        } catch (final Exception e) {
+            LOGGER.error("startup() - Unable to move unreadable internal statistics file %s", file, e);
+        }
+    }
+
+    @StroomShutdown
+    public void shutdown() {
+        save();
+    }
+
+    @StroomFrequencySchedule("1m")
+    public void save() {
+        if (isDataStoreEnabled() && seriesStore.size() > 0) {
+            final File file = getFile();
+            try {
+                FileUtil.mkdirs(file.getParentFile());
+                seriesStore.save(file);
+                LOGGER.debug("save() - Saved %s internal statistic series to %s", seriesStore.size(), file);
+            } catch (final Exception e) {
+                LOGGER.error("save() - Unable to save internal statistics to %s", file, e);
+            }
+        }
+    }
+
+    private File getFile() {
+        final String dir = propertyService.getProperty(PROP_KEY_DIR);
+        if (StringUtils.hasText(dir)) {
+            return new File(dir.trim(), FILE_NAME);
+        }
+        // Keep history out of the temp directory as that may be cleaned.
+        return new File(new File(System.getProperty("user.home"), DEFAULT_DIR), FILE_NAME);
+    }
+
+    @Override
+    public boolean putEvents(final List<StatisticEvent> statisticEvents, final StatisticStore statisticStore) {
+        final StatisticStoreEntity entity = (StatisticStoreEntity) statisticStore;
+
+        // validate the first stat in the batch to check we have a statistic
+        // data source for it.
+        if (!validateStatisticDataSource(statisticEvents.iterator().next(), entity)) {
+            return false;
+        }
+
+        for (final StatisticEvent statisticEvent : statisticEvents) {
+            add(statisticEvent, entity);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean putEvent(final StatisticEvent statisticEvent, final StatisticStore statisticStore) {
+        final StatisticStoreEntity entity = (StatisticStoreEntity) statisticStore;
+        if (!validateStatisticDataSource(statisticEvent, entity)) {
+            return false;
+        }
+
+        add(statisticEvent, entity);
+        return true;
+    }
+
+    private void add(final StatisticEvent statisticEvent, final StatisticStoreEntity entity) {
+        final RolledUpStatisticEvent rolledUpStatisticEvent = generateTagRollUps(statisticEvent, entity);
+
+        long count = 1;
+        double value = 0;
+        if (StatisticType.COUNT.equals(rolledUpStatisticEvent.getType())) {
+            count = rolledUpStatisticEvent.getCount();
+        } else {
+            value = rolledUpStatisticEvent.getValue();
+        }
+
+        for (final TimeAgnosticStatisticEvent event : rolledUpStatisticEvent) {
+            seriesStore.add(rolledUpStatisticEvent.getName(), rolledUpStatisticEvent.getType(), event.getTagList(),
+                    rolledUpStatisticEvent.getTimeMs(), count, value);
+        }
+    }
+
+    @Override
+    public StatisticDataSet searchStatisticsData(final Search search, final StatisticStoreEntity dataSource) {
+        final FindEventCriteria criteria = buildCriteria(search, dataSource);
+        final Set<String> rolledUpFieldNames = criteria.getRolledUpFieldNames();
+        final PrintableNode filter = criteria.getFilterTermsTree().getRootNode();
+
+        final long precisionMs = dataSource.getPrecision() != null ? dataSource.getPrecision() : 0;
+        final List<StatisticDataPoint> dataPoints = seriesStore.search(dataSource.getName(),
+                criteria.getPeriod().getFromMs(), criteria.getPeriod().getToMs(), precisionMs,
+                System.currentTimeMillis(), tags -> {
+                    // Each roll up permutation is its own series so only
+                    // include the ones rolled up in the same way as the query.
+                    final Map<String, String> tagMap = new HashMap<>();
+                    final Set<String> rolledUp = new HashSet<>();
+                    for (final StatisticTag tag : tags) {
+                        if (RollUpBitMask.ROLL_UP_TAG_VALUE.equals(tag.getValue())) {
+                            rolledUp.add(tag.getTag());
+                        } else {
+                            tagMap.put(tag.getTag(), tag.getValue());
+                        }
+                    }
+                    return rolledUp.equals(rolledUpFieldNames) && (filter == null || matches(filter, tagMap));
+                });
+
+        final StatisticDataSet statisticDataSet = new StatisticDataSet(dataSource.getName(),
+                dataSource.getStatisticType(), precisionMs, new HashSet<>(dataPoints));
+        return statisticDataSet;
+    }
+
+    private static boolean matches(final PrintableNode node, final Map<String, String> tagMap) {
+        if (node instanceof TermNode) {
+            final TermNode termNode = (TermNode) node;
+            return Objects.equals(emptyToNull(termNode.getValue()), emptyToNull(tagMap.get(termNode.getTag())));
+        }
+
+        final OperatorNode operatorNode = (OperatorNode) node;
+        final FilterOperationMode mode = operatorNode.getFilterOperationMode();
+        if (FilterOperationMode.NOT.equals(mode)) {
+            return !matches(operatorNode.getChildren().get(0), tagMap);
+        }
+
+        for (final PrintableNode child : operatorNode.getChildren()) {
+            final boolean match = matches(child, tagMap);
+            if (FilterOperationMode.OR.equals(mode) && match) {
+                return true;
+            } else if (FilterOperationMode.AND.equals(mode) && !match) {
+                return false;
+            }
+        }
+        return FilterOperationMode.AND.equals(mode);
+    }
+
+    private static String emptyToNull(final String value) {
+        if (value == null || value.isEmpty() || StatisticTag.NULL_VALUE_STRING.equals(value)) {
+            return null;
+        }
+        return value;
+    }
+
+    @Override
+    public List<String> getValuesByTag(final String tagName) {
+        return seriesStore.getValuesByTag(tagName);
+    }
+
+    @Override
+    public List<String> getValuesByTagAndPartialValue(final String tagName, final String partialValue) {
+        final List<String> values = new ArrayList<>();
+        for (final String value : seriesStore.getValuesByTag(tagName)) {
+            if (value.contains(partialValue)) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void flushAllEvents() {
+        save();
+    }
+
+    InternalStatisticSeriesStore getSeriesStore() {
+        return seriesStore;
+    }
+}
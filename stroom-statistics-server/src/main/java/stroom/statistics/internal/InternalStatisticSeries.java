@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import stroom.statistics.common.StatisticDataPoint;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.statistics.shared.StatisticType;
+
+/**
+ * The values of a statistic for one set of tag values, rolled up into minute,
+ * hour and day buckets as they are added. Each interval keeps as many buckets
+ * as fit in the row key interval of the matching
+ * {@link EventStoreTimeIntervalEnum}, i.e. a day of minutes, four weeks of
+ * hours and fifty two weeks of days.
+ */
+class InternalStatisticSeries {
+    static final EventStoreTimeIntervalEnum[] INTERVALS = new EventStoreTimeIntervalEnum[] {
+            EventStoreTimeIntervalEnum.MINUTE, EventStoreTimeIntervalEnum.HOUR, EventStoreTimeIntervalEnum.DAY };
+
+    private final List<StatisticTag> tags;
+    private final StatisticType statisticType;
+    private final RollupTimeSeries[] rollups = new RollupTimeSeries[INTERVALS.length];
+
+    InternalStatisticSeries(final List<StatisticTag> tags, final StatisticType statisticType) {
+        this.tags = tags;
+        this.statisticType = statisticType;
+
+        for (int i = 0; i < INTERVALS.length; i++) {
+            rollups[i] = createRollup(INTERVALS[i], statisticType);
+        }
+    }
+
+    private static RollupTimeSeries createRollup(final EventStoreTimeIntervalEnum interval,
+            final StatisticType statisticType) {
+        return new RollupTimeSeries(interval.columnInterval(), getSlotCount(interval),
+                StatisticType.VALUE.equals(statisticType));
+    }
+
+    private static int getSlotCount(final EventStoreTimeIntervalEnum interval) {
+        return (int) (interval.rowKeyInterval() / interval.columnInterval());
+    }
+
+    /**
+     * @return The start of the oldest bucket of an interval that is still held
+     *         if the newest bucket is the one containing the supplied time.
+     */
+    static long getRetainedFromMs(final EventStoreTimeIntervalEnum interval, final long nowMs) {
+        final long intervalMs = interval.columnInterval();
+        return Math.floorDiv(nowMs, intervalMs) * intervalMs - (getSlotCount(interval) - 1) * intervalMs;
+    }
+
+    List<StatisticTag> getTags() {
+        return tags;
+    }
+
+    StatisticType getStatisticType() {
+        return statisticType;
+    }
+
+    synchronized void add(final long timeMs, final long count, final double value) {
+        for (final RollupTimeSeries rollup : rollups) {
+            rollup.add(timeMs, count, value);
+        }
+    }
+
+    synchronized void read(final int intervalIndex, final long fromMs, final long toMs,
+            final List<StatisticDataPoint> dataPoints) {
+        rollups[intervalIndex].read(fromMs, toMs, tags, dataPoints);
+    }
+
+    synchronized void write(final DataOutput output) throws IOException {
+        for (final RollupTimeSeries rollup : rollups) {
+            rollup.write(output);
+        }
+    }
+
+    synchronized void read(final DataInput input) throws IOException {
+        for (final RollupTimeSeries rollup : rollups) {
+            rollup.read(input);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import stroom.statistics.common.StatisticDataPoint;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.shared.EventStoreTimeIntervalEnum;
+import stroom.statistics.shared.StatisticType;
+
+/**
+ * Holds the rolled up series of every internal statistic keyed by statistic
+ * name and tag values and saves them to a local file so they survive a
+ * restart.
+ */
+public class InternalStatisticSeriesStore {
+    private static final int VERSION = 1;
+
+    private final Map<String, Map<List<StatisticTag>, InternalStatisticSeries>> seriesMap = new ConcurrentHashMap<>();
+
+    public void add(final String name, final StatisticType statisticType, final List<StatisticTag> tags,
+            final long timeMs, final long count, final double value) {
+        getSeries(name, statisticType, tags).add(timeMs, count, value);
+    }
+
+    /**
+     * Gets the data points for the statistic in a time range from the finest
+     * interval that is at least as coarse as the requested precision and
+     * still holds data for the start of the range.
+     *
+     * @param tagFilter
+     *            Selects the series to include by their tags.
+     */
+    public List<StatisticDataPoint> search(final String name, final long fromMs, final long toMs,
+            final long precisionMs, final long nowMs, final Predicate<List<StatisticTag>> tagFilter) {
+        final Map<List<StatisticTag>, InternalStatisticSeries> map = seriesMap.get(name);
+        if (map == null) {
+            return Collections.emptyList();
+        }
+
+        final int intervalIndex = selectInterval(fromMs, precisionMs, nowMs);
+        final List<StatisticDataPoint> dataPoints = new ArrayList<>();
+        for (final InternalStatisticSeries series : map.values()) {
+            if (tagFilter.test(series.getTags())) {
+                series.read(intervalIndex, fromMs, toMs, dataPoints);
+            }
+        }
+        return dataPoints;
+    }
+
+    static int selectInterval(final long fromMs, final long precisionMs, final long nowMs) {
+        final EventStoreTimeIntervalEnum[] intervals = InternalStatisticSeries.INTERVALS;
+        for (int i = 0; i < intervals.length; i++) {
+            if (intervals[i].columnInterval() >= precisionMs
+                    && InternalStatisticSeries.getRetainedFromMs(intervals[i], nowMs) <= fromMs) {
+                return i;
+            }
+        }
+        return intervals.length - 1;
+    }
+
+    /**
+     * @return The distinct values held for a tag across all statistics.
+     */
+    public List<String> getValuesByTag(final String tagName) {
+        final List<String> values = new ArrayList<>();
+        for (final Map<List<StatisticTag>, InternalStatisticSeries> map : seriesMap.values()) {
+            for (final List<StatisticTag> tags : map.keySet()) {
+                for (final StatisticTag tag : tags) {
+                    if (tag.getTag().equals(tagName) && tag.getValue() != null && !values.contains(tag.getValue())) {
+                        values.add(tag.getValue());
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Map<List<StatisticTag>, InternalStatisticSeries> map : seriesMap.values()) {
+            size += map.size();
+        }
+        return size;
+    }
+
+    /**
+     * Writes all series to a temporary file that then replaces the supplied
+     * file so that a partially written file is never read.
+     */
+    public void save(final File file) throws IOException {
+        final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            // Series can be added while saving so write the number of series
+            // that are actually written.
+            final List<Entry<String, InternalStatisticSeries>> snapshot = new ArrayList<>();
+            for (final Entry<String, Map<List<StatisticTag>, InternalStatisticSeries>> entry : seriesMap.entrySet()) {
+                for (final InternalStatisticSeries series : entry.getValue().values()) {
+                    snapshot.add(new SimpleImmutableEntry<>(entry.getKey(), series));
+                }
+            }
+
+            output.writeInt(VERSION);
+            output.writeInt(snapshot.size());
+            for (final Entry<String, InternalStatisticSeries> entry : snapshot) {
+                final InternalStatisticSeries series = entry.getValue();
+                output.writeUTF(entry.getKey());
+                output.writeUTF(series.getStatisticType().name());
+                output.writeInt(series.getTags().size());
+                for (final StatisticTag tag : series.getTags()) {
+                    output.writeUTF(tag.getTag());
+                    output.writeBoolean(tag.getValue() != null);
+                    if (tag.getValue() != null) {
+                        output.writeUTF(tag.getValue());
+                    }
+                }
+                series.write(output);
+            }
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the series held in a file written by save() to this store.
+     */
+    public void load(final File file) throws IOException {
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported internal statistics file version " + version);
+            }
+
+            final int seriesCount = input.readInt();
+            for (int i = 0; i < seriesCount; i++) {
+                final String name = input.readUTF();
+                final StatisticType statisticType = StatisticType.valueOf(input.readUTF());
+                final int tagCount = input.readInt();
+                final List<StatisticTag> tags = new ArrayList<>(tagCount);
+                for (int j = 0; j < tagCount; j++) {
+                    final String tag = input.readUTF();
+                    final String value = input.readBoolean() ? input.readUTF() : null;
+                    tags.add(new StatisticTag(tag, value));
+                }
+
+                InternalStatisticSeries series = getSeries(name, statisticType, tags);
+                if (!series.getStatisticType().equals(statisticType)) {
+                    // The statistic has changed type since it was saved so
+                    // read past the old values.
+                    series = new InternalStatisticSeries(tags, statisticType);
+                }
+                series.read(input);
+            }
+        }
+    }
+
+    private InternalStatisticSeries getSeries(final String name, final StatisticType statisticType,
+            final List<StatisticTag> tags) {
+        final Map<List<StatisticTag>, InternalStatisticSeries> map = seriesMap.computeIfAbsent(name,
+                k -> new ConcurrentHashMap<>());
+        return map.computeIfAbsent(tags, k -> new InternalStatisticSeries(tags, statisticType));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import stroom.statistics.common.StatisticDataPoint;
+import stroom.statistics.common.StatisticTag;
+
+/**
+ * A fixed size ring buffer of statistic values aggregated into buckets of a
+ * fixed interval. Adding a value for a bucket that is newer than the one held
+ * in its slot overwrites the slot so the buffer always holds the most recent
+ * slotCount buckets. Values older than that are dropped.
+ */
+class RollupTimeSeries {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long intervalMs;
+    private final int slotCount;
+    private final long[] bucketTimes;
+    private final long[] counts;
+    // Only used for value statistics.
+    private final double[] sums;
+    private final double[] mins;
+    private final double[] maxs;
+
+    RollupTimeSeries(final long intervalMs, final int slotCount, final boolean hasValues) {
+        this.intervalMs = intervalMs;
+        this.slotCount = slotCount;
+        this.bucketTimes = new long[slotCount];
+        this.counts = new long[slotCount];
+        Arrays.fill(bucketTimes, EMPTY);
+
+        if (hasValues) {
+            sums = new double[slotCount];
+            mins = new double[slotCount];
+            maxs = new double[slotCount];
+        } else {
+            sums = null;
+            mins = null;
+            maxs = null;
+        }
+    }
+
+    /**
+     * @return False if the time is too old to be held.
+     */
+    boolean add(final long timeMs, final long count, final double value) {
+        final long bucketTime = bucketTime(timeMs);
+        final int slot = slot(bucketTime);
+
+        if (bucketTimes[slot] != bucketTime) {
+            if (bucketTimes[slot] != EMPTY && bucketTimes[slot] > bucketTime) {
+                return false;
+            }
+            reset(slot, bucketTime);
+        }
+
+        counts[slot] += count;
+        if (sums != null) {
+            sums[slot] += value;
+            mins[slot] = Math.min(mins[slot], value);
+            maxs[slot] = Math.max(maxs[slot], value);
+        }
+        return true;
+    }
+
+    /**
+     * Adds data points for all buckets that start within the supplied range.
+     */
+    void read(final long fromMs, final long toMs, final List<StatisticTag> tags,
+            final List<StatisticDataPoint> dataPoints) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            final long bucketTime = bucketTimes[slot];
+            if (bucketTime != EMPTY && bucketTime >= fromMs && bucketTime < toMs) {
+                if (sums == null) {
+                    dataPoints.add(StatisticDataPoint.countInstance(bucketTime, intervalMs, tags, counts[slot]));
+                } else {
+                    dataPoints.add(StatisticDataPoint.valueInstance(bucketTime, intervalMs, tags,
+                            sums[slot] / counts[slot], counts[slot], mins[slot], maxs[slot]));
+                }
+            }
+        }
+    }
+
+    void write(final DataOutput output) throws IOException {
+        int populated = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (bucketTimes[slot] != EMPTY) {
+                populated++;
+            }
+        }
+
+        output.writeInt(populated);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (bucketTimes[slot] != EMPTY) {
+                output.writeLong(bucketTimes[slot]);
+                output.writeLong(counts[slot]);
+                if (sums != null) {
+                    output.writeDouble(sums[slot]);
+                    output.writeDouble(mins[slot]);
+                    output.writeDouble(maxs[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads buckets written by write() adding them to any values already held.
+     */
+    void read(final DataInput input) throws IOException {
+        final int populated = input.readInt();
+        for (int i = 0; i < populated; i++) {
+            final long bucketTime = input.readLong();
+            final long count = input.readLong();
+            double sum = 0;
+            double min = 0;
+            double max = 0;
+            if (sums != null) {
+                sum = input.readDouble();
+                min = input.readDouble();
+                max = input.readDouble();
+            }
+
+            // Merge with anything that has been added since startup.
+            final int slot = slot(bucketTime);
+            if (bucketTimes[slot] == EMPTY || bucketTimes[slot] < bucketTime) {
+                reset(slot, bucketTime);
+            }
+            if (bucketTimes[slot] == bucketTime) {
+                counts[slot] += count;
+                if (sums != null) {
+                    sums[slot] += sum;
+                    mins[slot] = Math.min(mins[slot], min);
+                    maxs[slot] = Math.max(maxs[slot], max);
+                }
+            }
+        }
+    }
+
+    private void reset(final int slot, final long bucketTime) {
+        bucketTimes[slot] = bucketTime;
+        counts[slot] = 0;
+        if (sums != null) {
+            sums[slot] = 0;
+            mins[slot] = Double.POSITIVE_INFINITY;
+            maxs[slot] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private long bucketTime(final long timeMs) {
+        return Math.floorDiv(timeMs, intervalMs) * intervalMs;
+    }
+
+    private int slot(final long bucketTime) {
+        return (int) Math.floorMod(bucketTime / intervalMs, (long) slotCount);
+    }
+}
@@ -23,7 +23,7 @@ import stroom.query.shared.*;
 import stroom.query.shared.ExpressionOperator.Op;
 import stroom.statistics.common.*;
 import stroom.statistics.common.rollup.RollUpBitMask;
-import stroom.statistics.shared.CustomRollUpMask;
+import stroom.statistics.common.rollup.RollUpMaskTable;
 import stroom.statistics.shared.StatisticRollUpType;
 import stroom.statistics.shared.StatisticStoreEntity;
 import stroom.util.date.DateUtil;
@@ -240,35 +240,27 @@ public abstract class AbstractStatistics implements Statistics {
     // TODO could go futher up the chain so is store agnostic
     public static RolledUpStatisticEvent generateTagRollUps(final StatisticEvent event,
                                                             final StatisticStoreEntity statisticsDataSource) {
-        RolledUpStatisticEvent rolledUpStatisticEvent = null;
-
         final int eventTagListSize = event.getTagList().size();
 
         final StatisticRollUpType rollUpType = statisticsDataSource.getRollUpType();
 
+        RollUpMaskTable rollUpMaskTable = null;
         if (eventTagListSize == 0 || StatisticRollUpType.NONE.equals(rollUpType)) {
-            rolledUpStatisticEvent = new RolledUpStatisticEvent(event);
+            rollUpMaskTable = RollUpMaskTable.NONE;
         } else if (StatisticRollUpType.ALL.equals(rollUpType)) {
-            final List<List<StatisticTag>> tagListPerms = generateStatisticTagPerms(event.getTagList(),
-                    RollUpBitMask.getRollUpPermutationsAsBooleans(eventTagListSize));
-
-            // wrap the original event along with the perms list
-            rolledUpStatisticEvent = new RolledUpStatisticEvent(event, tagListPerms);
-
+            rollUpMaskTable = RollUpMaskTable.all(eventTagListSize);
         } else if (StatisticRollUpType.CUSTOM.equals(rollUpType)) {
-            final Set<List<Boolean>> perms = new HashSet<>();
-            for (final CustomRollUpMask mask : statisticsDataSource.getStatisticDataSourceDataObject()
-                    .getCustomRollUpMasks()) {
-                final RollUpBitMask rollUpBitMask = RollUpBitMask.fromTagPositions(mask.getRolledUpTagPositions());
-
-                perms.add(rollUpBitMask.getBooleanMask(eventTagListSize));
-            }
-            final List<List<StatisticTag>> tagListPerms = generateStatisticTagPerms(event.getTagList(), perms);
+            rollUpMaskTable = RollUpMaskTable.custom(
+                    statisticsDataSource.getStatisticDataSourceDataObject().getCustomRollUpMasks(), eventTagListSize);
+        }
 
-            rolledUpStatisticEvent = new RolledUpStatisticEvent(event, tagListPerms);
+        if (rollUpMaskTable == null) {
+            return null;
         }
 
-        return rolledUpStatisticEvent;
+        // wrap the original event along with the table of roll up masks to
+        // apply to it
+        return new RolledUpStatisticEvent(event, rollUpMaskTable);
     }
 
     private static Range<Long> extractRange(final ExpressionTerm dateTerm) {
@@ -290,28 +282,6 @@ public abstract class AbstractStatistics implements Statistics {
         return range;
     }
 
-    private static List<List<StatisticTag>> generateStatisticTagPerms(final List<StatisticTag> eventTags,
-                                                                      final Set<List<Boolean>> perms) {
-        final List<List<StatisticTag>> tagListPerms = new ArrayList<>();
-        final int eventTagListSize = eventTags.size();
-
-        for (final List<Boolean> perm : perms) {
-            final List<StatisticTag> tags = new ArrayList<>();
-            for (int i = 0; i < eventTagListSize; i++) {
-                if (perm.get(i).booleanValue() == true) {
-                    // true means a rolled up tag so create a new tag with the
-                    // rolled up marker
-                    tags.add(new StatisticTag(eventTags.get(i).getTag(), RollUpBitMask.ROLL_UP_TAG_VALUE));
-                } else {
-                    // false means not rolled up so use the existing tag's value
-                    tags.add(eventTags.get(i));
-                }
-            }
-            tagListPerms.add(tags);
-        }
-        return tagListPerms;
-    }
-
     protected StatisticStoreEntity getStatisticsDataSource(final String statisticName, final String engineName) {
         return statisticsDataSourceCache.getStatisticsDataSource(statisticName, engineName);
     }
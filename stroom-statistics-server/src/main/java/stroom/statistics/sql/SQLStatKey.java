@@ -30,8 +30,16 @@ public class SQLStatKey {
     private final int hashCode;
 
     public SQLStatKey(final long ms, final String statName, final List<StatisticTag> tags) {
+        this(ms, buildKeyString(statName, tags));
+    }
+
+    /**
+     * @param name
+     *            An already built key string, see {@link SQLStatKeyEncoder}.
+     */
+    SQLStatKey(final long ms, final String name) {
         this.ms = ms;
-        this.name = buildKeyString(statName, tags);
+        this.name = name;
 
         int code = 31;
         code = code * 31 + (int) ms;
@@ -52,7 +60,7 @@ public class SQLStatKey {
      * where XXXXXXXXXX is the stat name and aaaa is the hex form of the rollup
      * bit mask
      */
-    private String buildKeyString(final String statName, final List<StatisticTag> tags) {
+    private static String buildKeyString(final String statName, final List<StatisticTag> tags) {
         final StringBuilder keyStringBuilder = new StringBuilder();
 
         keyStringBuilder.append(cleanText(statName));
@@ -78,7 +86,7 @@ public class SQLStatKey {
         return keyStringBuilder.toString();
     }
 
-    private String cleanTagValue(final String tagValue) {
+    static String cleanTagValue(final String tagValue) {
         if (tagValue != null && tagValue.equals(RollUpBitMask.ROLL_UP_TAG_VALUE)) {
             return tagValue;
         } else {
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.sql;
+
+import java.util.Arrays;
+import java.util.List;
+
+import stroom.statistics.common.RollUpBitMaskUtil;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.statistics.common.rollup.RollUpMaskTable;
+
+/**
+ * Builds the {@link SQLStatKey} name of each roll up permutation of an event
+ * in a reusable buffer. The statistic name and tags are cleaned once per event
+ * and each permutation is then just appended from the cleaned parts, so the
+ * only object created per permutation is the key string itself. The output is
+ * identical to {@link SQLStatKey#SQLStatKey(long, String, List)} for the tag
+ * list of the same permutation.
+ *
+ * Not thread safe.
+ */
+class SQLStatKeyEncoder {
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
+    private final StringBuilder keyStringBuilder = new StringBuilder(256);
+    private String[] tagNames = new String[RollUpBitMask.MASK_LENGTH];
+    private String[] tagValues = new String[RollUpBitMask.MASK_LENGTH];
+    private int tagCount;
+    private int nameLength;
+    // Tags that already have the roll up marker as their value.
+    private short markedMask;
+
+    /**
+     * Sets the event that subsequent calls to {@link #encode(short)} build
+     * keys for.
+     */
+    void setEvent(final String statName, final List<StatisticTag> tags) {
+        keyStringBuilder.setLength(0);
+        keyStringBuilder.append(SQLStatKey.cleanText(statName));
+        nameLength = keyStringBuilder.length();
+
+        tagCount = tags == null ? 0 : tags.size();
+        if (tagCount > tagNames.length) {
+            tagNames = Arrays.copyOf(tagNames, tagCount);
+            tagValues = Arrays.copyOf(tagValues, tagCount);
+        }
+
+        boolean marked = false;
+        for (int i = 0; i < tagCount; i++) {
+            final StatisticTag tag = tags.get(i);
+            tagNames[i] = SQLStatKey.cleanText(tag.getTag());
+
+            // handle null/empty values with a magic value
+            final String value = SQLStatKey.cleanTagValue(tag.getValue());
+            if (value == null || value.isEmpty()) {
+                tagValues[i] = SQLStatisticConstants.NULL_VALUE_STRING;
+            } else {
+                tagValues[i] = value;
+            }
+            marked = marked || RollUpBitMask.ROLL_UP_TAG_VALUE.equals(tag.getValue());
+        }
+
+        markedMask = marked ? RollUpBitMaskUtil.fromSortedTagList(tags).asShort() : 0;
+    }
+
+    /**
+     * @param mask
+     *            The roll up mask of the permutation, see
+     *            {@link RollUpMaskTable}.
+     * @return The key string for the permutation of the current event.
+     */
+    String encode(final short mask) {
+        keyStringBuilder.setLength(nameLength);
+
+        // add the rollup bit mask (always 4 hex values, e.g. 7FFA)
+        final int keyMask = mask | markedMask;
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            keyStringBuilder.append(HEX_CHARS[(keyMask >> shift) & 0xF]);
+        }
+
+        for (int i = 0; i < tagCount; i++) {
+            keyStringBuilder.append(SQLStatisticConstants.NAME_SEPARATOR);
+            keyStringBuilder.append(tagNames[i]);
+            keyStringBuilder.append(SQLStatisticConstants.NAME_SEPARATOR);
+            if (RollUpMaskTable.isRolledUp(mask, i)) {
+                keyStringBuilder.append(RollUpBitMask.ROLL_UP_TAG_VALUE);
+            } else {
+                keyStringBuilder.append(tagValues[i]);
+            }
+        }
+        return keyStringBuilder.toString();
+    }
+}
@@ -24,13 +24,14 @@ import java.util.Set;
 import org.apache.commons.lang.mutable.MutableLong;
 
 import stroom.statistics.common.RolledUpStatisticEvent;
-import stroom.statistics.common.TimeAgnosticStatisticEvent;
 import stroom.statistics.common.exception.StatisticsEventValidationException;
+import stroom.statistics.common.rollup.RollUpMaskTable;
 import stroom.statistics.shared.StatisticType;
 
 public class SQLStatisticAggregateMap {
     private final Map<SQLStatKey, MutableLong> countMap = new HashMap<SQLStatKey, MutableLong>();
     private final Map<SQLStatKey, Double> valueMap = new HashMap<SQLStatKey, Double>();
+    private final SQLStatKeyEncoder keyEncoder = new SQLStatKeyEncoder();
 
     public void addRolledUpEvent(final RolledUpStatisticEvent rolledUpStatisticEvent, long precisionMs)
             throws StatisticsEventValidationException {
@@ -41,10 +42,13 @@ public class SQLStatisticAggregateMap {
             roundedMs = multiple * precisionMs;
         }
 
-        for (TimeAgnosticStatisticEvent timeAgnosticStatisticEvent : rolledUpStatisticEvent) {
+        // Build the keys straight from the roll up masks rather than creating
+        // a tag list for each permutation.
+        keyEncoder.setEvent(rolledUpStatisticEvent.getName(), rolledUpStatisticEvent.getTagList());
+        final RollUpMaskTable rollUpMaskTable = rolledUpStatisticEvent.getRollUpMaskTable();
+        for (int i = 0; i < rollUpMaskTable.size(); i++) {
             // Create a key using the rounded time
-            final SQLStatKey key = new SQLStatKey(roundedMs, rolledUpStatisticEvent.getName(),
-                    timeAgnosticStatisticEvent.getTagList());
+            final SQLStatKey key = new SQLStatKey(roundedMs, keyEncoder.encode(rollUpMaskTable.getMask(i)));
 
             if (SQLStatisticsEventValidator.isKeyToLong(key.getName())) {
                 throw new StatisticsEventValidationException(
@@ -19,6 +19,7 @@ package stroom.statistics.common;
 import org.junit.Assert;
 import org.junit.Test;
 
+import stroom.statistics.internal.InternalStatisticsEventValidator;
 import stroom.statistics.sql.SQLStatisticsEventValidator;
 
 public class TestStatisticsEventValidatorFactory {
@@ -45,6 +46,13 @@ public class TestStatisticsEventValidatorFactory {
         Assert.assertTrue(validator1 == validator2);
     }
 
+    @Test
+    public void testGetInstance_internal() throws Exception {
+        final StatisticsEventValidator validator = StatisticsEventValidatorFactory.getInstance("Internal");
+
+        Assert.assertTrue(validator instanceof InternalStatisticsEventValidator);
+    }
+
     @Test(expected = NullPointerException.class)
     public void testGetInstance_null() throws Exception {
         StatisticsEventValidatorFactory.getInstance(null);
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.common.rollup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.statistics.shared.CustomRollUpMask;
+import stroom.util.test.StroomUnitTest;
+
+public class TestRollUpMaskTable extends StroomUnitTest {
+    @Test
+    public void testAll() {
+        final RollUpMaskTable table = RollUpMaskTable.all(3);
+        Assert.assertEquals(8, table.size());
+
+        // the table holds the same permutations as RollUpBitMask
+        final Set<Short> masks = new HashSet<>();
+        for (int i = 0; i < table.size(); i++) {
+            masks.add(table.getMask(i));
+        }
+        final Set<Short> expected = new HashSet<>();
+        for (final RollUpBitMask rollUpBitMask : RollUpBitMask.getRollUpBitMasks(3)) {
+            expected.add(rollUpBitMask.asShort());
+        }
+        Assert.assertEquals(expected, masks);
+
+        // tables are cached
+        Assert.assertSame(table, RollUpMaskTable.all(3));
+    }
+
+    @Test
+    public void testNone() {
+        Assert.assertEquals(1, RollUpMaskTable.NONE.size());
+        Assert.assertEquals(0, RollUpMaskTable.NONE.getMask(0));
+        Assert.assertEquals(RollUpMaskTable.NONE, RollUpMaskTable.all(0));
+    }
+
+    @Test
+    public void testCustom() {
+        final Set<CustomRollUpMask> customRollUpMasks = new HashSet<>();
+        customRollUpMasks.add(new CustomRollUpMask(new ArrayList<Integer>()));
+        customRollUpMasks.add(new CustomRollUpMask(Arrays.asList(0, 2)));
+        customRollUpMasks.add(new CustomRollUpMask(Arrays.asList(2)));
+
+        final RollUpMaskTable table = RollUpMaskTable.custom(customRollUpMasks, 3);
+        Assert.assertEquals(3, table.size());
+        Assert.assertEquals(0, table.getMask(0));
+        Assert.assertEquals(4, table.getMask(1));
+        Assert.assertEquals(5, table.getMask(2));
+        Assert.assertSame(table, RollUpMaskTable.custom(customRollUpMasks, 3));
+
+        // positions beyond the tag count are ignored so [0,2] and [0] are the
+        // same with two tags
+        final RollUpMaskTable twoTagTable = RollUpMaskTable.custom(customRollUpMasks, 2);
+        Assert.assertEquals(2, twoTagTable.size());
+        Assert.assertEquals(0, twoTagTable.getMask(0));
+        Assert.assertEquals(1, twoTagTable.getMask(1));
+
+        // changing the masks gives a new table
+        customRollUpMasks.add(new CustomRollUpMask(Arrays.asList(1)));
+        Assert.assertEquals(4, RollUpMaskTable.custom(customRollUpMasks, 3).size());
+    }
+
+    @Test
+    public void testIsRolledUp() {
+        final List<Boolean> booleanMask = RollUpBitMask.fromTagPositions(Arrays.asList(1, 3)).getBooleanMask(5);
+        final short mask = RollUpBitMask.fromTagPositions(Arrays.asList(1, 3)).asShort();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(booleanMask.get(i), RollUpMaskTable.isRolledUp(mask, i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyTags() {
+        RollUpMaskTable.all(RollUpBitMask.MASK_LENGTH + 1);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.statistics.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import stroom.statistics.common.StatisticDataPoint;
+import stroom.statistics.common.StatisticTag;
+import stroom.statistics.shared.StatisticType;
+import stroom.util.test.StroomUnitTest;
+
+public class TestInternalStatisticSeriesStore extends StroomUnitTest {
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final long NOW_MS = 1_000 * DAY_MS + 12 * HOUR_MS;
+    private static final double JUNIT_DOUBLE_DELTA = 0.0001;
+
+    private static final String STAT_NAME = "MyStat";
+    private static final List<StatisticTag> NODE_1 = Collections.singletonList(new StatisticTag("Node", "node1"));
+    private static final List<StatisticTag> NODE_2 = Collections.singletonList(new StatisticTag("Node", "node2"));
+
+    @Test
+    public void testCountRollups() {
+        final InternalStatisticSeriesStore store = new InternalStatisticSeriesStore();
+        store.add(STAT_NAME, StatisticType.COUNT, NODE_1, NOW_MS, 2, 0);
+        store.add(STAT_NAME, StatisticType.COUNT, NODE_1, NOW_MS + 1_000, 3, 0);
+        store.add(STAT_NAME, StatisticType.COUNT, NODE_1, NOW_MS + MINUTE_MS, 4, 0);
+
+        final List<StatisticDataPoint> minutes = search(store, NOW_MS - HOUR_MS, MINUTE_MS);
+        Assert.assertEquals(2, minutes.size());
+        Assert.assertEquals(NOW_MS, minutes.get(0).getTimeMs());
+        Assert.assertEquals(MINUTE_MS, minutes.get(0).getPrecisionMs());
+        Assert.assertEquals(5L, minutes.get(0).getCount().longValue());
+        Assert.assertEquals(4L, minutes.get(1).getCount().longValue());
+
+        final List<StatisticDataPoint> hours = search(store, NOW_MS - HOUR_MS, HOUR_MS);
+        Assert.assertEquals(1, hours.size());
+        Assert.assertEquals(HOUR_MS, hours.get(0).getPrecisionMs());
+        Assert.assertEquals(9L, hours.get(0).getCount().longValue());
+
+        final List<StatisticDataPoint> days = search(store, NOW_MS - DAY_MS, DAY_MS);
+        Assert.assertEquals(1, days.size());
+        Assert.assertEquals(NOW_MS - 12 * HOUR_MS, days.get(0).getTimeMs());
+        Assert.assertEquals(9L, days.get(0).getCount().longValue());
+    }
+
+    @Test
+    public void testValueRollups() {
+        final InternalStatisticSeriesStore store = new InternalStatisticSeriesStore();
+        store.add(STAT_NAME, StatisticType.VALUE, NODE_1, NOW_MS, 1, 10);
+        store.add(STAT_NAME, StatisticType.VALUE, NODE_1, NOW_MS + MINUTE_MS, 1, 20);
+        store.add(STAT_NAME, StatisticType.VALUE, NODE_1, NOW_MS + 2 * MINUTE_MS, 1, 60);
+
+        final List<StatisticDataPoint> hours = search(store, NOW_MS - HOUR_MS, HOUR_MS);
+        Assert.assertEquals(1, hours.size());
+        Assert.assertEquals(30, hours.get(0).getValue(), JUNIT_DOUBLE_DELTA);
+        Assert.assertEquals(10, hours.get(0).getMinValue(), JUNIT_DOUBLE_DELTA);
+        Assert.assertEquals(60, hours.get(0).getMaxValue(), JUNIT_DOUBLE_DELTA);
+        Assert.assertEquals(3L, hours.get(0).getCount().longValue());
+    }
+
+    @Test
+    public void testTagFilter() {
+        final InternalStatisticSeriesStore store = new InternalStatisticSeriesStore();
+        store.add(STAT_NAME, StatisticType.COUNT, NODE_1, NOW_MS, 1, 0);
+        store.add(STAT_NAME, StatisticType.COUNT, NODE_2, NOW_MS, 2, 0);
+
+        final List<StatisticDataPoint> dataPoints = store.search(STAT_NAME, NOW_MS - HOUR_MS, NOW_MS + HOUR_MS,
+                MINUTE_MS, NOW_MS, tags -> tags.equals(NODE_2));
+        Assert.assertEquals(1, dataPoints.size());
+        Assert.assertEquals(2L, dataPoints.get(0).getCount().longValue());
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(Arrays.asList("node1", "node2"), sorted(store.getValuesByTag("Node")));
+        Assert.assertTrue(store.search("OtherStat", 0, Long.MAX_VALUE, 0, NOW_MS, tags -> true).isEmpty());
+    }
+
+    @Test
+    public void testRingOverwrite() {
+        final RollupTimeSeries series = new RollupTimeSeries(MINUTE_MS, 10, false);
+        Assert.assertTrue(series.add(NOW_MS, 1, 0));
+        // Ten minutes later uses the same slot and replaces the old bucket.
+        Assert.assertTrue(series.add(NOW_MS + 10 * MINUTE_MS, 2, 0));
+        // The old bucket has gone so values for it can no longer be added.
+        Assert.assertFalse(series.add(NOW_MS, 1, 0));
+
+        final List<StatisticDataPoint> dataPoints = new ArrayList<>();
+        series.read(0, Long.MAX_VALUE, NODE_1, dataPoints);
+        Assert.assertEquals(1, dataPoints.size());
+        Assert.assertEquals(NOW_MS + 10 * MINUTE_MS, dataPoints.get(0).getTimeMs());
+        Assert.assertEquals(2L, dataPoints.get(0).getCount().longValue());
+    }
+
+    @Test
+    public void testSelectInterval() {
+        // Recent data at fine precision comes from the minute buckets.
+        Assert.assertEquals(0, InternalStatisticSeriesStore.selectInterval(NOW_MS - HOUR_MS, 0, NOW_MS));
+        // Coarser precision or older data moves to the hour then day buckets.
+        Assert.assertEquals(1, InternalStatisticSeriesStore.selectInterval(NOW_MS - HOUR_MS, HOUR_MS, NOW_MS));
+        Assert.assertEquals(1, InternalStatisticSeriesStore.selectInterval(NOW_MS - 2 * DAY_MS, 0, NOW_MS));
+        Assert.assertEquals(2, InternalStatisticSeriesStore.selectInterval(NOW_MS - 60 * DAY_MS, 0, NOW_MS));
+        Assert.assertEquals(2, InternalStatisticSeriesStore.selectInterval(0, 0, NOW_MS));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        final File file = new File(getCurrentTestDir(), "internalStatistics.dat");
+
+        final InternalStatisticSeriesStore store = new InternalStatisticSeriesStore();
+        store.add(STAT_NAME, StatisticType.COUNT, NODE_1, NOW_MS, 2, 0);
+        store.add(STAT_NAME, StatisticType.COUNT, NODE_2, NOW_MS, 3, 0);
+        store.add("ValueStat", StatisticType.VALUE, NODE_1, NOW_MS, 1, 7.5);
+        store.save(file);
+        Assert.assertTrue(file.isFile());
+
+        // Values added before the file is loaded are merged with it.
+        final InternalStatisticSeriesStore loaded = new InternalStatisticSeriesStore();
+        loaded.add(STAT_NAME, StatisticType.COUNT, NODE_1, NOW_MS, 5, 0);
+        loaded.load(file);
+
+        Assert.assertEquals(3, loaded.size());
+        final List<StatisticDataPoint> counts = loaded.search(STAT_NAME, NOW_MS - HOUR_MS, NOW_MS + HOUR_MS,
+                MINUTE_MS, NOW_MS, tags -> tags.equals(NODE_1));
+        Assert.assertEquals(1, counts.size());
+        Assert.assertEquals(7L, counts.get(0).getCount().longValue());
+
+        final List<StatisticDataPoint> values = loaded.search("ValueStat", NOW_MS - HOUR_MS, NOW_MS + HOUR_MS,
+                MINUTE_MS, NOW_MS, tags -> true);
+        Assert.assertEquals(1, values.size());
+        Assert.assertEquals(7.5, values.get(0).getValue(), JUNIT_DOUBLE_DELTA);
+    }
+
+    @Test
+    public void testSaveWhileAdding() throws Exception {
+        final File file = new File(getCurrentTestDir(), "internalStatisticsWhileAdding.dat");
+
+        final InternalStatisticSeriesStore store = new InternalStatisticSeriesStore();
+        final Thread thread = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    store.add(STAT_NAME + i, StatisticType.COUNT, NODE_1, NOW_MS, 1, 0);
+                    if (i % 10 == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+
+        // Every file that is saved while series are being added must load.
+        while (thread.isAlive()) {
+            store.save(file);
+            final InternalStatisticSeriesStore loaded = new InternalStatisticSeriesStore();
+            loaded.load(file);
+            Assert.assertTrue(loaded.size() <= store.size());
+        }
+        thread.join();
+
+        store.save(file);
+        final InternalStatisticSeriesStore loaded = new InternalStatisticSeriesStore();
+        loaded.load(file);
+        Assert.assertEquals(2000, loaded.size());
+    }
+
+    private List<StatisticDataPoint> search(final InternalStatisticSeriesStore store, final long fromMs,
+            final long precisionMs) {
+        final List<StatisticDataPoint> dataPoints = store.search(STAT_NAME, fromMs, NOW_MS + DAY_MS, precisionMs,
+                NOW_MS, tags -> true);
+        dataPoints.sort(Comparator.comparingLong(StatisticDataPoint::getTimeMs));
+        return dataPoints;
+    }
+
+    private List<String> sorted(final List<String> values) {
+        Collections.sort(values);
+        return values;
+    }
+}
@@ -28,8 +28,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import stroom.statistics.common.RollUpBitMaskUtil;
+import stroom.statistics.common.RolledUpStatisticEvent;
+import stroom.statistics.common.StatisticEvent;
 import stroom.statistics.common.StatisticTag;
 import stroom.statistics.common.rollup.RollUpBitMask;
+import stroom.statistics.common.rollup.RollUpMaskTable;
 import stroom.util.test.StroomUnitTest;
 
 public class TestSQLStatKey extends StroomUnitTest {
@@ -184,6 +187,43 @@ public class TestSQLStatKey extends StroomUnitTest {
         assertNotEquals(sqlStatKey1.hashCode(), sqlStatKey2.hashCode());
     }
 
+    @Test
+    public void testEncoderMatchesConstructor() {
+        tags.clear();
+        tags.add(new StatisticTag("T1", "T1V"));
+        tags.add(new StatisticTag("T2", null));
+        tags.add(new StatisticTag("T3", "*"));
+        tags.add(new StatisticTag("T4", ""));
+
+        final StatisticEvent event = new StatisticEvent(time, statName, tags, 1L);
+        final RolledUpStatisticEvent rolledUpStatisticEvent = new RolledUpStatisticEvent(event,
+                RollUpMaskTable.all(tags.size()));
+
+        final SQLStatKeyEncoder encoder = new SQLStatKeyEncoder();
+        encoder.setEvent(statName, tags);
+
+        final RollUpMaskTable table = rolledUpStatisticEvent.getRollUpMaskTable();
+        for (int i = 0; i < table.size(); i++) {
+            final short mask = table.getMask(i);
+            final SQLStatKey expected = new SQLStatKey(time, statName, rolledUpStatisticEvent.getTagList(mask));
+
+            assertEquals(expected.getName(), encoder.encode(mask));
+            assertEquals(expected, new SQLStatKey(time, encoder.encode(mask)));
+        }
+    }
+
+    @Test
+    public void testEncoderReuse() {
+        final SQLStatKeyEncoder encoder = new SQLStatKeyEncoder();
+        encoder.setEvent("OtherStat", tags);
+        encoder.encode((short) 3);
+
+        tags.clear();
+        encoder.setEvent(statName, tags);
+
+        assertEquals(new SQLStatKey(time, statName, tags).getName(), encoder.encode((short) 0));
+    }
+
     private String buildTagsPart(final List<StatisticTag> tags) {
         final StringBuilder sb = new StringBuilder();
 
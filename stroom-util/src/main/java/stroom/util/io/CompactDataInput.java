@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.util.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads data written by {@link CompactDataOutput}.
+ */
+public class CompactDataInput {
+    private final List<String> dictionary = new ArrayList<>();
+    private final byte[] buffer;
+    private final int end;
+    private int pos;
+
+    public CompactDataInput(final byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public CompactDataInput(final byte[] buffer, final int offset, final int length) {
+        this.buffer = buffer;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    public int readByte() {
+        checkAvailable(1);
+        return buffer[pos++];
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            checkAvailable(1);
+            final byte b = buffer[pos++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed variable length int at position " + pos);
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            checkAvailable(1);
+            final byte b = buffer[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed variable length long at position " + pos);
+    }
+
+    public double readDouble() {
+        checkAvailable(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (buffer[pos++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public String readString() {
+        final int ref = readVarInt();
+        if (ref == CompactDataOutput.NULL_STRING) {
+            return null;
+        } else if (ref == CompactDataOutput.NEW_STRING) {
+            final int length = readVarInt();
+            checkAvailable(length);
+            final String value = new String(buffer, pos, length, CompactDataOutput.CHARSET);
+            pos += length;
+            dictionary.add(value);
+            return value;
+        }
+
+        final int index = ref - CompactDataOutput.STRING_REF_OFFSET;
+        if (index < 0 || index >= dictionary.size()) {
+            throw new IllegalStateException("Unknown string reference " + index + " at position " + pos);
+        }
+        return dictionary.get(index);
+    }
+
+    /**
+     * @return The position of the next byte to be read in the underlying
+     *         buffer.
+     */
+    public int getPosition() {
+        return pos;
+    }
+
+    public int available() {
+        return end - pos;
+    }
+
+    private void checkAvailable(final int length) {
+        if (length < 0 || pos + length > end) {
+            throw new IllegalStateException("Unexpected end of data at position " + pos);
+        }
+    }
+}
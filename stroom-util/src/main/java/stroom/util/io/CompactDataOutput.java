@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.util.io;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A growable byte buffer for hand written binary formats. Lengths and counts
+ * are written as variable length integers and strings are dictionary encoded
+ * so that a string that has already been written is replaced by a reference
+ * to its first occurrence.
+ *
+ * Data written by this class is read with {@link CompactDataInput}.
+ */
+public class CompactDataOutput {
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * String references are offset so that 0 marks a null string and 1 marks
+     * a new string that follows.
+     */
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int STRING_REF_OFFSET = 2;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private byte[] buffer;
+    private int pos;
+
+    public CompactDataOutput() {
+        this(1024);
+    }
+
+    public CompactDataOutput(final int initialSize) {
+        buffer = new byte[Math.max(initialSize, 16)];
+    }
+
+    public void writeByte(final int value) {
+        ensureCapacity(1);
+        buffer[pos++] = (byte) value;
+    }
+
+    public void writeBoolean(final boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void write(final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, pos, length);
+        pos += length;
+    }
+
+    /**
+     * Writes an int using 7 bits per byte so that small positive values take a
+     * single byte. Negative values always take 5 bytes.
+     */
+    public void writeVarInt(final int value) {
+        ensureCapacity(5);
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            buffer[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[pos++] = (byte) v;
+    }
+
+    /**
+     * Writes a long using 7 bits per byte so that small positive values take a
+     * single byte. Negative values always take 10 bytes.
+     */
+    public void writeVarLong(final long value) {
+        ensureCapacity(10);
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[pos++] = (byte) v;
+    }
+
+    public void writeDouble(final double value) {
+        ensureCapacity(8);
+        final long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[pos++] = (byte) (bits >>> shift);
+        }
+    }
+
+    /**
+     * Writes a string, which may be null. The first time a string is written
+     * its UTF-8 bytes are output and subsequent writes of an equal string only
+     * output a reference to it.
+     */
+    public void writeString(final String value) {
+        if (value == null) {
+            writeVarInt(NULL_STRING);
+            return;
+        }
+
+        final Integer ref = dictionary.get(value);
+        if (ref != null) {
+            writeVarInt(ref + STRING_REF_OFFSET);
+        } else {
+            dictionary.put(value, dictionary.size());
+            final byte[] bytes = value.getBytes(CHARSET);
+            writeVarInt(NEW_STRING);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    public int size() {
+        return pos;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, pos);
+    }
+
+    private void ensureCapacity(final int length) {
+        if (pos + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, pos + length));
+        }
+    }
+}
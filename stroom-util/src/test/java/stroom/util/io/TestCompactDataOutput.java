@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Crown Copyright
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package stroom.util.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import stroom.util.test.StroomJUnit4ClassRunner;
+
+@RunWith(StroomJUnit4ClassRunner.class)
+public class TestCompactDataOutput {
+    @Test
+    public void testRoundTrip() {
+        final CompactDataOutput output = new CompactDataOutput(1);
+        output.writeVarInt(0);
+        output.writeVarInt(127);
+        output.writeVarInt(128);
+        output.writeVarInt(-1);
+        output.writeVarLong(Long.MAX_VALUE);
+        output.writeVarLong(-5L);
+        output.writeDouble(Double.NaN);
+        output.writeDouble(-12.5);
+        output.writeBoolean(true);
+        output.writeString(null);
+        output.writeString("test \u00e9");
+        output.writeString("");
+
+        final CompactDataInput input = new CompactDataInput(output.toByteArray());
+        Assert.assertEquals(0, input.readVarInt());
+        Assert.assertEquals(127, input.readVarInt());
+        Assert.assertEquals(128, input.readVarInt());
+        Assert.assertEquals(-1, input.readVarInt());
+        Assert.assertEquals(Long.MAX_VALUE, input.readVarLong());
+        Assert.assertEquals(-5L, input.readVarLong());
+        Assert.assertTrue(Double.isNaN(input.readDouble()));
+        Assert.assertEquals(-12.5, input.readDouble(), 0);
+        Assert.assertTrue(input.readBoolean());
+        Assert.assertNull(input.readString());
+        Assert.assertEquals("test \u00e9", input.readString());
+        Assert.assertEquals("", input.readString());
+        Assert.assertEquals(0, input.available());
+    }
+
+    @Test
+    public void testVarIntSize() {
+        final CompactDataOutput output = new CompactDataOutput();
+        output.writeVarInt(127);
+        Assert.assertEquals(1, output.size());
+        output.writeVarInt(16383);
+        Assert.assertEquals(3, output.size());
+    }
+
+    @Test
+    public void testRepeatedStrings() {
+        final String value = "a repeated string value";
+        final CompactDataOutput output = new CompactDataOutput();
+        output.writeString(value);
+        final int firstSize = output.size();
+        output.writeString("other");
+        output.writeString(value);
+        output.writeString(value);
+
+        // Repeats are written as a single byte reference.
+        Assert.assertEquals(firstSize + 7 + 2, output.size());
+
+        final CompactDataInput input = new CompactDataInput(output.toByteArray());
+        Assert.assertEquals(value, input.readString());
+        Assert.assertEquals("other", input.readString());
+        Assert.assertEquals(value, input.readString());
+        Assert.assertEquals(value, input.readString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTruncated() {
+        final CompactDataOutput output = new CompactDataOutput();
+        output.writeDouble(1);
+        final byte[] bytes = output.toByteArray();
+        new CompactDataInput(bytes, 0, bytes.length - 1).readDouble();
+    }
+}